@@ -18,6 +18,7 @@ import org.hit.util.Pair;
 import java.util.Collections;
 import java.util.List;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 }
@@ -154,7 +155,7 @@ scope {
     Map<String, Boolean> orderByCollector;
 }
 @init {
-   $orderby_clause::orderByCollector = new HashMap<>();
+   $orderby_clause::orderByCollector = new LinkedHashMap<>();
 }
 @after {
    myQueryAttributes.setOrderByCriterion(
@@ -163,7 +164,7 @@ scope {
 :^(ORDERED_COLUMNS orderby_item+);
 
 order returns [Boolean ascending] : (ASC {$ascending=Boolean.TRUE;}) 
-                                  | (DSC {$ascending=Boolean.FALSE;});
+                                  | (DESC {$ascending=Boolean.FALSE;});
 
 orderby_item:  ^(ORDERED_COLUMN c=column_name (o=order)?) {
 $orderby_clause::orderByCollector.put($c.coercedName, $o.ascending);} ;
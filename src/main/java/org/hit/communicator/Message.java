@@ -26,6 +26,7 @@ import java.io.ObjectInput;
 import java.io.ObjectOutput;
 
 import org.hit.event.Event;
+import org.hit.time.HybridLogicalClock;
 
 /**
  * Defines the contract for a Message to be sent on a wire.
@@ -36,12 +37,15 @@ public abstract class Message implements Externalizable, Event
 {
     private NodeID mySenderId;
     
+    private long myTimestamp;
+    
     /**
      * CTOR
      */
     public Message()
     {
         mySenderId = null;
+        myTimestamp = 0L;
     }
 
     /**
@@ -50,6 +54,7 @@ public abstract class Message implements Externalizable, Event
     public Message(NodeID senderId)
     {
         mySenderId = senderId;
+        myTimestamp = 0L;
     }
     
     /**
@@ -61,6 +66,15 @@ public abstract class Message implements Externalizable, Event
         return mySenderId;
     }
     
+    /**
+     * Returns the hybrid logical timestamp at which the message has been 
+     * sent by the originating node.
+     */
+    public long getTimestamp()
+    {
+        return myTimestamp;
+    }
+    
     /** 
      * A helper method to set the <code>NodeID</code> corresponding to the 
      * sender of <code>Message</code>
@@ -78,6 +92,10 @@ public abstract class Message implements Externalizable, Event
             ClassNotFoundException
     {
         mySenderId = (NodeID) in.readObject();
+        myTimestamp = in.readLong();
+        // Receiving a message moves the local clock past the sender's,
+        // unless the sender's clock is too far ahead of the local one.
+        HybridLogicalClock.getInstance().update(myTimestamp);
     }
 
     /**
@@ -86,7 +104,9 @@ public abstract class Message implements Externalizable, Event
     @Override
     public void writeExternal(ObjectOutput out) throws IOException
     {
+        myTimestamp = HybridLogicalClock.getInstance().currentTime();
         out.writeObject(mySenderId);
+        out.writeLong(myTimestamp);
     }
 
     /**
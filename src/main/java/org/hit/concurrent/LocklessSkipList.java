@@ -298,7 +298,6 @@ public class LocklessSkipList<K extends Comparable<? super K>,V>
         boolean isThere = find(key, preds, succs);
         if (isThere) {
            succs.get(0).getValues().add(value);
-           myCount.incrementAndGet();
         }
         else {
             
@@ -311,8 +310,10 @@ public class LocklessSkipList<K extends Comparable<? super K>,V>
                     newNode = null;
                 }
                 
+                // A node is at least linked into the bottom level list,
+                // otherwise it would cut off the nodes following it.
                 int nodeLevel = 
-                    Math.abs(myLocalRandom.get().nextInt()) % myListLevel;
+                    1 + myLocalRandom.get().nextInt(myListLevel);
                 newNode = new Node<>(key, value, nodeLevel, myListLevel);
                 for (int i = 0; i < nodeLevel; i++) {
                     newNode.getNext()
@@ -489,6 +490,15 @@ public class LocklessSkipList<K extends Comparable<? super K>,V>
         return new SkipListRangeIterator(start, end);
     }
 
+    /**
+     * Returns an <code>Iterator</code> over values whose keys are greater
+     * than or equal to the given start value.
+     */
+    public SkipListIterator lookupValuesFrom(K start)
+    {
+        return new SkipListIterator(lookupNode(start));
+    }
+
     /**
      * Removes the given key value pair from the skip list.
      *
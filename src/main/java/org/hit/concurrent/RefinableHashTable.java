@@ -38,23 +38,21 @@ import com.google.common.collect.ListMultimap;
  *
  * @author Balraja Subbiah
  */
-public class RefinableHashTable<K, V> implements HashTable<K, V>
+public class RefinableHashTable<K, V> implements BucketedHashTable<K, V>
 {
     private static final int INIT_LOCK_SIZE = 10;
 
     private static final int INIT_TABLE_SIZE = 100;
 
-    private static final int NO_POSITION = -1;
-
     /**
      * The data stored in the hash map. We allow multiple keys with the same
      * remainder when modulo by table size. But at a given remainder each key
      * should be unique.
      */
-    private List<ListMultimap<K, V>> myData;
+    private volatile List<ListMultimap<K, V>> myData;
 
     /** The list of locks that gaurds various portion of the tables */
-    private List<ReentrantLock> myLocks;
+    private volatile List<ReentrantLock> myLocks;
 
     /** The thread that has acquired permission for resizing the table */
     private final AtomicMarkableReference<Thread> myOwner;
@@ -87,28 +85,41 @@ public class RefinableHashTable<K, V> implements HashTable<K, V>
     }
 
     private int acquireLock(K key)
+    {
+        return acquireLock(key.hashCode());
+    }
+
+    private int acquireLock(int hash)
     {
         boolean[] mark = new boolean[] { false };
         Thread currentThread = Thread.currentThread();
-        Thread owner = myOwner.get(mark);
-        while (owner != null && owner != currentThread && mark[0]) {
-            // Some other thread is resizing. Spin till resizing is over.
-            owner = myOwner.get(mark);
+        while (true) {
+            Thread owner = myOwner.get(mark);
+            while (owner != null && owner != currentThread && mark[0]) {
+                // Some other thread is resizing. Spin till resizing is over.
+                owner = myOwner.get(mark);
+            }
+            int tablePos = indexFor(hash, myData.size());
+            List<ReentrantLock> oldLocks = myLocks;
+            ReentrantLock oldLock = oldLocks.get(tablePos % oldLocks.size());
+            oldLock.lock();
+            myOwner.get(mark);
+
+            if (mark[0] || myLocks != oldLocks) {
+                // The table got resized in the mean time, retry with the
+                // resized table.
+                oldLock.unlock();
+            }
+            else {
+                return tablePos;
+            }
         }
-        int tablePos = key.hashCode() % myData.size();
-        List<ReentrantLock> oldLocks = myLocks;
-        ReentrantLock oldLock = oldLocks.get(tablePos % oldLocks.size());
-        oldLock.lock();
-        mark = new boolean[] { false };
-        owner = myOwner.get(mark);
+    }
 
-        if (mark[0] || myLocks != oldLocks) {
-            oldLock.unlock();
-            return NO_POSITION;
-        }
-        else {
-            return tablePos;
-        }
+    /** Maps the hash to a position in a table of the given size */
+    private static int indexFor(int hash, int tableSize)
+    {
+        return (hash & Integer.MAX_VALUE) % tableSize;
     }
 
     /** Adds an element corresponding to a given key to the map */
@@ -116,18 +127,21 @@ public class RefinableHashTable<K, V> implements HashTable<K, V>
     public boolean add(K key, V value)
     {
         int tablePos = acquireLock(key);
-        if (tablePos == NO_POSITION) {
-            return false;
+        int size;
+        try {
+            ListMultimap<K, V> posData = myData.get(tablePos);
+            posData.put(key, value);
+            size = mySize.getAndIncrement();
+            myCount.incrementAndGet();
         }
-        ListMultimap<K, V> posData = myData.get(tablePos);
-        posData.put(key, value);
-        int size = mySize.getAndIncrement();
+        finally {
+            releaseLock(tablePos);
+        }
+        // Resizing spins till all the locks are released, hence it has to
+        // be done after releasing the lock held by this thread.
         if (size / myData.size() > THRESHOLD) {
             resize();
         }
-        posData.put(key, value);
-        myCount.incrementAndGet();
-        releaseLock(tablePos);
         return true;
     }
 
@@ -136,11 +150,13 @@ public class RefinableHashTable<K, V> implements HashTable<K, V>
     public List<V> get(K key)
     {
         int tablePos = acquireLock(key);
-        if (tablePos == NO_POSITION) {
-            return null;
+        try {
+            ListMultimap<K, V> posData = myData.get(tablePos);
+            return new ArrayList<>(posData.get(key));
+        }
+        finally {
+            releaseLock(tablePos);
         }
-        ListMultimap<K, V> posData = myData.get(tablePos);
-        return posData.get(key);
     }
 
     /**
@@ -153,7 +169,10 @@ public class RefinableHashTable<K, V> implements HashTable<K, V>
     {
         ArrayList<V> values = new ArrayList<>();
         Thread currentThread = Thread.currentThread();
-        if (myOwner.compareAndSet(null, currentThread, false, true)) {
+        while (!myOwner.compareAndSet(null, currentThread, false, true)) {
+            // Some other thread is resizing or copying. Spin till it's over.
+        }
+        try {
             // Spin till we acquire all the locks.
             for (ReentrantLock lock : myLocks) {
                 while (lock.isLocked()) {
@@ -164,6 +183,9 @@ public class RefinableHashTable<K, V> implements HashTable<K, V>
                 values.addAll(multimap.values());
             }
         }
+        finally {
+            myOwner.set(null, false);
+        }
         return values.iterator();
     }
 
@@ -180,15 +202,18 @@ public class RefinableHashTable<K, V> implements HashTable<K, V>
     public boolean remove(K key, V value)
     {
         int tablePos = acquireLock(key);
-        if (tablePos == NO_POSITION) {
-            return false;
+        try {
+            ListMultimap<K, V> posData = myData.get(tablePos);
+            boolean isRemoved = posData.remove(key, value);
+            if (isRemoved) {
+                mySize.decrementAndGet();
+                myCount.decrementAndGet();
+            }
+            return isRemoved;
         }
-        ListMultimap<K, V> posData = myData.get(tablePos);
-        boolean isRemoved = posData.remove(key, value);
-        if (isRemoved) {
-            myCount.decrementAndGet();
+        finally {
+            releaseLock(tablePos);
         }
-        return isRemoved;
     }
 
     private void resize()
@@ -223,7 +248,8 @@ public class RefinableHashTable<K, V> implements HashTable<K, V>
             for (int i = 0; i < oldSize; i++) {
                 ListMultimap<K, V> dataMap = myData.get(i);
                 for (Map.Entry<K, V> entry : dataMap.entries()) {
-                    int newPos = entry.getKey().hashCode() % newSize;
+                    int newPos = 
+                        indexFor(entry.getKey().hashCode(), newSize);
                     newData.get(newPos).put(entry.getKey(), entry.getValue());
                 }
             }
@@ -242,4 +268,29 @@ public class RefinableHashTable<K, V> implements HashTable<K, V>
     {
         return myCount.get();
     }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getBucketCount()
+    {
+        return myData.size();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<V> getBucketValues(int bucket)
+    {
+        // The table only grows, so a valid bucket stays valid.
+        int tablePos = acquireLock(bucket);
+        try {
+            return new ArrayList<>(myData.get(tablePos).values());
+        }
+        finally {
+            releaseLock(tablePos);
+        }
+    }
 }
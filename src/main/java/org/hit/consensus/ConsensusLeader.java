@@ -61,4 +61,13 @@ public abstract class ConsensusLeader extends AbstractConsensusProtocol
      * Use the protocol to achieve consensus for the given proposal.
      */
     public abstract void getConsensus(Proposal proposal);
+    
+    /**
+     * Discards the proposals covered by a snapshot of the replicated state
+     * taken as of the given time, whose files are under the given path. 
+     * It's ignored by the protocols that don't retain the proposals.
+     */
+    public void compact(long snapshotTime, String snapshotPath)
+    {
+    }
 }
@@ -33,6 +33,7 @@ import org.hit.event.ConsensusRequestEvent;
 import org.hit.event.CreateConsensusAcceptorEvent;
 import org.hit.event.CreateConsensusLeaderEvent;
 import org.hit.event.Event;
+import org.hit.event.LogCompactionEvent;
 import org.hit.event.ProposalNotificationResponse;
 import org.hit.messages.ConsensusMessage;
 import org.hit.pool.PooledObjects;
@@ -141,6 +142,15 @@ public class ConsensusManager extends Actor
             }
             consensusProtocol.handle(message);
         }
+        else if (event instanceof LogCompactionEvent) {
+            LogCompactionEvent lce = (LogCompactionEvent) event;
+            ConsensusProtocol consensusProtocol =
+                myUnitToConsensusProtocolMap.get(lce.getUnitID());
+            if (consensusProtocol instanceof ConsensusLeader) {
+                ((ConsensusLeader) consensusProtocol).compact(
+                    lce.getSnapshotTime(), lce.getSnapshotPath());
+            }
+        }
         else if (event instanceof ChangeAcceptorToLeaderEvent) {
             ChangeAcceptorToLeaderEvent cale = 
                 (ChangeAcceptorToLeaderEvent) event;
@@ -172,6 +182,8 @@ public class ConsensusManager extends Actor
                                        getActorID());
         getEventBus().registerForEvent(ProposalNotificationResponse.class,
                                        getActorID());
+        getEventBus().registerForEvent(LogCompactionEvent.class,
+                                       getActorID());
         
     }
 }
@@ -0,0 +1,35 @@
+/*
+    Hit is a high speed transactional database for handling millions
+    of updates with comfort and ease.
+
+    Copyright (C) 2013  Balraja Subbiah
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package org.hit.consensus;
+
+/**
+ * Extends {@link Proposal} to support the proposals whose changes are 
+ * stamped with the time at which they have been made. Such proposals can
+ * be discarded from the log once a snapshot of the state as of that time
+ * has been taken.
+ * 
+ * @author Balraja Subbiah
+ */
+public interface TimestampedProposal extends Proposal
+{
+    /** Returns the time of the latest change in the proposal */
+    public long getTimestamp();
+}
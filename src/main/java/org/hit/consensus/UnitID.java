@@ -24,17 +24,22 @@ import java.io.Externalizable;
 import java.io.IOException;
 import java.io.ObjectInput;
 import java.io.ObjectOutput;
+import java.io.Serializable;
 
 import org.hit.pool.Internable;
 
 /**
  * Defines the contract for uniquely identifying the unit which is guarded by
- * {@link ConsensusProtocol}.
+ * {@link ConsensusProtocol}. The ids are interned when they're sent over 
+ * the network and serialized as it is when the proposals carrying them are
+ * persisted to the logs.
  * 
  * @author Balraja Subbiah
  */
-public abstract class UnitID implements Internable
+public abstract class UnitID implements Internable, Serializable
 {
+    private static final long serialVersionUID = 1L;
+
     private ConsensusType myConsensusType;
 
     /**
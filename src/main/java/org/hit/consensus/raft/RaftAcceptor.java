@@ -19,7 +19,9 @@
 */
 package org.hit.consensus.raft;
 
+import gnu.trove.map.TLongLongMap;
 import gnu.trove.map.TLongObjectMap;
+import gnu.trove.map.hash.TLongLongHashMap;
 import gnu.trove.map.hash.TLongObjectHashMap;
 import gnu.trove.procedure.TLongObjectProcedure;
 import gnu.trove.procedure.TLongProcedure;
@@ -46,6 +48,8 @@ import org.hit.event.SendMessageEvent;
 import org.hit.pool.PooledObjects;
 import org.hit.util.LogFactory;
 
+import com.google.common.util.concurrent.FutureCallback;
+
 /**
  * Extends {@link ConsensusAcceptor} to play it's role in the raft protocol
  * to receive and process the replication requests.
@@ -65,8 +69,15 @@ public class RaftAcceptor extends ConsensusAcceptor
     
     private final TreeMap<Long,Proposal> myQueuedProposals;
     
+    /** The last sequence number added to the log of a term */
+    private final TLongLongMap myLastSequences;
+    
     private final WAL myWAL;
     
+    private long mySnapshotTermID;
+    
+    private long mySnapshotSeqNo;
+    
     /**
      * CTOR
      */
@@ -80,8 +91,11 @@ public class RaftAcceptor extends ConsensusAcceptor
         super(consensusUnitID, leader, eventBus, myID);
         myTermID = termID;
         myProposalLog = new TLongObjectHashMap<>();
-        myWAL = new WAL(new WALPropertyConfig(consensusUnitID.toString()));
+        myWAL = WAL.open(new WALPropertyConfig(consensusUnitID.toString()));
         myQueuedProposals = new TreeMap<>();
+        myLastSequences = new TLongLongHashMap();
+        mySnapshotTermID = -1L;
+        mySnapshotSeqNo = -1L;
     }
 
     /**
@@ -125,8 +139,12 @@ public class RaftAcceptor extends ConsensusAcceptor
                 myProposalLog.put(
                     replicationMessage.getTermID(), seqMap);
             }
-            else {
-                long maxSequenceNumber = seqMap.lastKey();
+            
+            // The log might have been emptied by the notifications, hence
+            // the last sequence number is tracked separately.
+            if (myLastSequences.containsKey(replicationMessage.getTermID())) {
+                long maxSequenceNumber = 
+                    myLastSequences.get(replicationMessage.getTermID());
                 
                 // Queue up proposal if we receive a request whose  
                 // sequence number is not equal to 1 + the max sequence
@@ -165,6 +183,8 @@ public class RaftAcceptor extends ConsensusAcceptor
             }
             seqMap.put(replicationMessage.getSequenceNumber(), 
                        replicationMessage.getProposal());
+            myLastSequences.put(replicationMessage.getTermID(),
+                                replicationMessage.getSequenceNumber());
             
             if (LOG.isLoggable(Level.FINE)) {
                 LOG.fine("The replication proposal : " 
@@ -181,21 +201,18 @@ public class RaftAcceptor extends ConsensusAcceptor
                         + replicationMessage.getLastCommittedSeqNo());
             }
             
+            // The proposal is accepted only after it's durable.
             myWAL.addProposal(
                 replicationMessage.getTermID(),
                 replicationMessage.getSequenceNumber(),
-                replicationMessage.getProposal());
+                replicationMessage.getProposal(),
+                makeAcceptance(replicationMessage.getSenderId(),
+                               replicationMessage.getUnitID(),
+                               replicationMessage.getTermID(),
+                               replicationMessage.getSequenceNumber()));
             
-            getEventBus().publish(
-                ActorID.CONSENSUS_MANAGER,
-                SendMessageEvent.create(
-                    replicationMessage.getSenderId(),
-                    RaftReplicationResponse.create(
-                        getNodeID(),
-                        replicationMessage.getUnitID(),
-                        true,
-                        replicationMessage.getTermID(),
-                        replicationMessage.getSequenceNumber())));
+            long snapshotTermID = replicationMessage.getSnapshotTermID();
+            long snapshotSeqNo = replicationMessage.getSnapshotSeqNo();
             
             final TreeMap<Long, Proposal> termLog = 
                 myProposalLog.get(
@@ -237,6 +254,50 @@ public class RaftAcceptor extends ConsensusAcceptor
                 
                 PooledObjects.freeInstance(replicationMessage);
             }
+            
+            // The log covered by the leader's snapshot is no longer 
+            // required, as the leader installs the snapshot on the 
+            // acceptors that lag behind it.
+            if (   snapshotTermID > mySnapshotTermID
+                || (   snapshotTermID == mySnapshotTermID
+                    && snapshotSeqNo > mySnapshotSeqNo))
+            {
+                compactLog(snapshotTermID, snapshotSeqNo);
+            }
+        }
+        else if (message instanceof RaftInstallSnapshotMessage) {
+            RaftInstallSnapshotMessage installMessage = 
+                (RaftInstallSnapshotMessage) message;
+            LOG.info("Installing " + installMessage.getSnapshot() 
+                     + " covering the log upto " 
+                     + installMessage.getTermID() + " : "
+                     + installMessage.getSequenceNumber());
+            
+            myProposalLog.clear();
+            myLastSequences.clear();
+            compactLog(installMessage.getTermID(), 
+                       installMessage.getSequenceNumber());
+            myProposalLog.put(installMessage.getTermID(),
+                              new TreeMap<Long, Proposal>());
+            myLastSequences.put(installMessage.getTermID(),
+                                installMessage.getSequenceNumber());
+            
+            getEventBus().publish(
+                ActorID.CONSENSUS_MANAGER,
+                ProposalNotificationEvent.create(installMessage.getSnapshot()));
+            
+            // The proposals following the snapshot are replayed by the 
+            // leader once it learns about the installation.
+            getEventBus().publish(
+                ActorID.CONSENSUS_MANAGER,
+                SendMessageEvent.create(
+                    installMessage.getSenderId(),
+                    RaftReplicationResponse.create(
+                        getNodeID(), 
+                        installMessage.getUnitID(),
+                        true,
+                        installMessage.getTermID(),
+                        installMessage.getSequenceNumber())));
         }
         else if (message instanceof RaftReplayMessage) {
             RaftReplayMessage replayMessage = (RaftReplayMessage) message;
@@ -251,24 +312,51 @@ public class RaftAcceptor extends ConsensusAcceptor
                     }
                 });
             
+            if (!myLastSequences.containsKey(replayMessage.getTermID())) {
+                LOG.warning("Ignoring the replay of an unknown term " 
+                            + replayMessage.getTermID());
+                return;
+            }
             TreeMap<Long, Proposal> termLog = 
                 myProposalLog.get(replayMessage.getTermID());
-            long lastProcessedSequenceNumber = termLog.lastKey();
+            long lastProcessedSequenceNumber = 
+                myLastSequences.get(replayMessage.getTermID());
             TLongSet removedKeys = new TLongHashSet();
+            Map.Entry<Long, Proposal> lastEntry = null;
             for (Map.Entry<Long, Proposal> entry : myQueuedProposals.entrySet())
             {
                 if (entry.getKey() == lastProcessedSequenceNumber + 1) {
-                    myWAL.addProposal(
-                        replayMessage.getTermID(), entry.getKey(), entry.getValue());
                     termLog.put(entry.getKey(), entry.getValue());
                     removedKeys.add(entry.getKey());
+                    lastEntry = entry;
+                    lastProcessedSequenceNumber = entry.getKey();
                 }
                 else {
                     break;
                 }
             }
             
-            if (!removedKeys.isEmpty()) {
+            if (lastEntry != null) {
+                myLastSequences.put(replayMessage.getTermID(),
+                                    lastProcessedSequenceNumber);
+                // The replayed proposals are accepted once the last of 
+                // them is durable, which in turn covers the earlier ones.
+                for (Map.Entry<Long, Proposal> entry : 
+                         myQueuedProposals.headMap(lastEntry.getKey())
+                                          .entrySet())
+                {
+                    myWAL.addProposal(replayMessage.getTermID(), 
+                                      entry.getKey(), 
+                                      entry.getValue());
+                }
+                myWAL.addProposal(
+                    replayMessage.getTermID(), 
+                    lastEntry.getKey(), 
+                    lastEntry.getValue(),
+                    makeAcceptance(replayMessage.getSenderId(),
+                                   replayMessage.getUnitID(),
+                                   replayMessage.getTermID(),
+                                   lastProcessedSequenceNumber));
                 
                 removedKeys.forEach(new TLongProcedure() {
                     
@@ -279,20 +367,70 @@ public class RaftAcceptor extends ConsensusAcceptor
                         return true;
                     }
                 });
-                
-                getEventBus().publish(
+            }
+
+        }
+    }
+
+    /**
+     * Discards the proposals upto the given term and sequence number, both
+     * inclusive, from the log as they're covered by the leader's snapshot.
+     */
+    private void compactLog(long termID, long sequenceNO)
+    {
+        mySnapshotTermID = termID;
+        mySnapshotSeqNo = sequenceNO;
+        for (long term : myProposalLog.keys()) {
+            if (term < termID) {
+                myProposalLog.remove(term);
+                myLastSequences.remove(term);
+            }
+        }
+        
+        TreeMap<Long, Proposal> termLog = myProposalLog.get(termID);
+        if (termLog != null) {
+            termLog.headMap(Long.valueOf(sequenceNO), true).clear();
+        }
+        myQueuedProposals.headMap(Long.valueOf(sequenceNO), true).clear();
+        myWAL.compact(termID, sequenceNO);
+    }
+    
+    /**
+     * Returns the notification that sends the acceptance of the proposal 
+     * to the leader once the proposal is durable, or its rejection if the 
+     * proposal couldn't be persisted.
+     */
+    private FutureCallback<Void> makeAcceptance(final NodeID leaderID,
+                                                final UnitID unitID,
+                                                final long   termID,
+                                                final long   sequenceNO)
+    {
+        final EventBus eventBus = getEventBus();
+        final NodeID nodeID = getNodeID();
+        return new FutureCallback<Void>() {
+            @Override
+            public void onSuccess(Void result)
+            {
+                eventBus.publish(
                     ActorID.CONSENSUS_MANAGER,
                     SendMessageEvent.create(
-                        replayMessage.getSenderId(),
+                        leaderID,
                         RaftReplicationResponse.create(
-                            getNodeID(),
-                            replayMessage.getUnitID(),
-                            true,
-                            replayMessage.getTermID(),
-                            lastProcessedSequenceNumber)));
+                            nodeID, unitID, true, termID, sequenceNO)));
             }
-
-        }
+            
+            @Override
+            public void onFailure(Throwable t)
+            {
+                // The proposal is rejected, so that the leader replays it.
+                eventBus.publish(
+                    ActorID.CONSENSUS_MANAGER,
+                    SendMessageEvent.create(
+                        leaderID,
+                        RaftReplicationResponse.create(
+                            nodeID, unitID, false, termID, sequenceNO - 1)));
+            }
+        };
     }
 
     /**
@@ -0,0 +1,124 @@
+/*
+    Hit is a high speed transactional database for handling millions
+    of updates with comfort and ease.
+
+    Copyright (C) 2013  Balraja Subbiah
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package org.hit.consensus.raft;
+
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+
+import org.hit.communicator.NodeID;
+import org.hit.consensus.UnitID;
+import org.hit.messages.ConsensusMessage;
+
+/**
+ * Extends {@link ConsensusMessage} to install a {@link RaftSnapshot} on 
+ * the {@link RaftAcceptor}s that lag behind the records retained in the
+ * leader's log. The snapshot covers the log upto the given term and 
+ * sequence number, after which the acceptor is caught up from the log.
+ * 
+ * @author Balraja Subbiah
+ */
+public class RaftInstallSnapshotMessage extends ConsensusMessage
+{
+    private long myTermID;
+    
+    private long mySequenceNumber;
+    
+    /**
+     * CTOR
+     */
+    public RaftInstallSnapshotMessage()
+    {
+        super();
+    }
+
+    /**
+     * CTOR
+     */
+    public RaftInstallSnapshotMessage(NodeID       senderID,
+                                      UnitID       unitID,
+                                      RaftSnapshot snapshot,
+                                      long         termID,
+                                      long         sequenceNumber)
+    {
+        populate(this, senderID, unitID, snapshot);
+        myTermID = termID;
+        mySequenceNumber = sequenceNumber;
+    }
+
+    /**
+     * Returns the term of the last record covered by the snapshot
+     */
+    public long getTermID()
+    {
+        return myTermID;
+    }
+
+    /**
+     * Returns the sequence number of the last record covered by the 
+     * snapshot
+     */
+    public long getSequenceNumber()
+    {
+        return mySequenceNumber;
+    }
+    
+    /**
+     * Returns the snapshot to be installed
+     */
+    public RaftSnapshot getSnapshot()
+    {
+        return (RaftSnapshot) getProposal();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void readExternal(ObjectInput in) 
+        throws IOException, ClassNotFoundException
+    {
+        super.readExternal(in);
+        myTermID = in.readLong();
+        mySequenceNumber = in.readLong();
+    }
+    
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException
+    {
+        super.writeExternal(out);
+        out.writeLong(myTermID);
+        out.writeLong(mySequenceNumber);
+    }
+    
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString()
+    {
+        return "Raft install snapshot message " + myTermID 
+               + " : " + mySequenceNumber;
+    }
+}
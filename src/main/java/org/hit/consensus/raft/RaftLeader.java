@@ -23,12 +23,17 @@ import gnu.trove.iterator.TLongObjectIterator;
 import gnu.trove.map.TLongObjectMap;
 import gnu.trove.map.hash.TLongObjectHashMap;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
 import java.util.Set;
+import java.util.TreeMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -38,16 +43,23 @@ import org.hit.communicator.Message;
 import org.hit.communicator.NodeID;
 import org.hit.consensus.ConsensusLeader;
 import org.hit.consensus.Proposal;
+import org.hit.consensus.TimestampedProposal;
 import org.hit.consensus.UnitID;
 import org.hit.consensus.raft.log.WAL;
 import org.hit.consensus.raft.log.WALPropertyConfig;
+import org.hit.di.HitServerModule;
 import org.hit.event.SendMessageEvent;
+import org.hit.fs.FileSystemFacacde;
 import org.hit.pool.PoolConfiguration;
 import org.hit.pool.PoolUtils;
 import org.hit.pool.Poolable;
 import org.hit.pool.PooledObjects;
 import org.hit.util.LogFactory;
 
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+
 /**
  * Extends {@link ConsensusLeader} to support raft specific version.
  * 
@@ -68,6 +80,9 @@ public class RaftLeader extends ConsensusLeader implements RaftProtocol
     {
         private final Set<NodeID> myLogAcceptors = new HashSet<>();
         
+        /** True once the proposal is durable in the leader's own log */
+        private boolean myIsLocallyDurable;
+        
         private WAL myWriteAheadLog;
         
         private EventBus myEventBus;
@@ -112,6 +127,11 @@ public class RaftLeader extends ConsensusLeader implements RaftProtocol
             tracker.myWriteAheadLog   = wal;
             tracker.myProposal        = proposal;
             tracker.myLogAcceptors.addAll(acceptors);
+            // The leader accepts the proposal once it's durable locally,
+            // which is tracked apart from the acceptors the proposal is 
+            // sent to.
+            tracker.myLogAcceptors.remove(sender);
+            tracker.myIsLocallyDurable = false;
             tracker.myTermID          = termID;
             tracker.mySequenceNO      = sequenceNO;
             tracker.myLCTermNo        = lcTermID;
@@ -125,7 +145,43 @@ public class RaftLeader extends ConsensusLeader implements RaftProtocol
          */
         public void start()
         {
-            myWriteAheadLog.addProposal(myTermID, mySequenceNO, myProposal);
+            // The local acceptance is handed over to the consensus manager
+            // like the ones from the acceptors, as it can be notified on
+            // the WAL's appender thread.
+            final EventBus eventBus = myEventBus;
+            final NodeID nodeID = myNodeID;
+            final UnitID unitID = myConsensusUnitID;
+            final long termID = myTermID;
+            final long sequenceNO = mySequenceNO;
+            myWriteAheadLog.addProposal(
+                myTermID, 
+                mySequenceNO, 
+                myProposal,
+                new FutureCallback<Void>() {
+                    @Override
+                    public void onSuccess(Void result)
+                    {
+                        eventBus.publish(
+                            ActorID.CONSENSUS_MANAGER,
+                            ActorID.CONSENSUS_MANAGER,
+                            RaftReplicationResponse.create(
+                                nodeID, unitID, true, termID, sequenceNO));
+                    }
+                    
+                    @Override
+                    public void onFailure(Throwable t)
+                    {
+                        // The proposal isn't committed without being 
+                        // durable locally.
+                        LOG.severe("The proposal " + termID + " : " 
+                                   + sequenceNO + " of " + unitID 
+                                   + " won't be committed as it couldn't"
+                                   + " be persisted");
+                    }
+                });
+            if (myLogAcceptors.isEmpty()) {
+                return;
+            }
             myEventBus.publish(
                 ActorID.CONSENSUS_MANAGER,
                 SendMessageEvent.create(                   
@@ -137,7 +193,9 @@ public class RaftLeader extends ConsensusLeader implements RaftProtocol
                         myTermID, 
                         mySequenceNO,
                         myLCTermNo,
-                        myLCSeqNo)));
+                        myLCSeqNo,
+                        myState.getSnapshotTermNo(),
+                        myState.getSnapshotSeqNo())));
         }
         
         public void receivedAcceptance(NodeID acceptedNodeID)
@@ -149,9 +207,20 @@ public class RaftLeader extends ConsensusLeader implements RaftProtocol
                          + mySequenceNO
                          + " from " + acceptedNodeID);
             }
-            myLogAcceptors.remove(acceptedNodeID);
-            if (myLogAcceptors.isEmpty()) {
+            if (acceptedNodeID.equals(myNodeID)) {
+                myIsLocallyDurable = true;
+            }
+            else {
+                myLogAcceptors.remove(acceptedNodeID);
+            }
+            if (myIsLocallyDurable && myLogAcceptors.isEmpty()) {
                 myState.setCommitted(myTermID, mySequenceNO);
+                if (myProposal instanceof TimestampedProposal) {
+                    myState.setCommitTime(
+                        myTermID, 
+                        mySequenceNO,
+                        ((TimestampedProposal) myProposal).getTimestamp());
+                }
                 myState.deleteTracker(myTermID, mySequenceNO);
                 PoolUtils.free(myProposal);
             }
@@ -164,6 +233,7 @@ public class RaftLeader extends ConsensusLeader implements RaftProtocol
         public void free()
         {
             myLogAcceptors.clear();
+            myIsLocallyDurable = false;
             myWriteAheadLog = null;
             myState = null;
             myNodeID = null;
@@ -189,6 +259,21 @@ public class RaftLeader extends ConsensusLeader implements RaftProtocol
         
         private long myLastCommittedSeqNo;
         
+        /** 
+         * The times of the committed proposals that are yet to be covered
+         * by a snapshot, keyed by their term and sequence numbers.
+         */
+        private final NavigableMap<Long, NavigableMap<Long, Long>> 
+            myCommitTimes;
+        
+        private long mySnapshotTermNo;
+        
+        private long mySnapshotSeqNo;
+        
+        private long mySnapshotTime;
+        
+        private String mySnapshotPath;
+        
         /**
          * CTOR
          */
@@ -199,6 +284,11 @@ public class RaftLeader extends ConsensusLeader implements RaftProtocol
             mySequenceNo  = -1L;
             myLastCommittedSeqNo = -1L;
             myLastCommittedTermNo = -1L;
+            myCommitTimes = new TreeMap<>();
+            mySnapshotTermNo = -1L;
+            mySnapshotSeqNo = -1L;
+            mySnapshotTime = Long.MIN_VALUE;
+            mySnapshotPath = null;
         }
 
         /**
@@ -254,6 +344,7 @@ public class RaftLeader extends ConsensusLeader implements RaftProtocol
                 TLongObjectIterator<ProposalTracker> itr = seqMap.iterator();
                 List<ProposalTracker> proposalTrackers = new ArrayList<>();
                 while (itr.hasNext()) {
+                    itr.advance();
                     if (itr.key() <= sequenceNo) {
                         proposalTrackers.add(itr.value());
                     }
@@ -285,6 +376,89 @@ public class RaftLeader extends ConsensusLeader implements RaftProtocol
             }
         }
         
+        /**
+         * Returns the term of the last proposal covered by the snapshot
+         */
+        public long getSnapshotTermNo()
+        {
+            return mySnapshotTermNo;
+        }
+
+        /**
+         * Returns the sequence number of the last proposal covered by the
+         * snapshot
+         */
+        public long getSnapshotSeqNo()
+        {
+            return mySnapshotSeqNo;
+        }
+
+        /**
+         * Returns the time as of which the snapshot has been taken
+         */
+        public long getSnapshotTime()
+        {
+            return mySnapshotTime;
+        }
+
+        /**
+         * Returns the path under which the snapshot is stored, null if 
+         * there isn't any snapshot.
+         */
+        public String getSnapshotPath()
+        {
+            return mySnapshotPath;
+        }
+        
+        /**
+         * Records the time at which the changes in a proposal have been 
+         * made, once the proposal is committed.
+         */
+        public void setCommitTime(long termNo, long sequenceNo, long time)
+        {
+            NavigableMap<Long, Long> seqMap = myCommitTimes.get(termNo);
+            if (seqMap == null) {
+                seqMap = new TreeMap<>();
+                myCommitTimes.put(termNo, seqMap);
+            }
+            seqMap.put(sequenceNo, time);
+        }
+        
+        /**
+         * Advances the snapshot to cover the committed proposals whose 
+         * changes have been made at or before the snapshot time. Since the
+         * proposals are logged in the order of their times, the snapshot
+         * always covers a prefix of the log.
+         * 
+         * @return True if the snapshot covers more proposals than before.
+         */
+        public boolean setSnapshot(long snapshotTime, String snapshotPath)
+        {
+            boolean isAdvanced = false;
+            mySnapshotTime = snapshotTime;
+            mySnapshotPath = snapshotPath;
+            Iterator<Map.Entry<Long, NavigableMap<Long, Long>>> termItr =
+                myCommitTimes.entrySet().iterator();
+            while (termItr.hasNext()) {
+                Map.Entry<Long, NavigableMap<Long, Long>> termEntry = 
+                    termItr.next();
+                Iterator<Map.Entry<Long, Long>> seqItr = 
+                    termEntry.getValue().entrySet().iterator();
+                while (seqItr.hasNext()) {
+                    Map.Entry<Long, Long> seqEntry = seqItr.next();
+                    if (seqEntry.getValue().longValue() > snapshotTime) {
+                        return isAdvanced;
+                    }
+                    mySnapshotTermNo = termEntry.getKey().longValue();
+                    mySnapshotSeqNo = seqEntry.getKey().longValue();
+                    isAdvanced = true;
+                    seqItr.remove();
+                }
+                termItr.remove();
+            }
+            return isAdvanced;
+        }
+        
         public void setCommitted(long termNo, long sequenceNo)
         {
             myLastCommittedTermNo = termNo;
@@ -303,6 +477,11 @@ public class RaftLeader extends ConsensusLeader implements RaftProtocol
     
     private final WAL myWAL;
     
+    private final FileSystemFacacde myFacacde;
+    
+    /** The followers to which a snapshot has been sent to be installed */
+    private final Set<NodeID> mySnapshotReceivers;
+    
     /**
      * CTOR
      */
@@ -315,7 +494,10 @@ public class RaftLeader extends ConsensusLeader implements RaftProtocol
     {
         super(consensusUnitID, acceptors, eventBus, myID);
         myProtocolState = new State(termID);
-        myWAL = new WAL(new WALPropertyConfig(consensusUnitID.toString()));
+        myWAL = WAL.open(new WALPropertyConfig(consensusUnitID.toString()));
+        Injector injector = Guice.createInjector(new HitServerModule());
+        myFacacde = injector.getInstance(FileSystemFacacde.class);
+        mySnapshotReceivers = new HashSet<>();
     }
 
     /**
@@ -344,6 +526,7 @@ public class RaftLeader extends ConsensusLeader implements RaftProtocol
             } 
             
             if (response.isAccepted()) {
+                mySnapshotReceivers.remove(response.getSenderId());
                 Collection<ProposalTracker> trackers = 
                     myProtocolState.getTracker(
                         response.getAcceptedTermID(),
@@ -361,11 +544,23 @@ public class RaftLeader extends ConsensusLeader implements RaftProtocol
                 // XXX We have to fix this.
                 // b. Last seen sequence number by that server doesn't match
                 //    the current sequence number.
-                if (response.getAcceptedSeqNo() 
-                        < myProtocolState.getSeqNumber())
+                if (   response.getAcceptedTermID() >= 0
+                    && response.getAcceptedSeqNo() 
+                           < myProtocolState.getSeqNumber()
+                    && myWAL.getFirstSequence(response.getAcceptedTermID())
+                           > response.getAcceptedSeqNo() + 1)
                 {
-                    TLongObjectMap<Proposal> replayedProposals = 
-                        myWAL.readProposalsFromLog(
+                    // The records missed by the follower have been 
+                    // discarded from the log.
+                    installSnapshot(response.getSenderId());
+                }
+                else if (response.getAcceptedSeqNo() 
+                             < myProtocolState.getSeqNumber())
+                {
+                    // The records are shipped as they're framed in the
+                    // log, without deserializing the proposals.
+                    byte[] replayedRecords = 
+                        myWAL.readFramedRecords(
                             response.getAcceptedTermID(),
                             response.getAcceptedSeqNo(),
                             myProtocolState.getSeqNumber());
@@ -374,7 +569,7 @@ public class RaftLeader extends ConsensusLeader implements RaftProtocol
                         new RaftReplayMessage(getNodeID(), 
                                               getConsensusUnitID(),
                                               response.getAcceptedTermID(), 
-                                              replayedProposals);
+                                              replayedRecords);
                     
                     getEventBus().publish(ActorID.CONSENSUS_MANAGER,
                                           SendMessageEvent.create(
@@ -385,6 +580,70 @@ public class RaftLeader extends ConsensusLeader implements RaftProtocol
         }
     }
 
+    /**
+     * Sends the latest snapshot to the follower, unless one is already on
+     * its way. The follower is caught up from the log once it has 
+     * installed the snapshot.
+     */
+    private void installSnapshot(NodeID follower)
+    {
+        if (myProtocolState.getSnapshotPath() == null) {
+            LOG.severe("The records required by " + follower + " have been"
+                       + " discarded from the log of " + getConsensusUnitID()
+                       + " and there isn't any snapshot to be installed");
+            return;
+        }
+        if (!mySnapshotReceivers.add(follower)) {
+            return;
+        }
+        
+        try {
+            RaftSnapshot snapshot = 
+                RaftSnapshot.read(myFacacde,
+                                  getConsensusUnitID(),
+                                  myProtocolState.getSnapshotTime(),
+                                  myProtocolState.getSnapshotPath());
+            LOG.info("Installing " + snapshot + " covering the log upto "
+                     + myProtocolState.getSnapshotTermNo() + " : "
+                     + myProtocolState.getSnapshotSeqNo() + " on "
+                     + follower);
+            
+            getEventBus().publish(
+                ActorID.CONSENSUS_MANAGER,
+                SendMessageEvent.create(
+                    follower,
+                    new RaftInstallSnapshotMessage(
+                        getNodeID(),
+                        getConsensusUnitID(),
+                        snapshot,
+                        myProtocolState.getSnapshotTermNo(),
+                        myProtocolState.getSnapshotSeqNo())));
+        }
+        catch (IOException e) {
+            mySnapshotReceivers.remove(follower);
+            LOG.log(Level.SEVERE, 
+                    "Unable to read the snapshot from " 
+                    + myProtocolState.getSnapshotPath(),
+                    e);
+        }
+    }
+    
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void compact(long snapshotTime, String snapshotPath)
+    {
+        // The snapshot might have been superseded, so it's sent again to
+        // the followers that are yet to install it.
+        mySnapshotReceivers.clear();
+        if (myProtocolState.setSnapshot(snapshotTime, snapshotPath)) {
+            myWAL.compact(snapshotTime,
+                          myProtocolState.getSnapshotTermNo(),
+                          myProtocolState.getSnapshotSeqNo());
+        }
+    }
+    
     /**
      * {@inheritDoc}
      */
@@ -19,9 +19,7 @@
 */
 package org.hit.consensus.raft;
 
-import gnu.trove.iterator.TLongObjectIterator;
 import gnu.trove.map.TLongObjectMap;
-import gnu.trove.map.hash.TLongObjectHashMap;
 
 import java.io.IOException;
 import java.io.ObjectInput;
@@ -30,11 +28,14 @@ import java.io.ObjectOutput;
 import org.hit.communicator.NodeID;
 import org.hit.consensus.Proposal;
 import org.hit.consensus.UnitID;
+import org.hit.consensus.raft.log.WAL;
 import org.hit.messages.ConsensusMessage;
 
 /**
  * Extends {@link ConsensusMessage} to support replaying missing messages
- * in the WAL to {@link RaftAcceptor}s.
+ * in the WAL to {@link RaftAcceptor}s. The records are carried framed as 
+ * they're laid out in the WAL, so that the leader doesn't have to 
+ * deserialize them.
  * 
  * @author Balraja Subbiah
  */
@@ -42,6 +43,8 @@ public class RaftReplayMessage extends ConsensusMessage
 {
     private long myTermID;
     
+    private byte[] myReplayedRecords;
+    
     private TLongObjectMap<Proposal> myReplayedProposals;
     
     /**
@@ -49,7 +52,8 @@ public class RaftReplayMessage extends ConsensusMessage
      */
     public RaftReplayMessage()
     {
-        myReplayedProposals = new TLongObjectHashMap<>();
+        myReplayedRecords = new byte[0];
+        myReplayedProposals = null;
     }
 
     /**
@@ -58,12 +62,13 @@ public class RaftReplayMessage extends ConsensusMessage
     public RaftReplayMessage(NodeID senderID,
                              UnitID unitID,
                              long termID, 
-                             TLongObjectMap<Proposal> replayedProposals)
+                             byte[] replayedRecords)
     {
         setSenderID(senderID);
         setUnitID(unitID);
         myTermID = termID;
-        myReplayedProposals = replayedProposals;
+        myReplayedRecords = replayedRecords;
+        myReplayedProposals = null;
     }
 
     /**
@@ -83,19 +88,23 @@ public class RaftReplayMessage extends ConsensusMessage
     }
 
     /**
-     * Returns the value of replayedProposals
+     * Returns the records being replayed as they're framed in the WAL.
      */
-    public TLongObjectMap<Proposal> getReplayedProposals()
+    public byte[] getReplayedRecords()
     {
-        return myReplayedProposals;
+        return myReplayedRecords;
     }
 
     /**
-     * Setter for replayedProposals
+     * Returns the proposals being replayed, which are read from the framed
+     * records when they're accessed for the first time.
      */
-    public void setReplayedProposals(TLongObjectMap<Proposal> replayedProposals)
+    public TLongObjectMap<Proposal> getReplayedProposals()
     {
-        myReplayedProposals = replayedProposals;
+        if (myReplayedProposals == null) {
+            myReplayedProposals = WAL.readFramedProposals(myReplayedRecords);
+        }
+        return myReplayedProposals;
     }
     
     /**
@@ -106,12 +115,10 @@ public class RaftReplayMessage extends ConsensusMessage
         throws IOException, ClassNotFoundException
     {
         super.readExternal(in);
-        int size = in.readInt();
-        for (int i = 0; i < size; i++) {
-            long key = in.readLong();
-            Proposal value = (Proposal) in.readObject();
-            myReplayedProposals.put(key, value);
-        }
+        myTermID = in.readLong();
+        myReplayedRecords = new byte[in.readInt()];
+        in.readFully(myReplayedRecords);
+        myReplayedProposals = null;
     }
     
     /**
@@ -121,14 +128,8 @@ public class RaftReplayMessage extends ConsensusMessage
     public void writeExternal(ObjectOutput out) throws IOException
     {
         super.writeExternal(out);
-        out.writeInt(myReplayedProposals.size());
-        TLongObjectIterator<Proposal> itr = myReplayedProposals.iterator();
-        while (itr.hasNext()) {
-            out.writeLong(itr.key());
-            out.writeObject(itr.value());
-        }
+        out.writeLong(myTermID);
+        out.writeInt(myReplayedRecords.length);
+        out.write(myReplayedRecords);
     }
-    
-    
-    
 }
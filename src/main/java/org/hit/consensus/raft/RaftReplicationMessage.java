@@ -45,6 +45,10 @@ public class RaftReplicationMessage extends ConsensusMessage
     
     private long myLastCommittedSeqNo;
     
+    private long mySnapshotTermID;
+    
+    private long mySnapshotSeqNo;
+    
     /**
      * CTOR
      */
@@ -63,7 +67,9 @@ public class RaftReplicationMessage extends ConsensusMessage
         long termID,
         long sequenceNumber,
         long lcTermID,
-        long lcSeqNo)
+        long lcSeqNo,
+        long snapshotTermID,
+        long snapshotSeqNo)
     {
         RaftReplicationMessage replicationMessage = 
             PooledObjects.getInstance(RaftReplicationMessage.class);
@@ -72,6 +78,8 @@ public class RaftReplicationMessage extends ConsensusMessage
         replicationMessage.mySequenceNumber = sequenceNumber;
         replicationMessage.myLastCommittedTermID = lcTermID;
         replicationMessage.myLastCommittedSeqNo = lcSeqNo;
+        replicationMessage.mySnapshotTermID = snapshotTermID;
+        replicationMessage.mySnapshotSeqNo = snapshotSeqNo;
         return replicationMessage;
     }
     
@@ -86,6 +94,8 @@ public class RaftReplicationMessage extends ConsensusMessage
         mySequenceNumber = Long.MIN_VALUE;
         myLastCommittedSeqNo = Long.MIN_VALUE;
         myLastCommittedTermID = Long.MIN_VALUE;
+        mySnapshotTermID = Long.MIN_VALUE;
+        mySnapshotSeqNo = Long.MIN_VALUE;
     }
 
     /**
@@ -119,6 +129,23 @@ public class RaftReplicationMessage extends ConsensusMessage
     {
         return myLastCommittedSeqNo;
     }
+    
+    /**
+     * Returns the term of the last record covered by the leader's snapshot
+     */
+    public long getSnapshotTermID()
+    {
+        return mySnapshotTermID;
+    }
+
+    /**
+     * Returns the sequence number of the last record covered by the 
+     * leader's snapshot
+     */
+    public long getSnapshotSeqNo()
+    {
+        return mySnapshotSeqNo;
+    }
 
     /**
      * {@inheritDoc}
@@ -132,6 +159,8 @@ public class RaftReplicationMessage extends ConsensusMessage
         mySequenceNumber = in.readLong();
         myLastCommittedTermID = in.readLong();
         myLastCommittedSeqNo = in.readLong();
+        mySnapshotTermID = in.readLong();
+        mySnapshotSeqNo = in.readLong();
     }
     
     /**
@@ -145,6 +174,8 @@ public class RaftReplicationMessage extends ConsensusMessage
         out.writeLong(mySequenceNumber);
         out.writeLong(myLastCommittedTermID);
         out.writeLong(myLastCommittedSeqNo);
+        out.writeLong(mySnapshotTermID);
+        out.writeLong(mySnapshotSeqNo);
     }
     
     /**
@@ -0,0 +1,175 @@
+/*
+    Hit is a high speed transactional database for handling millions
+    of updates with comfort and ease.
+
+    Copyright (C) 2013  Balraja Subbiah
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package org.hit.consensus.raft;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.hit.consensus.Proposal;
+import org.hit.consensus.UnitID;
+import org.hit.fs.FileSystemFacacde;
+
+/**
+ * Extends {@link Proposal} to carry a snapshot of the replicated state to
+ * the followers that are too far behind to be caught up from the log. The
+ * snapshot is carried as the contents of its files, which are interpreted
+ * only by the consumers of the replicated state.
+ * 
+ * @author Balraja Subbiah
+ */
+public class RaftSnapshot implements Proposal
+{
+    private static final int BUFFER_SIZE = 64 * 1024;
+    
+    private UnitID myUnitID;
+    
+    private long mySnapshotTime;
+    
+    private final Map<String, byte[]> myFiles;
+    
+    /**
+     * CTOR
+     */
+    public RaftSnapshot()
+    {
+        this(null, Long.MIN_VALUE);
+    }
+    
+    /**
+     * CTOR
+     */
+    public RaftSnapshot(UnitID unitID, long snapshotTime)
+    {
+        myUnitID = unitID;
+        mySnapshotTime = snapshotTime;
+        myFiles = new LinkedHashMap<>();
+    }
+    
+    /**
+     * A helper method to read the files of a snapshot from the given 
+     * directory.
+     */
+    public static RaftSnapshot read(FileSystemFacacde facacde,
+                                    UnitID            unitID,
+                                    long              snapshotTime,
+                                    String            dirPath)
+        throws IOException
+    {
+        RaftSnapshot snapshot = new RaftSnapshot(unitID, snapshotTime);
+        byte[] buffer = new byte[BUFFER_SIZE];
+        for (String fileName : facacde.listFiles(dirPath)) {
+            DataInputStream in = 
+                facacde.openFileForRead(dirPath + File.separator + fileName);
+            if (in == null) {
+                throw new IOException("Unable to read " + fileName 
+                                      + " under " + dirPath);
+            }
+            try {
+                ByteArrayOutputStream contents = new ByteArrayOutputStream();
+                int read;
+                while ((read = in.read(buffer)) > 0) {
+                    contents.write(buffer, 0, read);
+                }
+                snapshot.myFiles.put(fileName, contents.toByteArray());
+            }
+            finally {
+                in.close();
+            }
+        }
+        return snapshot;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public UnitID getUnitID()
+    {
+        return myUnitID;
+    }
+
+    /**
+     * Returns the time as of which the snapshot has been taken
+     */
+    public long getSnapshotTime()
+    {
+        return mySnapshotTime;
+    }
+
+    /**
+     * Returns the contents of the snapshot's files keyed by their names
+     */
+    public Map<String, byte[]> getFiles()
+    {
+        return myFiles;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void readExternal(ObjectInput in) 
+        throws IOException, ClassNotFoundException
+    {
+        myUnitID = (UnitID) in.readObject();
+        mySnapshotTime = in.readLong();
+        myFiles.clear();
+        int fileCount = in.readInt();
+        for (int i = 0; i < fileCount; i++) {
+            String fileName = in.readUTF();
+            byte[] contents = new byte[in.readInt()];
+            in.readFully(contents);
+            myFiles.put(fileName, contents);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException
+    {
+        out.writeObject(myUnitID);
+        out.writeLong(mySnapshotTime);
+        out.writeInt(myFiles.size());
+        for (Map.Entry<String, byte[]> entry : myFiles.entrySet()) {
+            out.writeUTF(entry.getKey());
+            out.writeInt(entry.getValue().length);
+            out.write(entry.getValue());
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString()
+    {
+        return "Raft snapshot of " + myUnitID + " as of " + mySnapshotTime
+               + " with " + myFiles.keySet();
+    }
+}
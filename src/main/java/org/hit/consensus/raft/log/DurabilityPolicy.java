@@ -0,0 +1,45 @@
+/*
+    Hit is a high speed transactional database for handling millions
+    of updates with comfort and ease.
+
+    Copyright (C) 2013  Balraja Subbiah
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package org.hit.consensus.raft.log;
+
+/**
+ * Defines the guarantees with which the records appended to the <code>
+ * WAL</code> are acknowledged.
+ * 
+ * @author Balraja Subbiah
+ */
+public enum DurabilityPolicy
+{
+    /** Every record is synced to the disk before it's acknowledged */
+    SYNC,
+    
+    /** 
+     * The records are synced to the disk in batches and acknowledged once 
+     * the batch containing them is synced.
+     */
+    GROUP,
+    
+    /** 
+     * The records are acknowledged once they are written, while they are
+     * synced to the disk in the background.
+     */
+    ASYNC;
+}
@@ -20,19 +20,36 @@
 
 package org.hit.consensus.raft.log;
 
+import gnu.trove.list.TLongList;
+import gnu.trove.list.array.TLongArrayList;
 import gnu.trove.map.TLongObjectMap;
 import gnu.trove.map.hash.TLongObjectHashMap;
 
-import java.io.DataInputStream;
-import java.io.Externalizable;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
-import java.io.ObjectInput;
 import java.io.ObjectInputStream;
-import java.io.ObjectOutput;
 import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.LockSupport;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -40,18 +57,38 @@ import java.util.logging.Logger;
 import org.hit.consensus.Proposal;
 import org.hit.di.HitServerModule;
 import org.hit.fs.FileSystemFacacde;
+import org.hit.pool.Poolable;
+import org.hit.pool.PooledObjects;
+import org.hit.util.CRC32C;
 import org.hit.util.LogFactory;
+import org.hit.util.NamedThreadFactory;
+import org.hit.util.Pair;
 
-import com.google.common.base.Predicate;
-import com.google.common.collect.Iterators;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
 import com.google.inject.Guice;
 import com.google.inject.Injector;
 
 /**
  * Defines the contract for the write ahead logs to which mutations are
- * pesisted before they are committed. It stores
- * {@link WALConfig#getTransactionsPerFile()} number of mutations in a file.
- * Each record is stored as Double.NaN,record_size_as_int,serialized_format.
+ * pesisted before they are committed. The records of a term are appended
+ * to a series of preallocated {@link WALSegment}s, each of 
+ * {@link WALConfig#getSegmentSize()} bytes. A proposal is stored as the 
+ * name of its class followed by the data written by its <code>
+ * writeExternal</code>. 
+ * <p>
+ * The callers serialize and frame the records on their own threads and
+ * stage them in a bounded lock free ring, without waiting for the disk. A
+ * dedicated appender thread takes all the records staged so far as a 
+ * batch, while the callers continue to stage the subsequent ones in the
+ * slots freed by it, and writes the batch to the segment with a single 
+ * gathering write. The records are synced to the disk as per the {@link 
+ * DurabilityPolicy} and the futures returned to the callers are completed
+ * once the records are durable. The ring holds {@link 
+ * WALConfig#getStagingRecords()} records, beyond which the callers wait 
+ * for the appender to catch up with them, so that the records piling up 
+ * when the disk is slow don't exhaust the memory.
  *
  * @author Balraja Subbiah
  */
@@ -65,107 +102,231 @@ public class WAL
     private static final String TRANSACTION_LOG_SUFFIX = ".transactionLog";
     
     private static final String TERM_PREFIX = "term";
-
+    
+    private static final String SNAPSHOT_SUFFIX = ".snapshot";
+    
+    /** The logs opened in this process, keyed by their paths */
+    private static final ConcurrentMap<String, WAL> ourLogs =
+        new ConcurrentHashMap<>();
+    
+    /** The maximum number of records written as a batch */
+    private static final int MAX_BATCH_RECORDS = 1024;
+    
+    /** The time for which a caller waits when the ring is full */
+    private static final long FULL_RING_WAIT_NANOS = 
+        TimeUnit.MICROSECONDS.toNanos(50L);
+    
     /**
-     * Type for capturing the necessary information to be written into a
-     * write ahead log.
+     * Extends <code>ByteArrayOutputStream</code> to expose the buffer, so 
+     * that the serialized records can be framed without copying them.
      */
-    public static class WALRecord implements Externalizable
+    private static class RecordBuffer extends ByteArrayOutputStream
     {
-        private Proposal myProposal;
+        /**
+         * Returns the buffer holding the bytes written so far.
+         */
+        public byte[] getBuffer()
+        {
+            return buf;
+        }
+    }
 
-        private long myTermID;
+    /**
+     * A bounded ring in which the callers stage the records without 
+     * locking, for the appender to take them up. A caller claims a slot by
+     * advancing the tail and then publishes its record in the slot, while
+     * the appender takes the records in the order of their slots and frees
+     * the slots for reuse. The ring is closed by marking the tail, so that
+     * a record is either claimed before the ring is closed, in which case
+     * the appender takes it up, or is refused.
+     */
+    private static class StagingRing
+    {
+        /** The bit of the tail that marks the ring as closed */
+        private static final long CLOSED = Long.MIN_VALUE;
+        
+        private final AtomicReferenceArray<WALRecord> mySlots;
+        
+        private final int myMask;
+        
+        /** The number of slots claimed so far and the closed bit */
+        private final AtomicLong myTail;
+        
+        /** The number of slots freed so far, advanced by the appender */
+        private volatile long myHead;
         
-        private long mySequenceNo;
-
         /**
          * CTOR
          */
-        public WALRecord()
+        public StagingRing(int capacity)
         {
-            this(Long.MIN_VALUE, Long.MIN_VALUE, null);
+            int slots = Integer.highestOneBit(Math.max(2, capacity));
+            if (slots < capacity) {
+                slots <<= 1;
+            }
+            mySlots = new AtomicReferenceArray<>(slots);
+            myMask = slots - 1;
+            myTail = new AtomicLong(0L);
+            myHead = 0L;
         }
-
+        
         /**
-         * CTOR
+         * Stages the record in the ring, returns false if the ring is 
+         * full or closed.
          */
-        public WALRecord(long termID, long sequenceNo, Proposal proposal)
+        public boolean offer(WALRecord record)
         {
-            super();
-            myTermID = termID;
-            mySequenceNo = sequenceNo;
+            while (true) {
+                long tail = myTail.get();
+                if (   (tail & CLOSED) != 0L 
+                    || tail - myHead >= mySlots.length())
+                {
+                    return false;
+                }
+                if (myTail.compareAndSet(tail, tail + 1)) {
+                    mySlots.set((int) (tail & myMask), record);
+                    return true;
+                }
+            }
         }
-
+        
         /**
-         * {@inheritDoc}
+         * Returns the next record staged in the ring or null if there 
+         * isn't one or it's yet to be published by its caller. Should be
+         * called only by the appender.
          */
-        @Override
-        public void readExternal(ObjectInput in)
-            throws IOException, ClassNotFoundException
+        public WALRecord poll()
         {
-            myTermID = in.readLong();
-            mySequenceNo = in.readLong();
-            myProposal = (Proposal) in.readObject();
+            int slot = (int) (myHead & myMask);
+            WALRecord record = mySlots.get(slot);
+            if (record != null) {
+                mySlots.set(slot, null);
+                myHead = myHead + 1;
+            }
+            return record;
         }
-
+        
         /**
-         * {@inheritDoc}
+         * Returns true if all the slots claimed so far have been freed.
          */
-        @Override
-        public void writeExternal(ObjectOutput out) throws IOException
+        public boolean isEmpty()
         {
-            out.writeLong(myTermID);
-            out.writeLong(mySequenceNo);
-            out.writeObject(myProposal);
+            return (myTail.get() & ~CLOSED) == myHead;
         }
-    }
-    
-    private static class FileIterator implements Iterator<WALRecord>
-    {
-        private final ObjectInputStream myInStream;
         
-        private WALRecord myWALRecord;
+        /**
+         * Refuses the records staged hereafter.
+         */
+        public void close()
+        {
+            long tail;
+            do {
+                tail = myTail.get();
+            }
+            while (!myTail.compareAndSet(tail, tail | CLOSED));
+        }
         
         /**
-         * CTOR
+         * Returns true if the ring has been closed.
          */
-        public FileIterator(DataInputStream inStream) throws IOException
+        public boolean isClosed()
         {
-            myInStream = new ObjectInputStream(inStream);
+            return (myTail.get() & CLOSED) != 0L;
         }
+    }
 
+    /**
+     * Writes the staged records to the segments in batches and completes
+     * their futures once they're durable.
+     */
+    private class Appender implements Runnable
+    {
         /**
          * {@inheritDoc}
          */
         @Override
-        public boolean hasNext()
+        public void run()
         {
+            myAppenderThread = Thread.currentThread();
+            List<WALRecord> batch = new ArrayList<>();
             try {
-                myWALRecord = (WALRecord) myInStream.readObject();
+                while (true) {
+                    drainStagedRecords(batch);
+                    if (batch.isEmpty()) {
+                        // The records claimed before the ring was closed
+                        // are written before the appender stops.
+                        if (   myStagedRecords.isClosed()
+                            && myStagedRecords.isEmpty())
+                        {
+                            return;
+                        }
+                        awaitStagedRecords(0L);
+                        continue;
+                    }
+                    
+                    // Gather the records staged within the interval, 
+                    // unless the batch fills up earlier.
+                    if (myDurabilityPolicy == DurabilityPolicy.GROUP) {
+                        long deadline = 
+                            System.nanoTime() 
+                            + TimeUnit.MICROSECONDS.toNanos(
+                                  myConfig.getGroupSyncIntervalMicros());
+                        long waitNanos = deadline - System.nanoTime();
+                        while (   batch.size() < myGroupSyncRecords
+                               && waitNanos > 0
+                               && !myStagedRecords.isClosed())
+                        {
+                            awaitStagedRecords(waitNanos);
+                            drainStagedRecords(batch);
+                            waitNanos = deadline - System.nanoTime();
+                        }
+                    }
+                    
+                    writeBatch(batch);
+                    batch.clear();
+                }
             }
-            catch (ClassNotFoundException | IOException e) {
-                myWALRecord = null;
-                return false;
+            finally {
+                // Should the appender stop abruptly, the records it 
+                // couldn't write are failed rather than leaving their 
+                // callers waiting.
+                IOException closed = 
+                    new IOException("The WAL " + myConfig.getLogName() 
+                                    + " is closed");
+                failBatch(batch, closed);
+                WALRecord record;
+                while ((record = myStagedRecords.poll()) != null) {
+                    record.getFuture().setException(closed);
+                }
             }
-            return true;
         }
-
-        /**
-         * {@inheritDoc}
-         */
-        @Override
-        public WALRecord next()
+        
+        private void drainStagedRecords(List<WALRecord> batch)
         {
-            return myWALRecord;
+            WALRecord record;
+            while (   batch.size() < MAX_BATCH_RECORDS
+                   && (record = myStagedRecords.poll()) != null)
+            {
+                batch.add(record);
+            }
         }
-
+        
         /**
-         * {@inheritDoc}
+         * Parks the appender till a record is staged or the given time 
+         * elapses, zero for waiting without a timeout.
          */
-        @Override
-        public void remove()
+        private void awaitStagedRecords(long nanos)
         {
-            throw new UnsupportedOperationException();
+            myIsAppenderIdle.set(true);
+            if (myStagedRecords.isEmpty() && !myStagedRecords.isClosed()) {
+                if (nanos > 0) {
+                    LockSupport.parkNanos(this, nanos);
+                }
+                else {
+                    LockSupport.park(this);
+                }
+            }
+            myIsAppenderIdle.set(false);
         }
     }
 
@@ -173,10 +334,32 @@ public class WAL
 
     private final FileSystemFacacde myFacacde;
 
+    /** Guards the segments, which are read by the callers */
     private final Lock myLock;
-
-    private ObjectOutputStream myLogStream;
     
+    private final DurabilityPolicy myDurabilityPolicy;
+    
+    private final int myGroupSyncRecords;
+    
+    /** The records that are yet to be taken up by the appender */
+    private final StagingRing myStagedRecords;
+    
+    /** The first sequence number staged for a term */
+    private final ConcurrentMap<Long, Long> myFirstStagedSequences;
+    
+    /** Set when the appender is waiting for the records to be staged */
+    private final AtomicBoolean myIsAppenderIdle;
+    
+    /** Runs the {@link Appender} */
+    private final ExecutorService myAppenderExecutor;
+    
+    private volatile Thread myAppenderThread;
+    
+    /** The segments of a term, keyed by the order in which they're created */
+    private final TLongObjectMap<NavigableMap<Long, WALSegment>> myTermSegments;
+    
+    private WALSegment myActiveSegment;
+
     private long myLastTermID;
     
     /**
@@ -188,61 +371,552 @@ public class WAL
         myFacacde = injector.getInstance(FileSystemFacacde.class);
         myLock = new ReentrantLock();
         myConfig = config;
+        myDurabilityPolicy = config.getDurabilityPolicy();
+        myGroupSyncRecords =
+            Math.min(MAX_BATCH_RECORDS,
+                     Math.max(1, config.getGroupSyncRecords()));
         myFacacde.makeDirectory(myConfig.getBaseDirectoryPath());
         LOG.info("Persisting transaction logs under " 
                  + myConfig.getBaseDirectoryPath()
-                 + " with " + myConfig.getTransactionsPerFile()
-                 + " transactions per file to the "
+                 + " in segments of " + myConfig.getSegmentSize()
+                 + " bytes to the "
                  + myFacacde.getClass().getSimpleName() 
-                 + " file system");
+                 + " file system with " + myDurabilityPolicy 
+                 + " durability");
         
+        myTermSegments = new TLongObjectHashMap<>();
+        myActiveSegment = null;
         myLastTermID = -1L;
-        myLogStream = null;
+        myStagedRecords = 
+            new StagingRing(Math.max(myGroupSyncRecords, 
+                                     config.getStagingRecords()));
+        myFirstStagedSequences = new ConcurrentHashMap<>();
+        myIsAppenderIdle = new AtomicBoolean(false);
+        myAppenderThread = null;
+        myAppenderExecutor = 
+            Executors.newSingleThreadExecutor(
+                new NamedThreadFactory(WAL.class, true));
+        myAppenderExecutor.execute(new Appender());
     }
-
+    
     /**
-     * Persists the given mutation to a file system. So that it can be
-     * replayed in the future.
+     * Returns the log that's open in this process for the given 
+     * configuration, opening it if necessary. A log has to be appended by 
+     * a single instance, hence the consensus modules and the recovery of 
+     * a server share the log opened here.
+     */
+    public static WAL open(WALConfig config)
+    {
+        String key = makeKey(config);
+        synchronized (ourLogs) {
+            WAL wal = ourLogs.get(key);
+            if (wal == null) {
+                wal = new WAL(config);
+                ourLogs.put(key, wal);
+            }
+            return wal;
+        }
+    }
+    
+    private static String makeKey(WALConfig config)
+    {
+        return config.getBaseDirectoryPath() + File.separator 
+               + config.getLogName();
+    }
+    
+    /**
+     * Returns the terms for which the records have been logged, in the 
+     * ascending order.
+     */
+    public TLongList getTerms()
+    {
+        TLongList terms = new TLongArrayList();
+        String prefix = TERM_PREFIX + HYPHEN;
+        for (String fileName : 
+                myFacacde.listFiles(myConfig.getBaseDirectoryPath()))
+        {
+            if (fileName.startsWith(prefix)) {
+                try {
+                    terms.add(Long.parseLong(
+                        fileName.substring(prefix.length())));
+                }
+                catch (NumberFormatException e) {
+                    LOG.warning("Ignoring " + fileName + " under the WAL");
+                }
+            }
+        }
+        terms.sort();
+        return terms;
+    }
+    
+    /**
+     * Returns the smallest sequence number retained in the log for the 
+     * given term, <code>Long.MAX_VALUE</code> if there are no records. The
+     * records that are yet to be written are accounted as well.
+     */
+    public long getFirstSequence(long termID)
+    {
+        myLock.lock();
+        try {
+            NavigableMap<Long, WALSegment> segments = getSegments(termID);
+            if (segments.isEmpty()) {
+                Long stagedSequence = 
+                    myFirstStagedSequences.get(Long.valueOf(termID));
+                return stagedSequence != null ? stagedSequence.longValue()
+                                              : Long.MAX_VALUE;
+            }
+            
+            long firstSequence = Long.MAX_VALUE;
+            for (WALSegment segment : segments.values()) {
+                firstSequence = 
+                    Math.min(firstSequence, segment.getMinSequence());
+            }
+            return firstSequence;
+        }
+        finally {
+            myLock.unlock();
+        }
+    }
+    
+    /**
+     * Discards the segments having only the records upto the given term 
+     * and sequence number, both inclusive, once they're covered by a
+     * snapshot. The segment that's being appended is always retained, so
+     * the records are discarded in the units of segments.
      */
-    public void addProposal(long termID, long sequenceNO, Proposal proposal)
+    public void compact(long termID, long sequenceNO)
     {
+        int discardedSegments = 0;
+        myLock.lock();
         try {
-            myLock.lock();
-            if (myLogStream == null || myLastTermID != termID) {
-                if (myLastTermID != termID) {
-                    myLogStream.flush();
-                    myLogStream.close();
+            TLongList terms = getTerms();
+            for (int i = 0; i < terms.size() && terms.get(i) <= termID; i++) {
+                long term = terms.get(i);
+                NavigableMap<Long, WALSegment> segments = getSegments(term);
+                Iterator<WALSegment> itr = segments.values().iterator();
+                while (itr.hasNext()) {
+                    WALSegment segment = itr.next();
+                    if (   segment == myActiveSegment
+                        || (   term == termID 
+                            && segment.getMaxSequence() > sequenceNO))
+                    {
+                        continue;
+                    }
+                    try {
+                        segment.close();
+                    }
+                    catch (IOException e) {
+                        LOG.log(Level.WARNING, 
+                                "Unable to close " + segment.getPath(), 
+                                e);
+                    }
+                    myFacacde.delete(segment.getPath());
+                    itr.remove();
+                    discardedSegments++;
                 }
                 
-                String dirPath = makeTermDirectory(termID);
-                myFacacde.makeDirectory(dirPath);
-                myLogStream = 
-                    new ObjectOutputStream(
-                        myFacacde.createFile(
-                            makeFileName(dirPath, sequenceNO), false));
-                myLastTermID = termID;
+                if (segments.isEmpty() && term < termID) {
+                    myFacacde.delete(makeTermDirectory(term));
+                    myTermSegments.remove(term);
+                    myFirstStagedSequences.remove(Long.valueOf(term));
+                }
+            }
+        }
+        finally {
+            myLock.unlock();
+        }
+        
+        if (discardedSegments > 0) {
+            LOG.info("Discarded " + discardedSegments + " segments of " 
+                     + myConfig.getLogName() + " upto " 
+                     + termID + " : " + sequenceNO);
+        }
+    }
+    
+    /**
+     * Records that the changes committed upto the given snapshot time are
+     * covered by a snapshot, which corresponds to the given term and 
+     * sequence number of the log, before discarding the segments upto 
+     * them. 
+     */
+    public void compact(long snapshotTime, long termID, long sequenceNO)
+    {
+        String path = makeSnapshotPath();
+        myLock.lock();
+        try (FileChannel channel = myFacacde.openChannel(path)) {
+            if (channel == null) {
+                throw new IOException("Unable to open " + path);
+            }
+            ByteBuffer position = ByteBuffer.allocate(3 * Long.SIZE / 8);
+            position.putLong(snapshotTime);
+            position.putLong(termID);
+            position.putLong(sequenceNO);
+            position.flip();
+            channel.write(position, 0L);
+            channel.force(true);
+        }
+        catch (IOException e) {
+            LOG.log(Level.SEVERE, "Unable to write " + path, e);
+        }
+        finally {
+            myLock.unlock();
+        }
+        compact(termID, sequenceNO);
+    }
+    
+    /**
+     * Returns the term and sequence number upto which the log is covered
+     * by the last snapshot recorded, provided the snapshot has been taken
+     * at or before the given time. Returns null otherwise, in which case
+     * the log has to be read from its beginning.
+     */
+    public Pair<Long, Long> getSnapshotPosition(long snapshotTime)
+    {
+        String path = makeSnapshotPath();
+        String fileName = new File(path).getName();
+        boolean isRecorded = false;
+        for (String name : 
+                myFacacde.listFiles(myConfig.getBaseDirectoryPath()))
+        {
+            isRecorded |= name.equals(fileName);
+        }
+        if (!isRecorded) {
+            return null;
+        }
+        
+        myLock.lock();
+        try (FileChannel channel = myFacacde.openChannel(path)) {
+            if (channel == null) {
+                throw new IOException("Unable to open " + path);
+            }
+            ByteBuffer position = ByteBuffer.allocate(3 * Long.SIZE / 8);
+            while (position.hasRemaining()) {
+                if (channel.read(position, position.position()) < 0) {
+                    return null;
+                }
             }
-            else if (sequenceNO % myConfig.getTransactionsPerFile() == 0) {
-                myLogStream.flush();
-                myLogStream.close();
-                myLogStream =
-                    new ObjectOutputStream(
-                        myFacacde.createFile(
-                             makeFileName(
-                                 makeTermDirectory(termID), sequenceNO), false));
+            position.flip();
+            if (position.getLong() > snapshotTime) {
+                return null;
             }
-            myLogStream.writeObject(
-                new WALRecord(sequenceNO, sequenceNO, proposal));
+            return new Pair<>(Long.valueOf(position.getLong()), 
+                              Long.valueOf(position.getLong()));
+        }
+        catch (IOException e) {
+            LOG.log(Level.SEVERE, "Unable to read " + path, e);
+            return null;
+        }
+        finally {
+            myLock.unlock();
+        }
+    }
+    
+    private String makeSnapshotPath()
+    {
+        return myConfig.getBaseDirectoryPath() + File.separator 
+               + myConfig.getLogName() + SNAPSHOT_SUFFIX;
+    }
+    
+    /**
+     * Writes the records staged so far, syncs them and closes the segments.
+     * The proposals added after the log is closed are failed.
+     */
+    public void close()
+    {
+        ourLogs.remove(makeKey(myConfig), this);
+        myStagedRecords.close();
+        Thread appenderThread = myAppenderThread;
+        if (appenderThread != null) {
+            LockSupport.unpark(appenderThread);
+        }
+        myAppenderExecutor.shutdown();
+        try {
+            if (!myAppenderExecutor.awaitTermination(1, TimeUnit.MINUTES)) {
+                LOG.severe("Timed out waiting for the staged records of " 
+                           + myConfig.getLogName() + " to be written");
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        
+        myLock.lock();
+        try {
+            for (NavigableMap<Long, WALSegment> segments : 
+                    myTermSegments.valueCollection())
+            {
+                for (WALSegment segment : segments.values()) {
+                    try {
+                        segment.sync();
+                        segment.close();
+                    }
+                    catch (IOException e) {
+                        LOG.log(Level.SEVERE, 
+                                "Unable to close " + segment.getPath(), 
+                                e);
+                    }
+                }
+            }
+            myTermSegments.clear();
+            myActiveSegment = null;
+            myLastTermID = -1L;
+        }
+        finally {
+            myLock.unlock();
+        }
+    }
+
+    /**
+     * Persists the given mutation to a file system. So that it can be
+     * replayed in the future.
+     * 
+     * @return The future that's completed once the proposal is as durable
+     *         as required by the {@link DurabilityPolicy}, or failed if it
+     *         couldn't be persisted.
+     */
+    public ListenableFuture<Void> addProposal(long     termID, 
+                                              long     sequenceNO, 
+                                              Proposal proposal)
+    {
+        // The proposal is serialized on the caller's thread, so that the 
+        // caller is free to reuse the proposal once this returns.
+        WALRecord record;
+        try {
+            RecordBuffer recordBuffer = new RecordBuffer();
+            ObjectOutputStream out = new ObjectOutputStream(recordBuffer);
+            out.writeUTF(proposal.getClass().getName());
+            proposal.writeExternal(out);
+            out.flush();
+            record = new WALRecord(termID, 
+                                   sequenceNO, 
+                                   recordBuffer.getBuffer(), 
+                                   recordBuffer.size());
         }
         catch (IOException e) {
             LOG.log(Level.SEVERE,
                     "Exception when persisting a transaction to WAL",
                     e);
+            return Futures.immediateFailedFuture(e);
+        }
+        
+        myFirstStagedSequences.putIfAbsent(Long.valueOf(termID), 
+                                           Long.valueOf(sequenceNO));
+        while (!myStagedRecords.offer(record)) {
+            if (myStagedRecords.isClosed()) {
+                return Futures.immediateFailedFuture(
+                    new IOException("The WAL " + myConfig.getLogName() 
+                                    + " is closed"));
+            }
+            // The ring is full as the disk can't keep up, so wait for the 
+            // appender to free the slots.
+            wakeAppender();
+            LockSupport.parkNanos(this, FULL_RING_WAIT_NANOS);
+        }
+        wakeAppender();
+        return record.getFuture();
+    }
+    
+    private void wakeAppender()
+    {
+        Thread appenderThread = myAppenderThread;
+        if (   appenderThread != null 
+            && myIsAppenderIdle.compareAndSet(true, false)) 
+        {
+            LockSupport.unpark(appenderThread);
+        }
+    }
+    
+    /**
+     * Persists the given mutation to a file system and notifies the 
+     * <code>callback</code> once it's as durable as required by the {@link 
+     * DurabilityPolicy}, or once it has failed to be persisted. The 
+     * callback is run on the appender thread.
+     */
+    public void addProposal(final long                 termID, 
+                            final long                 sequenceNO, 
+                            Proposal                   proposal,
+                            final FutureCallback<Void> callback)
+    {
+        Futures.addCallback(
+            addProposal(termID, sequenceNO, proposal),
+            new FutureCallback<Void>() {
+                @Override
+                public void onSuccess(Void result)
+                {
+                    callback.onSuccess(result);
+                }
 
+                @Override
+                public void onFailure(Throwable t)
+                {
+                    LOG.log(Level.SEVERE,
+                            "Unable to persist the proposal " + termID 
+                            + " : " + sequenceNO + " to " 
+                            + myConfig.getLogName(),
+                            t);
+                    callback.onFailure(t);
+                }
+            });
+    }
+    
+    /**
+     * Writes the batch of records to the segments, syncs them as per the
+     * {@link DurabilityPolicy} and completes their futures. The records 
+     * that go to the same segment are written together. The segments are
+     * synced under the lock, so that a compaction can't close them midway.
+     */
+    private void writeBatch(List<WALRecord> batch)
+    {
+        Set<WALSegment> writtenSegments = new LinkedHashSet<>();
+        IOException failure = null;
+        boolean isWritten = false;
+        myLock.lock();
+        try {
+            List<WALRecord> run = new ArrayList<>();
+            long runSize = 0L;
+            for (WALRecord record : batch) {
+                long termID = record.getTermID();
+                if (myActiveSegment == null || myLastTermID != termID) {
+                    appendRun(run, writtenSegments);
+                    runSize = 0L;
+                    myActiveSegment = 
+                        lastSegment(termID, record.getPayloadLength());
+                    myLastTermID = termID;
+                }
+                if (!myActiveSegment.hasRoom(runSize + record.getFrameSize())) {
+                    appendRun(run, writtenSegments);
+                    runSize = 0L;
+                    if (!myActiveSegment.hasRoom(record.getFrameSize())) {
+                        myActiveSegment = 
+                            createSegment(termID, record.getPayloadLength());
+                    }
+                }
+                run.add(record);
+                runSize += record.getFrameSize();
+            }
+            appendRun(run, writtenSegments);
+            
+            isWritten = true;
+            if (myDurabilityPolicy == DurabilityPolicy.ASYNC) {
+                completeBatch(batch);
+            }
+            for (WALSegment segment : writtenSegments) {
+                segment.sync();
+            }
+        }
+        catch (IOException e) {
+            LOG.log(Level.SEVERE,
+                    isWritten ? "Exception when syncing the WAL"
+                              : "Exception when persisting to the WAL",
+                    e);
+            failure = e;
         }
         finally {
             myLock.unlock();
         }
+        
+        if (failure != null) {
+            if (!isWritten || myDurabilityPolicy != DurabilityPolicy.ASYNC) {
+                failBatch(batch, failure);
+            }
+        }
+        else if (myDurabilityPolicy != DurabilityPolicy.ASYNC) {
+            completeBatch(batch);
+        }
+    }
+    
+    private void appendRun(List<WALRecord> run, Set<WALSegment> written)
+        throws IOException
+    {
+        if (!run.isEmpty()) {
+            myActiveSegment.append(run);
+            written.add(myActiveSegment);
+            run.clear();
+        }
+    }
+    
+    private static void completeBatch(List<WALRecord> batch)
+    {
+        for (WALRecord record : batch) {
+            record.getFuture().set(null);
+        }
+    }
+    
+    private static void failBatch(List<WALRecord> batch, Throwable t)
+    {
+        for (WALRecord record : batch) {
+            record.getFuture().setException(t);
+        }
+    }
+    
+    /**
+     * Returns the segment of the term to which the records are to be 
+     * appended, creating one if the term doesn't have any segments.
+     */
+    private WALSegment lastSegment(long termID, int recordSize)
+        throws IOException
+    {
+        NavigableMap<Long, WALSegment> segments = getSegments(termID);
+        return segments.isEmpty() ? createSegment(termID, recordSize)
+                                  : segments.lastEntry().getValue();
+    }
+    
+    /**
+     * Creates a new segment for the term that's large enough to hold a 
+     * record of the given size.
+     */
+    private WALSegment createSegment(long termID, int recordSize)
+        throws IOException
+    {
+        NavigableMap<Long, WALSegment> segments = getSegments(termID);
+        long segmentNo = segments.isEmpty() ? 0L : segments.lastKey() + 1;
+        String dirPath = makeTermDirectory(termID);
+        myFacacde.makeDirectory(dirPath);
+        WALSegment segment =
+            WALSegment.create(
+                myFacacde,
+                makeFileName(dirPath, segmentNo),
+                Math.max(myConfig.getSegmentSize(),
+                         WALSegment.HEADER_SIZE + recordSize));
+        segments.put(Long.valueOf(segmentNo), segment);
+        return segment;
+    }
+    
+    /**
+     * Returns the segments of the term, which are opened from the term's
+     * directory when the term is accessed for the first time.
+     */
+    private NavigableMap<Long, WALSegment> getSegments(long termID)
+    {
+        NavigableMap<Long, WALSegment> segments = myTermSegments.get(termID);
+        if (segments != null) {
+            return segments;
+        }
+        
+        segments = new TreeMap<>();
+        String dirPath = makeTermDirectory(termID);
+        String prefix = myConfig.getLogName() + HYPHEN;
+        for (String fileName : myFacacde.listFiles(dirPath)) {
+            if (   !fileName.startsWith(prefix) 
+                || !fileName.endsWith(TRANSACTION_LOG_SUFFIX))
+            {
+                continue;
+            }
+            String path = dirPath + File.separator + fileName;
+            try {
+                long segmentNo = 
+                    Long.parseLong(fileName.substring(
+                        prefix.length(),
+                        fileName.length() - TRANSACTION_LOG_SUFFIX.length()));
+                segments.put(Long.valueOf(segmentNo),
+                             WALSegment.open(myFacacde, path));
+            }
+            catch (NumberFormatException | IOException e) {
+                LOG.log(Level.SEVERE, "Unable to open the segment " + path, e);
+            }
+        }
+        myTermSegments.put(termID, segments);
+        return segments;
     }
     
     private String makeTermDirectory(long termID)
@@ -254,66 +928,45 @@ public class WAL
              + Long.toString(termID);
     }
 
-    private String makeFileName(String termDirPath, long sequenceNumber)
+    private String makeFileName(String termDirPath, long segmentNo)
     {
         return termDirPath
                + File.separator
                + myConfig.getLogName()
                + HYPHEN
-               + Long.toString(sequenceNumber)
+               + Long.toString(segmentNo)
                + TRANSACTION_LOG_SUFFIX;
     }
     
     /**
-     * Returns an iterator over the list of proposals between the
-     * sequence numbers specified.
+     * Returns the proposals between the sequence numbers specified, both 
+     * inclusive. The records are looked up from the index of the segments,
+     * so only the proposals in the range are deserialized.
      */
     public TLongObjectMap<Proposal> readProposalsFromLog(
         long termID, final long fromSequence, final long toSequence)
     {
+        myLock.lock();
         try {
-            
             TLongObjectMap<Proposal> proposals = new TLongObjectHashMap<>();
-            String dirPath = makeTermDirectory(termID);
-            long sequence = 
-                (fromSequence - (fromSequence % myConfig.getTransactionsPerFile()));
-            long endSequence = 
-                 (toSequence 
-                  + (myConfig.getTransactionsPerFile()
-                         - (toSequence % myConfig.getTransactionsPerFile())));
-            
-            Predicate<WALRecord> predicate = new Predicate<WAL.WALRecord>() {
-    
-                @Override
-                public boolean apply(WALRecord record)
-                {
-                    return record.mySequenceNo >= fromSequence
-                        && record.mySequenceNo <= toSequence;
-                }
-            };
-            
-            while (sequence <= endSequence) {
-                
-                DataInputStream inputLogFile = 
-                    myFacacde.openFileForRead(makeFileName(dirPath, sequence));
-                                
-                try {
-                    Iterator<WAL.WALRecord> walRecordIterator = 
-                        Iterators.filter(
-                            new FileIterator(inputLogFile), predicate);
-                    
-                    while (walRecordIterator.hasNext()) {
-                        WAL.WALRecord record = walRecordIterator.next();
-                        proposals.put(record.mySequenceNo, record.myProposal);
+            // The later segments override the sequences appended again.
+            for (WALSegment segment : getSegments(termID).values()) {
+                long start = Math.max(fromSequence, segment.getMinSequence());
+                long end = Math.min(toSequence, segment.getMaxSequence());
+                for (long sequence = start; sequence <= end; sequence++) {
+                    try {
+                        byte[] payload = segment.read(sequence);
+                        if (payload != null) {
+                            proposals.put(sequence, readProposal(payload));
+                        }
+                    }
+                    catch (IOException | ReflectiveOperationException e) {
+                        LOG.log(Level.SEVERE, 
+                                "Exception while reading " + sequence 
+                                + " from " + segment.getPath(),
+                                e);
                     }
                 }
-                catch (IOException e) {
-                    LOG.log(Level.SEVERE, 
-                           "Exception while reading data from"
-                            + makeFileName(dirPath, sequence),
-                            e);
-                }
-                sequence += myConfig.getTransactionsPerFile();
             }
             return proposals;
         }
@@ -321,4 +974,111 @@ public class WAL
             myLock.unlock();
         }
     }
+    
+    /**
+     * Returns the records between the sequence numbers specified, both 
+     * inclusive, framed as they're laid out in the segments. The records
+     * are copied from the mapped segments without deserializing them, so
+     * that they can be shipped as it is to the followers that are lagging
+     * behind.
+     */
+    public byte[] readFramedRecords(long termID, 
+                                    long fromSequence, 
+                                    long toSequence)
+    {
+        myLock.lock();
+        try {
+            List<WALSegment> segments = 
+                new ArrayList<>(getSegments(termID).values());
+            List<WALSegment> owners = new ArrayList<>();
+            TLongList sequences = new TLongArrayList();
+            int size = 0;
+            for (long sequence = fromSequence; 
+                 sequence <= toSequence; 
+                 sequence++) 
+            {
+                // The later segments override the sequences appended again.
+                for (int i = segments.size() - 1; i >= 0; i--) {
+                    WALSegment segment = segments.get(i);
+                    if (segment.contains(sequence)) {
+                        owners.add(segment);
+                        sequences.add(sequence);
+                        size += segment.frameSize(sequence);
+                        break;
+                    }
+                }
+            }
+            
+            ByteBuffer frames = ByteBuffer.allocate(size);
+            for (int i = 0; i < owners.size(); i++) {
+                owners.get(i).copyFrame(sequences.get(i), frames);
+            }
+            return frames.array();
+        }
+        catch (IOException e) {
+            LOG.log(Level.SEVERE, 
+                    "Exception while reading the records " + fromSequence 
+                    + " to " + toSequence + " of the term " + termID,
+                    e);
+            return new byte[0];
+        }
+        finally {
+            myLock.unlock();
+        }
+    }
+    
+    /**
+     * Returns the proposals from the records framed as they're laid out in
+     * the segments. The records that are torn or fail the checksum and the
+     * ones following them are ignored.
+     */
+    public static TLongObjectMap<Proposal> readFramedProposals(byte[] frames)
+    {
+        TLongObjectMap<Proposal> proposals = new TLongObjectHashMap<>();
+        ByteBuffer buffer = ByteBuffer.wrap(frames);
+        CRC32C crc = new CRC32C();
+        try {
+            while (buffer.remaining() >= WALSegment.HEADER_SIZE) {
+                int length = buffer.getInt();
+                int checksum = buffer.getInt();
+                long term = buffer.getLong();
+                long sequence = buffer.getLong();
+                if (length <= 0 || length > buffer.remaining()) {
+                    LOG.severe("The framed record " + sequence 
+                               + " is torn");
+                    break;
+                }
+                byte[] payload = new byte[length];
+                buffer.get(payload);
+                if (WALSegment.checksum(crc, term, sequence, payload, length)
+                        != checksum)
+                {
+                    LOG.severe("The framed record " + sequence 
+                               + " is corrupted");
+                    break;
+                }
+                proposals.put(sequence, readProposal(payload));
+            }
+        }
+        catch (IOException | ReflectiveOperationException 
+               | RuntimeException e)
+        {
+            LOG.log(Level.SEVERE, "Exception while reading framed records", e);
+        }
+        return proposals;
+    }
+    
+    private static Proposal readProposal(byte[] payload)
+        throws IOException, ReflectiveOperationException
+    {
+        ObjectInputStream in = 
+            new ObjectInputStream(new ByteArrayInputStream(payload));
+        Class<?> type = Class.forName(in.readUTF());
+        Proposal proposal = 
+            Poolable.class.isAssignableFrom(type) ?
+                (Proposal) PooledObjects.getUnboundedInstance(type)
+                : (Proposal) type.newInstance();
+        proposal.readExternal(in);
+        return proposal;
+    }
 }
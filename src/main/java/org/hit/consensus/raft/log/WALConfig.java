@@ -38,7 +38,30 @@ public interface WALConfig
     public String getBaseDirectoryPath();
     
     /**
-     * Returns the number of transactions per file.
+     * Returns the size in bytes of the preallocated segment files.
      */
-    public int getTransactionsPerFile();
+    public long getSegmentSize();
+    
+    /**
+     * Returns the policy as per which the records are synced to the disk.
+     */
+    public DurabilityPolicy getDurabilityPolicy();
+    
+    /**
+     * Returns the number of records after which the pending records are
+     * synced to the disk, when they are synced in batches.
+     */
+    public int getGroupSyncRecords();
+    
+    /**
+     * Returns the maximum time in microseconds for which a record waits 
+     * for being synced to the disk, when they are synced in batches.
+     */
+    public long getGroupSyncIntervalMicros();
+    
+    /**
+     * Returns the maximum number of records staged for being written, 
+     * beyond which the callers wait for the staged records to be written.
+     */
+    public int getStagingRecords();
 }
@@ -36,8 +36,27 @@ public class WALPropertyConfig implements WALConfig
     
     public static final String WAL_BASE_DIRECTORY = "org.hit.wal.basePath";
     
-    private static final String WAL_TRANCTIONS_PER_FILE = 
-        "org.hit.wal.transactionsPerFile";
+    private static final String WAL_SEGMENT_SIZE = 
+        "org.hit.wal.segmentSizeInBytes";
+    
+    private static final long DEFAULT_SEGMENT_SIZE = 64L * 1024 * 1024;
+    
+    private static final String WAL_DURABILITY = "org.hit.wal.durability";
+    
+    private static final String WAL_GROUP_SYNC_RECORDS = 
+        "org.hit.wal.groupSyncRecords";
+    
+    private static final int DEFAULT_GROUP_SYNC_RECORDS = 64;
+    
+    private static final String WAL_GROUP_SYNC_INTERVAL = 
+        "org.hit.wal.groupSyncIntervalInMicros";
+    
+    private static final long DEFAULT_GROUP_SYNC_INTERVAL_MICROS = 1000L;
+    
+    private static final String WAL_STAGING_RECORDS = 
+        "org.hit.wal.stagingRecords";
+    
+    private static final int DEFAULT_STAGING_RECORDS = 8192;
     
     private final String myLogName;
     
@@ -72,12 +91,59 @@ public class WALPropertyConfig implements WALConfig
      * {@inheritDoc}
      */
     @Override
-    public int getTransactionsPerFile()
+    public long getSegmentSize()
+    {
+        String segmentSize = 
+            ApplicationProperties.getProperty(WAL_SEGMENT_SIZE);
+        return segmentSize != null ? Long.parseLong(segmentSize)
+                                   : DEFAULT_SEGMENT_SIZE;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public DurabilityPolicy getDurabilityPolicy()
+    {
+        String durability = ApplicationProperties.getProperty(WAL_DURABILITY);
+        return durability != null ? DurabilityPolicy.valueOf(durability)
+                                  : DurabilityPolicy.GROUP;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getGroupSyncRecords()
+    {
+        String syncRecords = 
+            ApplicationProperties.getProperty(WAL_GROUP_SYNC_RECORDS);
+        return syncRecords != null ? Integer.parseInt(syncRecords)
+                                   : DEFAULT_GROUP_SYNC_RECORDS;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getGroupSyncIntervalMicros()
+    {
+        String syncInterval = 
+            ApplicationProperties.getProperty(WAL_GROUP_SYNC_INTERVAL);
+        return syncInterval != null ? Long.parseLong(syncInterval)
+                                    : DEFAULT_GROUP_SYNC_INTERVAL_MICROS;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getStagingRecords()
     {
-        String transactionsPerFile = 
-            ApplicationProperties.getProperty(WAL_TRANCTIONS_PER_FILE);
-        return transactionsPerFile != null ? Integer.valueOf(transactionsPerFile)
-                                           : -1;
+        String stagingRecords = 
+            ApplicationProperties.getProperty(WAL_STAGING_RECORDS);
+        return stagingRecords != null ? Integer.parseInt(stagingRecords)
+                                      : DEFAULT_STAGING_RECORDS;
     }
 
     /**
@@ -0,0 +1,122 @@
+/*
+    Hit is a high speed transactional database for handling millions
+    of updates with comfort and ease.
+
+    Copyright (C) 2013  Balraja Subbiah
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package org.hit.consensus.raft.log;
+
+import java.nio.ByteBuffer;
+
+import org.hit.util.CRC32C;
+
+import com.google.common.util.concurrent.SettableFuture;
+
+/**
+ * A record staged for being appended to the {@link WAL}. The record is 
+ * framed by the caller, so that the appender only has to write the header 
+ * and the payload buffers to a {@link WALSegment}. The future is completed
+ * once the record is as durable as required by the {@link 
+ * DurabilityPolicy}.
+ * 
+ * @author Balraja Subbiah
+ */
+public class WALRecord
+{
+    private final long myTermID;
+    
+    private final long mySequenceNO;
+    
+    private final ByteBuffer myHeader;
+    
+    private final ByteBuffer myPayload;
+    
+    private final int myPayloadLength;
+    
+    private final SettableFuture<Void> myFuture;
+    
+    /**
+     * CTOR
+     */
+    public WALRecord(long   termID, 
+                     long   sequenceNO, 
+                     byte[] payload, 
+                     int    length)
+    {
+        myTermID = termID;
+        mySequenceNO = sequenceNO;
+        myHeader = ByteBuffer.allocate(WALSegment.HEADER_SIZE);
+        myHeader.putInt(length)
+                .putInt(WALSegment.checksum(
+                    new CRC32C(), termID, sequenceNO, payload, length))
+                .putLong(termID)
+                .putLong(sequenceNO);
+        myHeader.flip();
+        myPayload = ByteBuffer.wrap(payload, 0, length);
+        myPayloadLength = length;
+        myFuture = SettableFuture.create();
+    }
+
+    /**
+     * Returns the value of termID
+     */
+    public long getTermID()
+    {
+        return myTermID;
+    }
+
+    /**
+     * Returns the value of sequenceNO
+     */
+    public long getSequenceNO()
+    {
+        return mySequenceNO;
+    }
+    
+    /**
+     * Returns the length of the payload
+     */
+    public int getPayloadLength()
+    {
+        return myPayloadLength;
+    }
+    
+    /**
+     * Returns the size of the record along with its header
+     */
+    public int getFrameSize()
+    {
+        return WALSegment.HEADER_SIZE + myPayloadLength;
+    }
+    
+    /**
+     * Returns the buffers to be written for this record, the header 
+     * followed by the payload. The buffers are consumed by the write.
+     */
+    public ByteBuffer[] getBuffers()
+    {
+        return new ByteBuffer[] {myHeader, myPayload};
+    }
+
+    /**
+     * Returns the future that's completed once the record is durable
+     */
+    public SettableFuture<Void> getFuture()
+    {
+        return myFuture;
+    }
+}
@@ -0,0 +1,392 @@
+/*
+    Hit is a high speed transactional database for handling millions
+    of updates with comfort and ease.
+
+    Copyright (C) 2013  Balraja Subbiah
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package org.hit.consensus.raft.log;
+
+import gnu.trove.map.TLongLongMap;
+import gnu.trove.map.hash.TLongLongHashMap;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.List;
+import java.util.logging.Logger;
+
+import org.hit.fs.FileSystemFacacde;
+import org.hit.util.CRC32C;
+import org.hit.util.LogFactory;
+
+/**
+ * A fixed size file of the write ahead log, that's preallocated when it's
+ * created so that the appends never have to grow the file. Each record is
+ * laid out as
+ * <pre>
+ *   length(int) | crc32c(int) | term(long) | sequence(long) | payload
+ * </pre>
+ * where the checksum covers the term, sequence and the payload. The unused
+ * part of a segment is zero filled, hence a zero length marks the end of 
+ * the records. The offsets of the records are indexed by their sequence 
+ * numbers, so that a record can be read without scanning the segment.
+ * The records are read through a read only mapping of the segment, which
+ * stays valid as the segment never grows.
+ * 
+ * @author Balraja Subbiah
+ */
+public class WALSegment
+{
+    private static final Logger LOG = 
+        LogFactory.getInstance().getLogger(WALSegment.class);
+    
+    /** The size of the header that precedes the payload of a record */
+    public static final int HEADER_SIZE = 24;
+    
+    private static final int PREALLOCATION_CHUNK_SIZE = 64 * 1024;
+    
+    private final String myPath;
+    
+    private final FileChannel myChannel;
+    
+    private final long myCapacity;
+    
+    private final TLongLongMap myOffsets;
+    
+    private final CRC32C myChecksum;
+    
+    private long myWritePosition;
+    
+    private long myMinSequence;
+    
+    private long myMaxSequence;
+    
+    private MappedByteBuffer myMappedBuffer;
+    
+    /**
+     * CTOR
+     */
+    private WALSegment(String path, FileChannel channel, long capacity)
+    {
+        myPath = path;
+        myChannel = channel;
+        myCapacity = capacity;
+        myOffsets = new TLongLongHashMap();
+        myChecksum = new CRC32C();
+        myWritePosition = 0L;
+        myMinSequence = Long.MAX_VALUE;
+        myMaxSequence = Long.MIN_VALUE;
+    }
+    
+    /**
+     * Creates a new segment at the given path, with the file preallocated
+     * to the given capacity.
+     */
+    public static WALSegment create(FileSystemFacacde facade,
+                                    String            path,
+                                    long              capacity)
+        throws IOException
+    {
+        FileChannel channel = openChannel(facade, path);
+        ByteBuffer zeros = ByteBuffer.allocate(PREALLOCATION_CHUNK_SIZE);
+        long position = 0L;
+        while (position < capacity) {
+            zeros.clear();
+            zeros.limit((int) Math.min(zeros.capacity(), capacity - position));
+            position += channel.write(zeros, position);
+        }
+        // The size of the file is made durable upfront, so that syncing 
+        // the appends doesn't have to update the file's metadata.
+        channel.force(true);
+        return new WALSegment(path, channel, capacity);
+    }
+    
+    /**
+     * Opens an existing segment at the given path and rebuilds its index.
+     * The records are read until the end marker or the first record that
+     * fails the checksum, which is where the subsequent appends go.
+     */
+    public static WALSegment open(FileSystemFacacde facade, String path)
+        throws IOException
+    {
+        FileChannel channel = openChannel(facade, path);
+        WALSegment segment = new WALSegment(path, channel, channel.size());
+        segment.recover();
+        return segment;
+    }
+    
+    private static FileChannel openChannel(FileSystemFacacde facade,
+                                           String            path)
+        throws IOException
+    {
+        FileChannel channel = facade.openChannel(path);
+        if (channel == null) {
+            throw new IOException("Unable to open the WAL segment " + path);
+        }
+        return channel;
+    }
+    
+    private void recover() throws IOException
+    {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        long position = 0L;
+        while (position + HEADER_SIZE <= myCapacity) {
+            header.clear();
+            readFully(header, position);
+            header.flip();
+            int length = header.getInt();
+            if (length <= 0 || position + HEADER_SIZE + length > myCapacity) {
+                break;
+            }
+            int checksum = header.getInt();
+            long term = header.getLong();
+            long sequence = header.getLong();
+            byte[] payload = new byte[length];
+            readFully(ByteBuffer.wrap(payload), position + HEADER_SIZE);
+            if (checksum(myChecksum, term, sequence, payload, length) 
+                    != checksum) 
+            {
+                LOG.warning("Discarding the torn records from " + position
+                            + " in " + myPath);
+                break;
+            }
+            index(sequence, position);
+            position += HEADER_SIZE + length;
+        }
+        myWritePosition = position;
+    }
+
+    /**
+     * Returns true if there is enough space left in this segment for the
+     * records of the given size, along with their headers.
+     */
+    public boolean hasRoom(long frameSize)
+    {
+        return myWritePosition + frameSize <= myCapacity;
+    }
+    
+    /**
+     * Appends the records to the segment with a single gathering write. 
+     * The caller should have checked that the segment has room for them.
+     * The records become readable only after all of them are written.
+     */
+    public void append(List<WALRecord> records) throws IOException
+    {
+        ByteBuffer[] buffers = new ByteBuffer[2 * records.size()];
+        long size = 0L;
+        for (int i = 0; i < records.size(); i++) {
+            ByteBuffer[] recordBuffers = records.get(i).getBuffers();
+            buffers[2 * i] = recordBuffers[0];
+            buffers[2 * i + 1] = recordBuffers[1];
+            size += records.get(i).getFrameSize();
+        }
+        if (myWritePosition + size > myCapacity) {
+            throw new IOException("The records don't fit in " + myPath);
+        }
+        
+        // The segment is written only by the appender, so the position of
+        // the channel can be used for the gathering write.
+        myChannel.position(myWritePosition);
+        long remaining = size;
+        while (remaining > 0) {
+            remaining -= myChannel.write(buffers);
+        }
+        
+        for (WALRecord record : records) {
+            index(record.getSequenceNO(), myWritePosition);
+            myWritePosition += record.getFrameSize();
+        }
+    }
+    
+    /**
+     * Returns the payload of the record with the given sequence number, 
+     * null if there is no such record in this segment.
+     */
+    public byte[] read(long sequence) throws IOException
+    {
+        if (!myOffsets.containsKey(sequence)) {
+            return null;
+        }
+        
+        ByteBuffer record = readFrame(sequence);
+        int length = record.getInt();
+        int checksum = record.getInt();
+        long term = record.getLong();
+        record.getLong();
+        byte[] payload = new byte[length];
+        record.get(payload);
+        if (checksum(myChecksum, term, sequence, payload, length) 
+                != checksum) 
+        {
+            throw new IOException("The record " + sequence + " in " + myPath
+                                  + " is corrupted");
+        }
+        return payload;
+    }
+    
+    /**
+     * Returns true if this segment has a record with the given sequence
+     * number.
+     */
+    public boolean contains(long sequence)
+    {
+        return myOffsets.containsKey(sequence);
+    }
+    
+    /**
+     * Returns the size of the record with the given sequence number along
+     * with its header.
+     */
+    public int frameSize(long sequence) throws IOException
+    {
+        return HEADER_SIZE + readFrameLength(myOffsets.get(sequence));
+    }
+    
+    /**
+     * Copies the record with the given sequence number along with its 
+     * header to the target, as it's laid out in the segment.
+     */
+    public void copyFrame(long sequence, ByteBuffer target) throws IOException
+    {
+        target.put(readFrame(sequence));
+    }
+    
+    /**
+     * Returns a buffer positioned over the record with the given sequence
+     * number along with its header.
+     */
+    private ByteBuffer readFrame(long sequence) throws IOException
+    {
+        long position = myOffsets.get(sequence);
+        int frameSize = HEADER_SIZE + readFrameLength(position);
+        ByteBuffer mapped = map();
+        if (mapped != null) {
+            ByteBuffer frame = mapped.duplicate();
+            frame.position((int) position);
+            frame.limit((int) position + frameSize);
+            return frame;
+        }
+        
+        ByteBuffer frame = ByteBuffer.allocate(frameSize);
+        readFully(frame, position);
+        frame.flip();
+        return frame;
+    }
+    
+    private int readFrameLength(long position) throws IOException
+    {
+        ByteBuffer mapped = map();
+        if (mapped != null) {
+            return mapped.getInt((int) position);
+        }
+        ByteBuffer length = ByteBuffer.allocate(4);
+        readFully(length, position);
+        return length.getInt(0);
+    }
+    
+    /**
+     * Returns the read only mapping of the segment, null if the segment is
+     * too large to be mapped in which case it's read through the channel.
+     */
+    private ByteBuffer map() throws IOException
+    {
+        if (myMappedBuffer == null && myCapacity <= Integer.MAX_VALUE) {
+            myMappedBuffer = 
+                myChannel.map(FileChannel.MapMode.READ_ONLY, 0L, myCapacity);
+        }
+        return myMappedBuffer;
+    }
+    
+    /**
+     * Forces the records written to this segment on to the disk. Only the
+     * data is synced as the size of the segment never changes.
+     */
+    public void sync() throws IOException
+    {
+        myChannel.force(false);
+    }
+    
+    /**
+     * Closes the underlying file.
+     */
+    public void close() throws IOException
+    {
+        myChannel.close();
+    }
+    
+    /**
+     * Returns the value of path
+     */
+    public String getPath()
+    {
+        return myPath;
+    }
+
+    /**
+     * Returns the smallest sequence number in this segment, 
+     * <code>Long.MAX_VALUE</code> if the segment is empty.
+     */
+    public long getMinSequence()
+    {
+        return myMinSequence;
+    }
+
+    /**
+     * Returns the largest sequence number in this segment, 
+     * <code>Long.MIN_VALUE</code> if the segment is empty.
+     */
+    public long getMaxSequence()
+    {
+        return myMaxSequence;
+    }
+    
+    private void index(long sequence, long position)
+    {
+        // A sequence number appended again overrides the earlier record.
+        myOffsets.put(sequence, position);
+        myMinSequence = Math.min(myMinSequence, sequence);
+        myMaxSequence = Math.max(myMaxSequence, sequence);
+    }
+    
+    /**
+     * Returns the checksum of a record as stored in its header.
+     */
+    static int checksum(CRC32C crc,
+                        long   term, 
+                        long   sequence, 
+                        byte[] payload, 
+                        int    length)
+    {
+        crc.reset();
+        crc.updateLong(term);
+        crc.updateLong(sequence);
+        crc.update(payload, 0, length);
+        return (int) crc.getValue();
+    }
+    
+    private void readFully(ByteBuffer buffer, long position) throws IOException
+    {
+        while (buffer.hasRemaining()) {
+            int read = myChannel.read(buffer, position + buffer.position());
+            if (read < 0) {
+                throw new EOFException("Unexpected end of " + myPath);
+            }
+        }
+    }
+}
@@ -35,6 +35,12 @@ public class MetaColumn
     
     private final int myIndex;
     
+    private final boolean myDictionaryEncoded;
+    
+    private final String myIndexType;
+    
+    private final String myProperty;
+    
     /**
      * CTOR
      */
@@ -42,12 +48,49 @@ public class MetaColumn
                       int     index,
                       String  name, 
                       String  type)
+    {
+        this(primary, index, name, type, false, null, null);
+    }
+    
+    /**
+     * CTOR
+     */
+    public MetaColumn(boolean primary, 
+                      int     index,
+                      String  name, 
+                      String  type,
+                      boolean dictionaryEncoded,
+                      String  indexType,
+                      String  property)
     {
         super();
         myPrimary = primary;
         myName = name;
         myType = type;
         myIndex = index;
+        myDictionaryEncoded = dictionaryEncoded;
+        myIndexType = indexType;
+        myProperty = property != null ? property : toProperty(name);
+    }
+    
+    /**
+     * Returns the name of the column in the camel case, starting with an
+     * upper case letter. 
+     */
+    private static String toProperty(String name)
+    {
+        StringBuilder property = new StringBuilder(name.length());
+        boolean isWordStart = true;
+        for (char c : name.toCharArray()) {
+            if (c == '_') {
+                isWordStart = true;
+            }
+            else {
+                property.append(isWordStart ? Character.toUpperCase(c) : c);
+                isWordStart = false;
+            }
+        }
+        return property.toString();
     }
     
     /**
@@ -82,14 +125,145 @@ public class MetaColumn
     {
         return myIndex;
     }
+    
+    /**
+     * Returns the name with which the column's field and its accessors are
+     * named, as specified by the <code>property</code> attribute of the 
+     * column or derived from the name of the column.
+     */
+    public String getProperty()
+    {
+        return myProperty;
+    }
    
     public String getVariableName()
     {
-        return Character.toLowerCase(myName.charAt(0)) + myName.substring(1);
+        return Character.toLowerCase(myProperty.charAt(0)) 
+               + myProperty.substring(1);
+    }
+    
+    /**
+     * Returns the name of the method returning the column's value.
+     */
+    public String getGetterName()
+    {
+        return ("boolean".equals(myType) ? "is" : "get") + myProperty;
+    }
+
+    /**
+     * Returns the type of the secondary index declared on the column, as
+     * named by <code>IndexType</code>, null if the column isn't indexed.
+     */
+    public String getIndexType()
+    {
+        return myIndexType;
     }
 
     public boolean isImportNecessary()
     {
         return myType.indexOf('.') > -1;
     }
+    
+    /**
+     * Returns the name of the constant holding the position of the column
+     */
+    public String getIndexConstant()
+    {
+        return myName.replaceAll("([a-z0-9])([A-Z])", "$1_$2")
+                     .toUpperCase()
+               + "_INDEX";
+    }
+    
+    /**
+     * Returns the statement with which the column's field is written to
+     * an <code>ObjectOutput</code> referred to as <code>out</code>. The 
+     * integral values are written as varints and the boxed values and the
+     * strings through <code>CompactIO</code>, while the rest are written
+     * as objects.
+     */
+    public String getWriteStatement()
+    {
+        String field = "my" + myProperty;
+        switch (myType) {
+        case "long":
+        case "int":
+        case "short":
+            return "CompactIO.writeVarLong(out, " + field + ");";
+        case "double":
+            return "out.writeDouble(" + field + ");";
+        case "float":
+            return "out.writeFloat(" + field + ");";
+        case "boolean":
+            return "out.writeBoolean(" + field + ");";
+        case "String":
+            return myDictionaryEncoded ?
+                "CompactIO.writeDictionaryString(out, " + field + ");"
+                : "CompactIO.writeString(out, " + field + ");";
+        case "Long":
+        case "Integer":
+        case "Short":
+        case "Double":
+        case "Float":
+        case "Boolean":
+            return "CompactIO.write" + myType + "(out, " + field + ");";
+        default:
+            return "out.writeObject(" + field + ");";
+        }
+    }
+    
+    /**
+     * Returns the statement with which the column's field is read from an
+     * <code>ObjectInput</code> referred to as <code>in</code>, as it's 
+     * written by the statement returned by {@link #getWriteStatement()}.
+     */
+    public String getReadStatement()
+    {
+        String field = "my" + myProperty;
+        switch (myType) {
+        case "long":
+            return field + " = CompactIO.readVarLong(in);";
+        case "int":
+        case "short":
+            return field + " = (" + myType + ") CompactIO.readVarLong(in);";
+        case "double":
+            return field + " = in.readDouble();";
+        case "float":
+            return field + " = in.readFloat();";
+        case "boolean":
+            return field + " = in.readBoolean();";
+        case "String":
+            return field + (myDictionaryEncoded ? 
+                               " = CompactIO.readDictionaryString(in);"
+                               : " = CompactIO.readString(in);");
+        case "Long":
+        case "Integer":
+        case "Short":
+        case "Double":
+        case "Float":
+        case "Boolean":
+            return field + " = CompactIO.read" + myType + "(in);";
+        default:
+            return field + " = (" + getType() + ") in.readObject();";
+        }
+    }
+    
+    /**
+     * Returns the value to which the column is reset when the row is 
+     * returned to the pool.
+     */
+    public String getDefaultValue()
+    {
+        switch (getType()) {
+        case "long":
+        case "int":
+        case "short":
+        case "double":
+        case "float":
+            return "0";
+        case "boolean":
+            return "false";
+        default:
+            return "null";
+        }
+    }
 }
@@ -20,6 +20,9 @@
 
 package org.hit.db.ddl;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * Defines an annotation for defining the characteristics of a HIT table.
  * 
@@ -31,14 +34,53 @@ public class MetaTable
     
     private String myTableName;
     
+    private String myClassName;
+    
+    private String myDescription;
+    
+    private boolean myImmutable;
+    
+    private boolean myStoredOffHeap;
+    
+    private boolean myColumnarReplica;
+    
+    private final List<MetaColumn> myColumns;
+    
     /**
      * CTOR
      */
     public MetaTable(String keyTypeName, String tableName)
+    {
+        this(keyTypeName, tableName, null, null, false, false, false);
+    }
+    
+    /**
+     * CTOR
+     */
+    public MetaTable(String  keyTypeName, 
+                     String  tableName, 
+                     String  className,
+                     String  description,
+                     boolean immutable,
+                     boolean storedOffHeap,
+                     boolean columnarReplica)
     {
         super();
         myKeyTypeName = keyTypeName;
         myTableName = tableName;
+        myClassName = className != null ? className 
+                                        : toClassName(tableName);
+        myDescription = description;
+        myImmutable = immutable;
+        myStoredOffHeap = storedOffHeap;
+        myColumnarReplica = columnarReplica;
+        myColumns = new ArrayList<>();
+    }
+    
+    private static String toClassName(String tableName)
+    {
+        return Character.toUpperCase(tableName.charAt(0))
+               + tableName.substring(1).toLowerCase();
     }
 
     /**
@@ -56,4 +98,101 @@ public class MetaTable
     {
         return myTableName;
     }
+    
+    /**
+     * Returns the name of the class generated for the table, as specified
+     * by the <code>className</code> attribute of the table or derived from
+     * the name of the table.
+     */
+    public String getClassName()
+    {
+        return myClassName;
+    }
+    
+    /**
+     * Returns the description of the table with which the generated class
+     * is documented, null if there isn't one.
+     */
+    public String getDescription()
+    {
+        return myDescription;
+    }
+    
+    /**
+     * Returns true if the rows of the table are immutable, in which case 
+     * they're neither pooled nor modified once they're created.
+     */
+    public boolean isImmutable()
+    {
+        return myImmutable;
+    }
+    
+    /**
+     * Returns true if the rows of the table are to be stored off heap.
+     */
+    public boolean isStoredOffHeap()
+    {
+        return myStoredOffHeap;
+    }
+    
+    /**
+     * Returns true if a columnar replica of the table is to be maintained.
+     */
+    public boolean isColumnarReplica()
+    {
+        return myColumnarReplica;
+    }
+    
+    /**
+     * Adds a column to the table, in the order of their positions.
+     */
+    public void addColumn(MetaColumn column)
+    {
+        myColumns.add(column);
+    }
+    
+    /**
+     * Returns the columns of the table in the order of their positions.
+     */
+    public List<MetaColumn> getColumns()
+    {
+        return myColumns;
+    }
+    
+    /**
+     * Returns the columns on which the secondary indexes are declared.
+     */
+    public List<MetaColumn> getIndexedColumns()
+    {
+        List<MetaColumn> indexedColumns = new ArrayList<>();
+        for (MetaColumn column : myColumns) {
+            if (column.getIndexType() != null) {
+                indexedColumns.add(column);
+            }
+        }
+        return indexedColumns;
+    }
+    
+    /**
+     * Returns the statement with which the key, referred to as <code>key
+     * </code>, is put into a <code>PrimitiveSink</code> referred to as 
+     * <code>into</code>.
+     */
+    public String getKeyFunnelStatement()
+    {
+        switch (myKeyTypeName) {
+        case "Long":
+            return "into.putLong(key.longValue());";
+        case "Integer":
+            return "into.putInt(key.intValue());";
+        case "Short":
+            return "into.putShort(key.shortValue());";
+        case "Double":
+            return "into.putDouble(key.doubleValue());";
+        case "String":
+            return "into.putUnencodedChars(key);";
+        default:
+            return "into.putInt(key.hashCode());";
+        }
+    }
 }
@@ -37,6 +37,7 @@ import java.util.Map;
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.parsers.SAXParserFactory;
 
+import org.hit.db.model.IndexType;
 import org.stringtemplate.v4.ST;
 import org.stringtemplate.v4.STGroup;
 import org.stringtemplate.v4.STGroupFile;
@@ -46,7 +47,24 @@ import org.xml.sax.helpers.DefaultHandler;
 
 /**
  * Defines the type that can be used for parsing the schema file represented
- * as xml. 
+ * as xml. The generated classes look up their columns by position, write 
+ * their fields with <code>CompactIO</code> and carry a <code>Funnel</code>
+ * and a <code>Comparator</code> for their keys, so that none of it has to
+ * be hand written or done reflectively. The secondary indexes declared on
+ * the columns through the <code>index</code> attribute, along with the 
+ * off heap storage and the columnar replica requested through the <code>
+ * storedOffHeap</code> and <code>columnarReplica</code> attributes of the
+ * table, are set on the table's schema by the generated <code>declare
+ * </code> method.
+ * <p>
+ * A schema file might have a single table or several of them under a 
+ * <code>schema</code> element, for each of which a class is generated in 
+ * the package of the schema file. The class is named by the <code>
+ * className</code> attribute of the table and its fields by the <code>
+ * property</code> attribute of the columns, when they aren't to be named
+ * after the table and the columns. The rows of the tables marked <code>
+ * immutable</code> are generated as <code>ImmutablePersistable</code>s, 
+ * which aren't pooled.
  * 
  * @author Balraja Subbiah
  */
@@ -62,8 +80,24 @@ public class SchemaGenerator
     
     private static final String KEY_TYPE = "keyClass";
     
+    private static final String CLASS_NAME = "className";
+    
+    private static final String DESCRIPTION = "description";
+    
+    private static final String IMMUTABLE = "immutable";
+    
+    private static final String PROPERTY = "property";
+    
     private static final String IS_PRIMARY = "isPrimary";
     
+    private static final String IS_DICTIONARY_ENCODED = "isDictionaryEncoded";
+    
+    private static final String INDEX = "index";
+    
+    private static final String STORED_OFF_HEAP = "storedOffHeap";
+    
+    private static final String COLUMNAR_REPLICA = "columnarReplica";
+    
     private static final String DOT_SEPARATOR = "\\.";
     
     private static final String JAVA_EXTN = ".java";
@@ -76,11 +110,7 @@ public class SchemaGenerator
     
     private static final String PACKAGE_NAME_ARG = "packageName";
     
-    private static final String TABLE_NAME_ARG = "tableName";
-    
-    private static final String KEY_CLASS_NAME_ARG = "keyClassName";
-    
-    private static final String META_COLUMNS_ARG = "metaColumns";
+    private static final String META_TABLE_ARG = "metaTable";
        
     /**
      * Defines the contract for a context to be used when parsing the 
@@ -88,40 +118,38 @@ public class SchemaGenerator
      */
     private static class Context
     {
-        private List<MetaColumn> myColumnInfo;
-        
-        private MetaTable myTable;
+        private final List<MetaTable> myTables;
 
         /**
          * CTOR
          */
         public Context()
         {
-            myColumnInfo = new ArrayList<>();
+            myTables = new ArrayList<>();
         }
 
         /**
-         * Returns the value of table
+         * Returns the table being parsed
          */
         public MetaTable getTable()
         {
-            return myTable;
+            return myTables.get(myTables.size() - 1);
         }
 
         /**
-         * Setter for the table
+         * Adds the table that's to be parsed next
          */
-        public void setTable(MetaTable table)
+        public void addTable(MetaTable table)
         {
-            myTable = table;
+            myTables.add(table);
         }
 
         /**
-         * Returns the value of columnInfo
+         * Returns the tables parsed so far
          */
-        public List<MetaColumn> getColumnInfo()
+        public List<MetaTable> getTables()
         {
-            return myColumnInfo;
+            return myTables;
         }
     }
     
@@ -138,7 +166,20 @@ public class SchemaGenerator
         {
             String tableName = attributes.getValue(NAME);
             String keyType   = attributes.getValue(KEY_TYPE);
-            getContext().setTable(new MetaTable(keyType, tableName));
+            boolean immutable = 
+                Boolean.valueOf(attributes.getValue(IMMUTABLE));
+            boolean storedOffHeap = 
+                Boolean.valueOf(attributes.getValue(STORED_OFF_HEAP));
+            boolean columnarReplica = 
+                Boolean.valueOf(attributes.getValue(COLUMNAR_REPLICA));
+            getContext().addTable(
+                new MetaTable(keyType, 
+                              tableName, 
+                              attributes.getValue(CLASS_NAME),
+                              attributes.getValue(DESCRIPTION),
+                              immutable,
+                              storedOffHeap, 
+                              columnarReplica));
         }
     }
     
@@ -158,13 +199,28 @@ public class SchemaGenerator
             String columnType = attributes.getValue(TYPE);
             boolean isPrimary  = 
                 Boolean.valueOf(attributes.getValue(IS_PRIMARY));
+            boolean isDictionaryEncoded = 
+                Boolean.valueOf(attributes.getValue(IS_DICTIONARY_ENCODED));
+            String indexType = attributes.getValue(INDEX);
+            if (indexType != null) {
+                try {
+                    indexType = 
+                        IndexType.valueOf(indexType.toUpperCase()).name();
+                }
+                catch (IllegalArgumentException e) {
+                    throw new SAXException("Unknown index type " + indexType
+                                           + " on the column " + columnName);
+                }
+            }
             
-            int index = getContext().getColumnInfo().size();
-            getContext().getColumnInfo()
-                        .add(new MetaColumn(isPrimary, 
-                                            index, 
-                                            columnName,
-                                            columnType));
+            MetaTable table = getContext().getTable();
+            table.addColumn(new MetaColumn(isPrimary, 
+                                           table.getColumns().size(), 
+                                           columnName,
+                                           columnType,
+                                           isDictionaryEncoded,
+                                           indexType,
+                                           attributes.getValue(PROPERTY)));
         }
     }
     
@@ -247,7 +303,7 @@ public class SchemaGenerator
         
     }
     
-    private final Context myContext;
+    private Context myContext;
     
     /**
      * CTOR
@@ -271,16 +327,6 @@ public class SchemaGenerator
         return packagePath.toString().replace(File.separatorChar, '.');
     }
     
-    private String makeJavaFileName(String tableName)
-    {
-        String fileName = 
-            Character.toUpperCase(tableName.charAt(0))
-            + tableName.substring(1).toLowerCase()
-            + JAVA_EXTN;
-                        
-        return fileName;
-    }
-    
     /**
      * A helper method to parse schema information out of an xml file 
      * and generate classes out of it.
@@ -290,30 +336,27 @@ public class SchemaGenerator
                                        Path srcDirectory)
     {
         try {
+            myContext = new Context();
             SAXParserFactory factory = SAXParserFactory.newInstance();
             factory.newSAXParser().parse(file, new ElementHandler());
             
-            File tableType = new File(packageDirectory.toFile(),
-                                      makeJavaFileName(
-                                          myContext.getTable().getTableName()));
-            if (tableType.exists()) {
-                tableType.delete();
-            }
-            Writer writer = new FileWriter(tableType);
-
             STGroup group = new STGroupFile(TEMPLATE_FILE_NAME);
-            ST st = group.getInstanceOf(TEMPLATE_NAME);
-            st.add(PACKAGE_NAME_ARG, 
-                    inferPackageName(srcDirectory, packageDirectory));
-            
-            st.add(TABLE_NAME_ARG, getContext().getTable().getTableName());
-            st.add(KEY_CLASS_NAME_ARG, getContext().getTable().getKeyTypeName());
-
-            st.add(META_COLUMNS_ARG, getContext().getColumnInfo());
-
-            writer.write(st.render());
-            writer.flush();
-            writer.close();
+            for (MetaTable table : myContext.getTables()) {
+                File tableType = 
+                    new File(packageDirectory.toFile(),
+                             table.getClassName() + JAVA_EXTN);
+                if (tableType.exists()) {
+                    tableType.delete();
+                }
+                
+                ST st = group.getInstanceOf(TEMPLATE_NAME);
+                st.add(PACKAGE_NAME_ARG, 
+                       inferPackageName(srcDirectory, packageDirectory));
+                st.add(META_TABLE_ARG, table);
+                try (Writer writer = new FileWriter(tableType)) {
+                    writer.write(st.render());
+                }
+            }
         }
         catch (SAXException | IOException | ParserConfigurationException e) {
             e.printStackTrace();
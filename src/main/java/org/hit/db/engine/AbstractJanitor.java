@@ -20,6 +20,12 @@
 
 package org.hit.db.engine;
 
+import java.io.File;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -27,9 +33,13 @@ import java.util.logging.Logger;
 import org.hit.actors.ActorID;
 import org.hit.actors.EventBus;
 import org.hit.communicator.NodeID;
+import org.hit.consensus.UnitID;
+import org.hit.consensus.raft.RaftSnapshot;
 import org.hit.db.model.DBOperation;
 import org.hit.event.ConsensusResponseEvent;
 import org.hit.event.Event;
+import org.hit.event.PeriodicTaskNotification;
+import org.hit.event.PeriodicTaskScheduleRequest;
 import org.hit.event.ProposalNotificationEvent;
 import org.hit.event.SendMessageEvent;
 import org.hit.messages.DBOperationFailureMessage;
@@ -48,9 +58,42 @@ import org.hit.util.LogFactory;
  */
 public abstract class AbstractJanitor implements EngineJanitor
 {
+    /**
+     * A simple task to garbage collect the obsolete versions from the 
+     * database.
+     */
+    private class CollectGarbageTask implements Runnable
+    {
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void run()
+        {
+            myTransactionManager.collectGarbage();
+        }
+    }
+    
+    /**
+     * A simple task to checkpoint the tables of the database.
+     */
+    private class CheckpointTask implements Runnable
+    {
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void run()
+        {
+            myTransactionManager.checkpoint(myCheckpointStore);
+        }
+    }
+    
     private static final String DB_OPERATION_LOG =
         "Received request from %s for performing %s";
 
+    private static final String REPLICA_CHECKPOINT_DIRECTORY = "replica";
+
     private static final Logger LOG =
         LogFactory.getInstance().getLogger(DBEngine.class);
 
@@ -64,6 +107,14 @@ public abstract class AbstractJanitor implements EngineJanitor
     
     private final NodeID myServerID;
     
+    private CheckpointStore myCheckpointStore;
+    
+    /** Holds the snapshots installed by the leaders of replicated units */
+    private final Map<UnitID, CheckpointStore> myReplicaCheckpointStores;
+    
+    /** The tables recovered from the checkpoint when starting up */
+    private Set<String> myRecoveredTables;
+    
     /**
      * CTOR
      */
@@ -77,6 +128,9 @@ public abstract class AbstractJanitor implements EngineJanitor
         myEventBus = eventBus;
         myIsInitialized = new AtomicBoolean(false);
         myServerID = serverID;
+        myCheckpointStore = null;
+        myReplicaCheckpointStores = new HashMap<>();
+        myRecoveredTables = Collections.emptySet();
     }
 
     /**
@@ -118,6 +172,15 @@ public abstract class AbstractJanitor implements EngineJanitor
     {
         return myServerID;
     }
+    
+    /**
+     * Returns the names of the tables recovered from the checkpoint, whose
+     * data need not be loaded from the other nodes.
+     */
+    protected Set<String> getRecoveredTables()
+    {
+        return myRecoveredTables;
+    }
 
     /**
      * {@inheritDoc}
@@ -180,12 +243,26 @@ public abstract class AbstractJanitor implements EngineJanitor
         else if (event instanceof ProposalNotificationEvent) {
             ProposalNotificationEvent pne = 
                 (ProposalNotificationEvent) event;
-            myTransactionManager.processOperation(pne);
+            if (pne.getProposal() instanceof RaftSnapshot) {
+                RaftSnapshot snapshot = (RaftSnapshot) pne.getProposal();
+                myTransactionManager.installSnapshot(
+                    getReplicaCheckpointStore(snapshot.getUnitID()),
+                    snapshot);
+            }
+            else {
+                myTransactionManager.processOperation(pne);
+            }
         }
         else if (event instanceof ConsensusResponseEvent) {
             ConsensusResponseEvent cre = (ConsensusResponseEvent) event;
             myTransactionManager.processOperation(cre);
         }
+        else if (event instanceof PeriodicTaskNotification) {
+            PeriodicTaskNotification periodicTaskNotification =
+                (PeriodicTaskNotification) event;
+            periodicTaskNotification.getPeriodicTask().run();
+            PooledObjects.freeInstance(periodicTaskNotification);
+        }
         else if (event instanceof DataLoadRequest) {
             DataLoadRequest loadRequest = (DataLoadRequest) event;
             myTransactionManager.processQueryAndDeleteOperation(
@@ -209,10 +286,65 @@ public abstract class AbstractJanitor implements EngineJanitor
     }
     
     /**
-     * Initializes the {@link TransactionManager} with reference to this janitor.
+     * Returns the store holding the snapshots installed by the leader of 
+     * the given unit. Every unit has a store of its own, as installing a 
+     * snapshot discards the ones installed earlier.
+     */
+    private CheckpointStore getReplicaCheckpointStore(UnitID unitID)
+    {
+        CheckpointStore store = myReplicaCheckpointStores.get(unitID);
+        if (store == null) {
+            store = 
+                new CheckpointStore(myServerConfig.getCheckpointDirectoryPath()
+                                    + File.separator 
+                                    + REPLICA_CHECKPOINT_DIRECTORY
+                                    + File.separator
+                                    + unitID);
+            myReplicaCheckpointStores.put(unitID, store);
+        }
+        return store;
+    }
+    
+    /**
+     * Initializes the {@link TransactionManager} with reference to this janitor,
+     * recovers the database from the latest checkpoint and schedules the 
+     * periodic garbage collection and checkpointing of the database.
      */
     public void start()
     {
         myTransactionManager.initialize(this);
+        myTransactionManager.configureGroupCommit(
+            myServerConfig.getGroupCommitSize(),
+            myServerConfig.getGroupCommitWindowMicros());
+        
+        myCheckpointStore = 
+            new CheckpointStore(myServerConfig.getCheckpointDirectoryPath());
+        myRecoveredTables = myTransactionManager.recover(myCheckpointStore);
+        
+        LOG.info("Scheduling task to collect garbage every "
+                 + myServerConfig.getGarbageCollectionIntervalSecs() 
+                 + " seconds");
+        
+        myEventBus.publish(
+            ActorID.DB_ENGINE,
+            ActorID.TIME_KEEPER,
+            new PeriodicTaskScheduleRequest(
+                ActorID.DB_ENGINE,
+                new CollectGarbageTask(),
+                myServerConfig.getGarbageCollectionIntervalSecs(),
+                TimeUnit.SECONDS));
+        
+        LOG.info("Scheduling task to checkpoint the tables every "
+                 + myServerConfig.getCheckpointIntervalSecs() 
+                 + " seconds");
+        
+        myEventBus.publish(
+            ActorID.DB_ENGINE,
+            ActorID.TIME_KEEPER,
+            new PeriodicTaskScheduleRequest(
+                ActorID.DB_ENGINE,
+                new CheckpointTask(),
+                myServerConfig.getCheckpointIntervalSecs(),
+                TimeUnit.SECONDS));
     }
 }
@@ -0,0 +1,378 @@
+/*
+    Hit is a high speed transactional database for handling millions
+    of updates with comfort and ease.
+
+    Copyright (C) 2013  Balraja Subbiah
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package org.hit.db.engine;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+import org.hit.db.model.HitTableSchema;
+import org.hit.db.model.Persistable;
+import org.hit.db.model.Predicate;
+import org.hit.db.transactions.Transactable;
+import org.hit.db.transactions.TransactableDatabase;
+import org.hit.db.transactions.TransactableTable;
+import org.hit.db.transactions.TransactionHelper;
+import org.hit.di.HitServerModule;
+import org.hit.fs.FileSystemFacacde;
+import org.hit.util.LogFactory;
+
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+
+/**
+ * Stores the checkpoints of the tables under a directory. A checkpoint 
+ * captures the rows of the tables as of a consistent snapshot of the 
+ * database, with each table written to a file of its own under the 
+ * checkpoint's directory. The manifest listing the tables is written 
+ * last, so that only the checkpoints that have been written completely 
+ * are used for the recovery.
+ *
+ * @author Balraja Subbiah
+ */
+public class CheckpointStore
+{
+    /** The time returned when there isn't any complete checkpoint */
+    public static final long NO_CHECKPOINT = Long.MIN_VALUE;
+    
+    private static final Logger LOG = 
+        LogFactory.getInstance().getLogger(CheckpointStore.class);
+    
+    private static final String CHECKPOINT_PREFIX = "checkpoint_";
+    
+    private static final String TABLE_SUFFIX = ".checkpoint";
+    
+    private static final String MANIFEST = "MANIFEST";
+    
+    /** 
+     * The number of rows after which the references retained by the 
+     * object stream are cleared.
+     */
+    private static final int STREAM_RESET_INTERVAL = 1024;
+    
+    private final FileSystemFacacde myFacacde;
+    
+    private final String myDirectoryPath;
+    
+    /**
+     * CTOR
+     */
+    public CheckpointStore(String directoryPath)
+    {
+        Injector injector = Guice.createInjector(new HitServerModule());
+        myFacacde = injector.getInstance(FileSystemFacacde.class);
+        myDirectoryPath = directoryPath;
+        myFacacde.makeDirectory(myDirectoryPath);
+    }
+    
+    /**
+     * Returns the value of directoryPath
+     */
+    public String getDirectoryPath()
+    {
+        return myDirectoryPath;
+    }
+    
+    /**
+     * Returns the path of the directory holding the checkpoint taken at 
+     * the given time.
+     */
+    public String getCheckpointPath(long checkpointTime)
+    {
+        return myDirectoryPath 
+               + File.separator 
+               + CHECKPOINT_PREFIX 
+               + Long.toString(checkpointTime);
+    }
+
+    /**
+     * Writes the schema of the table followed by the versions of its rows
+     * that are visible as of the checkpoint time, along with the times 
+     * from which they're valid.
+     * 
+     * @return The number of rows written.
+     */
+    public <K extends Comparable<K>, P extends Persistable<K>> long 
+        writeTable(long checkpointTime, TransactableTable<K,P> table)
+        throws IOException
+    {
+        String dirPath = getCheckpointPath(checkpointTime);
+        myFacacde.makeDirectory(dirPath);
+        FileChannel channel = 
+            openChannel(makeTableFileName(
+                dirPath, table.getSchema().getTableName()));
+        try {
+            ObjectOutputStream out = 
+                new ObjectOutputStream(makeOutputStream(channel));
+            out.writeObject(table.getSchema());
+            long rows = 0L;
+            for (Transactable<K,P> row : 
+                    table.findMatching(
+                        Predicate.MATCH_ALL,
+                        checkpointTime,
+                        TransactionHelper.SNAPSHOT_TRANSACTION_ID))
+            {
+                out.writeBoolean(true);
+                out.writeLong(row.getStart());
+                out.writeObject(row.getPersistable());
+                if (++rows % STREAM_RESET_INTERVAL == 0) {
+                    out.reset();
+                }
+            }
+            out.writeBoolean(false);
+            out.flush();
+            channel.force(true);
+            return rows;
+        }
+        finally {
+            channel.close();
+        }
+    }
+    
+    /**
+     * Completes the checkpoint by writing the manifest listing its tables,
+     * after which the older checkpoints are deleted.
+     */
+    public void completeCheckpoint(long               checkpointTime,
+                                   Collection<String> tableNames)
+        throws IOException
+    {
+        String dirPath = getCheckpointPath(checkpointTime);
+        myFacacde.makeDirectory(dirPath);
+        FileChannel channel = openChannel(dirPath + File.separator + MANIFEST);
+        try {
+            DataOutputStream out = 
+                new DataOutputStream(makeOutputStream(channel));
+            out.writeInt(tableNames.size());
+            for (String tableName : tableNames) {
+                out.writeUTF(tableName);
+            }
+            out.flush();
+            channel.force(true);
+        }
+        finally {
+            channel.close();
+        }
+        
+        for (String fileName : myFacacde.listFiles(myDirectoryPath)) {
+            long time = parseCheckpointTime(fileName);
+            if (time != NO_CHECKPOINT && time < checkpointTime) {
+                deleteCheckpoint(time);
+            }
+        }
+    }
+    
+    /**
+     * Stores the files of a checkpoint taken at the given time elsewhere, 
+     * after which the other checkpoints are deleted. The manifest is 
+     * written last as when taking a checkpoint.
+     */
+    public void installCheckpoint(long checkpointTime, Map<String, byte[]> files)
+        throws IOException
+    {
+        String dirPath = getCheckpointPath(checkpointTime);
+        myFacacde.makeDirectory(dirPath);
+        for (Map.Entry<String, byte[]> entry : files.entrySet()) {
+            if (!entry.getKey().equals(MANIFEST)) {
+                writeFile(dirPath + File.separator + entry.getKey(), 
+                          entry.getValue());
+            }
+        }
+        if (!files.containsKey(MANIFEST)) {
+            throw new IOException("The checkpoint taken at " + checkpointTime
+                                  + " doesn't have a manifest");
+        }
+        writeFile(dirPath + File.separator + MANIFEST, files.get(MANIFEST));
+        
+        for (String fileName : myFacacde.listFiles(myDirectoryPath)) {
+            long time = parseCheckpointTime(fileName);
+            if (time != NO_CHECKPOINT && time != checkpointTime) {
+                deleteCheckpoint(time);
+            }
+        }
+    }
+    
+    /**
+     * Returns the time of the latest checkpoint that has been completed,
+     * {@link #NO_CHECKPOINT} if there is no such checkpoint.
+     */
+    public long getLatestCheckpointTime()
+    {
+        long latestTime = NO_CHECKPOINT;
+        for (String fileName : myFacacde.listFiles(myDirectoryPath)) {
+            long time = parseCheckpointTime(fileName);
+            if (   time > latestTime 
+                && Arrays.asList(
+                       myFacacde.listFiles(getCheckpointPath(time)))
+                         .contains(MANIFEST))
+            {
+                latestTime = time;
+            }
+        }
+        return latestTime;
+    }
+    
+    /**
+     * Returns the names of the tables in the checkpoint taken at the 
+     * given time.
+     */
+    public List<String> readManifest(long checkpointTime) throws IOException
+    {
+        DataInputStream in = 
+            openFileForRead(getCheckpointPath(checkpointTime)
+                            + File.separator
+                            + MANIFEST);
+        try {
+            int tableCount = in.readInt();
+            List<String> tableNames = new ArrayList<>(tableCount);
+            for (int i = 0; i < tableCount; i++) {
+                tableNames.add(in.readUTF());
+            }
+            return tableNames;
+        }
+        finally {
+            in.close();
+        }
+    }
+    
+    /**
+     * Creates the table in the database with the schema from the 
+     * checkpoint and adds the rows in the checkpoint to it.
+     * 
+     * @return The number of rows read.
+     */
+    @SuppressWarnings("unchecked")
+    public <K extends Comparable<K>, P extends Persistable<K>> long 
+        readTable(long                 checkpointTime, 
+                  String               tableName,
+                  TransactableDatabase database)
+        throws IOException, ClassNotFoundException
+    {
+        ObjectInputStream in = 
+            new ObjectInputStream(
+                openFileForRead(makeTableFileName(
+                    getCheckpointPath(checkpointTime), tableName)));
+        try {
+            HitTableSchema schema = (HitTableSchema) in.readObject();
+            database.createTable(schema);
+            TransactableTable<K,P> table = 
+                database.lookUpTable(schema.getTableName());
+            long rows = 0L;
+            while (in.readBoolean()) {
+                long start = in.readLong();
+                Transactable<K,P> row = 
+                    Transactable.create((P) in.readObject(), 
+                                        table.getRowStore());
+                row.setStart(start);
+                row.setEnd(TransactionHelper.INFINITY);
+                table.addToTable(row);
+                rows++;
+            }
+            return rows;
+        }
+        finally {
+            in.close();
+        }
+    }
+    
+    private void deleteCheckpoint(long checkpointTime)
+    {
+        String dirPath = getCheckpointPath(checkpointTime);
+        for (String fileName : myFacacde.listFiles(dirPath)) {
+            myFacacde.delete(dirPath + File.separator + fileName);
+        }
+        if (!myFacacde.delete(dirPath)) {
+            LOG.warning("Unable to delete the checkpoint under " + dirPath);
+        }
+    }
+    
+    private void writeFile(String path, byte[] contents) throws IOException
+    {
+        FileChannel channel = openChannel(path);
+        try {
+            OutputStream out = makeOutputStream(channel);
+            out.write(contents);
+            out.flush();
+            channel.force(true);
+        }
+        finally {
+            channel.close();
+        }
+    }
+    
+    private FileChannel openChannel(String path) throws IOException
+    {
+        FileChannel channel = myFacacde.openChannel(path);
+        if (channel == null) {
+            throw new IOException("Unable to open " + path);
+        }
+        // A file left behind by an incomplete checkpoint is overwritten.
+        channel.truncate(0L);
+        return channel;
+    }
+    
+    private DataInputStream openFileForRead(String path) throws IOException
+    {
+        DataInputStream in = myFacacde.openFileForRead(path);
+        if (in == null) {
+            throw new IOException("Unable to open " + path);
+        }
+        return new DataInputStream(new BufferedInputStream(in));
+    }
+    
+    private static OutputStream makeOutputStream(FileChannel channel)
+    {
+        return new BufferedOutputStream(Channels.newOutputStream(channel));
+    }
+    
+    private static String makeTableFileName(String dirPath, String tableName)
+    {
+        return dirPath + File.separator + tableName + TABLE_SUFFIX;
+    }
+    
+    private static long parseCheckpointTime(String fileName)
+    {
+        if (fileName.startsWith(CHECKPOINT_PREFIX)) {
+            try {
+                return Long.parseLong(
+                    fileName.substring(CHECKPOINT_PREFIX.length()));
+            }
+            catch (NumberFormatException e) {
+                LOG.warning("Ignoring " + fileName + " under the checkpoints");
+            }
+        }
+        return NO_CHECKPOINT;
+    }
+}
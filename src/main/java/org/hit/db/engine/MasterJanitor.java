@@ -279,6 +279,7 @@ public class MasterJanitor extends AbstractJanitor
     public void stop()
     {
         myScheduler.shutdownNow();
+        getTransactionManager().stop();
     }
 
     /**
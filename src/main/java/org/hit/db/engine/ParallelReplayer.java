@@ -0,0 +1,225 @@
+/*
+    Hit is a high speed transactional database for handling millions
+    of updates with comfort and ease.
+
+    Copyright (C) 2013  Balraja Subbiah
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package org.hit.db.engine;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.hit.db.model.Mutation;
+import org.hit.db.model.mutations.SingleKeyMutation;
+import org.hit.db.transactions.ReplicationExecutor;
+import org.hit.pool.PooledObjects;
+import org.hit.util.LogFactory;
+
+/**
+ * Replays the logged changes on a <code>ForkJoinPool</code>. The changes 
+ * to a single key are partitioned by their table and key into lanes, 
+ * where they're applied in the order of their submission, while the 
+ * lanes are applied concurrently. The changes spanning multiple keys 
+ * act as barriers, they're applied once the changes submitted before 
+ * them have been applied and before the changes submitted after them.
+ * 
+ * @author Balraja Subbiah
+ */
+public class ParallelReplayer
+{
+    /**
+     * Applies the changes of a lane one after another.
+     */
+    private class LaneReplayTask extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+        
+        private final List<ReplicationExecutor> myLane;
+        
+        /**
+         * CTOR
+         */
+        public LaneReplayTask(List<ReplicationExecutor> lane)
+        {
+            myLane = lane;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        protected void compute()
+        {
+            for (ReplicationExecutor executor : myLane) {
+                apply(executor);
+            }
+        }
+    }
+    
+    /**
+     * Forks the replay of the lanes and waits for all of them to complete.
+     */
+    private class BatchReplayTask extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+        
+        private final List<LaneReplayTask> myLaneTasks;
+        
+        /**
+         * CTOR
+         */
+        public BatchReplayTask(List<LaneReplayTask> laneTasks)
+        {
+            myLaneTasks = laneTasks;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        protected void compute()
+        {
+            invokeAll(myLaneTasks);
+        }
+    }
+    
+    private static final Logger LOG = 
+        LogFactory.getInstance().getLogger(ParallelReplayer.class);
+    
+    private final ForkJoinPool myPool;
+    
+    private final int myBatchSize;
+    
+    private final List<List<ReplicationExecutor>> myLanes;
+    
+    private final AtomicLong myReplayedChanges;
+    
+    private int myPendingChanges;
+    
+    /**
+     * CTOR
+     * 
+     * @param parallelism The number of lanes replayed concurrently.
+     * @param batchSize The number of changes to be buffered in the lanes
+     *        before they're applied.
+     */
+    public ParallelReplayer(int parallelism, int batchSize)
+    {
+        myPool = new ForkJoinPool(parallelism);
+        myBatchSize = batchSize;
+        myLanes = new ArrayList<>(parallelism);
+        for (int i = 0; i < parallelism; i++) {
+            myLanes.add(new ArrayList<ReplicationExecutor>());
+        }
+        myReplayedChanges = new AtomicLong(0L);
+        myPendingChanges = 0;
+    }
+    
+    /**
+     * Submits the change made by the mutation for being replayed by the 
+     * executor. The executor is freed once it has been run.
+     */
+    public void submit(Mutation mutation, ReplicationExecutor executor)
+    {
+        if (mutation instanceof SingleKeyMutation) {
+            SingleKeyMutation<?> singleKeyMutation = 
+                (SingleKeyMutation<?>) mutation;
+            int hash = 31 * singleKeyMutation.getTableName().hashCode()
+                       + singleKeyMutation.getKey().hashCode();
+            myLanes.get((hash & Integer.MAX_VALUE) % myLanes.size())
+                   .add(executor);
+            myPendingChanges++;
+            if (myPendingChanges >= myBatchSize) {
+                flush();
+            }
+        }
+        else {
+            // The keys affected by the mutation aren't known upfront, 
+            // hence it's ordered with respect to all the other changes.
+            flush();
+            apply(executor);
+        }
+    }
+    
+    /**
+     * Applies all the changes submitted so far and waits for them to 
+     * complete.
+     */
+    public void flush()
+    {
+        if (myPendingChanges == 0) {
+            return;
+        }
+        
+        List<LaneReplayTask> laneTasks = new ArrayList<>();
+        for (int i = 0; i < myLanes.size(); i++) {
+            if (!myLanes.get(i).isEmpty()) {
+                laneTasks.add(new LaneReplayTask(myLanes.get(i)));
+                myLanes.set(i, new ArrayList<ReplicationExecutor>());
+            }
+        }
+        myPendingChanges = 0;
+        myPool.invoke(new BatchReplayTask(laneTasks));
+    }
+    
+    /**
+     * Returns the number of changes that have been replayed successfully.
+     */
+    public long getReplayedChanges()
+    {
+        return myReplayedChanges.get();
+    }
+    
+    /**
+     * Applies the pending changes and shuts down the pool.
+     */
+    public void close()
+    {
+        try {
+            flush();
+        }
+        finally {
+            myPool.shutdown();
+            try {
+                myPool.awaitTermination(1, TimeUnit.MINUTES);
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+    
+    private void apply(ReplicationExecutor executor)
+    {
+        try {
+            executor.run();
+            myReplayedChanges.incrementAndGet();
+        }
+        catch (RuntimeException e) {
+            LOG.log(Level.SEVERE, "Unable to replay a change", e);
+        }
+        finally {
+            PooledObjects.freeInstance(executor);
+        }
+    }
+}
@@ -19,35 +19,53 @@
 */
 package org.hit.db.engine;
 
+import gnu.trove.list.TLongList;
+import gnu.trove.list.array.TLongArrayList;
+
 import java.io.IOException;
 import java.io.ObjectInput;
 import java.io.ObjectOutput;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
 
 import org.hit.consensus.Proposal;
+import org.hit.consensus.TimestampedProposal;
 import org.hit.consensus.UnitID;
 import org.hit.db.model.Mutation;
 import org.hit.pool.PoolConfiguration;
 import org.hit.pool.Poolable;
 import org.hit.pool.PooledObjects;
+import org.hit.time.HybridLogicalClock;
 
 /**
  * Extends {@link Proposal} to support sending @link {Mutation} to 
- * other nodes for replication.
+ * other nodes for replication. The mutations committed together as a 
+ * group are sent in a single proposal, in the order of their commit 
+ * times along with the times between which their changes are valid.
  * 
  * @author Balraja Subbiah
  */
 @PoolConfiguration(size=10000,initialSize=100)
-public class ReplicationProposal implements Proposal, Poolable
+public class ReplicationProposal implements TimestampedProposal, Poolable
 {
     private UnitID myUnitID;
     
-    private Mutation myMutation;
+    private final List<Mutation> myMutations;
     
-    private long myStart;
+    private final TLongList myStartTimes;
     
-    private long myEndTime;
+    private final TLongList myEndTimes;
 
+    /**
+     * CTOR
+     */
+    public ReplicationProposal()
+    {
+        myMutations = new ArrayList<>();
+        myStartTimes = new TLongArrayList();
+        myEndTimes = new TLongArrayList();
+    }
     
     /**
      * Factory method for creating an instance of 
@@ -56,15 +74,34 @@ public class ReplicationProposal implements Proposal, Poolable
      */
     public static ReplicationProposal create(
         UnitID unitID, Mutation mutation, long start, long endTime)
+    {
+        ReplicationProposal rp = create(unitID);
+        rp.addMutation(mutation, start, endTime);
+        return rp;
+    }
+    
+    /**
+     * Factory method for creating an empty <code>ReplicationProposal
+     * </code> to which the mutations of a group commit can be added.
+     */
+    public static ReplicationProposal create(UnitID unitID)
     {
         ReplicationProposal rp = 
             PooledObjects.getInstance(ReplicationProposal.class);
         rp.myUnitID = unitID; 
-        rp.myMutation = mutation;
-        rp.myStart = start;
-        rp.myEndTime = endTime;
         return rp;
     }
+    
+    /**
+     * Adds the mutation along with the times between which its changes
+     * are valid.
+     */
+    public void addMutation(Mutation mutation, long start, long endTime)
+    {
+        myMutations.add(mutation);
+        myStartTimes.add(start);
+        myEndTimes.add(endTime);
+    }
 
     /**
      * {@inheritDoc}
@@ -73,9 +110,12 @@ public class ReplicationProposal implements Proposal, Poolable
     public void writeExternal(ObjectOutput out) throws IOException
     {
         out.writeObject(myUnitID);
-        out.writeObject(myMutation);
-        out.writeLong(myStart);
-        out.writeLong(myEndTime);
+        out.writeInt(myMutations.size());
+        for (int i = 0; i < myMutations.size(); i++) {
+            out.writeObject(myMutations.get(i));
+            out.writeLong(myStartTimes.get(i));
+            out.writeLong(myEndTimes.get(i));
+        }
     }
 
     /**
@@ -86,9 +126,12 @@ public class ReplicationProposal implements Proposal, Poolable
             throws IOException, ClassNotFoundException
     {
         myUnitID = (UnitID) in.readObject();
-        myMutation = (Mutation) in.readObject();
-        myStart = in.readLong();
-        myEndTime = in.readLong();
+        int size = in.readInt();
+        for (int i = 0; i < size; i++) {
+            myMutations.add((Mutation) in.readObject());
+            myStartTimes.add(in.readLong());
+            myEndTimes.add(in.readLong());
+        }
     }
 
     /**
@@ -99,29 +142,58 @@ public class ReplicationProposal implements Proposal, Poolable
     {
         return myUnitID;
     }
+    
+    /**
+     * Returns the number of mutations in this proposal
+     */
+    public int size()
+    {
+        return myMutations.size();
+    }
+    
+    /**
+     * Returns true if there are no mutations in this proposal
+     */
+    public boolean isEmpty()
+    {
+        return myMutations.isEmpty();
+    }
 
     /**
-     * Returns the value of mutation
+     * Returns the mutation at the given index
      */
-    public Mutation getMutation()
+    public Mutation getMutation(int index)
     {
-        return myMutation;
+        return myMutations.get(index);
     }
 
     /**
-     * Returns the value of start
+     * Returns the start time of the mutation at the given index
      */
-    public long getStart()
+    public long getStart(int index)
     {
-        return myStart;
+        return myStartTimes.get(index);
     }
 
     /**
-     * Returns the value of endTime
+     * Returns the end time of the mutation at the given index
+     */
+    public long getEndTime(int index)
+    {
+        return myEndTimes.get(index);
+    }
+    
+    /**
+     * {@inheritDoc}
      */
-    public long getEndTime()
+    @Override
+    public long getTimestamp()
     {
-        return myEndTime;
+        long timestamp = Long.MIN_VALUE;
+        for (int i = 0; i < myEndTimes.size(); i++) {
+            timestamp = Math.max(timestamp, myEndTimes.get(i));
+        }
+        return timestamp;
     }
 
     /**
@@ -130,9 +202,19 @@ public class ReplicationProposal implements Proposal, Poolable
     @Override
     public String toString()
     {
-        return "ReplicationProposal [myUnitID=" + myUnitID + ", myMutation="
-                + myMutation + ", myStart=" + new Date(myStart) + ", myEndTime="
-                + new Date(myEndTime) + "]";
+        StringBuilder builder = new StringBuilder();
+        builder.append("ReplicationProposal [myUnitID=").append(myUnitID);
+        for (int i = 0; i < myMutations.size(); i++) {
+            builder.append(", [myMutation=").append(myMutations.get(i))
+                   .append(", myStart=")
+                   .append(new Date(HybridLogicalClock.toPhysicalTime(
+                       myStartTimes.get(i))))
+                   .append(", myEndTime=")
+                   .append(new Date(HybridLogicalClock.toPhysicalTime(
+                       myEndTimes.get(i))))
+                   .append("]");
+        }
+        return builder.append("]").toString();
     }
 
     /**
@@ -142,8 +224,8 @@ public class ReplicationProposal implements Proposal, Poolable
     public void free()
     {
         myUnitID = null;
-        myMutation = null;
-        myStart = Long.MIN_VALUE;
-        myEndTime = Long.MIN_VALUE;
+        myMutations.clear();
+        myStartTimes.clear();
+        myEndTimes.clear();
     }
 }
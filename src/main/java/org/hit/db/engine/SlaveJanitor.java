@@ -206,6 +206,15 @@ public class SlaveJanitor extends AbstractJanitor
                 (NodeAdvertisementResponse) event;
             if (nar.getAllocation() != null) {
                 myAllocation = nar.getAllocation();
+                // The tables recovered from the checkpoint already have 
+                // their data.
+                if (myAllocation.getTableToDataNodeMap().keySet().removeAll(
+                        getRecoveredTables()))
+                {
+                    LOG.info("Skipping the data load for the tables "
+                             + getRecoveredTables() 
+                             + " recovered from the checkpoint");
+                }
                 sendDataFetchRequest(myAllocation);
             }
         }
@@ -340,5 +349,6 @@ public class SlaveJanitor extends AbstractJanitor
     @Override
     public void stop()
     {
+        getTransactionManager().stop();
     }
 }
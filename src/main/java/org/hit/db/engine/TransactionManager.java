@@ -20,17 +20,34 @@
 
 package org.hit.db.engine;
 
+import gnu.trove.list.TLongList;
+import gnu.trove.map.TLongObjectMap;
 import gnu.trove.set.TLongSet;
+import gnu.trove.set.hash.TLongHashSet;
 
+import java.io.IOException;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -39,12 +56,18 @@ import org.hit.actors.EventBus;
 import org.hit.communicator.Message;
 import org.hit.communicator.NodeID;
 import org.hit.consensus.ConsensusType;
+import org.hit.consensus.Proposal;
 import org.hit.consensus.UnitID;
+import org.hit.consensus.raft.RaftSnapshot;
+import org.hit.consensus.raft.log.WAL;
+import org.hit.consensus.raft.log.WALPropertyConfig;
 import org.hit.db.model.DBOperation;
 import org.hit.db.model.DatabaseException;
 import org.hit.db.model.HitTableSchema;
 import org.hit.db.model.Mutation;
+import org.hit.db.model.Persistable;
 import org.hit.db.model.Query;
+import org.hit.db.model.SnapshotQuery;
 import org.hit.db.model.mutations.MutationWrapper;
 import org.hit.db.transactions.AbstractTransaction;
 import org.hit.db.transactions.IDAssigner;
@@ -53,12 +76,17 @@ import org.hit.db.transactions.PhasedTransactionExecutor;
 import org.hit.db.transactions.ReadTransaction;
 import org.hit.db.transactions.Registry;
 import org.hit.db.transactions.ReplicationExecutor;
+import org.hit.db.transactions.Transactable;
 import org.hit.db.transactions.TransactableDatabase;
+import org.hit.db.transactions.TransactableTable;
+import org.hit.db.transactions.Transaction;
+import org.hit.db.transactions.TransactionHelper;
 import org.hit.db.transactions.TransactionResult;
 import org.hit.db.transactions.WriteTransaction;
 import org.hit.event.ConsensusRequestEvent;
 import org.hit.event.ConsensusResponseEvent;
 import org.hit.event.CreateConsensusLeaderEvent;
+import org.hit.event.LogCompactionEvent;
 import org.hit.event.ProposalNotificationEvent;
 import org.hit.event.ProposalNotificationResponse;
 import org.hit.event.SendMessageEvent;
@@ -73,11 +101,15 @@ import org.hit.pool.PoolUtils;
 import org.hit.pool.Poolable;
 import org.hit.pool.PooledObjects;
 import org.hit.time.Clock;
+import org.hit.time.HybridLogicalClock;
 import org.hit.util.LogFactory;
 import org.hit.util.NamedThreadFactory;
+import org.hit.util.Pair;
 import org.hit.util.Range;
 
+import com.google.common.base.Function;
 import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.AsyncFunction;
 import com.google.common.util.concurrent.FutureCallback;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
@@ -117,13 +149,21 @@ public class TransactionManager
     private abstract class AbstractWokflow implements WorkFlow
     {
         /**
-         * Schedules the next set of transactions which are dependent
-         * on this transaction.
+         * Marks the transaction as finished, releasing the database if it
+         * has been locked by the transaction, and schedules the next set
+         * of transactions which are waiting on this transaction.
          */
-        protected void scheduleNextTransactions(long transactionID)
+        protected void finishTransaction(long transactionID, boolean committed)
         {
+            boolean isUnlocked = myDatabase.unlock(transactionID);
             TLongSet toBeProcessedTransactions = 
-                Registry.freeDependentTransactionsOn(transactionID);
+                Registry.finishTransaction(transactionID, committed);
+            if (isUnlocked) {
+                Long waitingID;
+                while ((waitingID = myUnlockWaiters.poll()) != null) {
+                    toBeProcessedTransactions.add(waitingID.longValue());
+                }
+            }
             
             if (!toBeProcessedTransactions.isEmpty()) {
                 myExecutor.submit(new ScheduleDependentTransactionsTask(
@@ -145,6 +185,8 @@ public class TransactionManager
         private boolean myExecutionPhase;
         
         private Memento<Boolean> myMemento;
+        
+        private boolean myIsRunning;
 
         /**
          * {@inheritDoc}
@@ -155,6 +197,19 @@ public class TransactionManager
             return getTransaction().getTransactionID();
         }
         
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        protected void finishTransaction(long transactionID, boolean committed)
+        {
+            super.finishTransaction(transactionID, committed);
+            if (myIsRunning) {
+                myIsRunning = false;
+                finishRunning();
+            }
+        }
+        
         /**
          * Returns the {@link ClientInfo} to which response is to be 
          * sent.
@@ -191,6 +246,11 @@ public class TransactionManager
          */
         protected void sendErrorToClient(Exception exception)
         {
+            // Undo the changes made by the transaction, which also aborts
+            // the transactions that have read them.
+            getTransaction().abort();
+            finishTransaction(getTransactionID(), false);
+            
             if (getClientInfo() != null) {
                 myEventBus.publish(
                    ActorID.DB_ENGINE,
@@ -207,7 +267,7 @@ public class TransactionManager
             // Remove the workflow as it's no longer needed.
             SimpleWorkflow workflow = 
                 (SimpleWorkflow) 
-                    myWorkFlowMap.remove(getTransaction().getTransactionID());
+                    unregisterWorkflow(getTransaction().getTransactionID());
             TransactionManager.this.<SimpleWorkflow>free(workflow);
         }
         
@@ -217,20 +277,78 @@ public class TransactionManager
         @Override
         public void initiateCommit()
         {
-            if (myMemento != null) {
-                setExecutionPhase(false);
+            if (myMemento == null || !isExecutionPhase()) {
+                return;
+            }
+            
+            setExecutionPhase(false);
+            // The write transactions are committed along with the others
+            // gathered in the group commit window.
+            if (getTransaction() instanceof WriteTransaction) {
+                submitForGroupCommit(SimpleWorkflow.this);
+            }
+            else {
                 PhasedTransactionExecutor<TransactionResult> callable =
-                    PhasedTransactionExecutor.<TransactionResult>create(myMemento);
+                    createCommitExecutor();
                 ListenableFuture<Memento<TransactionResult>> future =
                     myExecutor.submit(callable);
                 Futures.addCallback(future,
                                     WorkflowProcessor.create(callable, 
                                                              SimpleWorkflow.this));
-                PooledObjects.freeInstance(myMemento);
-                myMemento = null;
             }
         }
         
+        /**
+         * Returns the executor for performing the commit phase of the 
+         * transaction.
+         */
+        protected PhasedTransactionExecutor<TransactionResult> 
+            createCommitExecutor()
+        {
+            PhasedTransactionExecutor<TransactionResult> callable =
+                PhasedTransactionExecutor.<TransactionResult>create(myMemento);
+            PooledObjects.freeInstance(myMemento);
+            myMemento = null;
+            return callable;
+        }
+        
+        /**
+         * Resumes the workflow once the transactions it has been waiting
+         * on are done. The transaction is executed if it has been waiting
+         * for the database to be unlocked, otherwise it's committed. 
+         * While the database is locked, the workflow is suspended and 
+         * resumed again once the lock is released.
+         */
+        public void resume()
+        {
+            if (myMemento != null) {
+                initiateCommit();
+                return;
+            }
+            
+            long id = getTransactionID();
+            while (!startRunning(id)) {
+                if (awaitLockedTransaction(id)) {
+                    return;
+                }
+                // The transaction holding the lock has already finished 
+                // but is yet to release the lock, hence the workflow waits
+                // to be resumed when it's released. The lock is checked 
+                // again as it might have been released in the mean time, 
+                // in which case the workflow proceeds unless it's already
+                // being resumed.
+                Long waitingID = Long.valueOf(id);
+                myUnlockWaiters.add(waitingID);
+                if (   !myDatabase.canProcess(id)
+                    || !myUnlockWaiters.remove(waitingID))
+                {
+                    return;
+                }
+            }
+            myIsRunning = true;
+            start();
+        }
+        
         /**
          * {@inheritDoc}
          */
@@ -270,13 +388,12 @@ public class TransactionManager
                 Memento<Boolean> result = (Memento<Boolean>) event;
                 if (result.getPhase().getResult()) {
                     myMemento = result;
-                    TLongSet precedentTransactions = 
-                        Registry.getPrecedencyFor(getTransactionID());
-                    
-                    if (   precedentTransactions == null
-                        || precedentTransactions.isEmpty())
+                    // The snapshot reads never depend on other transactions,
+                    // otherwise we can commit the changes unless we have to 
+                    // wait for the transactions we depend upon.
+                    if (   isSnapshotRead()
+                        || !Registry.awaitDependencies(getTransactionID()))
                     {
-                        // We can commit the changes
                         initiateCommit();
                     }
                 }
@@ -291,40 +408,42 @@ public class TransactionManager
                     myJanitor.handleDbStats(myDatabase.getStatistics());
                 }
                 
-                if (getTransaction() instanceof WriteTransaction) {
-                    
-                    myEventBus.publish(
-                        ActorID.DB_ENGINE,
-                        ConsensusRequestEvent.create(
-                            ReplicationProposal.create(
-                                myReplicationUnitID,
-                                ((WriteTransaction) getTransaction()).getMutation(),
-                                getTransaction().getStartTime(),
-                                getTransaction().getEndTime())));
-                }
-                
+                // The changes of the write transactions have been replicated
+                // by the group commit.
                 @SuppressWarnings("unchecked")
                 Memento<TransactionResult> result = 
                     (Memento<TransactionResult>) event;
                 sendResponseToClient(result.getPhase().getResult());
-                scheduleNextTransactions(getTransaction().getTransactionID());
+                if (!isSnapshotRead()) {
+                    finishTransaction(
+                        getTransaction().getTransactionID(),
+                        result.getPhase().getResult().isCommitted());
+                }
                 
                 // Remove the workflow as it's no longer needed.
                 PooledObjects.freeInstance(result);
                 SimpleWorkflow workflow = 
                     (SimpleWorkflow) 
-                        myWorkFlowMap.remove(getTransaction().getTransactionID());
+                        unregisterWorkflow(getTransaction().getTransactionID());
                 TransactionManager.this.<SimpleWorkflow>free(workflow);
 
             }
             else if (event instanceof Exception) {
                 Exception exception = (Exception) event;
                 sendErrorToClient(exception);
-                // XXX Abort all transactions that is dependent 
-                // on this transaction.
             }
         }
 
+        /**
+         * Returns true if the workflow performs a snapshot read, which is
+         * never tracked in the <code>Registry</code>.
+         */
+        private boolean isSnapshotRead()
+        {
+            return    getTransaction() instanceof ReadTransaction
+                   && ((ReadTransaction) getTransaction()).isSnapshotRead();
+        }
+
         /**
          * Setter for clientInfo
          */
@@ -381,6 +500,7 @@ public class TransactionManager
             myTransaction = null;
             myMemento = null;
             myExecutionPhase = false;
+            myIsRunning = false;
         }
     }
     
@@ -409,10 +529,7 @@ public class TransactionManager
                                                        .get(0)
                                                        .getClass(),
                                              myMutation.getDeletedData()))));
-            
-            
-            // Remove the workflow as it's no longer needed.
-            myWorkFlowMap.remove(getTransactionID());
+            // The workflow is removed once the transaction is finished.
         }
         
         /**
@@ -497,6 +614,10 @@ public class TransactionManager
             if (event instanceof Memento && myExecutionPhase) {
                 @SuppressWarnings("unchecked")
                 Memento<Boolean> result = (Memento<Boolean>) event;
+                // The memento is recorded before the consensus is sought,
+                // so that the response isn't ignored should it arrive 
+                // before this returns.
+                myMemento = result;
                 if (myPne != null) {
                     myEventBus.publish(
                         ActorID.DB_ENGINE,
@@ -511,7 +632,6 @@ public class TransactionManager
                         ActorID.DB_ENGINE,
                         ConsensusRequestEvent.create(myProposal));
                 }
-                myMemento = result;
             }
             else if (   event instanceof ConsensusResponseEvent
                      && myMemento != null) 
@@ -572,20 +692,19 @@ public class TransactionManager
                                  + " about " 
                                  + message.getClass().getSimpleName());
                     }
-                    
-                    scheduleNextTransactions(myTransaction.getTransactionID());
-                    // Remove the workflow as it's no longer needed.
-                    myWorkFlowMap.remove(myTransaction.getTransactionID());
-                    DistributedWorkflow workflow = 
-                        (DistributedWorkflow) 
-                            myWorkFlowMap.remove(myTransaction.getTransactionID());
-                    TransactionManager.this.<DistributedWorkflow>free(workflow);
-
                 }
                 else if (LOG.isLoggable(Level.FINE)) {
                     LOG.fine("The clients will be notified by the initiator"
                              + " of this transaction");
                 }
+                
+                finishTransaction(myTransaction.getTransactionID(),
+                                  result.getPhase().getResult().isCommitted());
+                // Remove the workflow as it's no longer needed.
+                DistributedWorkflow workflow = 
+                    (DistributedWorkflow) 
+                        unregisterWorkflow(myTransaction.getTransactionID());
+                TransactionManager.this.<DistributedWorkflow>free(workflow);
             }
         }
 
@@ -690,116 +809,261 @@ public class TransactionManager
     }
     
     
-    @PoolConfiguration(size=10000, initialSize=100)
-    public static class RunnableRecycler 
-        implements FutureCallback<Object>, Poolable
+    private class ScheduleDependentTransactionsTask implements Runnable
     {
-        private Runnable myRunnable;
+        private final TLongSet myTransactionSet;
         
         /**
-         * Factory method for creating the callable.
+         * CTOR
          */
-        public static RunnableRecycler create(Runnable callable)
+        public ScheduleDependentTransactionsTask(TLongSet transactionSet)
         {
-            @SuppressWarnings("unchecked")
-            RunnableRecycler callableMonitor = 
-                    PooledObjects.getInstance(RunnableRecycler.class);
-            callableMonitor.myRunnable = callable;
-            return callableMonitor;
+            super();
+            myTransactionSet = transactionSet;
         }
 
         /**
          * {@inheritDoc}
          */
         @Override
-        public void onFailure(Throwable arg0)
+        public void run()
         {
-            PoolUtils.free(this);
+            for (long transactionID : myTransactionSet.toArray()) {
+                WorkFlow workFlow = 
+                    myWorkFlowMap.get(Long.valueOf(transactionID));
+                if (workFlow instanceof SimpleWorkflow) {
+                    ((SimpleWorkflow) workFlow).resume();
+                }
+                else if (workFlow != null) {
+                    // The distributed transaction has either been waiting 
+                    // for the active transactions to finish after locking 
+                    // the database or for the database to be unlocked.
+                    if (myDatabase.getLockedTransaction() == transactionID) {
+                        workFlow.start();
+                    }
+                    else {
+                        startExclusively(transactionID, workFlow);
+                    }
+                }
+            }
         }
+    }
 
+    /**
+     * A task that assigns consecutive commit times to the transactions 
+     * gathered for a group commit, commits them and replicates the changes
+     * of those committed as a single proposal.
+     */
+    private class GroupCommitTask implements Runnable
+    {
         /**
          * {@inheritDoc}
          */
         @Override
-        public void onSuccess(Object arg0)
+        public void run()
         {
-            PoolUtils.free(this);
+            List<SimpleWorkflow> group = new ArrayList<>();
+            List<PhasedTransactionExecutor<TransactionResult>> callables =
+                new ArrayList<>();
+            long sequenceNumber;
+            
+            synchronized (myGroupCommitLock) {
+                SimpleWorkflow workflow;
+                while (   group.size() < myGroupCommitSize
+                       && (workflow = myPendingCommits.poll()) != null)
+                {
+                    myPendingCommitCount.decrementAndGet();
+                    ((WriteTransaction) workflow.getTransaction())
+                        .setCommitTime(myClock.currentTime());
+                    group.add(workflow);
+                    callables.add(workflow.createCommitExecutor());
+                }
+                if (group.isEmpty()) {
+                    return;
+                }
+                sequenceNumber = myNextGroupSequenceNumber++;
+            }
+            
+            List<Object> results = new ArrayList<>();
+            ReplicationProposal proposal = 
+                ReplicationProposal.create(myReplicationUnitID);
+            for (int i = 0; i < group.size(); i++) {
+                Object result;
+                try {
+                    Memento<TransactionResult> memento = 
+                        callables.get(i).call();
+                    if (memento.getPhase().getResult().isCommitted()) {
+                        WriteTransaction transaction = 
+                            (WriteTransaction) group.get(i).getTransaction();
+                        proposal.addMutation(transaction.getMutation(),
+                                             transaction.getStartTime(),
+                                             transaction.getEndTime());
+                    }
+                    result = memento;
+                }
+                catch (Exception e) {
+                    result = e;
+                }
+                results.add(result);
+            }
+            
+            publishInOrder(sequenceNumber, proposal);
+            
+            if (LOG.isLoggable(Level.FINE)) {
+                LOG.fine("Committed a group of " + group.size() 
+                         + " transactions");
+            }
+            
+            for (int i = 0; i < group.size(); i++) {
+                group.get(i).respondTO(results.get(i));
+            }
+            scheduleGroupCommit(myPendingCommitCount.get());
         }
         
         /**
-         * {@inheritDoc}
+         * Publishes the proposal of a group after those of the groups that
+         * got the earlier commit times, so that they are logged in the 
+         * order of their commit times.
          */
-        @Override
-        public void free()
+        private void publishInOrder(long                sequenceNumber,
+                                    ReplicationProposal proposal)
         {
-            PoolUtils.free(myRunnable);
+            boolean isInterrupted = false;
+            synchronized (myGroupCommitLock) {
+                while (myPublishedGroupSequenceNumber < sequenceNumber) {
+                    try {
+                        myGroupCommitLock.wait();
+                    }
+                    catch (InterruptedException e) {
+                        isInterrupted = true;
+                    }
+                }
+                
+                if (!proposal.isEmpty()) {
+                    myEventBus.publish(ActorID.DB_ENGINE,
+                                       ConsensusRequestEvent.create(proposal));
+                }
+                else {
+                    PooledObjects.freeInstance(proposal);
+                }
+                myPublishedGroupSequenceNumber++;
+                myGroupCommitLock.notifyAll();
+            }
+            if (isInterrupted) {
+                Thread.currentThread().interrupt();
+            }
         }
-        
     }
-    
-    private class ScheduleDependentTransactionsTask implements Runnable
+
+    /**
+     * A task that unlinks the obsolete versions from the tables and returns
+     * them to the pool once no transaction can be holding a reference to
+     * them.
+     */
+    private class CollectGarbageTask implements Runnable
     {
-        private final TLongSet myTransactionSet;
-        
         /**
-         * CTOR
+         * {@inheritDoc}
          */
-        public ScheduleDependentTransactionsTask(TLongSet transactionSet)
+        @Override
+        public void run()
         {
-            super();
-            myTransactionSet = transactionSet;
+            boolean isComplete = true;
+            try {
+                long lowWatermark = getLowWatermark();
+                freeRetiredVersions(lowWatermark);
+                
+                List<Transactable<?,?>> reclaimed = new ArrayList<>();
+                for (TransactableTable<?,?> table : myDatabase.getTables()) {
+                    isComplete &= reclaimVersions(table, 
+                                                  lowWatermark, 
+                                                  reclaimed);
+                }
+                
+                if (!reclaimed.isEmpty()) {
+                    // The versions might still be read by the transactions
+                    // that are active now, hence they are freed only after
+                    // all those transactions are done.
+                    myRetiredVersions.add(
+                        new Pair<>(Long.valueOf(myClock.currentTime()),
+                                   reclaimed));
+                    if (LOG.isLoggable(Level.FINE)) {
+                        LOG.fine("Reclaimed " + reclaimed.size() 
+                                 + " versions older than " + lowWatermark);
+                    }
+                }
+            }
+            catch (Exception e) {
+                LOG.log(Level.SEVERE, e.getMessage(), e);
+                isComplete = true;
+            }
+            
+            if (isComplete) {
+                myIsCollectingGarbage.set(false);
+            }
+            else {
+                myExecutor.submit(this);
+            }
         }
-
+        
+        private void freeRetiredVersions(long lowWatermark)
+        {
+            Pair<Long, List<Transactable<?,?>>> retired = 
+                myRetiredVersions.peek();
+            while (   retired != null 
+                   && retired.getFirst().longValue() < lowWatermark) 
+            {
+                myRetiredVersions.poll();
+                for (Transactable<?,?> version : retired.getSecond()) {
+                    PooledObjects.freeInstance(version);
+                }
+                retired = myRetiredVersions.peek();
+            }
+        }
+    }
+    
+    /**
+     * A task that unlinks the superseded versions from the tables of the
+     * replicated database. The database is read only by the replayed 
+     * changes, which are applied from the replica executor on which this
+     * task runs too, hence none of the versions can be referenced by the 
+     * time they are unlinked and they are freed right away.
+     */
+    private class CollectReplicaGarbageTask implements Runnable
+    {
         /**
          * {@inheritDoc}
          */
         @Override
         public void run()
         {
-            for (long transactionID : myTransactionSet.toArray()) {
-                WorkFlow workFlow = 
-                    myWorkFlowMap.get(Long.valueOf(transactionID));
-                if (workFlow != null) {
-                    if (workFlow instanceof SimpleWorkflow)  {
-                        workFlow.initiateCommit();
-                    }
-                    else {
-                        TLongSet precedents =
-                            Registry.getPrecedencyFor(transactionID);
-                        if (precedents == null || precedents.isEmpty()) {
-                            long lockedTransaction = 
-                                myDatabase.getLockedTransaction();
-                            if (lockedTransaction == transactionID) {
-                                workFlow.start();
-                            }
-                            else if (lockedTransaction == 
-                                        TransactableDatabase.UNLOCKED_VALUE)
-                            {
-                                if (myDatabase.lock(transactionID)) {
-                                    workFlow.start();
-                                }
-                                else {
-                                    while (lockedTransaction == 
-                                              TransactableDatabase.UNLOCKED_VALUE)
-                                    {
-                                        // I am bit nervous about this while
-                                        // loop, but i am sticking with tit right 
-                                        // now.
-                                        lockedTransaction = 
-                                            myDatabase.getLockedTransaction();
-                                    }
-                                    Registry.addDependency(lockedTransaction, 
-                                                           transactionID);
-                                }
-                            }
-                            else {
-                                Registry.addDependency(lockedTransaction, 
-                                                       transactionID);
-                            }
-                        }
-                    }
+            boolean isComplete = true;
+            try {
+                List<Transactable<?,?>> reclaimed = new ArrayList<>();
+                for (TransactableTable<?,?> table : 
+                         myReplicatedDatabase.getTables())
+                {
+                    isComplete &= reclaimVersions(table, 
+                                                  TransactionHelper.INFINITY, 
+                                                  reclaimed);
+                }
+                for (Transactable<?,?> version : reclaimed) {
+                    PooledObjects.freeInstance(version);
                 }
             }
+            catch (Exception e) {
+                LOG.log(Level.SEVERE, e.getMessage(), e);
+                isComplete = true;
+            }
+            
+            // The collection is resubmitted instead of being completed in 
+            // one go so that the replay isn't held up for long.
+            if (isComplete) {
+                myIsCollectingReplicaGarbage.set(false);
+            }
+            else {
+                myReplicaExecutor.submit(this);
+            }
         }
     }
 
@@ -807,6 +1071,27 @@ public class TransactionManager
     private static final Logger LOG =
         LogFactory.getInstance().getLogger(TransactionManager.class);
     
+    /** The number of versions examined per table by a garbage collection */
+    private static final int GC_BATCH_SIZE = 1000;
+    
+    /** The default number of transactions committed as a group */
+    private static final int DEFAULT_GROUP_COMMIT_SIZE = 64;
+    
+    /** 
+     * The default time in microseconds for which the transactions are 
+     * gathered before committing them as a group.
+     */
+    private static final long DEFAULT_GROUP_COMMIT_WINDOW_MICROS = 500;
+    
+    /** The number of changes replayed together on recovery */
+    private static final int REPLAY_BATCH_SIZE = 4096;
+    
+    /** The admission time of a transaction whose time is yet to be read */
+    private static final Long ADMISSION_PENDING = Long.valueOf(Long.MIN_VALUE);
+    
+    /** Denotes that no transaction is waiting for the others to finish */
+    private static final long NOT_DRAINING = Long.MIN_VALUE;
+    
     private final Clock myClock;
 
     private final TransactableDatabase myDatabase;
@@ -816,6 +1101,31 @@ public class TransactionManager
     private final EventBus myEventBus;
 
     private final ListeningExecutorService myExecutor;
+    
+    /** 
+     * Confines the replay of the changes replicated from the other 
+     * servers to a single thread, so that they're replayed in the order 
+     * of their replication.
+     */
+    private final ListeningExecutorService myReplicaExecutor;
+    
+    /** Replays the replicated changes, confined to the replica executor */
+    private final ParallelReplayer myReplicaReplayer;
+    
+    /** The number of replicated proposals that are yet to be replayed */
+    private final AtomicInteger myPendingReplications;
+    
+    /** 
+     * The number of transactions that have started processing without 
+     * the database being locked and are yet to finish.
+     */
+    private final AtomicInteger myRunningTransactions;
+    
+    /** 
+     * The transaction that has locked the database and waits for the 
+     * running transactions to finish.
+     */
+    private final AtomicLong myDrainingTransaction;
 
     private final IDAssigner myIdAssigner;
 
@@ -823,14 +1133,68 @@ public class TransactionManager
 
     private final Map<Long, WorkFlow> myWorkFlowMap;
     
+    private final Map<Long, Long> myAdmissionTimes;
+    
+    private final Queue<Pair<Long, List<Transactable<?,?>>>> myRetiredVersions;
+    
+    private final AtomicBoolean myIsCollectingGarbage;
+    
+    private final AtomicBoolean myIsCollectingReplicaGarbage;
+    
+    private final AtomicBoolean myIsCheckpointing;
+    
+    /** 
+     * The times of the snapshots installed on the replicated database, 
+     * keyed by the units from which they've been replicated.
+     */
+    private final Map<UnitID, Long> myReplicatedSnapshotTimes;
+    
+    /** The tables installed from the snapshots of the replicated units */
+    private final Map<UnitID, Set<String>> myReplicatedTables;
+    
+    /** 
+     * The proposals replicated from the units whose snapshots are being
+     * installed, which are applied once the snapshots are installed.
+     */
+    private final Map<UnitID, List<ProposalNotificationEvent>> 
+        myDeferredProposals;
+    
     private final Map<UnitID, WorkFlow> myConsensusToWorkFlowMap;
     
+    /** The transactions to be resumed once the database is unlocked */
+    private final Queue<Long> myUnlockWaiters;
+    
     private final UnitID myReplicationUnitID;
     
     private EngineJanitor myJanitor;
     
     private final Map<Class<?>, Pool<?>> myWorkflowToPoolMap;
     
+    /** The write transactions waiting to be committed as a group */
+    private final Queue<SimpleWorkflow> myPendingCommits;
+    
+    private final AtomicInteger myPendingCommitCount;
+    
+    /** 
+     * Guards the assignment of the commit times to the groups and the 
+     * publishing of their proposals.
+     */
+    private final Object myGroupCommitLock;
+    
+    /** The sequence number of the next group to be committed */
+    private long myNextGroupSequenceNumber;
+    
+    /** The sequence number of the next group to publish its proposal */
+    private long myPublishedGroupSequenceNumber;
+    
+    private final AtomicBoolean myIsGroupCommitScheduled;
+    
+    private final ScheduledExecutorService myGroupCommitTimer;
+    
+    private volatile int myGroupCommitSize;
+    
+    private volatile long myGroupCommitWindowMicros;
+    
     /**
      * CTOR
      */
@@ -849,14 +1213,44 @@ public class TransactionManager
         myServerID = serverID;
         myEventBus = eventBus;
         myWorkFlowMap = new ConcurrentHashMap<>();
+        myAdmissionTimes = new ConcurrentHashMap<>();
+        myRetiredVersions = new ArrayDeque<>();
+        myIsCollectingGarbage = new AtomicBoolean(false);
+        myIsCollectingReplicaGarbage = new AtomicBoolean(false);
+        myIsCheckpointing = new AtomicBoolean(false);
+        myReplicatedSnapshotTimes = new ConcurrentHashMap<>();
+        myReplicatedTables = new ConcurrentHashMap<>();
+        myDeferredProposals = new HashMap<>();
         myConsensusToWorkFlowMap = new ConcurrentHashMap<>();
+        myUnlockWaiters = new ConcurrentLinkedQueue<>();
         myReplicationUnitID = replicationID;
         myWorkflowToPoolMap = new HashMap<>();
+        myPendingCommits = new ConcurrentLinkedQueue<>();
+        myPendingCommitCount = new AtomicInteger(0);
+        myGroupCommitLock = new Object();
+        myNextGroupSequenceNumber = 0L;
+        myPublishedGroupSequenceNumber = 0L;
+        myIsGroupCommitScheduled = new AtomicBoolean(false);
+        myGroupCommitSize = DEFAULT_GROUP_COMMIT_SIZE;
+        myGroupCommitWindowMicros = DEFAULT_GROUP_COMMIT_WINDOW_MICROS;
         myExecutor =
             MoreExecutors.listeningDecorator(
                 Executors.newFixedThreadPool(
                     20,
                     new NamedThreadFactory(TransactionManager.class)));
+        myGroupCommitTimer = 
+            Executors.newSingleThreadScheduledExecutor(
+                new NamedThreadFactory("GroupCommitTimer", true));
+        myReplicaExecutor = 
+            MoreExecutors.listeningDecorator(
+                Executors.newSingleThreadExecutor(
+                    new NamedThreadFactory("ReplicaReplayer", true)));
+        myReplicaReplayer = 
+            new ParallelReplayer(Runtime.getRuntime().availableProcessors(),
+                                 REPLAY_BATCH_SIZE);
+        myPendingReplications = new AtomicInteger(0);
+        myRunningTransactions = new AtomicInteger(0);
+        myDrainingTransaction = new AtomicLong(NOT_DRAINING);
     }
     
     /** 
@@ -868,6 +1262,540 @@ public class TransactionManager
         myJanitor = janitor;
     }
     
+    /**
+     * Configures the group commit to commit upto <code>groupSize</code>
+     * write transactions together, after waiting for at most <code>
+     * windowMicros</code> microseconds for them to be gathered. A group 
+     * size of one commits every transaction by itself.
+     */
+    public void configureGroupCommit(int groupSize, long windowMicros)
+    {
+        myGroupCommitSize = Math.max(1, groupSize);
+        myGroupCommitWindowMicros = Math.max(0, windowMicros);
+    }
+    
+    /**
+     * Stops the threads that execute and commit the transactions.
+     */
+    public void stop()
+    {
+        myGroupCommitTimer.shutdownNow();
+        myExecutor.shutdownNow();
+        myReplicaExecutor.shutdownNow();
+        try {
+            myReplicaExecutor.awaitTermination(1, TimeUnit.MINUTES);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        myReplicaReplayer.close();
+    }
+    
+    /**
+     * Adds the workflow of a validated write transaction to the ones 
+     * waiting to be committed as a group.
+     */
+    private void submitForGroupCommit(SimpleWorkflow workflow)
+    {
+        myPendingCommits.add(workflow);
+        scheduleGroupCommit(myPendingCommitCount.incrementAndGet());
+    }
+    
+    /**
+     * Commits the pending transactions right away if a group is full, 
+     * otherwise at the end of the group commit window.
+     */
+    private void scheduleGroupCommit(int pendingCommits)
+    {
+        if (pendingCommits >= myGroupCommitSize) {
+            myExecutor.submit(new GroupCommitTask());
+        }
+        else if (   pendingCommits > 0
+                 && myIsGroupCommitScheduled.compareAndSet(false, true))
+        {
+            myGroupCommitTimer.schedule(new Runnable() {
+                @Override
+                public void run()
+                {
+                    myIsGroupCommitScheduled.set(false);
+                    myExecutor.submit(new GroupCommitTask());
+                }
+            }, myGroupCommitWindowMicros, TimeUnit.MICROSECONDS);
+        }
+    }
+    
+    /**
+     * Garbage collects the versions that are no longer visible to any 
+     * of the active transactions, from both the database and the 
+     * replicated database. Only one collection runs at a time per 
+     * database, the request is ignored if a collection is already in 
+     * progress.
+     */
+    public void collectGarbage()
+    {
+        if (myIsCollectingGarbage.compareAndSet(false, true)) {
+            myExecutor.submit(new CollectGarbageTask());
+        }
+        if (myIsCollectingReplicaGarbage.compareAndSet(false, true)) {
+            myReplicaExecutor.submit(new CollectReplicaGarbageTask());
+        }
+    }
+    
+    /**
+     * Unlinks upto <code>GC_BATCH_SIZE</code> versions of the table that
+     * are not visible after the low watermark and adds them to <code>
+     * reclaimed</code>.
+     * 
+     * @return True, if a complete pass over the table has been made.
+     */
+    private static <K extends Comparable<K>, P extends Persistable<K>> 
+        boolean reclaimVersions(TransactableTable<K,P>  table,
+                                long                    lowWatermark,
+                                List<Transactable<?,?>> reclaimed)
+    {
+        List<Transactable<K,P>> tableVersions = new ArrayList<>();
+        boolean isComplete = table.reclaimVersions(lowWatermark, 
+                                                   GC_BATCH_SIZE,
+                                                   tableVersions);
+        reclaimed.addAll(tableVersions);
+        return isComplete;
+    }
+    
+    /**
+     * Checkpoints the tables as of a consistent snapshot of the database.
+     * The tables are written in parallel while the transactions proceed
+     * and the checkpoint is completed once all of them have been written.
+     * The request is ignored if a checkpoint is already in progress.
+     */
+    public void checkpoint(final CheckpointStore store)
+    {
+        if (!myIsCheckpointing.compareAndSet(false, true)) {
+            return;
+        }
+        
+        final long id = myIdAssigner.getTransactionID();
+        final long checkpointTime = registerSnapshot(id);
+        List<ListenableFuture<String>> futures = new ArrayList<>();
+        for (final TransactableTable<?,?> table : myDatabase.getTables()) {
+            futures.add(myExecutor.submit(new Callable<String>() {
+                @Override
+                public String call() throws IOException
+                {
+                    long rows = store.writeTable(checkpointTime, table);
+                    if (LOG.isLoggable(Level.FINE)) {
+                        LOG.fine("Checkpointed " + rows + " rows of " 
+                                 + table.getSchema().getTableName());
+                    }
+                    return table.getSchema().getTableName();
+                }
+            }));
+        }
+        
+        Futures.addCallback(
+            Futures.allAsList(futures),
+            new FutureCallback<List<String>>() {
+                @Override
+                public void onSuccess(List<String> tableNames)
+                {
+                    try {
+                        store.completeCheckpoint(checkpointTime, tableNames);
+                        LOG.info("Checkpointed " + tableNames 
+                                 + " as of " + checkpointTime);
+                        // The replication log covered by the checkpoint
+                        // can be discarded.
+                        myEventBus.publish(
+                            ActorID.DB_ENGINE,
+                            new LogCompactionEvent(
+                                myReplicationUnitID,
+                                checkpointTime,
+                                store.getCheckpointPath(checkpointTime)));
+                    }
+                    catch (IOException e) {
+                        LOG.log(Level.SEVERE, e.getMessage(), e);
+                    }
+                    finally {
+                        finishCheckpoint(id);
+                    }
+                }
+                
+                @Override
+                public void onFailure(Throwable exception)
+                {
+                    LOG.log(Level.SEVERE, 
+                            "Unable to checkpoint the tables", 
+                            exception);
+                    finishCheckpoint(id);
+                }
+            });
+    }
+    
+    private void finishCheckpoint(long id)
+    {
+        myAdmissionTimes.remove(Long.valueOf(id));
+        myIsCheckpointing.set(false);
+    }
+    
+    /**
+     * Recovers the tables from the latest checkpoint in the store, after 
+     * which the changes committed since the checkpoint are replayed from 
+     * the write ahead log of this server's replication unit. 
+     * 
+     * @return The names of the tables that have been recovered.
+     */
+    public Set<String> recover(final CheckpointStore store)
+    {
+        final long checkpointTime = store.getLatestCheckpointTime();
+        if (checkpointTime == CheckpointStore.NO_CHECKPOINT) {
+            LOG.info("There are no checkpoints under " 
+                     + store.getDirectoryPath());
+            return Collections.emptySet();
+        }
+        
+        Set<String> recoveredTables;
+        try {
+            recoveredTables = 
+                loadCheckpoint(store, checkpointTime, myDatabase);
+        }
+        catch (IOException | InterruptedException | ExecutionException e) {
+            LOG.log(Level.SEVERE, 
+                    "Unable to recover from the checkpoint taken at "
+                    + checkpointTime,
+                    e);
+            return Collections.emptySet();
+        }
+        
+        long lastCommitTime = replayLogTail(checkpointTime);
+        // The transactions have to commit after the recovered changes.
+        if (myClock instanceof HybridLogicalClock) {
+            ((HybridLogicalClock) myClock).update(lastCommitTime);
+        }
+        return recoveredTables;
+    }
+    
+    /**
+     * Loads the tables from the checkpoint taken at the given time into 
+     * the database, in parallel.
+     * 
+     * @return The names of the tables loaded.
+     */
+    private Set<String> loadCheckpoint(final CheckpointStore      store,
+                                       final long                 checkpointTime,
+                                       final TransactableDatabase database)
+        throws IOException, InterruptedException, ExecutionException
+    {
+        return loadTables(store, 
+                          checkpointTime, 
+                          store.readManifest(checkpointTime), 
+                          database).get();
+    }
+    
+    /**
+     * Loads the given tables from the checkpoint taken at the given time 
+     * into the database, in parallel.
+     * 
+     * @return A future that's completed with the names of the tables 
+     *         loaded.
+     */
+    private ListenableFuture<Set<String>> loadTables(
+        final CheckpointStore      store,
+        final long                 checkpointTime,
+        final List<String>         tableNames,
+        final TransactableDatabase database)
+    {
+        List<ListenableFuture<String>> futures = new ArrayList<>();
+        for (final String tableName : tableNames) {
+            futures.add(myExecutor.submit(new Callable<String>() {
+                @Override
+                public String call() throws Exception
+                {
+                    long rows = 
+                        store.readTable(checkpointTime, tableName, database);
+                    LOG.info("Loaded " + rows + " rows of " + tableName 
+                             + " from the checkpoint taken at " 
+                             + checkpointTime);
+                    return tableName;
+                }
+            }));
+        }
+        return Futures.transform(
+            Futures.allAsList(futures),
+            new Function<List<String>, Set<String>>() {
+                @Override
+                public Set<String> apply(List<String> loadedTables)
+                {
+                    return new HashSet<>(loadedTables);
+                }
+            });
+    }
+    
+    /**
+     * Replaces the tables replicated from the unit of the snapshot with 
+     * those in the snapshot installed by its leader, while the tables 
+     * replicated from the other units are left as they are. The snapshot
+     * is installed asynchronously and the changes replicated from the 
+     * unit meanwhile are deferred till it's installed. The changes are 
+     * applied only if they've been committed after the snapshot.
+     * 
+     * @return A future that's completed with the names of the tables 
+     *         installed.
+     */
+    public ListenableFuture<Set<String>> installSnapshot(
+        final CheckpointStore replicaStore, final RaftSnapshot snapshot)
+    {
+        final UnitID unitID = snapshot.getUnitID();
+        final long snapshotTime = snapshot.getSnapshotTime();
+        synchronized (myDeferredProposals) {
+            if (!myDeferredProposals.containsKey(unitID)) {
+                myDeferredProposals.put(
+                    unitID, new ArrayList<ProposalNotificationEvent>());
+            }
+        }
+        
+        // The tables are dropped once the changes replicated before the 
+        // snapshot have been replayed.
+        ListenableFuture<List<String>> storedTables = 
+            myReplicaExecutor.submit(new Callable<List<String>>() {
+                @Override
+                public List<String> call() throws Exception
+                {
+                    replicaStore.installCheckpoint(snapshotTime, 
+                                                   snapshot.getFiles());
+                    List<String> tableNames = 
+                        replicaStore.readManifest(snapshotTime);
+                    Set<String> droppedTables = new HashSet<>(tableNames);
+                    Set<String> installedTables = 
+                        myReplicatedTables.put(unitID, droppedTables);
+                    if (installedTables != null) {
+                        droppedTables.addAll(installedTables);
+                    }
+                    for (String tableName : droppedTables) {
+                        myReplicatedDatabase.dropTable(tableName);
+                    }
+                    return tableNames;
+                }
+            });
+        
+        ListenableFuture<Set<String>> installedTables = 
+            Futures.transform(
+                storedTables, 
+                new AsyncFunction<List<String>, Set<String>>() {
+                    @Override
+                    public ListenableFuture<Set<String>> apply(
+                        List<String> tableNames)
+                    {
+                        return loadTables(replicaStore, 
+                                          snapshotTime, 
+                                          tableNames, 
+                                          myReplicatedDatabase);
+                    }
+                });
+        
+        Futures.addCallback(
+            installedTables, 
+            new FutureCallback<Set<String>>() {
+                @Override
+                public void onSuccess(Set<String> tables)
+                {
+                    myReplicatedSnapshotTimes.put(
+                        unitID, Long.valueOf(snapshotTime));
+                    LOG.info("Installed the replicated tables " + tables 
+                             + " from " + snapshot);
+                    applyDeferredProposals(unitID);
+                }
+    
+                @Override
+                public void onFailure(Throwable t)
+                {
+                    LOG.log(Level.SEVERE, 
+                            "Unable to install " + snapshot, 
+                            t);
+                    applyDeferredProposals(unitID);
+                }
+            });
+        return installedTables;
+    }
+    
+    /**
+     * Applies the changes replicated from the unit while its snapshot was
+     * being installed, in the order in which they've been received.
+     */
+    private void applyDeferredProposals(UnitID unitID)
+    {
+        synchronized (myDeferredProposals) {
+            List<ProposalNotificationEvent> deferredProposals = 
+                myDeferredProposals.remove(unitID);
+            if (deferredProposals != null) {
+                for (ProposalNotificationEvent pne : deferredProposals) {
+                    processOperation(pne);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Replays the changes committed after the checkpoint time from the 
+     * proposals logged for replicating the changes of this server. The 
+     * log is read from the position covered by the last snapshot 
+     * recorded in it. The changes to different keys are replayed in 
+     * parallel, while the changes to a key are applied in the order in 
+     * which they have been logged.
+     * 
+     * @return The commit time of the last change replayed.
+     */
+    private long replayLogTail(long checkpointTime)
+    {
+        long lastCommitTime = checkpointTime;
+        ParallelReplayer replayer = 
+            new ParallelReplayer(Runtime.getRuntime().availableProcessors(),
+                                 REPLAY_BATCH_SIZE);
+        WAL wal = 
+            WAL.open(new WALPropertyConfig(myReplicationUnitID.toString()));
+        Pair<Long, Long> snapshotPosition = 
+            wal.getSnapshotPosition(checkpointTime);
+        try {
+            TLongList terms = wal.getTerms();
+            for (int i = 0; i < terms.size(); i++) {
+                long term = terms.get(i);
+                long fromSequence = Long.MIN_VALUE;
+                if (snapshotPosition != null) {
+                    long snapshotTerm = snapshotPosition.getFirst().longValue();
+                    if (term < snapshotTerm) {
+                        continue;
+                    }
+                    else if (term == snapshotTerm) {
+                        fromSequence = 
+                            snapshotPosition.getSecond().longValue() + 1;
+                    }
+                }
+                TLongObjectMap<Proposal> proposals = 
+                    wal.readProposalsFromLog(
+                        term, fromSequence, Long.MAX_VALUE);
+                long[] sequences = proposals.keys();
+                Arrays.sort(sequences);
+                for (long sequence : sequences) {
+                    Proposal proposal = proposals.get(sequence);
+                    if (!(proposal instanceof ReplicationProposal)) {
+                        continue;
+                    }
+                    ReplicationProposal replicationProposal = 
+                        (ReplicationProposal) proposal;
+                    for (int j = 0; j < replicationProposal.size(); j++) {
+                        long endTime = replicationProposal.getEndTime(j);
+                        if (endTime <= checkpointTime) {
+                            continue;
+                        }
+                        Mutation mutation = replicationProposal.getMutation(j);
+                        replayer.submit(
+                            mutation,
+                            ReplicationExecutor.create(
+                                WriteTransaction.create(
+                                    myIdAssigner.getTransactionID(), 
+                                    myDatabase,
+                                    myClock,
+                                    mutation),
+                                replicationProposal.getStart(j),
+                                endTime));
+                        lastCommitTime = Math.max(lastCommitTime, endTime);
+                    }
+                }
+            }
+        }
+        finally {
+            replayer.close();
+        }
+        LOG.info("Replayed " + replayer.getReplayedChanges() 
+                 + " changes committed after the checkpoint taken at " 
+                 + checkpointTime);
+        return lastCommitTime;
+    }
+    
+    /**
+     * Returns the time before which all the active transactions have
+     * been admitted. Versions that have expired before this time are 
+     * not visible to any of the active transactions.
+     */
+    public long getLowWatermark()
+    {
+        // The current time has to be read before scanning for the active
+        // transactions, so that a transaction admitted after the scan
+        // is guaranteed to start after the watermark.
+        long lowWatermark = myClock.currentTime();
+        for (Long admissionTime : myAdmissionTimes.values()) {
+            lowWatermark = Math.min(lowWatermark, admissionTime.longValue());
+        }
+        return lowWatermark;
+    }
+    
+    /**
+     * Registers the <code>WorkFlow</code> as active, along with the time
+     * at which it has been admitted.
+     */
+    private void registerWorkflow(long transactionID, WorkFlow workFlow)
+    {
+        Long id = Long.valueOf(transactionID);
+        // Mark the admission as pending so that a concurrent garbage 
+        // collection doesn't compute a watermark past this transaction.
+        myAdmissionTimes.put(id, ADMISSION_PENDING);
+        myAdmissionTimes.put(id, Long.valueOf(myClock.currentTime()));
+        myWorkFlowMap.put(id, workFlow);
+        // Registered upfront, so that the other transactions can wait on
+        // this transaction even before it has started.
+        Registry.registerTransaction(transactionID);
+    }
+    
+    /**
+     * Registers the <code>WorkFlow</code> of a snapshot read as active and
+     * returns the time as of which it has to read the database. 
+     * <p>
+     * The snapshot is taken just before the earliest of the active 
+     * transactions. The transactions admitted before that have finished
+     * committing and those admitted after commit later than the snapshot,
+     * so the snapshot is consistent even though the versions are stamped 
+     * with the commit time one after another. The snapshot reads register
+     * with an admission time past their snapshot, which doesn't hold back
+     * the subsequent snapshots and still keeps the versions they can see 
+     * from being garbage collected.
+     */
+    private long registerSnapshotWorkflow(long transactionID, WorkFlow workFlow)
+    {
+        long snapshotTime = registerSnapshot(transactionID);
+        myWorkFlowMap.put(Long.valueOf(transactionID), workFlow);
+        return snapshotTime;
+    }
+    
+    /**
+     * Registers a snapshot with the given id as active and returns the
+     * time as of which the database has to be read. The versions visible
+     * to the snapshot are not garbage collected until the id's admission 
+     * time is removed.
+     */
+    private long registerSnapshot(long transactionID)
+    {
+        Long id = Long.valueOf(transactionID);
+        myAdmissionTimes.put(id, ADMISSION_PENDING);
+        // A transaction whose admission is still pending hasn't started 
+        // and hence it commits after the current time.
+        long admissionTime = myClock.currentTime();
+        for (Long activeAdmissionTime : myAdmissionTimes.values()) {
+            if (!ADMISSION_PENDING.equals(activeAdmissionTime)) {
+                admissionTime = 
+                    Math.min(admissionTime, activeAdmissionTime.longValue());
+            }
+        }
+        myAdmissionTimes.put(id, Long.valueOf(admissionTime));
+        return admissionTime - 1;
+    }
+    
+    /**
+     * Removes the <code>WorkFlow</code> from the active ones.
+     */
+    private WorkFlow unregisterWorkflow(long transactionID)
+    {
+        Long id = Long.valueOf(transactionID);
+        myAdmissionTimes.remove(id);
+        return myWorkFlowMap.remove(id);
+    }
+    
     /**
      * Creates a table with the given <code>Schema</code>
      */
@@ -903,13 +1831,8 @@ public class TransactionManager
         ClientInfo clientInfo = ClientInfo.create(originatorNode, -1L);
         WorkFlow workFlow = 
             createDeletionWorkflow(clientInfo, transaction, operation);
-        myWorkFlowMap.put(Long.valueOf(id), workFlow);
-        
-        if (myDatabase.lock(id)) {
-            // The new distributed transaction will be 
-            // dependent on all other transactions to complete.
-            Registry.addDependencyToAll(id);
-        }
+        registerWorkflow(id, workFlow);
+        startExclusively(id, workFlow);
     }
     
     /**
@@ -932,6 +1855,11 @@ public class TransactionManager
         long id = myIdAssigner.getTransactionID();
         ClientInfo clientInfo = ClientInfo.create(clientID, sequenceNumber);
         
+        if (operation instanceof SnapshotQuery) {
+            processSnapshotQuery(id, clientInfo, (SnapshotQuery) operation);
+            return;
+        }
+        
         AbstractTransaction transaction =
             operation instanceof Mutation ?
                 WriteTransaction.create(
@@ -940,37 +1868,123 @@ public class TransactionManager
                     id, myDatabase, myClock, (Query) operation);
         
                     
+        SimpleWorkflow workFlow = createSimpleWorkflow(clientInfo, transaction);
+        
+        registerWorkflow(id, workFlow);
+        workFlow.resume();
+    }
+    
+    /**
+     * Executes the query on a snapshot of the database. Since the 
+     * snapshot doesn't change, the query can be executed right away 
+     * even when the database is locked by a distributed transaction.
+     */
+    private void processSnapshotQuery(long          id,
+                                      ClientInfo    clientInfo,
+                                      SnapshotQuery query)
+    {
+        ReadTransaction transaction = 
+            ReadTransaction.createSnapshot(
+                id, myDatabase, myClock, Transaction.CONST_NULL_TIME, query);
         WorkFlow workFlow = createSimpleWorkflow(clientInfo, transaction);
+        long snapshotTime = registerSnapshotWorkflow(id, workFlow);
+        transaction.setSnapshotTime(snapshotTime);
         
-        myWorkFlowMap.put(Long.valueOf(id), workFlow);
+        PhasedTransactionExecutor<Boolean> callable =
+            PhasedTransactionExecutor.<Boolean>create(
+                transaction,
+                PhasedTransactionExecutor.ExecutionPhase.create(transaction));
         
+        ListenableFuture<Memento<Boolean>> future =
+            myExecutor.submit(callable);
+        
+        Futures.addCallback(future, 
+                            WorkflowProcessor.<Memento<Boolean>>create(
+                                callable, workFlow));
+    }
+    
+    /**
+     * Makes the transaction wait for the transaction that has locked the 
+     * database to finish.
+     * 
+     * @return True if the transaction has to wait, false if the database
+     *         is no longer locked by another transaction.
+     */
+    private boolean awaitLockedTransaction(long dependentID)
+    {
+        long lockedTransaction = myDatabase.getLockedTransaction();
+        if (   lockedTransaction == TransactableDatabase.UNLOCKED_VALUE
+            || lockedTransaction == dependentID)
+        {
+            return false;
+        }
+        Registry.addOrderingDependency(lockedTransaction, dependentID);
+        return Registry.awaitDependencies(dependentID);
+    }
+    
+    /**
+     * Counts the transaction as running, unless the database has been 
+     * locked by another transaction. The transaction is counted before
+     * the lock is checked, so that a transaction locking the database 
+     * either waits for it or is waited upon by it.
+     * 
+     * @return True if the transaction can be processed.
+     */
+    private boolean startRunning(long id)
+    {
+        myRunningTransactions.incrementAndGet();
         if (myDatabase.canProcess(id)) {
-            PhasedTransactionExecutor<Boolean> callable =
-                PhasedTransactionExecutor.<Boolean>create(
-                    transaction,
-                    PhasedTransactionExecutor.ExecutionPhase.create(transaction));
-                              
-            ListenableFuture<Memento<Boolean>> future =
-                myExecutor.submit(callable);
-    
-            Futures.addCallback(future, 
-                                WorkflowProcessor.<Memento<Boolean>>create(
-                                    callable, workFlow));
+            return true;
         }
-        else {
-            addDependencyToLockedTransaction(id);
+        finishRunning();
+        return false;
+    }
+    
+    /**
+     * Notes that a running transaction has finished and schedules the 
+     * transaction that has locked the database, if it has been waiting 
+     * for the last of the running transactions.
+     */
+    private void finishRunning()
+    {
+        if (myRunningTransactions.decrementAndGet() == 0) {
+            long drainingID = myDrainingTransaction.getAndSet(NOT_DRAINING);
+            if (drainingID != NOT_DRAINING) {
+                myExecutor.submit(new ScheduleDependentTransactionsTask(
+                    new TLongHashSet(new long[] {drainingID})));
+            }
         }
     }
     
-    private void addDependencyToLockedTransaction(long dependentID)
+    /**
+     * Locks the database for the transaction and starts the <code>
+     * WorkFlow</code> once all the active transactions have finished. If
+     * the database has been locked by another transaction, the workflow 
+     * is made to wait for it.
+     */
+    private void startExclusively(long id, WorkFlow workFlow)
     {
-        long lockedTransaction = myDatabase.getLockedTransaction();
-        while (lockedTransaction != 
-                   TransactableDatabase.UNLOCKED_VALUE)
-        {
-            lockedTransaction = myDatabase.getLockedTransaction();
+        while (true) {
+            if (myDatabase.lock(id)) {
+                if (LOG.isLoggable(Level.FINE)) {
+                    LOG.fine("Successfully locked the database. " + id 
+                             + " waits for the running transactions");
+                }
+                // The transaction waits for the running transactions to 
+                // finish. It's started here unless the last of them has 
+                // already claimed it for being scheduled.
+                myDrainingTransaction.set(id);
+                if (   myRunningTransactions.get() == 0
+                    && myDrainingTransaction.compareAndSet(id, NOT_DRAINING))
+                {
+                    workFlow.start();
+                }
+                return;
+            }
+            else if (awaitLockedTransaction(id)) {
+                return;
+            }
         }
-        Registry.addDependency(lockedTransaction, dependentID);
     }
 
     /**
@@ -1011,24 +2025,9 @@ public class TransactionManager
                 clientInfo, 
                 DistributedTrnProposal.create(unitID, operations, id));
         
-        myWorkFlowMap.put(Long.valueOf(id), workFlow);
+        registerWorkflow(id, workFlow);
         myConsensusToWorkFlowMap.put(unitID, workFlow);
-        
-        if (myDatabase.lock(id)) {
-            // The new distributed transaction will be 
-            // dependent on all other transactions to complete.
-            if (LOG.isLoggable(Level.FINE)) {
-                LOG.fine("Successfully locked the database for " + id);
-            }
-            Registry.addDependencyToAll(id);
-            TLongSet precedents = Registry.getPrecedencyFor(id);
-            if (precedents == null || precedents.isEmpty()) {
-                workFlow.start();
-            }
-        }
-        else {
-            addDependencyToLockedTransaction(id);
-        }
+        startExclusively(id, workFlow);
     }
     
     public void processOperation(ConsensusResponseEvent response)
@@ -1042,6 +2041,51 @@ public class TransactionManager
         // XXX Should handle replication failures.
     }
 
+    /**
+     * Replays the changes of a replicated proposal on the replicated 
+     * database, in the same way as the log is replayed when recovering. 
+     * The changes to different keys are applied in parallel, while the 
+     * changes to a key are applied in the order of their replication. The
+     * changes are buffered across the proposals, till there aren't any 
+     * more proposals waiting to be replayed.
+     */
+    private void replay(ReplicationProposal replicationProposal)
+    {
+        if (LOG.isLoggable(Level.FINE)) {
+            LOG.fine("Applying " + replicationProposal + " to the database");
+        }
+        try {
+            Long snapshotTime = 
+                myReplicatedSnapshotTimes.get(replicationProposal.getUnitID());
+            for (int i = 0; i < replicationProposal.size(); i++) {
+                // The changes replayed after installing a snapshot might
+                // have been covered by it.
+                if (   snapshotTime != null 
+                    && replicationProposal.getEndTime(i) 
+                           <= snapshotTime.longValue())
+                {
+                    continue;
+                }
+                Mutation mutation = replicationProposal.getMutation(i);
+                myReplicaReplayer.submit(
+                    mutation,
+                    ReplicationExecutor.create(
+                        WriteTransaction.create(
+                            myIdAssigner.getTransactionID(), 
+                            myReplicatedDatabase,
+                            myClock,
+                            mutation),
+                        replicationProposal.getStart(i),
+                        replicationProposal.getEndTime(i)));
+            }
+        }
+        finally {
+            if (myPendingReplications.decrementAndGet() == 0) {
+                myReplicaReplayer.flush();
+            }
+        }
+    }
+    
     /**
      * Creates appropriate <code>Transaction<code>s to process the mutations/
      * queries to be performed on multitude of nodes of the database.
@@ -1049,28 +2093,24 @@ public class TransactionManager
     public void processOperation(ProposalNotificationEvent pne)
     {
         if (pne.getProposal() instanceof ReplicationProposal) {
-            ReplicationProposal replicationProposal = 
+            final ReplicationProposal replicationProposal = 
                 (ReplicationProposal) pne.getProposal();
-            long id = myIdAssigner.getTransactionID();
-            if (LOG.isLoggable(Level.FINE)) {
-                LOG.fine("Applying " + replicationProposal 
-                         + " to the database");
+            synchronized (myDeferredProposals) {
+                List<ProposalNotificationEvent> deferredProposals = 
+                    myDeferredProposals.get(replicationProposal.getUnitID());
+                if (deferredProposals != null) {
+                    deferredProposals.add(pne);
+                    return;
+                }
             }
-            WriteTransaction transaction =
-                WriteTransaction.create(
-                    id, 
-                    myReplicatedDatabase,
-                    myClock,
-                    replicationProposal.getMutation());
-            
-            Runnable runnable = 
-                ReplicationExecutor.create(
-                    transaction,
-                    replicationProposal.getStart(),
-                    replicationProposal.getEndTime());
-            ListenableFuture<?> future = myExecutor.submit(runnable);
-            Futures.addCallback(future,
-                                RunnableRecycler.create(runnable));
+            myPendingReplications.incrementAndGet();
+            myReplicaExecutor.execute(new Runnable() {
+                @Override
+                public void run()
+                {
+                    replay(replicationProposal);
+                }
+            });
         }
        else {        
            DistributedTrnProposal distributedTrnProposal =
@@ -1097,26 +2137,10 @@ public class TransactionManager
            WorkFlow workFlow = 
                createDistributedWorkflow(transaction, pne);
            
-           myWorkFlowMap.put(Long.valueOf(id), workFlow);
+           registerWorkflow(id, workFlow);
            myConsensusToWorkFlowMap.put(pne.getProposal().getUnitID(), 
                                         workFlow);
-
-           if (myDatabase.lock(id)) {
-               if (LOG.isLoggable(Level.FINE)) {
-                   LOG.fine("Successfully locked the database. Adding "
-                           + id + " to be dependent on all active transactions");
-               }
-               // The new distributed transaction will be 
-               // dependent on all other transactions to complete.
-               Registry.addDependencyToAll(id);
-               TLongSet precedents = Registry.getPrecedencyFor(id);
-               if (precedents == null || precedents.isEmpty()) {
-                   workFlow.start();
-               }
-           }
-           else {
-               addDependencyToLockedTransaction(id);
-           }
+           startExclusively(id, workFlow);
        }
        PooledObjects.freeInstance(pne);
     }
@@ -1169,7 +2193,7 @@ public class TransactionManager
         distributedWorkflow.myClientInfo = clientInfo;
         distributedWorkflow.myPne = null;
         distributedWorkflow.myProposal = proposal;
-        distributedWorkflow.myExecutionPhase = false;
+        distributedWorkflow.myExecutionPhase = true;
         return distributedWorkflow;
     }
     
@@ -1188,7 +2212,7 @@ public class TransactionManager
         distributedWorkflow.myClientInfo = null;
         distributedWorkflow.myPne = pne;
         distributedWorkflow.myProposal = null;
-        distributedWorkflow.myExecutionPhase = false;
+        distributedWorkflow.myExecutionPhase = true;
         return distributedWorkflow;
     }
 
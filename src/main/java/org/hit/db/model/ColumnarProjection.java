@@ -0,0 +1,305 @@
+/*
+    Hit is a high speed transactional database for handling millions
+    of updates with comfort and ease.
+
+    Copyright (C) 2013  Balraja Subbiah
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package org.hit.db.model;
+
+import gnu.trove.map.TObjectIntMap;
+import gnu.trove.map.hash.TObjectIntHashMap;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An immutable, column wise copy of the rows of a table that are visible
+ * as of a point in time. The integral columns are held as <code>long
+ * </code>s, the other numeric columns as <code>double</code>s and the
+ * string columns as the codes into a dictionary of their distinct values,
+ * so that the scans that touch only a few columns of a wide table read
+ * contiguous arrays instead of the rows. The columns holding values of
+ * any other type aren't projected.
+ *
+ * @author Balraja Subbiah
+ */
+public class ColumnarProjection
+{
+    /**
+     * The types of the columns that can be projected.
+     */
+    public static enum ColumnType
+    {
+        LONG,
+        DOUBLE,
+        STRING;
+    }
+
+    /**
+     * The values of a projected column.
+     */
+    private static class Column
+    {
+        private final ColumnType myType;
+
+        private final long[] myLongs;
+
+        private final double[] myDoubles;
+
+        private final int[] myCodes;
+
+        private final String[] myDictionary;
+
+        private final BitSet myNulls;
+
+        /**
+         * CTOR
+         */
+        public Column(ColumnType type,
+                      long[]     longs,
+                      double[]   doubles,
+                      int[]      codes,
+                      String[]   dictionary,
+                      BitSet     nulls)
+        {
+            myType = type;
+            myLongs = longs;
+            myDoubles = doubles;
+            myCodes = codes;
+            myDictionary = dictionary;
+            myNulls = nulls;
+        }
+    }
+
+    private final long myVisibleTime;
+
+    private final int myRowCount;
+
+    private final Map<String, Column> myColumns;
+
+    /**
+     * CTOR
+     */
+    private ColumnarProjection(long                visibleTime,
+                               int                 rowCount,
+                               Map<String, Column> columns)
+    {
+        myVisibleTime = visibleTime;
+        myRowCount = rowCount;
+        myColumns = columns;
+    }
+
+    /**
+     * Projects the columns of the given rows, which are visible as of the
+     * given time.
+     */
+    public static ColumnarProjection build(
+        long visibleTime, Collection<? extends Row> rows)
+    {
+        List<Row> rowList = new ArrayList<Row>(rows);
+        Map<String, Column> columns = new HashMap<>();
+        if (!rowList.isEmpty()) {
+            for (String columnName : rowList.get(0).getFieldNames()) {
+                Column column = projectColumn(columnName, rowList);
+                if (column != null) {
+                    columns.put(columnName, column);
+                }
+            }
+        }
+        return new ColumnarProjection(visibleTime, rowList.size(), columns);
+    }
+
+    private static Column projectColumn(String columnName, List<Row> rows)
+    {
+        ColumnType type = null;
+        for (Row row : rows) {
+            Object value = row.getFieldValue(columnName);
+            if (value == null) {
+                continue;
+            }
+            ColumnType valueType = typeOf(value);
+            if (valueType == null) {
+                return null;
+            }
+            if (type == null) {
+                type = valueType;
+            }
+            else if (type != valueType) {
+                if (   type == ColumnType.STRING
+                    || valueType == ColumnType.STRING)
+                {
+                    return null;
+                }
+                // The integral values are widened along with the others.
+                type = ColumnType.DOUBLE;
+            }
+        }
+        if (type == null) {
+            type = ColumnType.LONG;
+        }
+
+        int rowCount = rows.size();
+        BitSet nulls = new BitSet(rowCount);
+        switch (type) {
+        case LONG: {
+            long[] longs = new long[rowCount];
+            for (int i = 0; i < rowCount; i++) {
+                Object value = rows.get(i).getFieldValue(columnName);
+                if (value == null) {
+                    nulls.set(i);
+                }
+                else {
+                    longs[i] = ((Number) value).longValue();
+                }
+            }
+            return new Column(type, longs, null, null, null, nulls);
+        }
+        case DOUBLE: {
+            double[] doubles = new double[rowCount];
+            for (int i = 0; i < rowCount; i++) {
+                Object value = rows.get(i).getFieldValue(columnName);
+                if (value == null) {
+                    nulls.set(i);
+                }
+                else {
+                    doubles[i] = ((Number) value).doubleValue();
+                }
+            }
+            return new Column(type, null, doubles, null, null, nulls);
+        }
+        default: {
+            int[] codes = new int[rowCount];
+            TObjectIntMap<String> codeOf = new TObjectIntHashMap<>();
+            List<String> dictionary = new ArrayList<>();
+            for (int i = 0; i < rowCount; i++) {
+                Object value = rows.get(i).getFieldValue(columnName);
+                if (value == null) {
+                    nulls.set(i);
+                    codes[i] = -1;
+                    continue;
+                }
+                String stringValue = (String) value;
+                if (codeOf.containsKey(stringValue)) {
+                    codes[i] = codeOf.get(stringValue);
+                }
+                else {
+                    codes[i] = dictionary.size();
+                    codeOf.put(stringValue, dictionary.size());
+                    dictionary.add(stringValue);
+                }
+            }
+            return new Column(type,
+                              null,
+                              null,
+                              codes,
+                              dictionary.toArray(new String[0]),
+                              nulls);
+        }
+        }
+    }
+
+    private static ColumnType typeOf(Object value)
+    {
+        if (   value instanceof Long
+            || value instanceof Integer
+            || value instanceof Short
+            || value instanceof Byte)
+        {
+            return ColumnType.LONG;
+        }
+        else if (value instanceof Number) {
+            return ColumnType.DOUBLE;
+        }
+        else if (value instanceof String) {
+            return ColumnType.STRING;
+        }
+        else {
+            return null;
+        }
+    }
+
+    /**
+     * Returns the time as of which the projected rows are visible.
+     */
+    public long getVisibleTime()
+    {
+        return myVisibleTime;
+    }
+
+    /**
+     * Returns the number of projected rows.
+     */
+    public int getRowCount()
+    {
+        return myRowCount;
+    }
+
+    /**
+     * Returns the type of the given column, null if it's not projected.
+     */
+    public ColumnType getColumnType(String columnName)
+    {
+        Column column = myColumns.get(columnName);
+        return column != null ? column.myType : null;
+    }
+
+    /**
+     * Returns the values of an integral column.
+     */
+    public long[] getLongs(String columnName)
+    {
+        return myColumns.get(columnName).myLongs;
+    }
+
+    /**
+     * Returns the values of a numeric column that's not integral.
+     */
+    public double[] getDoubles(String columnName)
+    {
+        return myColumns.get(columnName).myDoubles;
+    }
+
+    /**
+     * Returns the codes of the values of a string column, -1 for a null.
+     */
+    public int[] getCodes(String columnName)
+    {
+        return myColumns.get(columnName).myCodes;
+    }
+
+    /**
+     * Returns the distinct values of a string column indexed by their
+     * codes.
+     */
+    public String[] getDictionary(String columnName)
+    {
+        return myColumns.get(columnName).myDictionary;
+    }
+
+    /**
+     * Returns the positions of the rows having null for the given column.
+     * The returned set shouldn't be modified.
+     */
+    public BitSet getNulls(String columnName)
+    {
+        return myColumns.get(columnName).myNulls;
+    }
+}
@@ -23,8 +23,12 @@ package org.hit.db.model;
 import java.io.IOException;
 import java.io.ObjectInput;
 import java.io.ObjectOutput;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
+import org.hit.db.keyspace.HashKeyspace;
 import org.hit.db.keyspace.Keyspace;
 
 /**
@@ -41,6 +45,14 @@ public class HitTableSchema extends TableSchema
     private Class<? extends Persistable<?>> myPersistableClass;
 
     private boolean myReplicated;
+    
+    private Map<String, IndexType> mySecondaryIndexes;
+    
+    private boolean myStoredOffHeap;
+    
+    private boolean myColumnarReplica;
+    
+    private boolean myKeyRangeIndexed;
 
     /**
      * CTOR
@@ -87,6 +99,10 @@ public class HitTableSchema extends TableSchema
         myKeyClass = keyclass;
         myKeyspace = keyspace;
         myReplicated = false;
+        mySecondaryIndexes = new HashMap<>();
+        myStoredOffHeap = false;
+        myColumnarReplica = false;
+        myKeyRangeIndexed = false;
     }
 
     /**
@@ -98,6 +114,37 @@ public class HitTableSchema extends TableSchema
         return myKeyspace;
     }
 
+    /**
+     * Returns true if the rows of the table are stored in the order of
+     * their keys, which is the case unless the keys are hashed.
+     */
+    public boolean isKeyOrdered()
+    {
+        return !(myKeyspace instanceof HashKeyspace);
+    }
+
+    /**
+     * Returns true if the keys of a hashed table are to be indexed in 
+     * their order too, so that the range lookups and deletes on the 
+     * table need not scan the whole table.
+     */
+    public boolean isKeyRangeIndexed()
+    {
+        return myKeyRangeIndexed;
+    }
+    
+    /**
+     * Sets whether the keys of a hashed table are to be indexed in their
+     * order too. The index is updated whenever a key is added to or 
+     * removed from the table, hence it's meant for the tables on which 
+     * the keys are looked up by their ranges. It doesn't apply to the 
+     * tables that are already stored in the order of their keys.
+     */
+    public void setKeyRangeIndexed(boolean keyRangeIndexed)
+    {
+        myKeyRangeIndexed = keyRangeIndexed;
+    }
+
     /**
      * Returns the value of keyType
      */
@@ -122,6 +169,68 @@ public class HitTableSchema extends TableSchema
         return myReplicated;
     }
 
+    /**
+     * Declares a secondary index of the given type on a column, so that
+     * the predicates over that column can be evaluated without scanning
+     * the whole table.
+     */
+    public void addSecondaryIndex(String columnName, IndexType indexType)
+    {
+        mySecondaryIndexes.put(columnName, indexType);
+    }
+    
+    /**
+     * Returns the columns on which the secondary indexes are declared
+     * along with type of those indexes.
+     */
+    public Map<String, IndexType> getSecondaryIndexes()
+    {
+        return Collections.unmodifiableMap(mySecondaryIndexes);
+    }
+
+    /**
+     * Returns true if the rows of the table are to be stored outside the
+     * jvm's heap.
+     */
+    public boolean isStoredOffHeap()
+    {
+        return myStoredOffHeap;
+    }
+    
+    /**
+     * Sets whether the rows of the table are to be stored outside the 
+     * jvm's heap. The rows of such a table are decoded when they're read
+     * and not cached, trading the cpu for a smaller heap and shorter gc 
+     * pauses. The persistable class has to be <code>Externalizable</code>.
+     * It can be declared through the <code>storedOffHeap</code> attribute
+     * of the table in the schema file.
+     */
+    public void setStoredOffHeap(boolean storedOffHeap)
+    {
+        myStoredOffHeap = storedOffHeap;
+    }
+
+    /**
+     * Returns true if a column wise copy of the rows is to be maintained
+     * for the analytical scans.
+     */
+    public boolean hasColumnarReplica()
+    {
+        return myColumnarReplica;
+    }
+    
+    /**
+     * Sets whether a column wise copy of the rows is to be maintained for
+     * the analytical scans. The copy is rebuilt after the table is 
+     * modified, hence it's meant for the tables that are mostly read. It
+     * can be declared through the <code>columnarReplica</code> attribute
+     * of the table in the schema file.
+     */
+    public void setColumnarReplica(boolean columnarReplica)
+    {
+        myColumnarReplica = columnarReplica;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -135,6 +244,10 @@ public class HitTableSchema extends TableSchema
         myKeyClass = (Class<? extends Comparable<?>>) in.readObject();
         myKeyspace = (Keyspace<?,?>) in.readObject();
         myReplicated = in.readBoolean();
+        mySecondaryIndexes = (Map<String, IndexType>) in.readObject();
+        myStoredOffHeap = in.readBoolean();
+        myColumnarReplica = in.readBoolean();
+        myKeyRangeIndexed = in.readBoolean();
     }
 
     /**
@@ -152,6 +265,14 @@ public class HitTableSchema extends TableSchema
                + myKeyspace
                + "isReplicated"
                + myReplicated
+               + ", mySecondaryIndexes="
+               + mySecondaryIndexes
+               + ", myStoredOffHeap="
+               + myStoredOffHeap
+               + ", myColumnarReplica="
+               + myColumnarReplica
+               + ", myKeyRangeIndexed="
+               + myKeyRangeIndexed
                + "]";
     }
 
@@ -166,5 +287,9 @@ public class HitTableSchema extends TableSchema
         out.writeObject(myKeyClass);
         out.writeObject(myKeyspace);
         out.writeBoolean(myReplicated);
+        out.writeObject(mySecondaryIndexes);
+        out.writeBoolean(myStoredOffHeap);
+        out.writeBoolean(myColumnarReplica);
+        out.writeBoolean(myKeyRangeIndexed);
     }
 }
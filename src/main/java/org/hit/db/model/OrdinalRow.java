@@ -0,0 +1,40 @@
+/*
+    Hit is a high speed transactional database for handling millions
+    of updates with comfort and ease.
+
+    Copyright (C) 2013  Balraja Subbiah
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package org.hit.db.model;
+
+/**
+ * Extends {@link Row} to support looking up the values of the fields by
+ * their position, so that the name of a column can be resolved once per
+ * query instead of once per row.
+ *
+ * @author Balraja Subbiah
+ */
+public interface OrdinalRow extends Row
+{
+    /**
+     * Returns the position of the field with given name, -1 if there's no
+     * such field.
+     */
+    public int getFieldIndex(String fieldName);
+
+    /** Returns value of the field at the given position */
+    public Object getFieldValue(int fieldIndex);
+}
@@ -21,6 +21,7 @@
 package org.hit.db.model;
 
 import java.util.Collection;
+import java.util.Iterator;
 
 /**
  * Defines the contract for a table in the database.
@@ -43,6 +44,25 @@ public interface Table<K extends Comparable<K>, P extends Persistable<K>>
                                       K          start, 
                                       K          end);
     
+    /**
+     * Returns the collection of objects from this table that matches the
+     * predicate, using the secondary index on the given column to look up
+     * the rows whose column value falls between start and end. Both the
+     * bounds are inclusive and a null bound is open.
+     */
+    public Collection<P> findMatching(Predicate predicate,
+                                      String    indexedColumn,
+                                      Object    start,
+                                      Object    end);
+    
+    /**
+     * Returns an iterator over the objects from this table that matches
+     * the predicate. The objects are returned in the order of their keys
+     * when the table is ordered by its keys and they are looked up as 
+     * the iterator advances, wherever the table supports it.
+     */
+    public Iterator<P> iterateMatching(Predicate predicate);
+    
     /** Returns row corresponding to a primary key */
     public P getRow(K primarykey);
     
@@ -68,6 +88,9 @@ public interface Table<K extends Comparable<K>, P extends Persistable<K>>
     /** Returns schema of the table */
     public HitTableSchema getSchema();
     
+    /** Returns the number of rows in this table */
+    public long rowCount();
+    
     /**
      * Updates the object with the specified key with the new object
      */
@@ -0,0 +1,169 @@
+/*
+    Hit is a high speed transactional database for handling millions
+    of updates with comfort and ease.
+
+    Copyright (C) 2013  Balraja Subbiah
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package org.hit.db.sql.merger;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import org.hit.db.model.Row;
+import org.hit.db.sql.operators.OrderByComparator;
+
+/**
+ * Extends {@link QueryResultMerger} to support the order by and limit
+ * clauses. The partial results from the nodes are expected to be ordered
+ * and limited already, hence they're merged by picking the first row
+ * among the heads of those results, until the limit is reached. The
+ * aggregates computed by the nodes are merged first by the given merger
+ * and then ordered, as the partial aggregates can't be ordered.
+ *
+ * @author Balraja Subbiah
+ */
+public class OrderedResultMerger implements QueryResultMerger
+{
+    /**
+     * The rows of a partial result that are yet to be merged.
+     */
+    private static class Cursor
+    {
+        private final Iterator<Row> myRows;
+
+        private Row myHead;
+
+        /**
+         * CTOR
+         */
+        public Cursor(Iterator<Row> rows)
+        {
+            myRows = rows;
+            myHead = rows.next();
+        }
+
+        /**
+         * Moves to the next row, returns false if there are no more rows.
+         */
+        public boolean advance()
+        {
+            myHead = myRows.hasNext() ? myRows.next() : null;
+            return myHead != null;
+        }
+    }
+
+    private final QueryResultMerger myAggregator;
+
+    private final OrderByComparator myComparator;
+
+    private final int myLimit;
+
+    private final List<Collection<Row>> myPartialResults;
+
+    /**
+     * CTOR
+     *
+     * @param aggregator The merger for combining the partial aggregates,
+     *        null if the partial results are ordered rows.
+     * @param orderByCriterion The columns to be ordered by, null if the
+     *        rows needn't be ordered.
+     * @param limit The maximum number of rows to be returned.
+     */
+    public OrderedResultMerger(QueryResultMerger    aggregator,
+                               Map<String, Boolean> orderByCriterion,
+                               int                  limit)
+    {
+        myAggregator = aggregator;
+        myComparator =
+            orderByCriterion != null && !orderByCriterion.isEmpty() ?
+                new OrderByComparator(orderByCriterion)
+                : null;
+        myLimit = limit;
+        myPartialResults = new ArrayList<>();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void addPartialResult(Collection<Row> result)
+    {
+        if (myAggregator != null) {
+            myAggregator.addPartialResult(result);
+        }
+        else if (!result.isEmpty()) {
+            myPartialResults.add(result);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Collection<Row> getMergedResult()
+    {
+        if (myAggregator != null) {
+            List<Row> result = new ArrayList<>(myAggregator.getMergedResult());
+            if (myComparator != null) {
+                Collections.sort(result, myComparator);
+            }
+            return result.size() > myLimit ? result.subList(0, myLimit)
+                                           : result;
+        }
+
+        List<Row> result = new ArrayList<>();
+        if (myComparator == null) {
+            for (Collection<Row> partialResult : myPartialResults) {
+                for (Row row : partialResult) {
+                    if (result.size() >= myLimit) {
+                        return result;
+                    }
+                    result.add(row);
+                }
+            }
+            return result;
+        }
+
+        PriorityQueue<Cursor> cursors =
+            new PriorityQueue<>(Math.max(1, myPartialResults.size()),
+                                new Comparator<Cursor>() {
+                                    @Override
+                                    public int compare(Cursor c1, Cursor c2)
+                                    {
+                                        return myComparator.compare(
+                                            c1.myHead, c2.myHead);
+                                    }
+                                });
+        for (Collection<Row> partialResult : myPartialResults) {
+            cursors.offer(new Cursor(partialResult.iterator()));
+        }
+        while (result.size() < myLimit && !cursors.isEmpty()) {
+            Cursor first = cursors.poll();
+            result.add(first.myHead);
+            if (first.advance()) {
+                cursors.offer(first);
+            }
+        }
+        return result;
+    }
+}
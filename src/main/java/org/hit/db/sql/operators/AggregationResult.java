@@ -91,6 +91,14 @@ public class AggregationResult implements Row
         }
     }
     
+    /**
+     * Counts one more row to be part of this group.
+     */
+    public void incrementGroupCount()
+    {
+        myGroupCount++;
+    }
+    
     /**
      * Sets the aggregate value for a column in the given group.
      */
@@ -99,6 +107,14 @@ public class AggregationResult implements Row
         myColumnToAggregateMap.put(columnName, aggregate);
     }
     
+    /**
+     * Returns the aggregate value for a column in the given group.
+     */
+    public GroupValue getAggregate(String columnName)
+    {
+        return myColumnToAggregateMap.get(columnName);
+    }
+    
     public void merge(AggregationResult newRow)
     {
         myGroupCount += newRow.myGroupCount;
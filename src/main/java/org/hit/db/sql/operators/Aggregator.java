@@ -23,6 +23,7 @@ import com.google.common.base.Function;
 
 import java.util.Collection;
 
+import org.hit.db.model.ColumnarProjection.ColumnType;
 import org.hit.db.model.Row;
 
 /**
@@ -36,6 +37,10 @@ public class Aggregator implements Function<Collection<Row>,
     
     private final String myColumnName;
     
+    private final String[] myColumnNames;
+    
+    private final ColumnAccessor myAccessor;
+    
     /**
      * CTOR
      */
@@ -44,15 +49,63 @@ public class Aggregator implements Function<Collection<Row>,
         super();
         myID = id;
         myColumnName = columnName;
+        myColumnNames = new String[] {columnName};
+        myAccessor = new ColumnAccessor(myColumnNames);
+    }
+    
+    /**
+     * Returns the value of id
+     */
+    public AggregationID getID()
+    {
+        return myID;
+    }
+
+    /**
+     * Returns the value of columnName
+     */
+    public String getColumnName()
+    {
+        return myColumnName;
     }
     
     public GroupValue apply(Collection<Row> aggregatingCollection)
     {
         GroupValue groupValue = new GroupValue(myID);
         for (Row row : aggregatingCollection) {
-            Number value = (Number) row.getFieldValue(myColumnName);
-            groupValue.accumulate(value);
+            accumulate(groupValue, row);
         }
         return groupValue;
     }
-}
\ No newline at end of file
+    
+    /**
+     * Accumulates the value of the aggregated column from the given row,
+     * so that the rows can be aggregated as they're seen. The values that
+     * aren't numbers are skipped as nulls, as they're in the batches.
+     */
+    public void accumulate(GroupValue groupValue, Row row)
+    {
+        Object value = row.getFieldValue(myColumnName);
+        if (value instanceof Number) {
+            groupValue.accumulate((Number) value);
+        }
+    }
+    
+    /**
+     * Accumulates the values of the aggregated column for the rows that 
+     * are selected in the batch, from the vector of that column.
+     */
+    public void accumulate(GroupValue groupValue, ColumnBatch batch)
+    {
+        if (myID == AggregationID.CNT) {
+            return;
+        }
+        ColumnVector column = batch.getColumn(myColumnNames, myAccessor);
+        if (column != null && column.getType() != ColumnType.STRING) {
+            groupValue.accumulate(column.getDoubles(),
+                                  column.getNulls(),
+                                  batch.getSelection(),
+                                  batch.getSelectedCount());
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,88 @@
+/*
+    Hit is a high speed transactional database for handling millions
+    of updates with comfort and ease.
+
+    Copyright (C) 2013  Balraja Subbiah
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package org.hit.db.sql.operators;
+
+import org.hit.db.model.OrdinalRow;
+import org.hit.db.model.Row;
+
+/**
+ * Looks up the value of a column from the rows. The position of a column
+ * in an {@link OrdinalRow} is resolved once for the type of the rows, so
+ * that the name of the column isn't matched for every row.
+ *
+ * @author Balraja Subbiah
+ */
+public class ColumnAccessor
+{
+    /**
+     * The position of the column in a type of the rows.
+     */
+    private static class ResolvedIndex
+    {
+        private final Class<?> myRowClass;
+
+        private final int myIndex;
+
+        /**
+         * CTOR
+         */
+        public ResolvedIndex(Class<?> rowClass, int index)
+        {
+            myRowClass = rowClass;
+            myIndex = index;
+        }
+    }
+
+    private final String[] myColumnNames;
+
+    private volatile ResolvedIndex myResolvedIndex;
+
+    /**
+     * CTOR
+     */
+    public ColumnAccessor(String[] columnNames)
+    {
+        myColumnNames = columnNames;
+        myResolvedIndex = null;
+    }
+
+    /**
+     * Returns the value of the column from the given row.
+     */
+    public Object getValue(Row record)
+    {
+        if (myColumnNames.length == 1 && record instanceof OrdinalRow) {
+            OrdinalRow ordinalRow = (OrdinalRow) record;
+            ResolvedIndex resolved = myResolvedIndex;
+            if (resolved == null || resolved.myRowClass != record.getClass()) {
+                resolved =
+                    new ResolvedIndex(
+                        record.getClass(),
+                        ordinalRow.getFieldIndex(myColumnNames[0]));
+                myResolvedIndex = resolved;
+            }
+            if (resolved.myIndex >= 0) {
+                return ordinalRow.getFieldValue(resolved.myIndex);
+            }
+        }
+        return ColumnNameUtil.getValue(record, myColumnNames);
+    }
+}
@@ -0,0 +1,282 @@
+/*
+    Hit is a high speed transactional database for handling millions
+    of updates with comfort and ease.
+
+    Copyright (C) 2013  Balraja Subbiah
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+
+package org.hit.db.sql.operators;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.hit.db.model.ColumnarProjection;
+import org.hit.db.model.ColumnarProjection.ColumnType;
+import org.hit.db.model.Row;
+
+import com.google.common.base.Joiner;
+import com.google.common.collect.AbstractIterator;
+
+/**
+ * A batch of up to {@link #BATCH_SIZE} rows exchanged between the
+ * operators, along with a selection vector holding the positions of the
+ * rows that are still selected. The values of a column are looked up as a
+ * {@link ColumnVector} for the whole batch, either sliced from the arrays
+ * of a {@link ColumnarProjection} or decoded from the rows once per batch,
+ * so that the filters narrow the selection and the aggregates accumulate
+ * the selected values in tight loops over those vectors.
+ *
+ * @author Balraja Subbiah
+ */
+public class ColumnBatch
+{
+    /** The maximum number of rows in a batch */
+    public static final int BATCH_SIZE = 1024;
+
+    private static final Joiner COLUMN_JOINER = Joiner.on('.');
+
+    private final Row[] myRows;
+
+    private final ColumnarProjection myProjection;
+
+    private final int myStart;
+
+    private final int mySize;
+
+    private final int[] mySelection;
+
+    private int mySelectedCount;
+
+    private final Map<String, ColumnVector> myColumns;
+
+    /**
+     * CTOR
+     *
+     * @param rows The rows of the batch.
+     * @param size The number of rows in the given array.
+     */
+    public ColumnBatch(Row[] rows, int size)
+    {
+        this(rows, null, 0, size);
+    }
+
+    /**
+     * CTOR
+     *
+     * @param projection The projection from which the rows are sliced.
+     * @param start The position of the first row of the batch.
+     * @param size The number of rows in the batch.
+     */
+    public ColumnBatch(ColumnarProjection projection, int start, int size)
+    {
+        this(null, projection, start, size);
+    }
+
+    /**
+     * CTOR
+     */
+    private ColumnBatch(Row[]              rows,
+                        ColumnarProjection projection,
+                        int                start,
+                        int                size)
+    {
+        myRows = rows;
+        myProjection = projection;
+        myStart = start;
+        mySize = size;
+        mySelection = new int[size];
+        for (int i = 0; i < size; i++) {
+            mySelection[i] = i;
+        }
+        mySelectedCount = size;
+        myColumns = new HashMap<>();
+    }
+
+    /**
+     * Returns an iterator over the batches filled with the given rows, the
+     * rows are pulled as the batches are.
+     */
+    public static Iterator<ColumnBatch> batch(final Iterator<Row> rows)
+    {
+        return new AbstractIterator<ColumnBatch>() {
+            @Override
+            protected ColumnBatch computeNext()
+            {
+                Row[] batch = new Row[BATCH_SIZE];
+                int size = 0;
+                while (size < batch.length && rows.hasNext()) {
+                    batch[size++] = rows.next();
+                }
+                return size > 0 ? new ColumnBatch(batch, size) : endOfData();
+            }
+        };
+    }
+
+    /**
+     * Returns the number of rows in the batch.
+     */
+    public int getSize()
+    {
+        return mySize;
+    }
+
+    /**
+     * Returns true if the rows of the batch are available, false if
+     * the batch is sliced from a projection.
+     */
+    public boolean hasRows()
+    {
+        return myRows != null;
+    }
+
+    /**
+     * Returns the row at the given position of the batch.
+     */
+    public Row getRow(int position)
+    {
+        return myRows[position];
+    }
+
+    /**
+     * Returns the positions of the selected rows in the ascending order.
+     * Only the first {@link #getSelectedCount()} positions are valid, the
+     * filters retain the rows by compacting the positions in place.
+     */
+    public int[] getSelection()
+    {
+        return mySelection;
+    }
+
+    /**
+     * Returns the number of the selected rows.
+     */
+    public int getSelectedCount()
+    {
+        return mySelectedCount;
+    }
+
+    /**
+     * Sets the number of the selected rows, after the positions of the
+     * rows that are to be retained are moved to the front of the
+     * selection.
+     */
+    public void setSelectedCount(int selectedCount)
+    {
+        mySelectedCount = selectedCount;
+    }
+
+    /**
+     * Retains the selected rows that satisfy the given condition, by
+     * evaluating the condition against each of those rows.
+     */
+    public void retain(Condition condition)
+    {
+        int retained = 0;
+        for (int i = 0; i < mySelectedCount; i++) {
+            if (condition.isValid(myRows[mySelection[i]])) {
+                mySelection[retained++] = mySelection[i];
+            }
+        }
+        mySelectedCount = retained;
+    }
+
+    /**
+     * Returns the values of the given column for the rows of the batch,
+     * null if the batch is sliced from a projection that doesn't hold the
+     * column. The values decoded from the rows are held as <code>double
+     * </code>s, with the values that aren't numbers treated as nulls.
+     */
+    public ColumnVector getColumn(String[] columnNames, ColumnAccessor accessor)
+    {
+        String columnName = COLUMN_JOINER.join(columnNames);
+        ColumnVector column = myColumns.get(columnName);
+        if (column == null) {
+            column = myRows != null ? decodeColumn(accessor)
+                                    : sliceColumn(columnName);
+            if (column != null) {
+                myColumns.put(columnName, column);
+            }
+        }
+        return column;
+    }
+
+    private ColumnVector decodeColumn(ColumnAccessor accessor)
+    {
+        double[] doubles = new double[mySize];
+        boolean[] nulls = new boolean[mySize];
+        for (int i = 0; i < mySize; i++) {
+            Object value = accessor.getValue(myRows[i]);
+            if (value instanceof Number) {
+                doubles[i] = ((Number) value).doubleValue();
+            }
+            else {
+                nulls[i] = true;
+            }
+        }
+        return new ColumnVector(
+            ColumnType.DOUBLE, null, doubles, null, null, nulls);
+    }
+
+    private ColumnVector sliceColumn(String columnName)
+    {
+        ColumnType type = myProjection.getColumnType(columnName);
+        if (type == null) {
+            return null;
+        }
+        int end = myStart + mySize;
+        boolean[] nulls = new boolean[mySize];
+        BitSet projectedNulls = myProjection.getNulls(columnName);
+        for (int i = projectedNulls.nextSetBit(myStart);
+             i >= 0 && i < end;
+             i = projectedNulls.nextSetBit(i + 1))
+        {
+            nulls[i - myStart] = true;
+        }
+        switch (type) {
+        case LONG:
+            return new ColumnVector(
+                type,
+                Arrays.copyOfRange(
+                    myProjection.getLongs(columnName), myStart, end),
+                null,
+                null,
+                null,
+                nulls);
+        case DOUBLE:
+            return new ColumnVector(
+                type,
+                null,
+                Arrays.copyOfRange(
+                    myProjection.getDoubles(columnName), myStart, end),
+                null,
+                null,
+                nulls);
+        default:
+            return new ColumnVector(
+                type,
+                null,
+                null,
+                Arrays.copyOfRange(
+                    myProjection.getCodes(columnName), myStart, end),
+                myProjection.getDictionary(columnName),
+                nulls);
+        }
+    }
+}
@@ -75,6 +75,30 @@ public class ColumnComparison implements Condition
         myOperator = operator;
     }
 
+    /**
+     * Returns the value of columnNames1
+     */
+    public String[] getColumnNames1()
+    {
+        return myColumnNames1;
+    }
+
+    /**
+     * Returns the value of columnNames2
+     */
+    public String[] getColumnNames2()
+    {
+        return myColumnNames2;
+    }
+
+    /**
+     * Returns the value of operator
+     */
+    public ComparisionOperator getOperator()
+    {
+        return myOperator;
+    }
+
     /**
      * {@inheritDoc}
      */
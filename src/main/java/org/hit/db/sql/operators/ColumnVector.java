@@ -0,0 +1,125 @@
+/*
+    Hit is a high speed transactional database for handling millions
+    of updates with comfort and ease.
+
+    Copyright (C) 2013  Balraja Subbiah
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+
+package org.hit.db.sql.operators;
+
+import org.hit.db.model.ColumnarProjection.ColumnType;
+
+/**
+ * The values of a column for the rows of a {@link ColumnBatch}. The
+ * integral values are held as <code>long</code>s, the other numeric values
+ * as <code>double</code>s and the strings as the codes into a dictionary of
+ * their distinct values, so that the conditions and the aggregates are
+ * evaluated by looping over primitive arrays instead of the rows.
+ *
+ * @author Balraja Subbiah
+ */
+public class ColumnVector
+{
+    private final ColumnType myType;
+
+    private final long[] myLongs;
+
+    private double[] myDoubles;
+
+    private final int[] myCodes;
+
+    private final String[] myDictionary;
+
+    private final boolean[] myNulls;
+
+    /**
+     * CTOR
+     */
+    public ColumnVector(ColumnType type,
+                        long[]     longs,
+                        double[]   doubles,
+                        int[]      codes,
+                        String[]   dictionary,
+                        boolean[]  nulls)
+    {
+        myType = type;
+        myLongs = longs;
+        myDoubles = doubles;
+        myCodes = codes;
+        myDictionary = dictionary;
+        myNulls = nulls;
+    }
+
+    /**
+     * Returns the value of type
+     */
+    public ColumnType getType()
+    {
+        return myType;
+    }
+
+    /**
+     * Returns the values of an integral column.
+     */
+    public long[] getLongs()
+    {
+        return myLongs;
+    }
+
+    /**
+     * Returns the values of a numeric column as <code>double</code>s. The
+     * integral values are widened once for the batch, when they're first
+     * looked up this way.
+     */
+    public double[] getDoubles()
+    {
+        if (myDoubles == null && myLongs != null) {
+            double[] doubles = new double[myLongs.length];
+            for (int i = 0; i < myLongs.length; i++) {
+                doubles[i] = myLongs[i];
+            }
+            myDoubles = doubles;
+        }
+        return myDoubles;
+    }
+
+    /**
+     * Returns the codes of the values of a string column, -1 for a null.
+     */
+    public int[] getCodes()
+    {
+        return myCodes;
+    }
+
+    /**
+     * Returns the distinct values of a string column indexed by their
+     * codes.
+     */
+    public String[] getDictionary()
+    {
+        return myDictionary;
+    }
+
+    /**
+     * Returns the flags marking the positions that have null for the
+     * column.
+     */
+    public boolean[] getNulls()
+    {
+        return myNulls;
+    }
+}
@@ -0,0 +1,148 @@
+/*
+    Hit is a high speed transactional database for handling millions
+    of updates with comfort and ease.
+
+    Copyright (C) 2013  Balraja Subbiah
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package org.hit.db.sql.operators;
+
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.hit.db.model.ColumnarProjection;
+import org.hit.db.model.Database;
+import org.hit.db.model.Row;
+import org.hit.util.Range;
+
+/**
+ * Defines an operator that computes the aggregates selected from a table
+ * by scanning the arrays of its {@link ColumnarProjection}, when the table
+ * maintains one and the filtering condition as well as the aggregated
+ * columns can be evaluated over the projected columns. Otherwise the
+ * aggregates are computed over the batches of the rows filtered by the
+ * table scan. Both the cases are handled by the batch execution of the
+ * {@link Select} over {@link Where}.
+ *
+ * @author Balraja Subbiah
+ */
+public class ColumnarSelect implements QueryOperator
+{
+    private String myTableName;
+
+    private Condition myFilteringCondition;
+
+    private Map<String, AggregationID> mySelectColumns;
+
+    /**
+     * CTOR
+     */
+    public ColumnarSelect()
+    {
+        this(null, null, null);
+    }
+
+    /**
+     * CTOR
+     */
+    public ColumnarSelect(String                     tableName,
+                          Condition                  filteringCondition,
+                          Map<String, AggregationID> selectColumns)
+    {
+        myTableName = tableName;
+        myFilteringCondition = filteringCondition;
+        mySelectColumns = selectColumns;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Iterator<Row> open(Database database)
+    {
+        return getResult(database).iterator();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Collection<Row> getResult(Database database)
+    {
+        return new Select(new Where(myTableName, myFilteringCondition),
+                          myTableName,
+                          mySelectColumns).getResult(database);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException
+    {
+        out.writeUTF(myTableName);
+        out.writeBoolean(myFilteringCondition != null);
+        if (myFilteringCondition != null) {
+            out.writeObject(myFilteringCondition);
+        }
+        out.writeObject(mySelectColumns);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @SuppressWarnings("unchecked")
+    @Override
+    public void readExternal(ObjectInput in)
+        throws IOException, ClassNotFoundException
+    {
+        myTableName = in.readUTF();
+        myFilteringCondition =
+            in.readBoolean() ? (Condition) in.readObject() : null;
+        mySelectColumns = (Map<String, AggregationID>) in.readObject();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <K extends Comparable<K>> void updateRange(Range<K> newRange)
+    {
+        if (myFilteringCondition != null) {
+            myFilteringCondition.updateRange(newRange);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public QueryOperator cloneOperator()
+    {
+        Condition fc =
+            myFilteringCondition != null ? myFilteringCondition.cloneCondition()
+                                         : null;
+        return new ColumnarSelect(
+            myTableName,
+            fc,
+            new HashMap<String, AggregationID>(mySelectColumns));
+    }
+}
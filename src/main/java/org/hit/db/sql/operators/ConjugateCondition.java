@@ -84,6 +84,22 @@ public class ConjugateCondition implements Condition
         myConjunctive = conjunctive;
     }
 
+    /**
+     * Returns the value of conditions
+     */
+    public List<Condition> getConditions()
+    {
+        return myConditions;
+    }
+
+    /**
+     * Returns the value of conjunctive
+     */
+    public Conjunctive getConjunctive()
+    {
+        return myConjunctive;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -24,11 +24,14 @@ import java.io.IOException;
 import java.io.ObjectInput;
 import java.io.ObjectOutput;
 import java.util.Collection;
+import java.util.Iterator;
 
 import org.hit.db.model.Database;
 import org.hit.db.model.Row;
 import org.hit.util.Range;
 
+import com.google.common.collect.Lists;
+
 /**
  * Defines contract for the query operator, which supports decoration.
  * 
@@ -64,18 +67,30 @@ public abstract class Decorator implements QueryOperator
      */
     @Override
     public Collection<Row> getResult(Database database)
+    {
+        Iterator<Row> result = open(database);
+        return result != null ? Lists.newArrayList(result) : null;
+    }
+    
+    /**
+     * {@inheritDoc} 
+     */
+    @Override
+    public Iterator<Row> open(Database database)
     {
         return myDecoratedOperator != null ? 
-           doPerformOperation(myDecoratedOperator.getResult(database))
+           doPerformOperation(myDecoratedOperator.open(database))
            : null;
     }
     
     /**
      * Subclasses should override this method to perform the required 
-     * translation.
+     * translation. The rows are to be pulled from the given iterator 
+     * only as the returned iterator advances, unless the operator can't
+     * return a row without seeing all of them.
      */
-    protected abstract Collection<Row> doPerformOperation(
-        Collection<Row> toBeOperatedCollection);
+    protected abstract Iterator<Row> doPerformOperation(
+        Iterator<Row> toBeOperatedRows);
 
     /**
      * {@inheritDoc}
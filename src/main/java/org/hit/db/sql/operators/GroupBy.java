@@ -24,8 +24,8 @@ import java.io.IOException;
 import java.io.ObjectInput;
 import java.io.ObjectOutput;
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.SortedSet;
@@ -33,9 +33,6 @@ import java.util.TreeSet;
 
 import org.hit.db.model.Row;
 
-import com.google.common.collect.ArrayListMultimap;
-import com.google.common.collect.ListMultimap;
-
 /**
  * Defines the contract for an operator that supports grouping operations
  * 
@@ -72,40 +69,42 @@ public class GroupBy extends Decorator
      * {@inheritDoc}
      */
     @Override
-    protected Collection<Row>
-        doPerformOperation(Collection<Row> toBeOperatedCollection)
+    protected Iterator<Row>
+        doPerformOperation(Iterator<Row> toBeOperatedRows)
     {
-        ListMultimap<GroupKey, Row> multimap = ArrayListMultimap.create();
-        for (Row row : toBeOperatedCollection) {
-            multimap.put(new GroupingColumnsKey(myGroupingColumns, row),
-                         row);
+        List<Aggregator> aggregators = new ArrayList<>();
+        for (Map.Entry<String, AggregationID> columnEntry : 
+                myAggregatingColumns.entrySet())
+        {
+            if (columnEntry.getValue() != null) {
+                aggregators.add(new Aggregator(columnEntry.getValue(), 
+                                               columnEntry.getKey()));
+            }
         }
         
-        List<Row> resultCollection = new ArrayList<>();
-        for (Map.Entry<GroupKey, Collection<Row>> entry :
-               multimap.asMap().entrySet())
-        {
-            AggregationResult row = 
-                new AggregationResult(entry.getKey(), entry.getValue().size());
-            
-            // For each group, we are aggregating values in that 
-            // group.
-            for (Map.Entry<String, AggregationID> columnEntry : 
-                    myAggregatingColumns.entrySet())
-            {
-                if (columnEntry.getValue() != null) {
-                  
-                    Aggregator aggregator = 
-                        new Aggregator(
-                            columnEntry.getValue(), columnEntry.getKey());
-                    
-                    row.setAggregate(columnEntry.getKey(),
-                                     aggregator.apply(entry.getValue()));
+        // For each group, we are accumulating the aggregates as the rows
+        // of that group are seen, so that only the aggregates are held
+        // in memory rather than the rows.
+        Map<GroupKey, AggregationResult> groups = new HashMap<>();
+        while (toBeOperatedRows.hasNext()) {
+            Row row = toBeOperatedRows.next();
+            GroupKey key = new GroupingColumnsKey(myGroupingColumns, row);
+            AggregationResult group = groups.get(key);
+            if (group == null) {
+                group = new AggregationResult(key, 0);
+                for (Aggregator aggregator : aggregators) {
+                    group.setAggregate(aggregator.getColumnName(), 
+                                       new GroupValue(aggregator.getID()));
                 }
+                groups.put(key, group);
+            }
+            group.incrementGroupCount();
+            for (Aggregator aggregator : aggregators) {
+                aggregator.accumulate(
+                    group.getAggregate(aggregator.getColumnName()), row);
             }
-            resultCollection.add(row);
         }
-        return resultCollection;
+        return new ArrayList<Row>(groups.values()).iterator();
     }
 
     /**
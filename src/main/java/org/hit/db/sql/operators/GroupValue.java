@@ -60,20 +60,66 @@ public class GroupValue
     /** Accumulate the given value to the list of old values */
     public void accumulate(Number value)
     {
+        accumulate(value.doubleValue());
+    }
+    
+    /** Accumulate the given value to the list of old values */
+    public void accumulate(double value)
+    {
+        switch (myID) {
+        case AVG:
+        case SUM:
+            myResult += value;
+            break;
+        case CNT:
+            break;
+        case MAX:
+            myResult = Math.max(myResult, value);
+            break;
+        case MIN:
+            myResult = Math.min(myResult, value);
+            break;
+        }
+    }
+   
+    /** 
+     * Accumulates the values at the given positions that aren't null. The
+     * kind of the aggregation is resolved once for all of those values 
+     * instead of once per value.
+     */
+    public void accumulate(double[]  values, 
+                           boolean[] nulls, 
+                           int[]     positions, 
+                           int       count)
+    {
+        double result = myResult;
         switch (myID) {
         case AVG:
         case SUM:
-            myResult += value.doubleValue();
+            for (int i = 0; i < count; i++) {
+                if (!nulls[positions[i]]) {
+                    result += values[positions[i]];
+                }
+            }
             break;
         case CNT:
             break;
         case MAX:
-            myResult = Math.max(myResult, value.doubleValue());
+            for (int i = 0; i < count; i++) {
+                if (!nulls[positions[i]]) {
+                    result = Math.max(result, values[positions[i]]);
+                }
+            }
             break;
         case MIN:
-            myResult = Math.min(myResult, value.doubleValue());
+            for (int i = 0; i < count; i++) {
+                if (!nulls[positions[i]]) {
+                    result = Math.min(result, values[positions[i]]);
+                }
+            }
             break;
         }
+        myResult = result;
     }
    
     /** Returns the result of accumulation */
@@ -23,11 +23,13 @@ package org.hit.db.sql.operators;
 import java.io.IOException;
 import java.io.ObjectInput;
 import java.io.ObjectOutput;
-import java.util.ArrayList;
-import java.util.Collection;
+import java.util.Iterator;
 
 import org.hit.db.model.Row;
 
+import com.google.common.base.Predicate;
+import com.google.common.collect.Iterators;
+
 /**
  * Defines the contract for the query operator that supports filtering
  * on the aggregate values of a group.
@@ -59,16 +61,16 @@ public class Having extends Decorator
      * {@inheritDoc}
      */
     @Override
-    protected Collection<Row>
-        doPerformOperation(Collection<Row> toBeOperatedCollection)
+    protected Iterator<Row>
+        doPerformOperation(Iterator<Row> toBeOperatedRows)
     {
-        ArrayList<Row> result = new ArrayList<>();
-        for (Row q : toBeOperatedCollection) {
-            if (myCondition.isValid(q)) {
-                result.add(q);
+        return Iterators.filter(toBeOperatedRows, new Predicate<Row>() {
+            @Override
+            public boolean apply(Row q)
+            {
+                return myCondition.isValid(q);
             }
-        }
-        return result;
+        });
     }
 
     /**
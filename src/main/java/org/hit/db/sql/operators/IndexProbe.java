@@ -0,0 +1,166 @@
+/*
+    Hit is a high speed transactional database for handling millions
+    of updates with comfort and ease.
+
+    Copyright (C) 2013  Balraja Subbiah
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package org.hit.db.sql.operators;
+
+import java.util.Map;
+
+import org.hit.db.model.HitTableSchema;
+import org.hit.db.model.IndexType;
+
+/**
+ * Captures the lookup to be performed on a secondary index of a table
+ * for narrowing down the rows that can satisfy a <code>Condition</code>.
+ * The bounds are inclusive and a null bound is open.
+ *
+ * @author Balraja Subbiah
+ */
+public class IndexProbe
+{
+    private final String myColumnName;
+
+    private final Object myStart;
+
+    private final Object myEnd;
+
+    /**
+     * CTOR
+     */
+    public IndexProbe(String columnName, Object start, Object end)
+    {
+        myColumnName = columnName;
+        myStart = start;
+        myEnd = end;
+    }
+
+    /**
+     * Returns the value of columnName
+     */
+    public String getColumnName()
+    {
+        return myColumnName;
+    }
+
+    /**
+     * Returns the value of start
+     */
+    public Object getStart()
+    {
+        return myStart;
+    }
+
+    /**
+     * Returns the value of end
+     */
+    public Object getEnd()
+    {
+        return myEnd;
+    }
+
+    /**
+     * Returns true if this probe looks up a single value.
+     */
+    public boolean isEqualityProbe()
+    {
+        return myStart != null && myStart.equals(myEnd);
+    }
+
+    /**
+     * Returns the <code>IndexProbe</code> that can be used for looking up
+     * the rows satisfying the condition, null if none of the indexes on
+     * the table can be used.
+     */
+    public static IndexProbe makeProbe(Condition condition,
+                                       HitTableSchema schema)
+    {
+        Map<String, IndexType> indexes = schema.getSecondaryIndexes();
+        if (condition == null || indexes.isEmpty()) {
+            return null;
+        }
+
+        if (condition instanceof NumericComparison) {
+            NumericComparison comparison = (NumericComparison) condition;
+            IndexType indexType =
+                lookupIndex(comparison.getColumnNames(), indexes);
+            if (indexType == null) {
+                return null;
+            }
+
+            String column = comparison.getColumnNames()[0];
+            Double value = Double.valueOf(comparison.getComparedValue());
+            switch (comparison.getOperator()) {
+            case EQ:
+                return new IndexProbe(column, value, value);
+            case LT:
+            case LE:
+                return indexType == IndexType.ORDERED ?
+                    new IndexProbe(column, null, value) : null;
+            case GT:
+            case GE:
+                return indexType == IndexType.ORDERED ?
+                    new IndexProbe(column, value, null) : null;
+            default:
+                return null;
+            }
+        }
+        else if (condition instanceof StringComparison) {
+            StringComparison comparison = (StringComparison) condition;
+            String literal = comparison.getLiteral();
+            if (   literal == null
+                || lookupIndex(comparison.getColumnNames(), indexes) == null)
+            {
+                return null;
+            }
+            return new IndexProbe(
+                comparison.getColumnNames()[0], literal, literal);
+        }
+        else if (condition instanceof ConjugateCondition) {
+            ConjugateCondition conjugate = (ConjugateCondition) condition;
+            if (conjugate.getConjunctive()
+                    != ConjugateCondition.Conjunctive.AND)
+            {
+                return null;
+            }
+
+            // Any of the conditions narrows down the result, the equality
+            // lookups are preferred as they are the most selective.
+            IndexProbe selectedProbe = null;
+            for (Condition conjunct : conjugate.getConditions()) {
+                IndexProbe probe = makeProbe(conjunct, schema);
+                if (probe != null) {
+                    if (probe.isEqualityProbe()) {
+                        return probe;
+                    }
+                    else if (selectedProbe == null) {
+                        selectedProbe = probe;
+                    }
+                }
+            }
+            return selectedProbe;
+        }
+        return null;
+    }
+
+    private static IndexType lookupIndex(String[]               columnNames,
+                                         Map<String, IndexType> indexes)
+    {
+        return columnNames.length == 1 ? indexes.get(columnNames[0]) : null;
+    }
+}
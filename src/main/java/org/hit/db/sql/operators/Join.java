@@ -25,7 +25,9 @@ import java.io.ObjectInput;
 import java.io.ObjectOutput;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
@@ -33,143 +35,328 @@ import java.util.Map;
 
 import org.hit.db.model.Database;
 import org.hit.db.model.Persistable;
+import org.hit.db.model.Predicate;
 import org.hit.db.model.Row;
 import org.hit.db.model.Table;
 import org.hit.util.Pair;
 import org.hit.util.Range;
 
-import com.google.common.base.Function;
-import com.google.common.collect.Collections2;
-
 /**
- * Defines the contract for <code>QueryOperator</code> that can be used 
+ * Defines the contract for <code>QueryOperator</code> that can be used
  * for supporting the joins.
- * 
+ * <p>
+ * The conditions of the join and the filter are split into their and-ed
+ * parts. The parts that refer to a single table are applied while
+ * scanning that table, the equality comparisons between the columns of
+ * two tables are used as the keys of hash joins and the rest are applied
+ * as soon as all the tables they refer to are joined.
+ * <p>
+ * The tables are joined one after the other starting with the smallest
+ * one, using the row counts of the tables as their estimated sizes. Each
+ * table is joined by one of the following methods
+ * <ul>
+ * <li> A sort merge join, when two tables that are stored in the order
+ *      of their primary keys are joined on those keys. Both the tables
+ *      are streamed in the order of their keys, without buffering them.
+ * <li> An index nested loop join, when the table can be looked up by
+ *      its primary key or a secondary index on the joined column and
+ *      looking up the rows joined so far costs less than scanning the
+ *      table.
+ * <li> A hash join otherwise, which builds the hash table on the smaller
+ *      of the two inputs and probes it with the larger one.
+ * </ul>
+ *
  * @author Balraja Subbiah
  */
 public class Join implements QueryOperator
 {
     /**
-     * Defines an iterator that generates the cross product of 
-     * objects stored in multiple tables.
+     * Refers to a column of one of the joined tables.
+     */
+    private static class ColumnReference
+    {
+        private final int myTableIndex;
+
+        private final String[] myColumnNames;
+
+        /**
+         * CTOR
+         */
+        public ColumnReference(int tableIndex, String[] columnNames)
+        {
+            myTableIndex = tableIndex;
+            myColumnNames = columnNames;
+        }
+
+        /** Returns the value of the column from a row of its table */
+        public Object getValue(Row row)
+        {
+            return ColumnNameUtil.getValue(row, myColumnNames);
+        }
+
+        /** Returns the value of the column from a partially joined row */
+        public Object getValue(Row[] joinedRow)
+        {
+            return getValue(joinedRow[myTableIndex]);
+        }
+
+        /**
+         * Returns the name of the column in its table, null if it's
+         * nested within another column.
+         */
+        public String getColumnName()
+        {
+            return myColumnNames.length == 1 ? myColumnNames[0] : null;
+        }
+    }
+
+    /**
+     * A table that's to be joined along with the predicate filtering its
+     * rows.
+     */
+    private static class JoinInput
+    {
+        private final Table<? extends Comparable<?>,
+                            ? extends Persistable<?>> myTable;
+
+        private final Predicate myPredicate;
+
+        private final boolean myIsFiltered;
+
+        private List<Row> myRows;
+
+        /**
+         * CTOR
+         */
+        public JoinInput(
+            String                                                 tableName,
+            Table<? extends Comparable<?>, ? extends Persistable<?>> table,
+            List<Condition>                                        filters)
+        {
+            myTable = table;
+            myIsFiltered = !filters.isEmpty();
+            myPredicate = myIsFiltered ? new TablePredicate(tableName, filters)
+                                       : MatchAllPredicate.INSTANCE;
+            myRows = null;
+        }
+
+        /**
+         * Returns the rows of the table that matches the predicate, the
+         * table is scanned when they're asked for the first time.
+         */
+        public List<Row> getRows()
+        {
+            if (myRows == null) {
+                myRows = new ArrayList<>();
+                for (Persistable<?> persistable :
+                        myTable.findMatching(myPredicate))
+                {
+                    myRows.add((Row) persistable);
+                }
+            }
+            return myRows;
+        }
+
+        /**
+         * Returns an iterator over the rows of the table that matches the
+         * predicate, in the order of their keys.
+         */
+        public Iterator<? extends Persistable<?>> iterator()
+        {
+            return myTable.iterateMatching(myPredicate);
+        }
+
+        /**
+         * Returns the estimated number of rows that matches the predicate.
+         */
+        public long estimateRowCount()
+        {
+            if (myRows != null) {
+                return myRows.size();
+            }
+            long rowCount = myTable.rowCount();
+            return myIsFiltered ?
+                Math.max(1L, (long) (rowCount * FILTER_SELECTIVITY))
+                : rowCount;
+        }
+
+        /**
+         * Returns true if the table is stored in the order of its keys
+         * and the given column is its primary key.
+         */
+        public boolean isOrderedBy(String columnName)
+        {
+            return    myTable.getSchema().isKeyOrdered()
+                   && isKeyColumn(columnName);
+        }
+
+        /**
+         * Returns true if the rows of the table can be looked up by the
+         * value of the given column.
+         */
+        public boolean canLookup(String columnName)
+        {
+            return    columnName != null
+                   && (   isKeyColumn(columnName)
+                       || myTable.getSchema()
+                                 .getSecondaryIndexes()
+                                 .containsKey(columnName));
+        }
+
+        /**
+         * Returns the rows of the table that matches the predicate and has
+         * the given value for the column.
+         */
+        @SuppressWarnings({ "unchecked", "rawtypes" })
+        public Collection<Row> lookup(String columnName, Object value)
+        {
+            if (isKeyColumn(columnName)) {
+                Object key = toKey(value, myTable.getSchema().getKeyClass());
+                Persistable<?> persistable =
+                    key != null ? ((Table) myTable).getRow((Comparable) key)
+                                : null;
+                return    persistable != null
+                       && myPredicate.isInterested((Row) persistable) ?
+                           Collections.singletonList((Row) persistable)
+                           : Collections.<Row>emptyList();
+            }
+            List<Row> rows = new ArrayList<>();
+            for (Persistable<?> persistable :
+                    myTable.findMatching(myPredicate, columnName, value, value))
+            {
+                rows.add((Row) persistable);
+            }
+            return rows;
+        }
+
+        private boolean isKeyColumn(String columnName)
+        {
+            List<String> primaryKey = myTable.getSchema().getPrimaryKey();
+            return    myTable.getSchema().getKeyClass() != null
+                   && primaryKey != null
+                   && primaryKey.size() == 1
+                   && primaryKey.get(0).equals(columnName);
+        }
+    }
+
+    /**
+     * A condition along with the tables it refers to.
      */
-    private static class MultiTableIterator implements Iterator<Row>
+    private static class BoundCondition
+    {
+        private final Condition myCondition;
+
+        private final BitSet myTables;
+
+        /**
+         * CTOR
+         */
+        public BoundCondition(Condition condition, BitSet tables)
+        {
+            myCondition = condition;
+            myTables = tables;
+        }
+    }
+
+    /**
+     * A row whose tables are yet to be joined, the rows of the tables
+     * that aren't joined are null.
+     */
+    private static class PartialRow implements Row
     {
         private final List<String> myTables;
-        
-        private final List<List<Row>> myTableData;
-        
-        private final int[] mySizeArray;
-        
-        private int[] myIndex;
-        
-        private boolean myHasData;
+
+        private final Row[] myRows;
 
         /**
          * CTOR
          */
-        public MultiTableIterator(List<String> tables, Database database)
+        public PartialRow(List<String> tables, Row[] rows)
         {
             myTables = tables;
-            myTableData = new ArrayList<>();
-            for (String tableName : myTables) {
-                Table<? extends Comparable<?>,? extends Persistable<?>> table = 
-                      database.lookUpTable(tableName);
-                myTableData.add(
-                    new ArrayList<>(
-                        Collections2.transform(
-                          table.findMatching(
-                               MatchAllPredicate.INSTANCE),
-                          new Function<Persistable<?>, Row>() 
-                          {
-                              public Row apply(Persistable<?> persistable) {
-                                  return (Row) persistable;
-                              }
-                          })));
-            }
-            myIndex = new int[myTables.size()];
-            Arrays.fill(myIndex, 0);
-            
-            mySizeArray = new int[myTables.size()];
-            for (int i = 0; i < myTables.size(); i++) {
-                mySizeArray[i] = myTableData.get(i).size();
-            }
-            myHasData = true;
+            myRows = rows;
         }
 
         /**
          * {@inheritDoc}
          */
         @Override
-        public boolean hasNext()
+        public Object getFieldValue(String columnName)
         {
-            return myHasData;
+            if (ColumnNameUtil.isNested(columnName)) {
+                return ColumnNameUtil.getValue(
+                    this, ColumnNameUtil.nestedColumnNames(columnName));
+            }
+            int index = myTables.indexOf(columnName);
+            return index >= 0 ? myRows[index] : null;
         }
 
         /**
          * {@inheritDoc}
          */
         @Override
-        public Row next()
+        public Collection<String> getFieldNames()
         {
-            Map<String, Row> tableQueryableMap = new HashMap<>();
-            for (int tableIndex = 0; tableIndex < myTables.size(); tableIndex++)
-            {
-                tableQueryableMap.put(myTables.get(tableIndex),
-                                      myTableData.get(tableIndex)
-                                                 .get(myIndex[tableIndex]));
-            }
-            
-            myHasData = incrIndex();
-            return new TableIndexedRow(tableQueryableMap);
+            return toTableIndexedRow(myTables, myRows).getFieldNames();
         }
-        
-        private boolean incrIndex()
+    }
+
+    /**
+     * Adapts a condition on the columns of a table, named along with the
+     * table, to filter the rows of that table.
+     */
+    private static class TablePredicate implements Predicate
+    {
+        private final String myTableName;
+
+        private final List<Condition> myConditions;
+
+        /**
+         * CTOR
+         */
+        public TablePredicate(String tableName, List<Condition> conditions)
         {
-            int indexToIncrement = -1;
-            for (int tableIndex = (myIndex.length - 1); 
-                 tableIndex >= 0; 
-                 tableIndex--)
-            {
-                if (myIndex[tableIndex] < (mySizeArray[tableIndex] - 1)) {
-                    indexToIncrement = tableIndex;
-                    break;
-                }
-            }
-            if (indexToIncrement > -1) {
-                myIndex[indexToIncrement]++;
-                for (int i = (indexToIncrement + 1); 
-                     i < myIndex.length;
-                     i++)
-                {
-                    myIndex[i] = 0;
-                }
-                return true;
-            }
-            return false;
+            myTableName = tableName;
+            myConditions = conditions;
         }
 
         /**
          * {@inheritDoc}
          */
         @Override
-        public void remove()
+        public boolean isInterested(Row row)
         {
+            Row tableRow =
+                new TableIndexedRow(
+                    Collections.singletonMap(myTableName, row));
+            for (Condition condition : myConditions) {
+                if (!condition.isValid(tableRow)) {
+                    return false;
+                }
+            }
+            return true;
         }
     }
-    
+
+    /**
+     * The fraction of the rows of a table that are assumed to match its
+     * filters, while estimating the number of rows to be joined.
+     */
+    private static final double FILTER_SELECTIVITY = 0.1;
+
     private Pair<List<String>, Condition> myJoinCondition;
-    
+
     private Condition myFilter;
-    
+
     /**
      * CTOR
      */
     public Join()
     {
         myJoinCondition = null;
+        myFilter = null;
     }
-    
+
     /**
      * CTOR
      */
@@ -178,7 +365,18 @@ public class Join implements QueryOperator
     {
         myJoinCondition = joinCondition;
         myFilter        = filter;
-        
+
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Iterator<Row> open(Database database)
+    {
+        // The joined rows are materialized, as the build side of the 
+        // hash join has to be seen completely before probing it.
+        return getResult(database).iterator();
     }
 
     /**
@@ -187,28 +385,689 @@ public class Join implements QueryOperator
     @Override
     public Collection<Row> getResult(Database database)
     {
-        Iterator<Row> itr = 
-            new MultiTableIterator(myJoinCondition.getFirst(),
-                                   database);
-        List<Row> result = new ArrayList<>();
-        while (itr.hasNext()) {
-            Row row = itr.next();
-            if (   myJoinCondition.getSecond().isValid(row)
-                && (myFilter == null || myFilter.isValid(row))) 
+        List<String> tables = myJoinCondition.getFirst();
+        List<Condition> parts = new ArrayList<>();
+        splitConjunction(myJoinCondition.getSecond(), parts);
+        splitConjunction(myFilter, parts);
+
+        List<List<Condition>> tableFilters = new ArrayList<>();
+        for (int i = 0; i < tables.size(); i++) {
+            tableFilters.add(new ArrayList<Condition>());
+        }
+        List<BoundCondition> equiJoins = new ArrayList<>();
+        List<BoundCondition> pendingConditions = new ArrayList<>();
+        List<Condition> unboundConditions = new ArrayList<>();
+        for (Condition part : parts) {
+            BitSet referredTables = referredTables(part, tables);
+            if (referredTables == null || referredTables.isEmpty()) {
+                unboundConditions.add(part);
+            }
+            else if (referredTables.cardinality() == 1) {
+                tableFilters.get(referredTables.nextSetBit(0)).add(part);
+            }
+            else if (   referredTables.cardinality() == 2
+                     && part instanceof ColumnComparison
+                     && ((ColumnComparison) part).getOperator()
+                            == ComparisionOperator.EQ)
             {
+                equiJoins.add(new BoundCondition(part, referredTables));
+            }
+            else {
+                pendingConditions.add(new BoundCondition(part, referredTables));
+            }
+        }
+
+        List<JoinInput> inputs = new ArrayList<>();
+        for (int i = 0; i < tables.size(); i++) {
+            Table<? extends Comparable<?>,? extends Persistable<?>> table =
+                database.lookUpTable(tables.get(i));
+            if (table == null) {
+                return Collections.emptyList();
+            }
+            inputs.add(new JoinInput(tables.get(i), table, tableFilters.get(i)));
+        }
+
+        BitSet joinedTables = new BitSet(tables.size());
+        List<Row[]> joinedRows;
+        int[] mergedTables = chooseMergeJoin(inputs, equiJoins, tables);
+        if (mergedTables != null) {
+            int first = mergedTables[0], second = mergedTables[1];
+            joinedTables.set(first);
+            List<ColumnReference> firstKeys = new ArrayList<>();
+            List<ColumnReference> secondKeys = new ArrayList<>();
+            collectKeys(
+                equiJoins, joinedTables, second, tables, firstKeys, secondKeys);
+            joinedRows = mergeJoin(inputs.get(first),
+                                   firstKeys,
+                                   first,
+                                   inputs.get(second),
+                                   secondKeys,
+                                   second,
+                                   tables.size());
+            joinedTables.set(second);
+            joinedRows =
+                filterCovered(joinedRows, pendingConditions, joinedTables, tables);
+        }
+        else {
+            int first = 0;
+            for (int i = 1; i < tables.size(); i++) {
+                if (  inputs.get(i).estimateRowCount()
+                    < inputs.get(first).estimateRowCount())
+                {
+                    first = i;
+                }
+            }
+            joinedTables.set(first);
+            joinedRows = new ArrayList<>();
+            for (Row row : inputs.get(first).getRows()) {
+                Row[] joinedRow = new Row[tables.size()];
+                joinedRow[first] = row;
+                joinedRows.add(joinedRow);
+            }
+        }
+
+        while (   joinedTables.cardinality() < tables.size()
+               && !joinedRows.isEmpty())
+        {
+            int next = nextTable(joinedTables, inputs, equiJoins);
+            JoinInput nextInput = inputs.get(next);
+            List<ColumnReference> joinedKeys = new ArrayList<>();
+            List<ColumnReference> nextKeys = new ArrayList<>();
+            collectKeys(
+                equiJoins, joinedTables, next, tables, joinedKeys, nextKeys);
+
+            int lookupKey = -1;
+            for (int i = 0; i < nextKeys.size() && lookupKey < 0; i++) {
+                if (nextInput.canLookup(nextKeys.get(i).getColumnName())) {
+                    lookupKey = i;
+                }
+            }
+
+            if (joinedKeys.isEmpty()) {
+                joinedRows =
+                    crossProduct(joinedRows, nextInput.getRows(), next);
+            }
+            else if (   lookupKey >= 0
+                     && isLookupCheaper(joinedRows.size(),
+                                        nextInput.estimateRowCount()))
+            {
+                joinedRows = indexNestedLoopJoin(joinedRows,
+                                                 joinedKeys,
+                                                 nextInput,
+                                                 nextKeys,
+                                                 lookupKey,
+                                                 next);
+            }
+            else {
+                joinedRows = hashJoin(joinedRows,
+                                      joinedKeys,
+                                      nextInput.getRows(),
+                                      nextKeys,
+                                      next);
+            }
+            joinedTables.set(next);
+            joinedRows =
+                filterCovered(joinedRows, pendingConditions, joinedTables, tables);
+        }
+
+        if (joinedTables.cardinality() < tables.size()) {
+            return Collections.emptyList();
+        }
+        List<Row> result = new ArrayList<>(joinedRows.size());
+        for (Row[] joinedRow : joinedRows) {
+            Row row = toTableIndexedRow(tables, joinedRow);
+            boolean isValid = true;
+            for (Condition condition : unboundConditions) {
+                if (!condition.isValid(row)) {
+                    isValid = false;
+                    break;
+                }
+            }
+            if (isValid) {
                 result.add(row);
             }
         }
         return result;
     }
 
+    /**
+     * Returns the table that has to be joined next, preferring the
+     * smallest among the tables that can be equi joined with the
+     * tables that are already joined.
+     */
+    private static int nextTable(BitSet               joinedTables,
+                                 List<JoinInput>      inputs,
+                                 List<BoundCondition> equiJoins)
+    {
+        int next = -1;
+        boolean isNextEquiJoined = false;
+        for (int i = joinedTables.nextClearBit(0);
+             i < inputs.size();
+             i = joinedTables.nextClearBit(i + 1))
+        {
+            boolean isEquiJoined = false;
+            for (BoundCondition equiJoin : equiJoins) {
+                if (   equiJoin.myTables.get(i)
+                    && joinedTables.intersects(equiJoin.myTables))
+                {
+                    isEquiJoined = true;
+                    break;
+                }
+            }
+            if (   next == -1
+                || (isEquiJoined && !isNextEquiJoined)
+                || (   isEquiJoined == isNextEquiJoined
+                    &&   inputs.get(i).estimateRowCount()
+                       < inputs.get(next).estimateRowCount()))
+            {
+                next = i;
+                isNextEquiJoined = isEquiJoined;
+            }
+        }
+        return next;
+    }
+
+    /**
+     * Returns the pair of tables that are to be joined first by merging
+     * them in the order of their primary keys, null if there are no such
+     * tables or if looking up the smaller table's rows in the larger one
+     * costs less.
+     */
+    private static int[] chooseMergeJoin(List<JoinInput>      inputs,
+                                         List<BoundCondition> equiJoins,
+                                         List<String>         tables)
+    {
+        int[] chosen = null;
+        long chosenCost = Long.MAX_VALUE;
+        for (BoundCondition equiJoin : equiJoins) {
+            ColumnComparison comparison =
+                (ColumnComparison) equiJoin.myCondition;
+            ColumnReference column1 =
+                toColumnReference(comparison.getColumnNames1(), tables);
+            ColumnReference column2 =
+                toColumnReference(comparison.getColumnNames2(), tables);
+            JoinInput input1 = inputs.get(column1.myTableIndex);
+            JoinInput input2 = inputs.get(column2.myTableIndex);
+            if (   !input1.isOrderedBy(column1.getColumnName())
+                || !input2.isOrderedBy(column2.getColumnName())
+                || !input1.myTable.getSchema().getKeyClass().equals(
+                        input2.myTable.getSchema().getKeyClass()))
+            {
+                continue;
+            }
+            long rowCount1 = input1.estimateRowCount();
+            long rowCount2 = input2.estimateRowCount();
+            long cost = rowCount1 + rowCount2;
+            if (   cost < chosenCost
+                && !isLookupCheaper(Math.min(rowCount1, rowCount2),
+                                    Math.max(rowCount1, rowCount2)))
+            {
+                chosen = new int[] {column1.myTableIndex,
+                                    column2.myTableIndex};
+                chosenCost = cost;
+            }
+        }
+        return chosen;
+    }
+
+    /**
+     * Returns true if looking up the rows of a table for each of the
+     * joined rows costs less than scanning the table, assuming that a
+     * lookup costs about the logarithm of the table's size.
+     */
+    private static boolean isLookupCheaper(long joinedRowCount,
+                                           long tableRowCount)
+    {
+        long lookupCost =
+            64 - Long.numberOfLeadingZeros(Math.max(1L, tableRowCount));
+        return joinedRowCount * lookupCost < joinedRowCount + tableRowCount;
+    }
+
+    /**
+     * Adds the columns compared for equality between the joined tables
+     * and the given table to the respective lists of keys.
+     */
+    private static void collectKeys(List<BoundCondition>  equiJoins,
+                                    BitSet                joinedTables,
+                                    int                   tableIndex,
+                                    List<String>          tables,
+                                    List<ColumnReference> joinedKeys,
+                                    List<ColumnReference> tableKeys)
+    {
+        for (BoundCondition equiJoin : equiJoins) {
+            if (   equiJoin.myTables.get(tableIndex)
+                && joinedTables.intersects(equiJoin.myTables))
+            {
+                ColumnComparison comparison =
+                    (ColumnComparison) equiJoin.myCondition;
+                ColumnReference column1 =
+                    toColumnReference(comparison.getColumnNames1(), tables);
+                ColumnReference column2 =
+                    toColumnReference(comparison.getColumnNames2(), tables);
+                if (column1.myTableIndex == tableIndex) {
+                    tableKeys.add(column1);
+                    joinedKeys.add(column2);
+                }
+                else {
+                    tableKeys.add(column2);
+                    joinedKeys.add(column1);
+                }
+            }
+        }
+    }
+
+    /**
+     * Joins two tables that are ordered by the primary keys on which
+     * they're joined, by streaming both of them in the order of their
+     * keys. As the keys are unique, a row is joined with atmost one row
+     * of the other table.
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static List<Row[]> mergeJoin(JoinInput             input1,
+                                         List<ColumnReference> keys1,
+                                         int                   tableIndex1,
+                                         JoinInput             input2,
+                                         List<ColumnReference> keys2,
+                                         int                   tableIndex2,
+                                         int                   tableCount)
+    {
+        List<Row[]> result = new ArrayList<>();
+        Iterator<? extends Persistable<?>> itr1 = input1.iterator();
+        Iterator<? extends Persistable<?>> itr2 = input2.iterator();
+        Persistable<?> row1 = itr1.hasNext() ? itr1.next() : null;
+        Persistable<?> row2 = itr2.hasNext() ? itr2.next() : null;
+        while (row1 != null && row2 != null) {
+            int comparison =
+                ((Comparable) row1.primaryKey()).compareTo(row2.primaryKey());
+            if (comparison < 0) {
+                row1 = itr1.hasNext() ? itr1.next() : null;
+            }
+            else if (comparison > 0) {
+                row2 = itr2.hasNext() ? itr2.next() : null;
+            }
+            else {
+                Object key1 = tableKey((Row) row1, keys1);
+                if (key1 != null && key1.equals(tableKey((Row) row2, keys2))) {
+                    Row[] joinedRow = new Row[tableCount];
+                    joinedRow[tableIndex1] = (Row) row1;
+                    joinedRow[tableIndex2] = (Row) row2;
+                    result.add(joinedRow);
+                }
+                row1 = itr1.hasNext() ? itr1.next() : null;
+                row2 = itr2.hasNext() ? itr2.next() : null;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Joins the rows of a table with the rows joined so far, by looking
+     * up the table's rows by the value of one of the key columns for each
+     * of the joined rows.
+     */
+    private static List<Row[]> indexNestedLoopJoin(
+        List<Row[]>           joinedRows,
+        List<ColumnReference> joinedKeys,
+        JoinInput             input,
+        List<ColumnReference> tableKeys,
+        int                   lookupKey,
+        int                   tableIndex)
+    {
+        List<Row[]> result = new ArrayList<>();
+        String columnName = tableKeys.get(lookupKey).getColumnName();
+        for (Row[] joinedRow : joinedRows) {
+            Object key = joinedKey(joinedRow, joinedKeys);
+            if (key == null) {
+                continue;
+            }
+            Object value =
+                hashKey(joinedKeys.get(lookupKey).getValue(joinedRow));
+            for (Row row : input.lookup(columnName, value)) {
+                if (key.equals(tableKey(row, tableKeys))) {
+                    Row[] newRow = Arrays.copyOf(joinedRow, joinedRow.length);
+                    newRow[tableIndex] = row;
+                    result.add(newRow);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Joins the rows of a table with the rows joined so far, by hashing
+     * the smaller of the two on the values of their key columns.
+     */
+    private static List<Row[]> hashJoin(List<Row[]>           joinedRows,
+                                        List<ColumnReference> joinedKeys,
+                                        List<Row>             tableRows,
+                                        List<ColumnReference> tableKeys,
+                                        int                   tableIndex)
+    {
+        List<Row[]> result = new ArrayList<>();
+        if (joinedRows.size() <= tableRows.size()) {
+            Map<Object, List<Row[]>> hashTable =
+                new HashMap<>(2 * joinedRows.size());
+            for (Row[] joinedRow : joinedRows) {
+                Object key = joinedKey(joinedRow, joinedKeys);
+                if (key != null) {
+                    List<Row[]> bucket = hashTable.get(key);
+                    if (bucket == null) {
+                        bucket = new ArrayList<>(1);
+                        hashTable.put(key, bucket);
+                    }
+                    bucket.add(joinedRow);
+                }
+            }
+            for (Row row : tableRows) {
+                Object key = tableKey(row, tableKeys);
+                List<Row[]> bucket = key != null ? hashTable.get(key) : null;
+                if (bucket != null) {
+                    for (Row[] joinedRow : bucket) {
+                        Row[] newRow =
+                            Arrays.copyOf(joinedRow, joinedRow.length);
+                        newRow[tableIndex] = row;
+                        result.add(newRow);
+                    }
+                }
+            }
+        }
+        else {
+            Map<Object, List<Row>> hashTable =
+                new HashMap<>(2 * tableRows.size());
+            for (Row row : tableRows) {
+                Object key = tableKey(row, tableKeys);
+                if (key != null) {
+                    List<Row> bucket = hashTable.get(key);
+                    if (bucket == null) {
+                        bucket = new ArrayList<>(1);
+                        hashTable.put(key, bucket);
+                    }
+                    bucket.add(row);
+                }
+            }
+            for (Row[] joinedRow : joinedRows) {
+                Object key = joinedKey(joinedRow, joinedKeys);
+                List<Row> bucket = key != null ? hashTable.get(key) : null;
+                if (bucket != null) {
+                    for (Row row : bucket) {
+                        Row[] newRow =
+                            Arrays.copyOf(joinedRow, joinedRow.length);
+                        newRow[tableIndex] = row;
+                        result.add(newRow);
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Joins every row of a table with every row joined so far, when
+     * there is no equality comparison to join them on.
+     */
+    private static List<Row[]> crossProduct(List<Row[]> joinedRows,
+                                            List<Row>   tableRows,
+                                            int         tableIndex)
+    {
+        List<Row[]> result = new ArrayList<>();
+        for (Row[] joinedRow : joinedRows) {
+            for (Row row : tableRows) {
+                Row[] newRow = Arrays.copyOf(joinedRow, joinedRow.length);
+                newRow[tableIndex] = row;
+                result.add(newRow);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Filters the joined rows by the pending conditions that refer only
+     * to the tables joined so far, those conditions are removed from the
+     * pending ones.
+     */
+    private static List<Row[]> filterCovered(
+        List<Row[]>          joinedRows,
+        List<BoundCondition> pendingConditions,
+        BitSet               joinedTables,
+        List<String>         tables)
+    {
+        Iterator<BoundCondition> itr = pendingConditions.iterator();
+        List<Condition> coveredConditions = new ArrayList<>();
+        while (itr.hasNext()) {
+            BoundCondition pending = itr.next();
+            BitSet uncovered = (BitSet) pending.myTables.clone();
+            uncovered.andNot(joinedTables);
+            if (uncovered.isEmpty()) {
+                coveredConditions.add(pending.myCondition);
+                itr.remove();
+            }
+        }
+        return coveredConditions.isEmpty() ?
+            joinedRows
+            : filter(joinedRows, coveredConditions, tables);
+    }
+
+    private static List<Row[]> filter(List<Row[]>     joinedRows,
+                                      List<Condition> conditions,
+                                      List<String>    tables)
+    {
+        List<Row[]> result = new ArrayList<>();
+        for (Row[] joinedRow : joinedRows) {
+            Row row = new PartialRow(tables, joinedRow);
+            boolean isValid = true;
+            for (Condition condition : conditions) {
+                if (!condition.isValid(row)) {
+                    isValid = false;
+                    break;
+                }
+            }
+            if (isValid) {
+                result.add(joinedRow);
+            }
+        }
+        return result;
+    }
+
+    private static Object joinedKey(Row[]                 joinedRow,
+                                    List<ColumnReference> keys)
+    {
+        return makeKey(null, joinedRow, keys);
+    }
+
+    private static Object tableKey(Row row, List<ColumnReference> keys)
+    {
+        return makeKey(row, null, keys);
+    }
+
+    /**
+     * Returns the key made of the values of the key columns, taken from
+     * the joined row if it's given or else from the row of a table. A
+     * key is null if any of its values is null.
+     */
+    private static Object makeKey(Row                   row,
+                                  Row[]                 joinedRow,
+                                  List<ColumnReference> keys)
+    {
+        List<Object> key =
+            keys.size() > 1 ? new ArrayList<Object>(keys.size()) : null;
+        for (ColumnReference column : keys) {
+            Object value =
+                hashKey(joinedRow != null ? column.getValue(joinedRow)
+                                          : column.getValue(row));
+            if (value == null || key == null) {
+                return value;
+            }
+            key.add(value);
+        }
+        return key;
+    }
+
+    /**
+     * Returns the value to be hashed for a column, so that the values
+     * which are equal as per {@link ColumnComparison} are hashed alike,
+     * null if the value can't be equal to any other value.
+     */
+    private static Object hashKey(Object value)
+    {
+        if (value instanceof Number) {
+            double doubleValue = ((Number) value).doubleValue();
+            // Adding zero folds -0.0 into 0.0 since they compare equal.
+            return Double.isNaN(doubleValue) ? null
+                                             : Double.valueOf(doubleValue + 0.0);
+        }
+        return value;
+    }
+
+    /**
+     * Converts the value of a column to the class of a table's keys, so
+     * that it can be used for looking up the row with that key. Returns
+     * null if no key can be equal to the value.
+     */
+    private static Object toKey(Object value, Class<?> keyClass)
+    {
+        if (value == null || keyClass.isInstance(value)) {
+            return value;
+        }
+        if (value instanceof Number) {
+            Number number = (Number) value;
+            double doubleValue = number.doubleValue();
+            if (keyClass == Long.class && number.longValue() == doubleValue) {
+                return Long.valueOf(number.longValue());
+            }
+            else if (   keyClass == Integer.class
+                     && number.intValue() == doubleValue)
+            {
+                return Integer.valueOf(number.intValue());
+            }
+            else if (   keyClass == Short.class
+                     && number.shortValue() == doubleValue)
+            {
+                return Short.valueOf(number.shortValue());
+            }
+            else if (keyClass == Double.class) {
+                return Double.valueOf(doubleValue);
+            }
+            else if (   keyClass == Float.class
+                     && number.floatValue() == doubleValue)
+            {
+                return Float.valueOf(number.floatValue());
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Adds the parts of a condition that are and-ed together to the
+     * given list.
+     */
+    private static void splitConjunction(Condition       condition,
+                                         List<Condition> parts)
+    {
+        if (condition == null) {
+            return;
+        }
+        if (   condition instanceof ConjugateCondition
+            && ((ConjugateCondition) condition).getConjunctive()
+                   == ConjugateCondition.Conjunctive.AND)
+        {
+            for (Condition part :
+                    ((ConjugateCondition) condition).getConditions())
+            {
+                splitConjunction(part, parts);
+            }
+        }
+        else {
+            parts.add(condition);
+        }
+    }
+
+    /**
+     * Returns the indices of the tables whose columns are referred by the
+     * condition, null if the columns can't be resolved to the tables.
+     */
+    private static BitSet referredTables(Condition    condition,
+                                         List<String> tables)
+    {
+        BitSet referredTables = new BitSet(tables.size());
+        if (condition instanceof NumericComparison) {
+            return addTable(((NumericComparison) condition).getColumnNames(),
+                            tables,
+                            referredTables);
+        }
+        else if (condition instanceof StringComparison) {
+            return addTable(((StringComparison) condition).getColumnNames(),
+                            tables,
+                            referredTables);
+        }
+        else if (condition instanceof ColumnComparison) {
+            ColumnComparison comparison = (ColumnComparison) condition;
+            return addTable(comparison.getColumnNames2(),
+                            tables,
+                            addTable(comparison.getColumnNames1(),
+                                     tables,
+                                     referredTables));
+        }
+        else if (condition instanceof ConjugateCondition) {
+            for (Condition part :
+                    ((ConjugateCondition) condition).getConditions())
+            {
+                BitSet partTables = referredTables(part, tables);
+                if (partTables == null) {
+                    return null;
+                }
+                referredTables.or(partTables);
+            }
+            return referredTables;
+        }
+        return null;
+    }
+
+    private static BitSet addTable(String[]     columnNames,
+                                   List<String> tables,
+                                   BitSet       referredTables)
+    {
+        if (referredTables == null || columnNames.length < 2) {
+            return null;
+        }
+        int index = tables.indexOf(columnNames[0]);
+        if (index < 0) {
+            return null;
+        }
+        referredTables.set(index);
+        return referredTables;
+    }
+
+    private static ColumnReference toColumnReference(String[]     columnNames,
+                                                     List<String> tables)
+    {
+        return new ColumnReference(
+            tables.indexOf(columnNames[0]),
+            Arrays.copyOfRange(columnNames, 1, columnNames.length));
+    }
+
+    private static TableIndexedRow toTableIndexedRow(List<String> tables,
+                                                     Row[]        rows)
+    {
+        Map<String, Row> tableQueryableMap = new HashMap<>();
+        for (int tableIndex = 0; tableIndex < tables.size(); tableIndex++) {
+            if (rows[tableIndex] != null) {
+                tableQueryableMap.put(tables.get(tableIndex), rows[tableIndex]);
+            }
+        }
+        return new TableIndexedRow(tableQueryableMap);
+    }
+
     /**
      * {@inheritDoc}
      */
     @Override
     public void writeExternal(ObjectOutput out) throws IOException
     {
-        out.writeObject(myJoinCondition);        
+        out.writeObject(myJoinCondition);
+        out.writeBoolean(myFilter != null);
+        if (myFilter != null) {
+            out.writeObject(myFilter);
+        }
     }
 
     /**
@@ -220,6 +1079,7 @@ public class Join implements QueryOperator
         throws IOException, ClassNotFoundException
     {
         myJoinCondition = (Pair<List<String>, Condition>) in.readObject();
+        myFilter = in.readBoolean() ? (Condition) in.readObject() : null;
     }
 
     /**
@@ -239,7 +1099,9 @@ public class Join implements QueryOperator
         return new Join(
             new Pair<List<String>, Condition>(
                 new ArrayList<>(myJoinCondition.getFirst()),
-                myJoinCondition.getSecond().cloneCondition()), 
-            myFilter.cloneCondition());
+                myJoinCondition.getSecond() != null ?
+                    myJoinCondition.getSecond().cloneCondition()
+                    : null),
+            myFilter != null ? myFilter.cloneCondition() : null);
     }
 }
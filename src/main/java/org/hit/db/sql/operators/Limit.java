@@ -0,0 +1,108 @@
+/*
+    Hit is a high speed transactional database for handling millions
+    of updates with comfort and ease.
+
+    Copyright (C) 2013  Balraja Subbiah
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package org.hit.db.sql.operators;
+
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.util.Iterator;
+
+import org.hit.db.model.Row;
+import org.hit.util.Range;
+
+import com.google.common.collect.Iterators;
+
+/**
+ * Defines the contract for the query operator that limits the number of
+ * rows returned by a query, when the rows needn't be ordered.
+ *
+ * @author Balraja Subbiah
+ */
+public class Limit extends Decorator
+{
+    private int myLimit;
+
+    /**
+     * CTOR
+     */
+    public Limit()
+    {
+        myLimit = Integer.MAX_VALUE;
+    }
+
+    /**
+     * CTOR
+     */
+    public Limit(QueryOperator operator, int limit)
+    {
+        super(operator);
+        myLimit = limit;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected Iterator<Row>
+        doPerformOperation(Iterator<Row> toBeOperatedRows)
+    {
+        return Iterators.limit(toBeOperatedRows, myLimit);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <K extends Comparable<K>> void updateRange(Range<K> newRange)
+    {
+        getDecoratedOperator().updateRange(newRange);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException
+    {
+        super.writeExternal(out);
+        out.writeInt(myLimit);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void readExternal(ObjectInput in)
+        throws IOException, ClassNotFoundException
+    {
+        super.readExternal(in);
+        myLimit = in.readInt();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public QueryOperator cloneOperator()
+    {
+        return new Limit(getDecoratedOperator().cloneOperator(), myLimit);
+    }
+}
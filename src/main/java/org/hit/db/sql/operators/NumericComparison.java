@@ -24,6 +24,7 @@ import java.io.IOException;
 import java.io.ObjectInput;
 import java.io.ObjectOutput;
 
+import org.hit.db.model.ColumnarProjection.ColumnType;
 import org.hit.db.model.Row;
 import org.hit.util.Range;
 
@@ -41,6 +42,8 @@ public class NumericComparison implements Condition
     
     private double myComparedValue;
     
+    private transient ColumnAccessor myAccessor;
+    
     /**
      * CTOR
      */
@@ -73,6 +76,7 @@ public class NumericComparison implements Condition
         myColumnNames = ColumnNameUtil.nestedColumnNames(columnName);
         myOperator = operator;
         myComparedValue = comparedValue;
+        myAccessor = new ColumnAccessor(myColumnNames);
     }
     
     /**
@@ -87,6 +91,31 @@ public class NumericComparison implements Condition
         myColumnNames = columnNames;
         myOperator = operator;
         myComparedValue = comparedValue;
+        myAccessor = new ColumnAccessor(myColumnNames);
+    }
+
+    /**
+     * Returns the value of columnNames
+     */
+    public String[] getColumnNames()
+    {
+        return myColumnNames;
+    }
+
+    /**
+     * Returns the value of operator
+     */
+    public ComparisionOperator getOperator()
+    {
+        return myOperator;
+    }
+
+    /**
+     * Returns the value of comparedValue
+     */
+    public double getComparedValue()
+    {
+        return myComparedValue;
     }
 
     /**
@@ -104,7 +133,7 @@ public class NumericComparison implements Condition
     @Override
     public boolean isValid(Row record)
     {
-        Object fieldValue = ColumnNameUtil.getValue(record, myColumnNames);
+        Object fieldValue = myAccessor.getValue(record);
         if (fieldValue != null && fieldValue instanceof Number) {
             Number numericValue = (Number) fieldValue;
             return myOperator.compare(numericValue.doubleValue(), 
@@ -114,6 +143,83 @@ public class NumericComparison implements Condition
             return false;
         }
     }
+    
+    /**
+     * Retains the rows of the batch that satisfy this comparison. The
+     * values of the column are compared in a loop specialized for the 
+     * operator, instead of looking up and unboxing the value of each row.
+     */
+    public void filter(ColumnBatch batch)
+    {
+        ColumnVector column = batch.getColumn(myColumnNames, myAccessor);
+        if (column == null) {
+            batch.retain(this);
+            return;
+        }
+        else if (column.getType() == ColumnType.STRING) {
+            // The strings never match a numeric comparison.
+            batch.setSelectedCount(0);
+            return;
+        }
+        
+        double[] values = column.getDoubles();
+        boolean[] nulls = column.getNulls();
+        int[] selection = batch.getSelection();
+        int count = batch.getSelectedCount();
+        double bound = myComparedValue;
+        int retained = 0;
+        switch (myOperator) {
+        case LT:
+            for (int i = 0; i < count; i++) {
+                int position = selection[i];
+                if (!nulls[position] && values[position] < bound) {
+                    selection[retained++] = position;
+                }
+            }
+            break;
+        case GT:
+            for (int i = 0; i < count; i++) {
+                int position = selection[i];
+                if (!nulls[position] && values[position] > bound) {
+                    selection[retained++] = position;
+                }
+            }
+            break;
+        case EQ:
+            for (int i = 0; i < count; i++) {
+                int position = selection[i];
+                if (!nulls[position] && values[position] == bound) {
+                    selection[retained++] = position;
+                }
+            }
+            break;
+        case NE:
+            for (int i = 0; i < count; i++) {
+                int position = selection[i];
+                if (!nulls[position] && values[position] != bound) {
+                    selection[retained++] = position;
+                }
+            }
+            break;
+        case LE:
+            for (int i = 0; i < count; i++) {
+                int position = selection[i];
+                if (!nulls[position] && values[position] <= bound) {
+                    selection[retained++] = position;
+                }
+            }
+            break;
+        case GE:
+            for (int i = 0; i < count; i++) {
+                int position = selection[i];
+                if (!nulls[position] && values[position] >= bound) {
+                    selection[retained++] = position;
+                }
+            }
+            break;
+        }
+        batch.setSelectedCount(retained);
+    }
 
     /**
      * {@inheritDoc}
@@ -136,6 +242,7 @@ public class NumericComparison implements Condition
         myColumnNames = (String[]) in.readObject();
         myOperator = ComparisionOperator.valueOf(in.readUTF());
         myComparedValue = in.readDouble();
+        myAccessor = new ColumnAccessor(myColumnNames);
     }
 
     /**
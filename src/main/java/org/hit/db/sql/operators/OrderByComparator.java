@@ -0,0 +1,91 @@
+/*
+    Hit is a high speed transactional database for handling millions
+    of updates with comfort and ease.
+
+    Copyright (C) 2013  Balraja Subbiah
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package org.hit.db.sql.operators;
+
+import java.util.Comparator;
+import java.util.Map;
+
+import org.hit.db.model.Row;
+
+/**
+ * Defines a {@link Comparator} that orders the rows as per the columns
+ * specified in the order by clause. The numbers are compared by their
+ * values irrespective of their types and the nulls are ordered before
+ * all the other values.
+ *
+ * @author Balraja Subbiah
+ */
+public class OrderByComparator implements Comparator<Row>
+{
+    private final String[] myColumnNames;
+
+    private final boolean[] myAscending;
+
+    /**
+     * CTOR
+     *
+     * @param orderByCriterion The columns to be ordered by in the order of
+     *        their precedence, mapped to whether the column is to be ordered
+     *        in the ascending order. A null order defaults to ascending.
+     */
+    public OrderByComparator(Map<String, Boolean> orderByCriterion)
+    {
+        myColumnNames = new String[orderByCriterion.size()];
+        myAscending = new boolean[orderByCriterion.size()];
+        int index = 0;
+        for (Map.Entry<String, Boolean> entry : orderByCriterion.entrySet()) {
+            myColumnNames[index] = entry.getKey();
+            myAscending[index] = !Boolean.FALSE.equals(entry.getValue());
+            index++;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int compare(Row row1, Row row2)
+    {
+        for (int i = 0; i < myColumnNames.length; i++) {
+            int result = compareValues(row1.getFieldValue(myColumnNames[i]),
+                                       row2.getFieldValue(myColumnNames[i]));
+            if (result != 0) {
+                return myAscending[i] ? result : -result;
+            }
+        }
+        return 0;
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static int compareValues(Object value1, Object value2)
+    {
+        if (value1 == null || value2 == null) {
+            return value1 == null ? (value2 == null ? 0 : -1) : 1;
+        }
+        else if (value1 instanceof Number && value2 instanceof Number) {
+            return Double.compare(((Number) value1).doubleValue(),
+                                  ((Number) value2).doubleValue());
+        }
+        else {
+            return ((Comparable) value1).compareTo(value2);
+        }
+    }
+}
@@ -26,14 +26,16 @@ import java.io.ObjectOutput;
 
 import org.hit.db.model.Database;
 import org.hit.db.model.Query;
+import org.hit.db.model.SnapshotQuery;
 
 /**
  * Defines a wrapper on top of {@link QueryOperator} to match 
- * the general {@link Query} interface.
+ * the general {@link Query} interface. The sql queries only select 
+ * from the tables, hence they're executed on a snapshot of the database.
  * 
  * @author Balraja Subbiah
  */
-public class QueryAdaptor implements Query
+public class QueryAdaptor implements SnapshotQuery
 {
     private QueryOperator myQueryOperator;
     
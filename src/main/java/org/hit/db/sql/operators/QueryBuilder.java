@@ -24,6 +24,7 @@ import java.util.Map;
 
 import org.hit.db.sql.merger.AggregationMerger;
 import org.hit.db.sql.merger.MergeableHaving;
+import org.hit.db.sql.merger.OrderedResultMerger;
 import org.hit.db.sql.merger.QueryResultMerger;
 import org.hit.db.sql.parser.QueryAttributes;
 import org.hit.util.Pair;
@@ -146,9 +147,43 @@ public class QueryBuilder
                                          .toString()
                         : myQueryAttributes.getTableName();
                                          
-            operator = new Select(operator,
-                                  tableName,
-                                  myQueryAttributes.getSelectedColumns());
+            if (   hasSelectAggregation
+                && myQueryAttributes.getJoinCriteria() == null)
+            {
+                // The aggregates of a table can be computed from its
+                // columnar replica, if it maintains one.
+                operator = 
+                    new ColumnarSelect(tableName,
+                                       myQueryAttributes.getWhereCondition(),
+                                       myQueryAttributes.getSelectedColumns());
+            }
+            else {
+                operator = new Select(operator,
+                                      tableName,
+                                      myQueryAttributes.getSelectedColumns());
+            }
+        }
+        
+        Map<String, Boolean> orderByCriterion = 
+            myQueryAttributes.getOrderByCriterion();
+        boolean hasOrderBy = 
+            orderByCriterion != null && !orderByCriterion.isEmpty();
+        boolean hasLimit = myQueryAttributes.getLimit() < Integer.MAX_VALUE;
+        boolean isAggregated = 
+            hasSelectAggregation
+            || myQueryAttributes.getGroupByAttributes() != null;
+        
+        // The partial aggregates computed by a node can be ordered and 
+        // limited only after they're merged.
+        if (!isDistributed || !isAggregated) {
+            if (hasOrderBy) {
+                operator = new Sort(operator, 
+                                    orderByCriterion, 
+                                    myQueryAttributes.getLimit());
+            }
+            else if (hasLimit) {
+                operator = new Limit(operator, myQueryAttributes.getLimit());
+            }
         }
         
         QueryResultMerger queryMerger = 
@@ -157,6 +192,13 @@ public class QueryBuilder
                     new MergeableHaving(myQueryAttributes.getHavingCondition())
                     : new AggregationMerger()
             : null;
+        
+        if (isDistributed && (hasOrderBy || hasLimit)) {
+            queryMerger = 
+                new OrderedResultMerger(isAggregated ? queryMerger : null,
+                                        orderByCriterion,
+                                        myQueryAttributes.getLimit());
+        }
                     
         return new Pair<>(new QueryAdaptor(operator), queryMerger);
     }
@@ -22,6 +22,7 @@ package org.hit.db.sql.operators;
 
 import java.io.Externalizable;
 import java.util.Collection;
+import java.util.Iterator;
 
 import org.hit.db.model.Database;
 import org.hit.db.model.Row;
@@ -38,6 +39,14 @@ public interface QueryOperator extends Externalizable
     /** Returns the result of query */
     public Collection<Row> getResult(Database database);
     
+    /** 
+     * Returns an iterator over the result of query. The rows are pulled 
+     * through the operators as the iterator advances, so that only the 
+     * state of the operators is held in memory and not the intermediate
+     * results.
+     */
+    public Iterator<Row> open(Database database);
+    
     /** Sets the new range whose data is to be queried */
     <K extends Comparable<K>> void updateRange(Range<K> newRange);
     
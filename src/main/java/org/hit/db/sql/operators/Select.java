@@ -23,13 +23,16 @@ package org.hit.db.sql.operators;
 import java.io.IOException;
 import java.io.ObjectInput;
 import java.io.ObjectOutput;
-import java.util.Collection;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 
+import org.hit.db.model.Database;
 import org.hit.db.model.Row;
 
-import com.google.common.collect.Lists;
+import com.google.common.collect.Iterators;
 
 /**
  * Extends <Code>Decorator</code> to support aggregation on top of 
@@ -67,52 +70,110 @@ public class Select extends Decorator
      * {@inheritDoc}
      */
     @Override
-    protected Collection<Row>
-        doPerformOperation(Collection<Row> toBeOperatedCollection)
+    public Iterator<Row> open(Database database)
     {
-        // A special handling for select * and select count(*) cases.
-        AggregationID aggregationID = 
-            mySelectColumns.get(ColumnNameUtil.ALL_COLUMNS);
-        // Aggregation can only be cnt.
-        if (aggregationID != null) {
-            
+        // The aggregates over a table scan are accumulated from the 
+        // batches of the rows, over the vectors of the aggregated columns.
+        if (getDecoratedOperator() instanceof Where) {
+            AggregationID countAll = 
+                mySelectColumns.get(ColumnNameUtil.ALL_COLUMNS);
+            boolean hasAggregation = 
+                countAll != null
+                || (   !mySelectColumns.containsKey(ColumnNameUtil.ALL_COLUMNS)
+                    && mySelectColumns.values().iterator().next() != null);
+            if (hasAggregation) {
+                List<String> columns = new ArrayList<>();
+                if (countAll == null) {
+                    for (Map.Entry<String, AggregationID> selectedColumn : 
+                             mySelectColumns.entrySet())
+                    {
+                        if (selectedColumn.getValue() != AggregationID.CNT) {
+                            columns.add(selectedColumn.getKey());
+                        }
+                    }
+                }
+                Where where = (Where) getDecoratedOperator();
+                return Iterators.<Row>singletonIterator(
+                    aggregate(where.openBatches(database, columns), countAll));
+            }
+        }
+        return super.open(database);
+    }
+    
+    private AggregationResult aggregate(Iterator<ColumnBatch> batches,
+                                        AggregationID         countAll)
+    {
+        if (countAll != null) {
+            int count = 0;
+            while (batches.hasNext()) {
+                count += batches.next().getSelectedCount();
+            }
             AggregationResult result = 
                 new AggregationResult(
                     new SelectAggregateKey(ColumnNameUtil.ALL_COLUMNS_SYMBOLIC),
-                    toBeOperatedCollection.size());
-            
+                    count);
             result.setAggregate(ColumnNameUtil.ALL_COLUMNS_SYMBOLIC,
-                                new GroupValue(aggregationID));
-            return Lists.<Row>newArrayList(result);
+                                new GroupValue(countAll));
+            return result;
+        }
+        
+        List<Aggregator> aggregators = new ArrayList<>();
+        List<GroupValue> groupValues = new ArrayList<>();
+        for (Map.Entry<String, AggregationID> selectedColumn : 
+                 mySelectColumns.entrySet())
+        {
+            aggregators.add(new Aggregator(selectedColumn.getValue(), 
+                                           selectedColumn.getKey()));
+            groupValues.add(new GroupValue(selectedColumn.getValue()));
+        }
+        
+        int count = 0;
+        while (batches.hasNext()) {
+            ColumnBatch batch = batches.next();
+            count += batch.getSelectedCount();
+            for (int i = 0; i < aggregators.size(); i++) {
+                aggregators.get(i).accumulate(groupValues.get(i), batch);
+            }
+        }
+        
+        AggregationResult result = 
+            new AggregationResult(new SelectAggregateKey(myTableName), count);
+        for (int i = 0; i < aggregators.size(); i++) {
+            result.setAggregate(aggregators.get(i).getColumnName(), 
+                                groupValues.get(i));
         }
-        else if (mySelectColumns.containsKey(ColumnNameUtil.ALL_COLUMNS)) {
-            return toBeOperatedCollection;
+        return result;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected Iterator<Row>
+        doPerformOperation(Iterator<Row> toBeOperatedRows)
+    {
+        // A special handling for select * and select count(*) cases.
+        AggregationID aggregationID = 
+            mySelectColumns.get(ColumnNameUtil.ALL_COLUMNS);
+        // The aggregation of all the columns can only be cnt.
+        if (   aggregationID == null
+            && mySelectColumns.containsKey(ColumnNameUtil.ALL_COLUMNS))
+        {
+            return toBeOperatedRows;
         }
         
         boolean hasAggregation = 
-            mySelectColumns.values().iterator().next() != null;
+            aggregationID != null
+            || mySelectColumns.values().iterator().next() != null;
         
         if (hasAggregation) {
-            AggregationResult result = 
-                new AggregationResult(
-                    new SelectAggregateKey(myTableName),
-                    toBeOperatedCollection.size());
-            
-            for (Map.Entry<String, AggregationID> selectedColumn : 
-                     mySelectColumns.entrySet())
-            {
-                Aggregator aggregator = 
-                    new Aggregator(
-                        selectedColumn.getValue(), selectedColumn.getKey());
-                
-                result.setAggregate(selectedColumn.getKey(),
-                                    aggregator.apply(toBeOperatedCollection));
-
-            }
-            return Lists.<Row>newArrayList(result);
+            // The rows of the other operators are aggregated in batches as
+            // well, the same way as the table scans.
+            return Iterators.<Row>singletonIterator(
+                aggregate(ColumnBatch.batch(toBeOperatedRows), aggregationID));
         }
         else {
-            return toBeOperatedCollection;
+            return toBeOperatedRows;
         }
     }
     
@@ -0,0 +1,157 @@
+/*
+    Hit is a high speed transactional database for handling millions
+    of updates with comfort and ease.
+
+    Copyright (C) 2013  Balraja Subbiah
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package org.hit.db.sql.operators;
+
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import org.hit.db.model.Row;
+import org.hit.util.Range;
+
+/**
+ * Defines the contract for the query operator that orders the rows as
+ * per the order by clause. When the number of rows is limited, only the
+ * top k rows are retained in a heap instead of buffering all the rows.
+ *
+ * @author Balraja Subbiah
+ */
+public class Sort extends Decorator
+{
+    private LinkedHashMap<String, Boolean> myOrderByCriterion;
+
+    private int myLimit;
+
+    private transient OrderByComparator myComparator;
+
+    /**
+     * CTOR
+     */
+    public Sort()
+    {
+        myOrderByCriterion = null;
+        myLimit = Integer.MAX_VALUE;
+        myComparator = null;
+    }
+
+    /**
+     * CTOR
+     */
+    public Sort(QueryOperator        operator,
+                Map<String, Boolean> orderByCriterion,
+                int                  limit)
+    {
+        super(operator);
+        myOrderByCriterion = new LinkedHashMap<>(orderByCriterion);
+        myLimit = limit;
+        myComparator = new OrderByComparator(myOrderByCriterion);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected Iterator<Row>
+        doPerformOperation(Iterator<Row> toBeOperatedRows)
+    {
+        if (myLimit == Integer.MAX_VALUE) {
+            List<Row> result = new ArrayList<>();
+            while (toBeOperatedRows.hasNext()) {
+                result.add(toBeOperatedRows.next());
+            }
+            Collections.sort(result, myComparator);
+            return result.iterator();
+        }
+
+        // The heap is ordered in the reverse, so that its head is the
+        // row to be dropped when a row that's ordered earlier is seen.
+        PriorityQueue<Row> topRows =
+            new PriorityQueue<>(Math.max(1, Math.min(myLimit, 1024)),
+                                Collections.reverseOrder(myComparator));
+        while (toBeOperatedRows.hasNext()) {
+            Row row = toBeOperatedRows.next();
+            if (topRows.size() < myLimit) {
+                topRows.offer(row);
+            }
+            else if (   myLimit > 0
+                     && myComparator.compare(row, topRows.peek()) < 0)
+            {
+                topRows.poll();
+                topRows.offer(row);
+            }
+        }
+        List<Row> result = new ArrayList<>(topRows);
+        Collections.sort(result, myComparator);
+        return result.iterator();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <K extends Comparable<K>> void updateRange(Range<K> newRange)
+    {
+        getDecoratedOperator().updateRange(newRange);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException
+    {
+        super.writeExternal(out);
+        out.writeObject(myOrderByCriterion);
+        out.writeInt(myLimit);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @SuppressWarnings("unchecked")
+    @Override
+    public void readExternal(ObjectInput in)
+        throws IOException, ClassNotFoundException
+    {
+        super.readExternal(in);
+        myOrderByCriterion = (LinkedHashMap<String, Boolean>) in.readObject();
+        myLimit = in.readInt();
+        myComparator = new OrderByComparator(myOrderByCriterion);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public QueryOperator cloneOperator()
+    {
+        return new Sort(getDecoratedOperator().cloneOperator(),
+                        myOrderByCriterion,
+                        myLimit);
+    }
+}
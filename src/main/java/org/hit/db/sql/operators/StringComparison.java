@@ -25,6 +25,7 @@ import java.io.ObjectInput;
 import java.io.ObjectOutput;
 import java.util.regex.Pattern;
 
+import org.hit.db.model.ColumnarProjection.ColumnType;
 import org.hit.db.model.Row;
 import org.hit.util.Range;
 
@@ -36,6 +37,8 @@ import org.hit.util.Range;
  */
 public class StringComparison implements Condition
 {
+    private static final String REGEX_META_CHARACTERS = "\\[](){}.*+?^$|";
+    
     private String[] myColumnNames;
     
     private Pattern myPattern;
@@ -55,7 +58,7 @@ public class StringComparison implements Condition
     public StringComparison(String columnName, String regex)
     {
         myColumnNames = ColumnNameUtil.nestedColumnNames(columnName);
-        myPattern = Pattern.compile(regex);
+        myPattern = Pattern.compile(unquote(regex));
     }
     
     /**
@@ -68,17 +71,93 @@ public class StringComparison implements Condition
         myPattern = pattern;
     }
 
+    /**
+     * Strips the quotes surrounding a string literal in the query.
+     */
+    private static String unquote(String regex)
+    {
+        if (   regex.length() >= 2
+            && (regex.charAt(0) == '\'' || regex.charAt(0) == '"')
+            && regex.charAt(regex.length() - 1) == regex.charAt(0))
+        {
+            return regex.substring(1, regex.length() - 1);
+        }
+        return regex;
+    }
+    
+    /**
+     * Returns the value of columnNames
+     */
+    public String[] getColumnNames()
+    {
+        return myColumnNames;
+    }
+    
+    /**
+     * Returns the string matched by this comparison if the pattern doesn't
+     * use any of the regular expression constructs, null otherwise.
+     */
+    public String getLiteral()
+    {
+        String pattern = myPattern.pattern();
+        for (int i = 0; i < pattern.length(); i++) {
+            if (REGEX_META_CHARACTERS.indexOf(pattern.charAt(i)) >= 0) {
+                return null;
+            }
+        }
+        return pattern;
+    }
+
     /**
      * {@inheritDoc}
      */
     @Override
     public boolean isValid(Row record)
     {
-        Object fieldValue = ColumnNameUtil.getValue(record, myColumnNames);
+        return matches(ColumnNameUtil.getValue(record, myColumnNames));
+    }
+    
+    /**
+     * Returns true if the given value of the column matches the pattern.
+     */
+    public boolean matches(Object fieldValue)
+    {
         return fieldValue != null ? myPattern.matcher(fieldValue.toString())
                                              .matches()
                                   : false;
     }
+    
+    /**
+     * Retains the rows of the batch that match the pattern. The pattern 
+     * is matched once for each distinct value of a dictionary encoded 
+     * column, otherwise once for each selected row.
+     */
+    public void filter(ColumnBatch batch)
+    {
+        ColumnVector column = 
+            batch.getColumn(myColumnNames, new ColumnAccessor(myColumnNames));
+        if (column == null || column.getType() != ColumnType.STRING) {
+            batch.retain(this);
+            return;
+        }
+        
+        String[] dictionary = column.getDictionary();
+        boolean[] matches = new boolean[dictionary.length];
+        for (int code = 0; code < dictionary.length; code++) {
+            matches[code] = matches(dictionary[code]);
+        }
+        int[] codes = column.getCodes();
+        int[] selection = batch.getSelection();
+        int count = batch.getSelectedCount();
+        int retained = 0;
+        for (int i = 0; i < count; i++) {
+            int position = selection[i];
+            if (codes[position] >= 0 && matches[codes[position]]) {
+                selection[retained++] = position;
+            }
+        }
+        batch.setSelectedCount(retained);
+    }
 
     /**
      * {@inheritDoc}
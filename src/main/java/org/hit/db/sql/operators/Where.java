@@ -23,10 +23,13 @@ package org.hit.db.sql.operators;
 import java.io.IOException;
 import java.io.ObjectInput;
 import java.io.ObjectOutput;
-import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Iterator;
 
+import org.hit.db.model.ColumnarProjection;
+import org.hit.db.model.ColumnarProjection.ColumnType;
+import org.hit.db.model.ColumnarTable;
 import org.hit.db.model.Database;
 import org.hit.db.model.Persistable;
 import org.hit.db.model.Predicate;
@@ -35,11 +38,15 @@ import org.hit.db.model.Table;
 import org.hit.util.Range;
 
 import com.google.common.base.Function;
-import com.google.common.collect.Collections2;
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.Iterators;
+import com.google.common.collect.Lists;
 
 /**
  * Defines the simple select operation that performs a table scan 
- * and filters results based on the predicate.
+ * and filters results based on the predicate. The matching rows are
+ * streamed from the table as they're pulled by the operators on top,
+ * either one at a time or in batches of column vectors.
  * 
  * @author Balraja Subbiah
  */
@@ -72,6 +79,15 @@ public class Where implements QueryOperator
      * {@inheritDoc}
      */
     public Collection<Row> getResult(Database database)
+    {
+        return Lists.newArrayList(open(database));
+    }
+    
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Iterator<Row> open(Database database)
     {
         Table<? extends Comparable<?>,
               ? extends Persistable<?>> table = 
@@ -88,17 +104,180 @@ public class Where implements QueryOperator
                                 return true;
                             }
                         };
-            return new ArrayList<Row>(Collections2.transform(
-                 table.findMatching(predicate),
+            // Look up the candidate rows from a secondary index if the
+            // condition is on an indexed column.
+            IndexProbe probe = 
+                IndexProbe.makeProbe(myFilteringCondition, table.getSchema());
+            Iterator<? extends Persistable<?>> matchingRows =
+                probe != null ? table.findMatching(predicate,
+                                                   probe.getColumnName(),
+                                                   probe.getStart(),
+                                                   probe.getEnd())
+                                     .iterator()
+                              : table.iterateMatching(predicate);
+            return Iterators.transform(
+                 matchingRows,
                  new Function<Persistable<?>, Row>() 
                  {
                      public Row apply(Persistable<?> persistable) {
                          return (Row) persistable;
                      }
-                 }));
+                 });
+        }
+        else {
+            return Collections.<Row>emptyIterator();
+        }
+    }
+    
+    /**
+     * Returns an iterator over the batches of the matching rows, from 
+     * which the values of the given numeric columns are to be looked up. 
+     * The batches are sliced from the columnar projection of the table 
+     * and filtered over its vectors, when the table maintains a projection
+     * holding those columns and the columns of the condition. Otherwise 
+     * they're filled with the rows matched by the table scan.
+     */
+    public Iterator<ColumnBatch> openBatches(Database           database,
+                                             Collection<String> columns)
+    {
+        Table<? extends Comparable<?>,
+              ? extends Persistable<?>> table = 
+                  database.lookUpTable(myTableName);
+        final ColumnarProjection projection =
+            table instanceof ColumnarTable ?
+                ((ColumnarTable) table).getColumnarProjection()
+                : null;
+        
+        if (projection == null || !canProject(columns, projection)) {
+            return ColumnBatch.batch(open(database));
+        }
+        
+        return new AbstractIterator<ColumnBatch>() {
+            private int myStart = 0;
+            
+            @Override
+            protected ColumnBatch computeNext()
+            {
+                if (myStart >= projection.getRowCount()) {
+                    return endOfData();
+                }
+                ColumnBatch batch = 
+                    new ColumnBatch(
+                        projection,
+                        myStart,
+                        Math.min(ColumnBatch.BATCH_SIZE, 
+                                 projection.getRowCount() - myStart));
+                myStart += batch.getSize();
+                if (myFilteringCondition != null) {
+                    filter(myFilteringCondition, batch);
+                }
+                return batch;
+            }
+        };
+    }
+    
+    /**
+     * Returns true if the given columns are numeric columns of the 
+     * projection and the condition can be evaluated over its vectors.
+     */
+    private boolean canProject(Collection<String>  columns,
+                               ColumnarProjection projection)
+    {
+        for (String column : columns) {
+            ColumnType type = projection.getColumnType(column);
+            if (type == null || type == ColumnType.STRING) {
+                return false;
+            }
+        }
+        return    myFilteringCondition == null
+               || canFilter(myFilteringCondition, projection);
+    }
+    
+    private static boolean canFilter(Condition          condition,
+                                     ColumnarProjection projection)
+    {
+        if (condition instanceof ConjugateCondition) {
+            for (Condition child :
+                    ((ConjugateCondition) condition).getConditions())
+            {
+                if (!canFilter(child, projection)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        else if (condition instanceof NumericComparison) {
+            String[] columnNames = 
+                ((NumericComparison) condition).getColumnNames();
+            return    columnNames.length == 1
+                   && projection.getColumnType(columnNames[0]) != null;
+        }
+        else if (condition instanceof StringComparison) {
+            String[] columnNames = 
+                ((StringComparison) condition).getColumnNames();
+            return    columnNames.length == 1
+                   && projection.getColumnType(columnNames[0]) 
+                          == ColumnType.STRING;
+        }
+        else {
+            return false;
+        }
+    }
+    
+    /**
+     * Retains the selected rows of the batch that satisfy the condition.
+     * The comparisons are evaluated by their kernels over the vectors of
+     * the batch, narrowing down the selection for each part of a 
+     * conjunction, while the other conditions are evaluated per row.
+     */
+    public static void filter(Condition condition, ColumnBatch batch)
+    {
+        if (condition instanceof ConjugateCondition) {
+            ConjugateCondition conjugate = (ConjugateCondition) condition;
+            if (conjugate.getConjunctive() 
+                    == ConjugateCondition.Conjunctive.AND) 
+            {
+                for (Condition child : conjugate.getConditions()) {
+                    if (batch.getSelectedCount() == 0) {
+                        return;
+                    }
+                    filter(child, batch);
+                }
+                return;
+            }
+            
+            // Each part of a disjunction is evaluated over the rows that
+            // are selected to begin with and the union of the rows 
+            // satisfying them is retained in their original order.
+            int[] selection = batch.getSelection();
+            int count = batch.getSelectedCount();
+            int[] candidates = new int[count];
+            System.arraycopy(selection, 0, candidates, 0, count);
+            boolean[] matched = new boolean[batch.getSize()];
+            for (Condition child : conjugate.getConditions()) {
+                System.arraycopy(candidates, 0, selection, 0, count);
+                batch.setSelectedCount(count);
+                filter(child, batch);
+                for (int i = 0; i < batch.getSelectedCount(); i++) {
+                    matched[selection[i]] = true;
+                }
+            }
+            int retained = 0;
+            for (int position : candidates) {
+                if (matched[position]) {
+                    selection[retained++] = position;
+                }
+            }
+            batch.setSelectedCount(retained);
+        }
+        else if (condition instanceof NumericComparison) {
+            ((NumericComparison) condition).filter(batch);
+        }
+        else if (condition instanceof StringComparison) {
+            ((StringComparison) condition).filter(batch);
         }
         else {
-            return Collections.emptyList();
+            batch.retain(condition);
         }
     }
 
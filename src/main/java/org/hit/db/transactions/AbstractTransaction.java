@@ -87,6 +87,15 @@ public abstract class AbstractTransaction implements Transaction
         return myStartTime;
     }
 
+    /**
+     * Returns the <code>DatabaseAdaptor</code> through which the transaction
+     * accesses the database.
+     */
+    protected DatabaseAdaptor getAdaptedDatabase()
+    {
+        return myAdaptedDatabase;
+    }
+
     /**
      * Returns the value of transactionID
      */
@@ -46,6 +46,8 @@ public class DatabaseAdaptor implements Database,Poolable
     
     private long                                 myTransactionId;
     
+    private boolean                              myIsSnapshotRead;
+    
     /**
      * CTOR
      */
@@ -64,9 +66,19 @@ public class DatabaseAdaptor implements Database,Poolable
         adaptor.myDatabase = database;
         adaptor.myTransactionTime = Transaction.CONST_NULL_TIME;
         adaptor.myTransactionId = transId;
+        adaptor.myIsSnapshotRead = false;
         return adaptor;
     }
     
+    /**
+     * Marks the adaptor to read the snapshot of the tables as of the 
+     * transaction time, without tracking the reads.
+     */
+    public void setSnapshotRead(boolean snapshotRead)
+    {
+        myIsSnapshotRead = snapshotRead;
+    }
+    
     /**
      * Commits the updates made on the database by the transaction.
      */
@@ -125,8 +137,11 @@ public class DatabaseAdaptor implements Database,Poolable
         
         if (cachedAdaptor == null) {
             TransactableTable<K, P> tt = myDatabase.lookUpTable(tableName);
-            cachedAdaptor =
-                TableAdaptor.<K, P>create(tt, myTransactionTime, myTransactionId);
+            cachedAdaptor = myIsSnapshotRead ?
+                TableAdaptor.<K, P>createSnapshot(
+                    tt, myTransactionTime, myTransactionId)
+                : TableAdaptor.<K, P>create(
+                    tt, myTransactionTime, myTransactionId);
             myCachedTables.put(tableName, cachedAdaptor);
         }
         return cachedAdaptor;
@@ -174,8 +189,15 @@ public class DatabaseAdaptor implements Database,Poolable
     @Override
     public void free()
     {
+        // The table adaptors are specific to the transaction and can't be 
+        // handed over to the next user of this adaptor.
+        for (TableAdaptor<?, ?> adaptor : myCachedTables.values()) {
+            PooledObjects.freeInstance(adaptor);
+        }
+        myCachedTables.clear();
         myDatabase = null;
-        myTransactionId = Long.MIN_VALUE;
+        myIsSnapshotRead = false;
+        myTransactionTime = Long.MIN_VALUE;
         myTransactionId = Long.MIN_VALUE;
     }
 }
@@ -0,0 +1,509 @@
+/*
+    Hit is a high speed transactional database for handling millions
+    of updates with comfort and ease.
+
+    Copyright (C) 2013  Balraja Subbiah
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package org.hit.db.transactions;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.NotSerializableException;
+import java.io.ObjectInput;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutput;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.hit.db.model.Persistable;
+
+/**
+ * Stores the rows of a table outside the jvm's heap, so that the tables
+ * with millions of rows don't put pressure on the garbage collector. A row
+ * is laid out as its length followed by the fields written by its <code>
+ * writeExternal</code>, in slabs of direct <code>ByteBuffer</code>s that
+ * are allocated by bumping a pointer. A row is addressed by the index of
+ * its slab and its offset within that slab.
+ * <p>
+ * The fields written as objects are preceded by a tag for their type, the
+ * strings and the boxed primitives are written as such while the other
+ * <code>Serializable</code>s are written in their serialized form.
+ * <p>
+ * The rows are never modified once they're stored, hence they're decoded
+ * without any synchronization. A slab is reused once all the rows stored
+ * in it are released.
+ *
+ * @author Balraja Subbiah
+ */
+public class OffHeapRowStore
+{
+    /** The default size of a slab */
+    public static final int SLAB_SIZE = 1 << 20;
+
+    private static final int LENGTH_SIZE = 4;
+
+    private static final int OFFSET_BITS = 32;
+
+    private static final long OFFSET_MASK = 0xFFFFFFFFL;
+
+    private static final byte NULL_TAG = 0;
+
+    private static final byte STRING_TAG = 1;
+
+    private static final byte LONG_TAG = 2;
+
+    private static final byte INTEGER_TAG = 3;
+
+    private static final byte SHORT_TAG = 4;
+
+    private static final byte DOUBLE_TAG = 5;
+
+    private static final byte FLOAT_TAG = 6;
+
+    private static final byte BOOLEAN_TAG = 7;
+
+    private static final byte SERIALIZED_TAG = 8;
+
+    /**
+     * A chunk of the off heap memory to which the rows are appended.
+     */
+    private static class Slab
+    {
+        private final int myIndex;
+
+        private final ByteBuffer myBuffer;
+
+        /** The number of bytes held by the rows that're not released */
+        private final AtomicInteger myLiveBytes;
+
+        /** Guarded by the lock of the store */
+        private int myWritePosition;
+
+        /** Guarded by the lock of the store */
+        private boolean myIsFree;
+
+        /**
+         * CTOR
+         */
+        public Slab(int index, int size)
+        {
+            myIndex = index;
+            myBuffer = ByteBuffer.allocateDirect(size);
+            myLiveBytes = new AtomicInteger(0);
+            myWritePosition = 0;
+            myIsFree = false;
+        }
+    }
+
+    /**
+     * Extends <code>ByteArrayOutputStream</code> to expose the buffer, so
+     * that the encoded rows can be copied to the slabs as they are.
+     */
+    private static class RowBuffer extends ByteArrayOutputStream
+    {
+        /**
+         * Returns the buffer holding the bytes written so far.
+         */
+        public byte[] getBuffer()
+        {
+            return buf;
+        }
+    }
+
+    /**
+     * Writes the fields of a row. The rows are stored without any type
+     * information, hence the fields written as objects are tagged with
+     * their type.
+     */
+    private static class RowOutput extends DataOutputStream
+        implements ObjectOutput
+    {
+        /**
+         * CTOR
+         */
+        public RowOutput(RowBuffer buffer)
+        {
+            super(buffer);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void writeObject(Object obj) throws IOException
+        {
+            if (obj == null) {
+                writeByte(NULL_TAG);
+            }
+            else if (obj instanceof String) {
+                writeByte(STRING_TAG);
+                writeUTF((String) obj);
+            }
+            else if (obj instanceof Long) {
+                writeByte(LONG_TAG);
+                writeLong(((Long) obj).longValue());
+            }
+            else if (obj instanceof Integer) {
+                writeByte(INTEGER_TAG);
+                writeInt(((Integer) obj).intValue());
+            }
+            else if (obj instanceof Short) {
+                writeByte(SHORT_TAG);
+                writeShort(((Short) obj).shortValue());
+            }
+            else if (obj instanceof Double) {
+                writeByte(DOUBLE_TAG);
+                writeDouble(((Double) obj).doubleValue());
+            }
+            else if (obj instanceof Float) {
+                writeByte(FLOAT_TAG);
+                writeFloat(((Float) obj).floatValue());
+            }
+            else if (obj instanceof Boolean) {
+                writeByte(BOOLEAN_TAG);
+                writeBoolean(((Boolean) obj).booleanValue());
+            }
+            else if (obj instanceof Serializable) {
+                ByteArrayOutputStream serialized = new ByteArrayOutputStream();
+                try (ObjectOutputStream out = 
+                        new ObjectOutputStream(serialized))
+                {
+                    out.writeObject(obj);
+                }
+                writeByte(SERIALIZED_TAG);
+                writeInt(serialized.size());
+                serialized.writeTo(this);
+            }
+            else {
+                throw new NotSerializableException(obj.getClass().getName());
+            }
+        }
+    }
+
+    /**
+     * Reads the fields of a row from a slab.
+     */
+    private static class RowInput extends DataInputStream
+        implements ObjectInput
+    {
+        /**
+         * CTOR
+         */
+        public RowInput(ByteBuffer row)
+        {
+            super(new SlabInputStream(row));
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public Object readObject() throws IOException, ClassNotFoundException
+        {
+            byte tag = readByte();
+            switch (tag) {
+            case NULL_TAG:
+                return null;
+            case STRING_TAG:
+                return readUTF();
+            case LONG_TAG:
+                return Long.valueOf(readLong());
+            case INTEGER_TAG:
+                return Integer.valueOf(readInt());
+            case SHORT_TAG:
+                return Short.valueOf(readShort());
+            case DOUBLE_TAG:
+                return Double.valueOf(readDouble());
+            case FLOAT_TAG:
+                return Float.valueOf(readFloat());
+            case BOOLEAN_TAG:
+                return Boolean.valueOf(readBoolean());
+            case SERIALIZED_TAG:
+                byte[] serialized = new byte[readInt()];
+                readFully(serialized);
+                try (ObjectInputStream in = 
+                        new ObjectInputStream(
+                            new ByteArrayInputStream(serialized)))
+                {
+                    return in.readObject();
+                }
+            default:
+                throw new IOException("Unknown type of field " + tag);
+            }
+        }
+    }
+
+    /**
+     * Adapts the portion of a slab holding a row to an
+     * <code>InputStream</code>.
+     */
+    private static class SlabInputStream extends InputStream
+    {
+        private final ByteBuffer myRow;
+
+        /**
+         * CTOR
+         */
+        public SlabInputStream(ByteBuffer row)
+        {
+            myRow = row;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int read()
+        {
+            return myRow.hasRemaining() ? (myRow.get() & 0xff) : -1;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int read(byte[] b, int off, int len)
+        {
+            if (len == 0) {
+                return 0;
+            }
+            if (!myRow.hasRemaining()) {
+                return -1;
+            }
+            int count = Math.min(len, myRow.remaining());
+            myRow.get(b, off, count);
+            return count;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int available()
+        {
+            return myRow.remaining();
+        }
+    }
+
+    private final Class<? extends Persistable<?>> myPersistableClass;
+
+    private final int mySlabSize;
+
+    /** Guards the allocation of space from the slabs */
+    private final Object myLock;
+
+    /** The slabs indexed by their position, replaced when grown */
+    private volatile Slab[] mySlabs;
+
+    /** The slabs whose rows have all been released. */
+    private final Deque<Slab> myFreeSlabs;
+
+    private Slab myActiveSlab;
+
+    /**
+     * CTOR
+     */
+    public OffHeapRowStore(Class<? extends Persistable<?>> persistableClass)
+    {
+        this(persistableClass, SLAB_SIZE);
+    }
+
+    /**
+     * CTOR
+     */
+    public OffHeapRowStore(Class<? extends Persistable<?>> persistableClass,
+                           int                             slabSize)
+    {
+        if (!Externalizable.class.isAssignableFrom(persistableClass)) {
+            throw new IllegalArgumentException(
+                persistableClass.getName() + " has to be Externalizable"
+                + " for being stored off heap");
+        }
+        myPersistableClass = persistableClass;
+        mySlabSize = slabSize;
+        myLock = new Object();
+        mySlabs = new Slab[0];
+        myFreeSlabs = new ArrayDeque<>();
+        myActiveSlab = null;
+    }
+
+    /**
+     * Copies the given row to the off heap memory and returns its address.
+     *
+     * @throws IllegalArgumentException if the row can't be encoded.
+     */
+    public long store(Persistable<?> row)
+    {
+        RowBuffer encoded = new RowBuffer();
+        try {
+            RowOutput out = new RowOutput(encoded);
+            ((Externalizable) row).writeExternal(out);
+            out.flush();
+        }
+        catch (IOException e) {
+            throw new IllegalArgumentException(
+                "Unable to store " + row + " off heap", e);
+        }
+
+        int length = encoded.size();
+        int size = LENGTH_SIZE + length;
+        Slab slab;
+        int offset;
+        synchronized (myLock) {
+            if (   myActiveSlab == null
+                || myActiveSlab.myWritePosition + size
+                       > myActiveSlab.myBuffer.capacity())
+            {
+                retireActiveSlab();
+                myActiveSlab = newSlab(size);
+            }
+            slab = myActiveSlab;
+            offset = slab.myWritePosition;
+            slab.myWritePosition += size;
+            slab.myLiveBytes.addAndGet(size);
+        }
+
+        // The space is exclusively owned by this row, so it's written
+        // outside the lock.
+        ByteBuffer target = slab.myBuffer.duplicate();
+        target.position(offset);
+        target.putInt(length);
+        target.put(encoded.getBuffer(), 0, length);
+        return (((long) slab.myIndex) << OFFSET_BITS) | offset;
+    }
+
+    /**
+     * Decodes the row stored at the given address into a new instance. The
+     * instance isn't taken from the pool, as it's left to the garbage 
+     * collector once the caller is done with it.
+     *
+     * @throws IllegalStateException if the row can't be decoded.
+     */
+    public Persistable<?> read(long address)
+    {
+        ByteBuffer row = slice(address);
+        Persistable<?> persistable;
+        try {
+            persistable = myPersistableClass.newInstance();
+            ((Externalizable) persistable).readExternal(new RowInput(row));
+        }
+        catch (IOException | ClassNotFoundException
+               | InstantiationException | IllegalAccessException e)
+        {
+            throw new IllegalStateException(
+                "Unable to read the row at " + address, e);
+        }
+        return persistable;
+    }
+
+    /**
+     * Releases the space held by the row at the given address. The row
+     * shouldn't be read after it's released.
+     */
+    public void release(long address)
+    {
+        Slab slab = mySlabs[(int) (address >>> OFFSET_BITS)];
+        int offset = (int) (address & OFFSET_MASK);
+        int size = LENGTH_SIZE + slab.myBuffer.getInt(offset);
+        if (slab.myLiveBytes.addAndGet(-size) == 0) {
+            synchronized (myLock) {
+                if (slab != myActiveSlab) {
+                    freeSlab(slab);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the number of bytes allocated off heap for the rows.
+     */
+    public long getAllocatedBytes()
+    {
+        long allocated = 0L;
+        for (Slab slab : mySlabs) {
+            allocated += slab.myBuffer.capacity();
+        }
+        return allocated;
+    }
+
+    private ByteBuffer slice(long address)
+    {
+        Slab slab = mySlabs[(int) (address >>> OFFSET_BITS)];
+        int offset = (int) (address & OFFSET_MASK);
+        ByteBuffer row = slab.myBuffer.duplicate();
+        int length = row.getInt(offset);
+        row.limit(offset + LENGTH_SIZE + length);
+        row.position(offset + LENGTH_SIZE);
+        return row;
+    }
+
+    /**
+     * Returns a slab that can hold a row of the given size, reusing a
+     * free slab if there's one.
+     */
+    private Slab newSlab(int size)
+    {
+        if (size <= mySlabSize && !myFreeSlabs.isEmpty()) {
+            Slab slab = myFreeSlabs.poll();
+            slab.myWritePosition = 0;
+            slab.myIsFree = false;
+            return slab;
+        }
+
+        // The rows larger than a slab get a slab of their own.
+        Slab[] slabs = Arrays.copyOf(mySlabs, mySlabs.length + 1);
+        Slab slab = new Slab(slabs.length - 1, Math.max(mySlabSize, size));
+        slabs[slab.myIndex] = slab;
+        mySlabs = slabs;
+        return slab;
+    }
+
+    /**
+     * Frees the active slab if all its rows have been released already, as
+     * no subsequent release can free it.
+     */
+    private void retireActiveSlab()
+    {
+        if (myActiveSlab != null && myActiveSlab.myLiveBytes.get() == 0) {
+            freeSlab(myActiveSlab);
+        }
+        myActiveSlab = null;
+    }
+
+    private void freeSlab(Slab slab)
+    {
+        // The slab might be freed when it's retired and again when its
+        // last row is released.
+        if (   !slab.myIsFree
+            && slab.myLiveBytes.get() == 0
+            && slab.myBuffer.capacity() == mySlabSize)
+        {
+            slab.myIsFree = true;
+            myFreeSlabs.add(slab);
+        }
+    }
+}
@@ -145,7 +145,11 @@ public class PhasedTransactionExecutor<T>
         @Override
         public void execute()
         {
-            if (myTransaction.validate()) {
+            // The transaction has to abort if it depends on a transaction
+            // that has aborted.
+            if (   !Registry.isAbortCascaded(myTransaction.getTransactionID())
+                && myTransaction.validate()) 
+            {
                 myTransaction.commit();
             }
             else {
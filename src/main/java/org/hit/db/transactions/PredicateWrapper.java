@@ -38,6 +38,12 @@ public class PredicateWrapper<K extends Comparable<K>> implements Poolable
     private K         myStart;
 
     private K         myEnd;
+    
+    private String    myIndexedColumn;
+    
+    private Object    myIndexStart;
+    
+    private Object    myIndexEnd;
 
     /**
      * Method for initializing the predicate wrappers.
@@ -66,6 +72,23 @@ public class PredicateWrapper<K extends Comparable<K>> implements Poolable
         return wrapper;
     }
     
+    /**
+     * Factory method for creating an instance of <code>PredicateWrapper</code>
+     * for a query that's answered using the secondary index on a column.
+     */
+    public static <T extends Comparable<T>> PredicateWrapper<T> create(
+        Predicate predicate,
+        String    indexedColumn,
+        Object    indexStart,
+        Object    indexEnd)
+    {
+        PredicateWrapper<T> wrapper = create(predicate, null, null);
+        wrapper.myIndexedColumn = indexedColumn;
+        wrapper.myIndexStart = indexStart;
+        wrapper.myIndexEnd = indexEnd;
+        return wrapper;
+    }
+    
     /**
      * Returns the value of predicate
      */
@@ -94,6 +117,35 @@ public class PredicateWrapper<K extends Comparable<K>> implements Poolable
     {
         return myStart != null && myEnd != null;
     }
+    
+    /**
+     * Returns the value of indexedColumn
+     */
+    public String getIndexedColumn()
+    {
+        return myIndexedColumn;
+    }
+
+    /**
+     * Returns the value of indexStart
+     */
+    public Object getIndexStart()
+    {
+        return myIndexStart;
+    }
+
+    /**
+     * Returns the value of indexEnd
+     */
+    public Object getIndexEnd()
+    {
+        return myIndexEnd;
+    }
+    
+    public boolean isIndexQuery()
+    {
+        return myIndexedColumn != null;
+    }
 
     /**
      * {@inheritDoc}
@@ -108,5 +160,8 @@ public class PredicateWrapper<K extends Comparable<K>> implements Poolable
         myPredicate = null;
         myStart     = null;
         myEnd       = null;
+        myIndexedColumn = null;
+        myIndexStart    = null;
+        myIndexEnd      = null;
     }
 }
@@ -39,6 +39,10 @@ public class ReadTransaction extends ActiveTransaction
     private Query myQuery;
     
     private Object myResult;
+    
+    private boolean myIsSnapshotRead;
+    
+    private long mySnapshotTime;
 
     /**
      * Factory method for creating an instance of <code>ReadTransaction</code> 
@@ -54,6 +58,33 @@ public class ReadTransaction extends ActiveTransaction
         ActiveTransaction.initialize(rt, transactionId, database, true, clock);
         rt.myQuery = query;
         rt.myResult = null;
+        rt.myIsSnapshotRead = false;
+        rt.mySnapshotTime = Long.MIN_VALUE;
+        return rt;
+    }
+    
+    /**
+     * Factory method for creating an instance of <code>ReadTransaction
+     * </code> that reads the snapshot of the database as of the given 
+     * time. Such a transaction is neither validated nor tracked in the 
+     * <code>Registry</code>, hence the caller should ensure that all the
+     * transactions committing before the snapshot time have been applied
+     * to the database.
+     */
+    public static ReadTransaction createSnapshot(
+        long transactionId,
+        TransactableDatabase database,
+        Clock clock,
+        long snapshotTime,
+        Query query)
+    {
+        ReadTransaction rt = PooledObjects.getInstance(ReadTransaction.class);
+        ActiveTransaction.initialize(rt, transactionId, database, false, clock);
+        rt.getAdaptedDatabase().setSnapshotRead(true);
+        rt.myQuery = query;
+        rt.myResult = null;
+        rt.myIsSnapshotRead = true;
+        rt.mySnapshotTime = snapshotTime;
         return rt;
     }
     
@@ -81,6 +112,11 @@ public class ReadTransaction extends ActiveTransaction
     @Override
     protected boolean doValidation(DatabaseAdaptor adaptor)
     {
+        // The snapshot doesn't change, so there is nothing to validate.
+        if (myIsSnapshotRead) {
+            return true;
+        }
+        
         ReadTransactionValidator validator =
             ReadTransactionValidator.create(adaptor.getDatabase(),
                                             getEndTime(),
@@ -88,6 +124,40 @@ public class ReadTransaction extends ActiveTransaction
         return adaptor.validate(validator);
     }
 
+    /**
+     * Setter for the snapshotTime
+     */
+    public void setSnapshotTime(long snapshotTime)
+    {
+        mySnapshotTime = snapshotTime;
+    }
+    
+    /**
+     * Returns true if the transaction reads a snapshot of the database.
+     */
+    public boolean isSnapshotRead()
+    {
+        return myIsSnapshotRead;
+    }
+    
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected long makeStartTime()
+    {
+        return myIsSnapshotRead ? mySnapshotTime : super.makeStartTime();
+    }
+    
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected long makeEndTime()
+    {
+        return myIsSnapshotRead ? mySnapshotTime : super.makeEndTime();
+    }
+
     /**
      * Returns the value of result
      */
@@ -116,5 +186,7 @@ public class ReadTransaction extends ActiveTransaction
         myQuery = null;
         PoolUtils.free(myResult);
         myResult = null;
+        myIsSnapshotRead = false;
+        mySnapshotTime = Long.MIN_VALUE;
     }
 }
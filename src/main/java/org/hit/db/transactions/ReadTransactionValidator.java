@@ -118,7 +118,16 @@ public class ReadTransactionValidator implements TransactionValidator
                entry : trail.getPredicateToDataMap().entrySet())
         {
             Collection<Transactable<K,P>> newResult =
-                entry.getKey().isRangeQuery()?
+                entry.getKey().isIndexQuery() ?
+                    table.findMatching(
+                        entry.getKey().getPredicate(),
+                        entry.getKey().getIndexedColumn(),
+                        entry.getKey().getIndexStart(),
+                        entry.getKey().getIndexEnd(),
+                        myValidationTime,
+                        myTransactionId)
+                        
+                : entry.getKey().isRangeQuery()?
                     table.findMatching(
                         entry.getKey().getPredicate(),
                         entry.getKey().getStart(),
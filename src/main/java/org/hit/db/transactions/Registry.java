@@ -20,171 +20,290 @@
 
 package org.hit.db.transactions;
 
-import gnu.trove.map.TLongObjectMap;
-import gnu.trove.map.hash.TLongObjectHashMap;
 import gnu.trove.set.TLongSet;
 import gnu.trove.set.hash.TLongHashSet;
 
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
-import org.hit.concurrent.CloseableRWLock;
 import org.hit.util.LogFactory;
 
 /**
  * Defines the contract for a type that defines context of transactions.
+ * <p>
+ * The context of every transaction is kept in its own slot, so that the
+ * transactions don't contend with each other while updating their 
+ * contexts. The state of a transaction is looked up without any locking,
+ * as it's done for every version inspected by a transaction.
+ * <p>
+ * The dependencies are tracked as the commit dependencies in Hekaton. 
+ * Every transaction counts the transactions it's waiting on and remembers
+ * the transactions waiting on it. When a transaction finishes, only its 
+ * dependents are notified and those whose count drops to zero are woken 
+ * up. A transaction that has read the uncommitted changes of another has
+ * a commit dependency on it and the abort of the latter cascades to the 
+ * former. A transaction that is only ordered after another merely waits 
+ * for it to finish.
  * 
  * @author Balraja Subbiah
  */
 public final class Registry
 {
+    /**
+     * Captures the state of a transaction along with its commit 
+     * dependencies. The dependents and the waiting flag are guarded by the 
+     * slot's monitor.
+     */
+    private static final class TransactionSlot
+    {
+        private volatile TransactionState myState;
+        
+        private final TLongSet myDependentTransactions;
+        
+        private final TLongSet myOrderedTransactions;
+        
+        private final AtomicInteger myDependencyCount;
+        
+        private volatile boolean myIsAbortCascaded;
+        
+        private boolean myIsWaiting;
+        
+        private boolean myIsFinished;
+        
+        private boolean myIsAborted;
+        
+        /**
+         * CTOR
+         */
+        public TransactionSlot()
+        {
+            myState = null;
+            myDependentTransactions = new TLongHashSet();
+            myOrderedTransactions = new TLongHashSet();
+            myDependencyCount = new AtomicInteger(0);
+            myIsAbortCascaded = false;
+            myIsWaiting = false;
+            myIsFinished = false;
+            myIsAborted = false;
+        }
+    }
+    
     /** LOGGER */
     private static final Logger LOG =
         LogFactory.getInstance().getLogger(Registry.class);
         
-    private static CloseableRWLock ourLock = 
-         new CloseableRWLock(new ReentrantReadWriteLock(true));
-    
-    private static TLongObjectMap<TransactionState> ourStateMap = 
-        new TLongObjectHashMap<>();
-    
-    private static TLongObjectHashMap<TLongSet> ourDependentTransactions =
-        new TLongObjectHashMap<>();
-        
-    private static TLongObjectHashMap<TLongSet> ourPrecedentTransactions =
-        new TLongObjectHashMap<>();
+    private static final ConcurrentMap<Long, TransactionSlot> ourSlots = 
+        new ConcurrentHashMap<>();
     
     /**
      * Returns the current {@link TransactionState} for the given id.
      */
     public static TransactionState getState(long id)
     {
-        TransactionState result = TransactionState.UNKNOWN;
-        try (CloseableRWLock l = ourLock.openReadLock()) {
-            TransactionState existing = ourStateMap.get(id);
-            if (existing != null) {
-                result = existing;
-            }
-            return result;
-        }
+        TransactionSlot slot = ourSlots.get(Long.valueOf(id));
+        TransactionState state = slot != null ? slot.myState : null;
+        return state != null ? state : TransactionState.UNKNOWN;
     }
     
     /**
-     * Returns the current {@link TransactionState} for the given id.
+     * Updates the {@link TransactionState} of the given id. Nothing is 
+     * done if the transaction isn't registered or has already finished.
      */
     public static void updateTransactionState(long id, TransactionState state)
     {
-        try (CloseableRWLock l = ourLock.openWriteLock()) {
-            ourStateMap.put(id, state);
+        TransactionSlot slot = ourSlots.get(Long.valueOf(id));
+        if (slot != null) {
+            slot.myState = state;
         }
     }
     
     /**
-     * A helper method to add dependency between two transactions.
+     * Registers the transaction, so that the other transactions can be 
+     * made to depend on it even before it has started.
+     */
+    public static void registerTransaction(long id)
+    {
+        lookupSlot(id);
+    }
+    
+    /**
+     * A helper method to add a commit dependency of the transaction <code>
+     * to</code> on the transaction <code>from</code>. The former can't 
+     * commit until the latter has finished and aborts if the latter 
+     * aborts. Nothing is done if <code>from</code> has already finished, 
+     * except that an abort is cascaded to <code>to</code>, or if <code>
+     * to</code> isn't registered or has already finished.
      */
     public static void addDependency(long from, long to)
     {
-        if (LOG.isLoggable(Level.FINE)) {
-            LOG.fine("Dependency " + from + " -> " + to + " has been added");
+        addDependency(from, to, true);
+    }
+    
+    /**
+     * A helper method to make the transaction <code>to</code> wait for the
+     * transaction <code>from</code> to finish, irrespective of whether it
+     * commits or aborts.
+     */
+    public static void addOrderingDependency(long from, long to)
+    {
+        addDependency(from, to, false);
+    }
+    
+    private static void addDependency(long    from, 
+                                      long    to, 
+                                      boolean isCommitDependency)
+    {
+        TransactionSlot fromSlot = ourSlots.get(Long.valueOf(from));
+        TransactionSlot toSlot = ourSlots.get(Long.valueOf(to));
+        if (from == to || fromSlot == null || toSlot == null) {
+            return;
         }
         
-        try (CloseableRWLock l = ourLock.openWriteLock()) {
-            TLongSet dependentTransactions = 
-                ourDependentTransactions.get(from);
-            if (dependentTransactions == null) {
-                dependentTransactions = new TLongHashSet();
-                ourDependentTransactions.putIfAbsent(from, 
-                                                      dependentTransactions);
+        synchronized (fromSlot) {
+            TLongSet dependents = 
+                isCommitDependency ? fromSlot.myDependentTransactions
+                                   : fromSlot.myOrderedTransactions;
+            if (fromSlot.myIsFinished) {
+                if (fromSlot.myIsAborted && isCommitDependency) {
+                    toSlot.myIsAbortCascaded = true;
+                }
             }
-            dependentTransactions.add(to);
-            
-            TLongSet dependeningTransactions = 
-                ourPrecedentTransactions.get(to);
-            if (dependeningTransactions == null) {
-                dependeningTransactions = new TLongHashSet();
-                ourPrecedentTransactions.putIfAbsent(to, 
-                                                     dependeningTransactions);
+            else if (dependents.add(to)) {
+                toSlot.myDependencyCount.incrementAndGet();
+                if (LOG.isLoggable(Level.FINE)) {
+                    LOG.fine("Dependency " + from + " -> " + to 
+                             + " has been added");
+                }
             }
-            dependeningTransactions.add(from);
         }
     }
     
     /**
-     * A helper method to add dependency between the given transaction to
-     * all other transactions.
+     * Checks whether the transaction has to wait for the transactions it
+     * depends on. If so the transaction is marked as waiting and will be 
+     * returned by {@link #finishTransaction(long, boolean)} once all of 
+     * them are done, or once one of them aborts.
+     * 
+     * @return True if the transaction has to wait, false if it can proceed
+     *         right away.
      */
-    public static void addDependencyToAll(long to)
+    public static boolean awaitDependencies(long id)
     {
-        try (CloseableRWLock l = ourLock.openWriteLock()) {
-            // We are repeating the code here but that's ok.
-            for (long from : ourStateMap.keys()) {
-                TLongSet dependentTransactions = 
-                    ourDependentTransactions.get(from);
-                if (dependentTransactions == null) {
-                    dependentTransactions = new TLongHashSet();
-                    ourDependentTransactions.putIfAbsent(from, 
-                                                         dependentTransactions);
-                }
-                dependentTransactions.add(to);
-                
-                TLongSet dependeningTransactions = 
-                    ourPrecedentTransactions.get(from);
-                if (dependeningTransactions == null) {
-                    dependeningTransactions = new TLongHashSet();
-                    ourPrecedentTransactions.putIfAbsent(to, 
-                                                         dependeningTransactions);
-                }
-                dependeningTransactions.add(from);
-                if (LOG.isLoggable(Level.FINE)) {
-                    LOG.fine("Dependency " + from + " -> " + to + " has been added");
-                }
+        TransactionSlot slot = ourSlots.get(Long.valueOf(id));
+        if (slot == null) {
+            return false;
+        }
+        synchronized (slot) {
+            if (   slot.myDependencyCount.get() > 0
+                && !slot.myIsAbortCascaded) 
+            {
+                slot.myIsWaiting = true;
+                return true;
             }
-            
+            return false;
         }
     }
     
     /**
-     * A helper method to update dependency graphs when a transaction is 
-     * done. 
+     * Returns true if one of the transactions on which the given 
+     * transaction depends upon has aborted, in which case the given 
+     * transaction has to be aborted as well.
      */
-    public static TLongSet freeDependentTransactionsOn(long from)
+    public static boolean isAbortCascaded(long id)
+    {
+        TransactionSlot slot = ourSlots.get(Long.valueOf(id));
+        return slot != null && slot.myIsAbortCascaded;
+    }
+    
+    /**
+     * Removes the transaction from the registry and releases the 
+     * transactions depending on it. If the transaction has aborted, the 
+     * abort is cascaded to its dependents.
+     * 
+     * @return The waiting transactions that can proceed now, either 
+     *         because they no longer depend on any transaction or because
+     *         they have to abort.
+     */
+    public static TLongSet finishTransaction(long id, boolean committed)
     {
-        
         TLongSet result = new TLongHashSet();
-        try (CloseableRWLock l = ourLock.openWriteLock()) {
-            
-            ourStateMap.remove(from);
-            ourPrecedentTransactions.remove(from);
-            
-            TLongSet dependentTransactions = 
-                ourDependentTransactions.remove(from);
-            
-            if (dependentTransactions != null) {
-                for (long dependentTrn : dependentTransactions.toArray()) {
-                    TLongSet dependeningTransactions = 
-                        ourPrecedentTransactions.get(from);
-                    if (dependeningTransactions != null) {
-                        dependeningTransactions.remove(from);
-                        if (dependeningTransactions.isEmpty()) {
-                            result.add(dependentTrn);
-                        }
-                    }
-                }
-            }
-            
+        TransactionSlot slot = ourSlots.remove(Long.valueOf(id));
+        if (slot == null) {
             return result;
         }
+        
+        long[] dependentTransactions;
+        long[] orderedTransactions;
+        synchronized (slot) {
+            slot.myIsFinished = true;
+            slot.myIsAborted = !committed;
+            dependentTransactions = slot.myDependentTransactions.toArray();
+            orderedTransactions = slot.myOrderedTransactions.toArray();
+            slot.myDependentTransactions.clear();
+            slot.myOrderedTransactions.clear();
+        }
+        
+        for (long dependentTrn : dependentTransactions) {
+            release(dependentTrn, !committed, result);
+        }
+        for (long orderedTrn : orderedTransactions) {
+            release(orderedTrn, false, result);
+        }
+        return result;
     }
     
-    /** 
-     * Returns the list of transactions on which a given transaction 
-     * is dependent upon.
+    /**
+     * Releases one of the dependencies of the given transaction and adds
+     * the transaction to <code>woken</code> if it's waiting and can 
+     * proceed now.
      */
-    public static TLongSet getPrecedencyFor(long transactionID)
+    private static void release(long     id, 
+                                boolean  cascadeAbort, 
+                                TLongSet woken)
     {
-        try (CloseableRWLock l = ourLock.openReadLock()) {
-            return ourPrecedentTransactions.get(transactionID);
+        TransactionSlot slot = ourSlots.get(Long.valueOf(id));
+        if (slot == null) {
+            return;
         }
+        
+        synchronized (slot) {
+            if (cascadeAbort) {
+                slot.myIsAbortCascaded = true;
+            }
+            int dependencyCount = slot.myDependencyCount.decrementAndGet();
+            if (   slot.myIsWaiting 
+                && (dependencyCount == 0 || slot.myIsAbortCascaded))
+            {
+                slot.myIsWaiting = false;
+                woken.add(id);
+            }
+        }
+    }
+    
+    /**
+     * Returns the slot of the given transaction, creating one if 
+     * necessary. Only the registration creates a slot, as the slot of a 
+     * finished transaction shouldn't be brought back by a late update.
+     */
+    private static TransactionSlot lookupSlot(long id)
+    {
+        Long key = Long.valueOf(id);
+        TransactionSlot slot = ourSlots.get(key);
+        if (slot == null) {
+            TransactionSlot newSlot = new TransactionSlot();
+            slot = ourSlots.putIfAbsent(key, newSlot);
+            if (slot == null) {
+                slot = newSlot;
+            }
+        }
+        return slot;
+    }
+    
+    /** Private CTOR to avoid initialization */
+    private Registry()
+    {
     }
 }
@@ -54,9 +54,16 @@ public class ReplicationExecutor implements Runnable, Poolable
     @Override
     public void run()
     {
+        Registry.registerTransaction(
+            myReplicatedWriteTransaction.getTransactionID());
         myReplicatedWriteTransaction.init();
         myReplicatedWriteTransaction.execute();
+        // The changes have been validated where they were committed, the
+        // validation stamps them with the commit time that's replicated.
+        myReplicatedWriteTransaction.validate();
         myReplicatedWriteTransaction.commit();
+        Registry.finishTransaction(
+            myReplicatedWriteTransaction.getTransactionID(), true);
     }
 
     /**
@@ -23,14 +23,22 @@ package org.hit.db.transactions;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Iterator;
 
+import org.hit.db.model.ColumnarProjection;
+import org.hit.db.model.ColumnarTable;
 import org.hit.db.model.HitTableSchema;
+import org.hit.db.model.ImmutablePersistable;
 import org.hit.db.model.Persistable;
 import org.hit.db.model.Predicate;
 import org.hit.db.model.Table;
 import org.hit.pool.Poolable;
 import org.hit.pool.PooledObjects;
 
+import com.google.common.base.Function;
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.Iterators;
+
 /**
  * Defines the contract for adaptor that adapts {@link Table} to read/write data
  * from {@link TransactableTable}. In that process it keeps track of the version
@@ -39,9 +47,13 @@ import org.hit.pool.PooledObjects;
  * @author Balraja Subbiah
  */
 public class TableAdaptor<K extends Comparable<K>, P extends Persistable<K>>
-    implements Table<K, P>, Poolable
+    implements Table<K, P>, ColumnarTable, Poolable
 {
     
+    private boolean                     myIsSnapshotRead;
+    
+    private boolean                     myHasImmutableRows;
+    
     private long                        myStartTime;
 
     private TransactableTable<K, P>     myTable;
@@ -69,6 +81,27 @@ public class TableAdaptor<K extends Comparable<K>, P extends Persistable<K>>
         adaptor.myTableTrail = TransactionTableTrail.<PK, T>create(
                                    table.getSchema().getTableName());
         adaptor.myTransactionID = transactionID;
+        adaptor.myIsSnapshotRead = false;
+        adaptor.myHasImmutableRows = 
+            ImmutablePersistable.class.isAssignableFrom(
+                table.getSchema().getPersistableClass());
+        return adaptor;
+    }
+    
+    /**
+     * An factory method for initializing the pooled object for reading
+     * the snapshot of the table as of the given time. The reads aren't
+     * tracked as they needn't be validated and the updates are rejected.
+     */
+    public static <PK extends Comparable<PK>, T extends Persistable<PK>>
+         TableAdaptor<PK,T> createSnapshot(
+             TransactableTable<PK,T> table,
+             long snapshotTime,
+             long transactionID)
+    {
+        TableAdaptor<PK, T> adaptor = 
+            TableAdaptor.<PK, T>create(table, snapshotTime, transactionID);
+        adaptor.myIsSnapshotRead = true;
         return adaptor;
     }
 
@@ -79,19 +112,21 @@ public class TableAdaptor<K extends Comparable<K>, P extends Persistable<K>>
      */
     public void commit(long commitTime)
     {
-        // Close the old version.
+        // Close the old version. It's left in the table for the readers
+        // that started before the commit time and is reclaimed by the
+        // garbage collector once no transaction can see it.
         for (Transactable<K,P> transactable : myTableTrail.getWriteSet()) {
-            if (myTableTrail.getDeleteSet().contains(
-                    transactable.getPersistable().primaryKey()))
-            {
-                myTable.deleteVersion(transactable);
-            }
-            PooledObjects.freeInstance(transactable);
+            transactable.setEnd(commitTime);
         }
         // Update the start time of the new version to the commit time.
         for (Transactable<K,P> transactable : myTableTrail.getNewWriteSet()) {
             transactable.setStart(commitTime);
         }
+        if (   !myTableTrail.getWriteSet().isEmpty()
+            || !myTableTrail.getNewWriteSet().isEmpty())
+        {
+            myTable.recordCommit();
+        }
     }
     
     /**
@@ -121,26 +156,22 @@ public class TableAdaptor<K extends Comparable<K>, P extends Persistable<K>>
     /**
      * {@inheritDoc}
      */
-    @SuppressWarnings("unchecked")
     @Override
     public Collection<P> findMatching(Predicate predicate)
     {
         Collection<Transactable<K,P>> result =
-            myTable.findMatching(predicate, myStartTime, myTransactionID);
-        myTableTrail.getPredicateToDataMap().put(
-            PredicateWrapper.<K>create(predicate),
-            result);
-        Collection<P> actualResult = new ArrayList<>(result.size());
-        for (Transactable<K,P> t : result) {
-            actualResult.add((P) t.getPersistable().getCopy());
+            myTable.findMatching(predicate, myStartTime, getReadID());
+        if (!myIsSnapshotRead) {
+            myTableTrail.getPredicateToDataMap().put(
+                PredicateWrapper.<K>create(predicate),
+                result);
         }
-        return Collections.unmodifiableCollection(actualResult);
+        return toRows(result);
     }
    
     /**
      * {@inheritDoc}
      */
-    @SuppressWarnings("unchecked")
     @Override
     public Collection<P> findMatching(Predicate  predicate,  
                                       K          start, 
@@ -148,29 +179,116 @@ public class TableAdaptor<K extends Comparable<K>, P extends Persistable<K>>
     {
         Collection<Transactable<K,P>> result =
             myTable.findMatching(
-                predicate, start, end, myStartTime, myTransactionID);
+                predicate, start, end, myStartTime, getReadID());
         
-        myTableTrail.getPredicateToDataMap().put(
-                PredicateWrapper.<K>create(predicate, start, end),
+        if (!myIsSnapshotRead) {
+            myTableTrail.getPredicateToDataMap().put(
+                    PredicateWrapper.<K>create(predicate, start, end),
+                    result);
+        }
+        return toRows(result);    
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Collection<P> findMatching(Predicate predicate,
+                                      String    indexedColumn,
+                                      Object    start,
+                                      Object    end)
+    {
+        Collection<Transactable<K,P>> result =
+            myTable.findMatching(predicate,
+                                 indexedColumn,
+                                 start,
+                                 end,
+                                 myStartTime,
+                                 getReadID());
+        
+        if (!myIsSnapshotRead) {
+            myTableTrail.getPredicateToDataMap().put(
+                PredicateWrapper.<K>create(
+                    predicate, indexedColumn, start, end),
                 result);
-        Collection<P> actualResult = new ArrayList<>(result.size());
-        for (Transactable<K,P> t : result) {
-            actualResult.add((P) t.getPersistable().getCopy());
         }
-        return Collections.unmodifiableCollection(actualResult);    
+        return toRows(result);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The rows are looked up as the iterator advances. The rows read by a
+     * transaction are added to its read set as they're handed out, and
+     * once the iterator is exhausted the predicate is tracked as well so 
+     * that the phantom rows are caught as in case of 
+     * {@link #findMatching(Predicate)}. An iteration that's given up 
+     * midway validates only the rows it has read.
+     */
+    @Override
+    public Iterator<P> iterateMatching(final Predicate predicate)
+    {
+        final Iterator<Transactable<K,P>> versions =
+            myTable.iterateMatching(predicate, myStartTime, getReadID());
+        if (myIsSnapshotRead) {
+            return Iterators.transform(
+                versions,
+                new Function<Transactable<K,P>, P>() {
+                    @Override
+                    public P apply(Transactable<K,P> version)
+                    {
+                        return toRow(version);
+                    }
+                });
+        }
+        return new AbstractIterator<P>() {
+
+            private final Collection<Transactable<K,P>> myReadVersions =
+                new ArrayList<>();
+
+            @Override
+            protected P computeNext()
+            {
+                if (!versions.hasNext()) {
+                    myTableTrail.getPredicateToDataMap().put(
+                        PredicateWrapper.<K>create(predicate),
+                        myReadVersions);
+                    return endOfData();
+                }
+                Transactable<K,P> version = versions.next();
+                myReadVersions.add(version);
+                myTableTrail.getReadSet().add(version);
+                return toRow(version);
+            }
+        };
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The projection is handed out only to the snapshot reads, as the 
+     * rows scanned from it can't be tracked for validation.
+     */
+    @Override
+    public ColumnarProjection getColumnarProjection()
+    {
+        return myIsSnapshotRead ? myTable.getColumnarProjection(myStartTime)
+                                : null;
     }
 
     /**
      * {@inheritDoc}
      */
-    @SuppressWarnings("unchecked")
     @Override
     public P getRow(K primarykey)
     {
         Transactable<K, P> result =
-            myTable.getRow(primarykey, myStartTime, myTransactionID);
+            myTable.getRow(primarykey, myStartTime, getReadID());
         
-        if (result != null) {
+        if (result != null && myIsSnapshotRead) {
+            return toRow(result);
+        }
+        else if (result != null) {
             // If the key has been deleted by this transaction then
             // return null;
             if (myTableTrail.getDeleteSet().contains(primarykey)) {
@@ -178,7 +296,7 @@ public class TableAdaptor<K extends Comparable<K>, P extends Persistable<K>>
             }
 
             myTableTrail.getReadSet().add(result);
-            return (P) result.getPersistable().getCopy();
+            return toRow(result);
         }
         else {
             return null;
@@ -193,6 +311,15 @@ public class TableAdaptor<K extends Comparable<K>, P extends Persistable<K>>
     {
         return myTable.getSchema();
     }
+    
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long rowCount()
+    {
+        return myTable.rowCount();
+    }
 
     /**
      * Returns the value of startTime
@@ -213,15 +340,24 @@ public class TableAdaptor<K extends Comparable<K>, P extends Persistable<K>>
     /**
      * {@inheritDoc}
      */
+    @SuppressWarnings("unchecked")
     @Override
     public boolean update(P updated)
     {
+        checkWritable();
         Transactable<K, P> tableOld =
                 myTable.getRow(updated.primaryKey(), 
                                myStartTime, 
                                myTransactionID);
         
         if (tableOld != null) {
+            
+            // The row read from the table might have been handed out as it
+            // is, in which case it's copied before being added as the new 
+            // version.
+            if (tableOld.getPersistable() == updated) {
+                updated = (P) updated.getCopy();
+            }
 
             ValidationResult result = 
                 tableOld.validate(myStartTime, myTransactionID);
@@ -240,7 +376,8 @@ public class TableAdaptor<K extends Comparable<K>, P extends Persistable<K>>
             myTableTrail.getWriteSet().add(tableOld);
         }
 
-        Transactable<K,P> updatedTransactable = Transactable.<K,P>create(updated);
+        Transactable<K,P> updatedTransactable = 
+            Transactable.<K,P>create(updated, myTable.getRowStore());
         updatedTransactable.setStart(
             TransactionHelper.toVersionID(myTransactionID));
         updatedTransactable.setEnd(TransactionHelper.INFINITY);
@@ -261,26 +398,26 @@ public class TableAdaptor<K extends Comparable<K>, P extends Persistable<K>>
     /**
      * {@inheritDoc}
      */
-    @SuppressWarnings("unchecked")
     @Override
     public P deleteRow(K primaryKey)
     {
+        checkWritable();
         Transactable<K, P> result = myTable.getRow(primaryKey, 
                                                    myStartTime,
                                                    myTransactionID);
         // Acquire a write lock.
         result.setEnd(TransactionHelper.toVersionID(myTransactionID));
         myTableTrail.getDeleteSet().add(result.getPersistable().primaryKey());
-        return (P) (result != null ? result.getPersistable().getCopy() : null);
+        return result != null ? toRow(result) : null;
     }
 
     /**
      * {@inheritDoc}
      */
-    @SuppressWarnings("unchecked")
     @Override
     public Collection<P> deleteRange(K primaryKey, K secondaryKey)
     {
+        checkWritable();
         Collection<Transactable<K,P>> result =
             myTable.deleteRange(primaryKey, 
                                 secondaryKey, 
@@ -291,7 +428,7 @@ public class TableAdaptor<K extends Comparable<K>, P extends Persistable<K>>
         for (Transactable<K,P> t : result) {
             t.setEnd(TransactionHelper.toVersionID(myTransactionID));
             myTableTrail.getDeleteSet().add(t.getPersistable().primaryKey());
-            actualResult.add((P) t.getPersistable().getCopy());
+            actualResult.add(toRow(t));
         }
 
         myTableTrail.getWriteSet().addAll(result);                
@@ -308,12 +445,59 @@ public class TableAdaptor<K extends Comparable<K>, P extends Persistable<K>>
         return deleteRange((K) primaryKey, (K) secondaryKey);
     }
 
+    /**
+     * Returns the row to be handed out for the given version. The immutable
+     * rows are handed out as they are stored and the rows stored off heap
+     * as they are decoded, while the others are copied to protect the 
+     * stored version from the modifications.
+     */
+    @SuppressWarnings("unchecked")
+    private P toRow(Transactable<K,P> version)
+    {
+        return myHasImmutableRows || myTable.getSchema().isStoredOffHeap() ?
+                   version.getPersistable()
+                   : (P) version.getPersistable().getCopy();
+    }
+    
+    /**
+     * Returns the rows to be handed out for the given versions.
+     */
+    private Collection<P> toRows(Collection<Transactable<K,P>> versions)
+    {
+        Collection<P> rows = new ArrayList<>(versions.size());
+        for (Transactable<K,P> version : versions) {
+            rows.add(toRow(version));
+        }
+        return Collections.unmodifiableCollection(rows);
+    }
+    
+    /**
+     * Returns the transaction id with which the rows are to be read from 
+     * the table.
+     */
+    private long getReadID()
+    {
+        return myIsSnapshotRead ? TransactionHelper.SNAPSHOT_TRANSACTION_ID
+                                : myTransactionID;
+    }
+    
+    private void checkWritable()
+    {
+        if (myIsSnapshotRead) {
+            throw new UnsupportedOperationException(
+                "The snapshot of " + myTable.getSchema().getTableName()
+                + " can't be updated");
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
     @Override
     public void free()
     {
+        myIsSnapshotRead = false;
+        myHasImmutableRows = false;
         myStartTime     = Long.MIN_VALUE;
         myTable         = null;
         myTransactionID = Long.MIN_VALUE;
@@ -20,6 +20,7 @@
 
 package org.hit.db.transactions;
 
+import org.hit.db.model.ImmutablePersistable;
 import org.hit.db.model.Persistable;
 import org.hit.pool.PoolConfiguration;
 import org.hit.pool.Poolable;
@@ -27,7 +28,9 @@ import org.hit.pool.PooledObjects;
 
 /**
  * Defines the contract for an object that has necessary fields to be used
- * during transaction for validating the availability.
+ * during transaction for validating the availability. The row is either
+ * held on the heap or, for the tables stored off heap, held only as its
+ * address in an {@link OffHeapRowStore} from which it's decoded on access.
  * 
  * @author Balraja Subbiah
  */
@@ -41,6 +44,12 @@ public class Transactable<K extends Comparable<K>, P extends Persistable<K>>
     
     private P myPersitable;
     
+    private OffHeapRowStore myRowStore;
+    
+    private long myAddress;
+    
+    private volatile Transactable<K,P> myOlderVersion;
+    
     /**
      * Initializes the {@link Transactable} from the {@link Persistable} 
      * objects.
@@ -52,6 +61,28 @@ public class Transactable<K extends Comparable<K>, P extends Persistable<K>>
         Transactable<PK, T> transactable = 
              PooledObjects.getInstance(Transactable.class);
         transactable.myPersitable = persitable;
+        transactable.myRowStore = null;
+        return transactable;
+    }
+    
+    /**
+     * Initializes the {@link Transactable} by copying the {@link 
+     * Persistable} to the given store, when it's not null. The 
+     * <code>Persistable</code> isn't referenced by the version once it's 
+     * copied.
+     */
+    public static <PK extends Comparable<PK>, T extends Persistable<PK>>
+        Transactable<PK,T> create(T persitable, OffHeapRowStore rowStore)
+    {
+        if (rowStore == null) {
+            return create(persitable);
+        }
+        @SuppressWarnings("unchecked")
+        Transactable<PK, T> transactable = 
+             PooledObjects.getInstance(Transactable.class);
+        transactable.myPersitable = null;
+        transactable.myRowStore = rowStore;
+        transactable.myAddress = rowStore.store(persitable);
         return transactable;
     }
 
@@ -63,11 +94,21 @@ public class Transactable<K extends Comparable<K>, P extends Persistable<K>>
 
     /**
      * Returns the underlying <code>Persistable</code> that's protected by
-     * this wrapper.
+     * this wrapper. A row stored off heap is decoded into a new instance 
+     * on every call, so that the versions don't hold on to the decoded 
+     * rows.
      */
+    @SuppressWarnings("unchecked")
     public P getPersistable()
     {
-        return myPersitable;
+        return myRowStore == null ? myPersitable 
+                                  : (P) myRowStore.read(myAddress);
+    }
+    
+    /** Returns the version of the row that precedes this version */
+    public Transactable<K,P> getOlderVersion()
+    {
+        return myOlderVersion;
     }
     
     /** Returns the time from which this version is active */
@@ -148,6 +189,40 @@ public class Transactable<K extends Comparable<K>, P extends Persistable<K>>
         }
     }
 
+    /**
+     * Returns true if this version is part of the snapshot of the database
+     * as of the given time. Unlike the {@link #validate(long, long)} only
+     * the committed versions are considered and the version superseded
+     * exactly at the snapshot time is excluded. The version locked by a 
+     * transaction, that has yet to commit, remains in the snapshot.
+     */
+    public boolean isVisibleAt(long snapshotTime)
+    {
+        long start = myStart;
+        long end = myEnd;
+        return    !TransactionHelper.isTransactionID(start)
+               && start <= snapshotTime
+               && (TransactionHelper.isTransactionID(end) || snapshotTime < end);
+    }
+
+    /**
+     * Returns true if this version has been superseded before the given
+     * low watermark, so that no active transaction can see it anymore.
+     */
+    public boolean isReclaimable(long lowWatermark)
+    {
+        return    !TransactionHelper.isTransactionID(myStart)
+               && !TransactionHelper.isTransactionID(myEnd)
+               && myEnd != TransactionHelper.INFINITY
+               && myEnd < lowWatermark;
+    }
+
+    /** Sets the version of the row that precedes this version */
+    public void setOlderVersion(Transactable<K,P> olderVersion)
+    {
+        myOlderVersion = olderVersion;
+    }
+
     /** Sets the end time for this version */
     public void setEnd(long end)
     {
@@ -168,7 +243,18 @@ public class Transactable<K extends Comparable<K>, P extends Persistable<K>>
     {
         myStart      = Long.MIN_VALUE;
         myEnd        = Long.MIN_VALUE;
-        PooledObjects.freeInstance(myPersitable);
+        myOlderVersion = null;
+        if (myRowStore != null) {
+            myRowStore.release(myAddress);
+            myRowStore = null;
+            myAddress = 0L;
+            return;
+        }
+        // The immutable rows are handed out to the queries without copying,
+        // so they can still be referenced after the version is reclaimed.
+        if (!(myPersitable instanceof ImmutablePersistable)) {
+            PooledObjects.freeInstance(myPersitable);
+        }
         myPersitable = null;
     }
 }
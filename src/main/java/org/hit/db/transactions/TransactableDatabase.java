@@ -20,6 +20,8 @@
 
 package org.hit.db.transactions;
 
+import java.util.Collection;
+
 import org.hit.db.model.Persistable;
 import org.hit.db.model.HitTableSchema;
 import org.hit.event.DBStatEvent;
@@ -41,6 +43,12 @@ public interface TransactableDatabase
     public <K extends Comparable<K>, P extends Persistable<K>> TransactableTable<K, P>
         lookUpTable(String tableName);
     
+    /** Returns the <code>TransactableTable</code>s created so far */
+    public Collection<TransactableTable<?, ?>> getTables();
+    
+    /** Drops the table along with its schema from the database */
+    public void dropTable(String tableName);
+    
     /**
      * Generates the statistics for database.
      */
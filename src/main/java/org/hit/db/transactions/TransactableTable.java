@@ -21,7 +21,9 @@
 package org.hit.db.transactions;
 
 import java.util.Collection;
+import java.util.Iterator;
 
+import org.hit.db.model.ColumnarProjection;
 import org.hit.db.model.Persistable;
 import org.hit.db.model.Predicate;
 import org.hit.db.model.HitTableSchema;
@@ -58,6 +60,31 @@ public interface TransactableTable<K extends Comparable<K>, P extends Persistabl
         long time,
         long transactionID);
 
+    /**
+     * Returns the collection of objects from this table that matches the
+     * predicate. The candidates are looked up from the secondary index on
+     * the given column for the values between start and end (both 
+     * inclusive, null for an open bound), falling back to a scan when no
+     * usable index is available.
+     */
+    public Collection<Transactable<K,P>> findMatching(
+        Predicate predicate,
+        String    indexedColumn,
+        Object    start,
+        Object    end,
+        long      time,
+        long      transactionID);
+
+    /**
+     * Returns an iterator over the objects from this table that matches
+     * the predicate, in the order of their keys if the table is ordered
+     * by its keys. The objects may be looked up as the iterator advances.
+     */
+    public Iterator<Transactable<K,P>> iterateMatching(
+        Predicate predicate,
+        long      time,
+        long      transactionID);
+
     /** Returns row corresponding to a primary key */
     public Transactable<K,P> getRow(K key, long time, long transactionID);
     
@@ -73,6 +100,24 @@ public interface TransactableTable<K extends Comparable<K>, P extends Persistabl
                                                      long time, 
                                                      long transactionID);
 
+    /**
+     * Returns the projection of the rows visible as of the given time,
+     * null if the table doesn't maintain a columnar replica.
+     */
+    public ColumnarProjection getColumnarProjection(long snapshotTime);
+    
+    /**
+     * Notes that the versions of this table have been committed, so that
+     * the columnar replica is rebuilt from them.
+     */
+    public void recordCommit();
+    
+    /**
+     * Returns the store to which the rows of this table are copied, null
+     * if the rows are kept on the heap.
+     */
+    public OffHeapRowStore getRowStore();
+    
     /** Returns schema of the table */
     public HitTableSchema getSchema();
     
@@ -83,4 +128,17 @@ public interface TransactableTable<K extends Comparable<K>, P extends Persistabl
      * Removes the transactable from the table.
      */
     public void remove(Transactable<K,P> transactable);
+
+    /**
+     * Examines upto <code>maxVersions</code> versions from the position
+     * where the previous call left off and unlinks those that are not
+     * visible to any transaction started after the <code>lowWatermark
+     * </code>. The unlinked versions are added to <code>reclaimed</code>.
+     *
+     * @return True, if a complete pass over the table has been made,
+     *         false otherwise.
+     */
+    public boolean reclaimVersions(long                          lowWatermark,
+                                   int                           maxVersions,
+                                   Collection<Transactable<K,P>> reclaimed);
 }
@@ -30,6 +30,13 @@ public final class TransactionHelper
     /** Defines the contract for an infinite time */
     public static final long INFINITY = Long.MAX_VALUE;
     
+    /** 
+     * The transaction id with which the snapshot reads are performed on 
+     * the tables. It's never assigned to a transaction, since the ids are
+     * assigned starting from 1.
+     */
+    public static final long SNAPSHOT_TRANSACTION_ID = 0L;
+    
     private static final long TRANSACTION_BOUNDARY = -1L;
     
     /**
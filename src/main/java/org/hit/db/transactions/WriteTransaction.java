@@ -38,9 +38,9 @@ public class WriteTransaction extends ActiveTransaction
 {
     private Mutation myMutation;
     
-    private long myStartTimeOverride;
+    private long myStartTimeOverride = Long.MIN_VALUE;
     
-    private long myEndTimeOverride;
+    private long myEndTimeOverride = Long.MIN_VALUE;
 
     /**
      *   Factory method for creating an instance of <code>WriteTransaction</code> 
@@ -143,6 +143,15 @@ public class WriteTransaction extends ActiveTransaction
         myEndTimeOverride   = end;
     }
     
+    /**
+     * Sets the time at which the transaction commits, to be used in place
+     * of reading the clock when it's validated.
+     */
+    public void setCommitTime(long commitTime)
+    {
+        myEndTimeOverride = commitTime;
+    }
+    
     /**
      * {@inheritDoc}
      */
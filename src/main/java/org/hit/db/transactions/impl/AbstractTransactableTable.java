@@ -20,21 +20,30 @@
 
 package org.hit.db.transactions.impl;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 
+import org.hit.db.model.ColumnarProjection;
 import org.hit.db.model.Persistable;
 import org.hit.db.model.HitTableSchema;
+import org.hit.db.model.IndexType;
+import org.hit.db.model.Predicate;
+import org.hit.db.transactions.OffHeapRowStore;
 import org.hit.db.transactions.Registry;
 import org.hit.db.transactions.Transactable;
 import org.hit.db.transactions.TransactableTable;
+import org.hit.db.transactions.TransactionHelper;
 import org.hit.db.transactions.ValidationResult;
-import org.hit.util.Pair;
-
-import com.google.common.base.Function;
+import org.hit.pool.PooledObjects;
 
 /**
  * Defines the contract for an abstract implementation of <code>
- * TransactableTable</code>
+ * TransactableTable</code>. The versions of a row are kept in a <code>
+ * VersionChain</code> and the subclasses are responsible for indexing 
+ * the chains by their keys.
  * 
  * @author Balraja Subbiah
  */
@@ -42,95 +51,346 @@ public abstract class AbstractTransactableTable<K extends Comparable<K>,
                                                 P extends Persistable<K>>
     implements TransactableTable<K,P>
 {
+    private final HitTableSchema mySchema;
+    
+    /** Serializes the addition and removal of chains to the index */
+    private final Object myChainLock;
+    
+    /** The secondary indexes declared on the columns of this table */
+    private final List<SecondaryIndex<K,P>> mySecondaryIndexes;
+    
+    /** The store of the rows, when the table is stored off heap */
+    private final OffHeapRowStore myRowStore;
+    
+    /** The column wise copy of the rows, when it's declared */
+    private final ColumnarReplica<K,P> myColumnarReplica;
+    
     /**
-     * Implements a <code>Function</code> to add dependency between 
-     * transactions.
+     * CTOR
      */
-    public class AddDependency
-        implements Function<Pair<ValidationResult, Transactable<K, P>>, 
-                            Transactable<K, P>>
+    public AbstractTransactableTable(HitTableSchema schema)
     {
-        private final long myTransactionID;
-        
-        /**
-         * CTOR
-         */
-        public AddDependency(long transactionID)
+        mySchema = schema;
+        myChainLock = new Object();
+        mySecondaryIndexes = new ArrayList<>();
+        for (Map.Entry<String, IndexType> entry : 
+                 schema.getSecondaryIndexes().entrySet())
         {
-            myTransactionID = transactionID;
+            mySecondaryIndexes.add(
+                new SecondaryIndex<K,P>(entry.getKey(), entry.getValue()));
+        }
+        myRowStore = 
+            schema.isStoredOffHeap() ? 
+                new OffHeapRowStore(schema.getPersistableClass()) : null;
+        myColumnarReplica = 
+            schema.hasColumnarReplica() ? new ColumnarReplica<>(this) : null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public HitTableSchema getSchema()
+    {
+        return mySchema;
+    }
+    
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public OffHeapRowStore getRowStore()
+    {
+        return myRowStore;
+    }
+    
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ColumnarProjection getColumnarProjection(long snapshotTime)
+    {
+        return myColumnarReplica != null ? 
+            myColumnarReplica.getProjection(snapshotTime) : null;
+    }
+    
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void recordCommit()
+    {
+        if (myColumnarReplica != null) {
+            myColumnarReplica.recordModification();
+        }
+    }
+    
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void addToTable(Transactable<K, P> transactable)
+    {
+        K key = transactable.getPersistable().primaryKey();
+        while (true) {
+            VersionChain<K,P> chain = lookupChain(key);
+            if (chain == null) {
+                synchronized (myChainLock) {
+                    chain = lookupChain(key);
+                    if (chain == null) {
+                        chain = new VersionChain<>(key);
+                        addChain(key, chain);
+                    }
+                }
+            }
+            
+            // The chain might have been retired by the garbage collector
+            // in the mean time, in which case we retry with a new chain.
+            synchronized (chain) {
+                if (chain.addVersion(transactable)) {
+                    // The versions restored from a checkpoint are added
+                    // as committed.
+                    recordCommit();
+                    for (SecondaryIndex<K,P> index : mySecondaryIndexes) {
+                        Object indexKey = index.keyOf(transactable);
+                        if (indexKey != null) {
+                            index.add(indexKey, chain);
+                        }
+                    }
+                    return;
+                }
+            }
+        }
+    }
+    
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Collection<Transactable<K, P>> findMatching(
+        Predicate predicate,
+        String    indexedColumn,
+        Object    start,
+        Object    end,
+        long      time,
+        long      transactionID)
+    {
+        SecondaryIndex<K,P> index = lookupIndex(indexedColumn);
+        if (index == null || !index.canLookup(start, end)) {
+            return findMatching(predicate, time, transactionID);
         }
         
-        /**
-         * {@inheritDoc}
-         */
-        public Transactable<K,P>  
-            apply(Pair<ValidationResult, Transactable<K, P>> input)
-        {
-            if (   input.getFirst().isSpeculativelyValid()
-                && input.getFirst().getTransactionId()
-                       != myTransactionID)
+        List<Transactable<K,P>> result = new ArrayList<>();
+        for (VersionChain<K,P> chain : index.lookup(start, end)) {
+            // The chain might have been found through the value of an
+            // older version, hence the predicate has to be evaluated
+            // against the visible version.
+            Transactable<K,P> visible = 
+                doGetRow(chain, time, transactionID, true);
+            if (   visible != null 
+                && predicate.isInterested(visible.getPersistable()))
             {
-                Registry.addDependency(input.getFirst().getTransactionId(), 
-                                      myTransactionID);
+                result.add(visible);
             }
-            
-            return input.getSecond();
         }
+        return result;
     }
     
-    private final HitTableSchema mySchema;
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Iterator<Transactable<K, P>> iterateMatching(
+        Predicate predicate,
+        long      time,
+        long      transactionID)
+    {
+        return findMatching(predicate, time, transactionID).iterator();
+    }
     
     /**
-     * CTOR
+     * {@inheritDoc}
      */
-    public AbstractTransactableTable(HitTableSchema schema)
+    @Override
+    public Transactable<K, P> getRow(K key, long time, long transactionID)
     {
-        mySchema = schema;
+        return doGetRow(lookupChain(key), time, transactionID);
     }
-
+    
     /**
      * {@inheritDoc}
      */
     @Override
-    public HitTableSchema getSchema()
+    public void remove(Transactable<K, P> transactable)
     {
-        return mySchema;
+        VersionChain<K,P> chain = 
+            lookupChain(transactable.getPersistable().primaryKey());
+        if (chain != null) {
+            removeVersion(chain, transactable);
+        }
+    }
+    
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void deleteVersion(Transactable<K, P> deletedVersion)
+    {
+        remove(deletedVersion);
+    }
+    
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Transactable<K, P> deleteRow(K key, long time, long transactionID)
+    {
+        VersionChain<K,P> chain = lookupChain(key);
+        Transactable<K, P> row = doGetRow(chain, time, transactionID);
+        if (row != null && removeVersion(chain, row)) {
+            return row;
+        }
+        return null;
+    }
+    
+    /**
+     * Returns the <code>SecondaryIndex</code> declared on the given column,
+     * null if there is no such index.
+     */
+    protected SecondaryIndex<K,P> lookupIndex(String columnName)
+    {
+        for (SecondaryIndex<K,P> index : mySecondaryIndexes) {
+            if (index.getColumnName().equals(columnName)) {
+                return index;
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * A helper method to unlink the given version from its chain and to 
+     * drop the chain from the secondary indexes under the version's value,
+     * unless another version in the chain has the same value.
+     */
+    protected boolean removeVersion(VersionChain<K,P> chain,
+                                    Transactable<K,P> version)
+    {
+        synchronized (chain) {
+            if (!chain.removeVersion(version)) {
+                return false;
+            }
+            unindex(chain, version);
+            return true;
+        }
+    }
+    
+    private void unindex(VersionChain<K,P> chain, Transactable<K,P> version)
+    {
+        for (SecondaryIndex<K,P> index : mySecondaryIndexes) {
+            Object indexKey = index.keyOf(version);
+            if (   indexKey != null 
+                && !index.hasVersionWithKey(indexKey, chain)) 
+            {
+                index.remove(indexKey, chain);
+            }
+        }
+    }
+
+    /**
+     * Returns the <code>VersionChain</code> corresponding to the given key
+     * from the index, null if there is no such chain.
+     */
+    protected abstract VersionChain<K,P> lookupChain(K key);
+    
+    /** Adds the <code>VersionChain</code> to the index */
+    protected abstract void addChain(K key, VersionChain<K,P> chain);
+    
+    /** Removes the <code>VersionChain</code> from the index */
+    protected abstract void removeChain(K key, VersionChain<K,P> chain);
+
+    /**
+     * A helper method to unlink the versions of a row that are no longer 
+     * visible to the transactions started after the low watermark. The 
+     * chain is dropped from the index once all of its versions are gone.
+     * 
+     * @return The number of versions examined.
+     */
+    protected int reclaimVersions(
+        VersionChain<K, P>             chain,
+        long                           lowWatermark,
+        Collection<Transactable<K, P>> reclaimed)
+    {
+        int examined;
+        synchronized (chain) {
+            List<Transactable<K,P>> chainVersions = new ArrayList<>();
+            examined = chain.reclaimVersions(lowWatermark, chainVersions);
+            for (Transactable<K,P> version : chainVersions) {
+                unindex(chain, version);
+            }
+            reclaimed.addAll(chainVersions);
+        }
+        
+        if (chain.getNewestVersion() == null) {
+            synchronized (myChainLock) {
+                if (chain.retireIfEmpty()) {
+                    removeChain(chain.getKey(), chain);
+                }
+            }
+        }
+        return examined;
     }
 
     /**
      * A helper method to get the latest version of a row for a key.
      */
-    public Transactable<K, P> doGetRow(List<Transactable<K, P>> result, 
+    public Transactable<K, P> doGetRow(VersionChain<K, P> chain, 
                                        long time, 
                                        long transactionID)
     {
-        return doGetRow(result, time, transactionID, false);
+        return doGetRow(chain, time, transactionID, false);
     }
     
     /**
-     * A helper method to get the latest version of a row for a key.
+     * A helper method to get the latest version of a row for a key. The
+     * chain is walked from the newest version, so in the common case the
+     * visible version is the first one examined. The snapshot reads only
+     * look at the committed versions and never add a dependency.
      */
-    public Transactable<K, P> doGetRow(List<Transactable<K, P>> result, 
+    public Transactable<K, P> doGetRow(VersionChain<K, P> chain, 
                                        long time, 
                                        long transactionID,
                                        boolean speculativeRead)
     {
-        if (result != null) {
-            for (int i = result.size() - 1; i >= 0; i--) {
-                Transactable<K, P> transactable = result.get(i);
-                ValidationResult validationResult = 
-                    transactable.validate(time, transactionID);
-                if (validationResult.isValid()) {
-                    return transactable;
-                }
-                else if (   speculativeRead
-                         && validationResult.isSpeculativelyValid()) 
-                {
-                    Registry.addDependency(validationResult.getTransactionId(),
-                                           transactionID);
-                    return transactable;
-                }
+        if (chain == null) {
+            return null;
+        }
+        
+        Transactable<K, P> transactable = chain.getNewestVersion();
+        if (transactionID == TransactionHelper.SNAPSHOT_TRANSACTION_ID) {
+            while (transactable != null && !transactable.isVisibleAt(time)) {
+                transactable = transactable.getOlderVersion();
+            }
+            return transactable;
+        }
+        
+        while (transactable != null) {
+            ValidationResult validationResult = 
+                transactable.validate(time, transactionID);
+            boolean isVisible = validationResult.isValid();
+            if (   !isVisible
+                && speculativeRead
+                && validationResult.isSpeculativelyValid()) 
+            {
+                Registry.addDependency(validationResult.getTransactionId(),
+                                       transactionID);
+                isVisible = true;
+            }
+            PooledObjects.freeInstance(validationResult);
+            
+            if (isVisible) {
+                return transactable;
             }
+            transactable = transactable.getOlderVersion();
         }
         return null;
     }
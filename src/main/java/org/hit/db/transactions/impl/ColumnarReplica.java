@@ -0,0 +1,129 @@
+/*
+    Hit is a high speed transactional database for handling millions
+    of updates with comfort and ease.
+
+    Copyright (C) 2013  Balraja Subbiah
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package org.hit.db.transactions.impl;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.hit.db.model.ColumnarProjection;
+import org.hit.db.model.Persistable;
+import org.hit.db.model.Predicate;
+import org.hit.db.model.Row;
+import org.hit.db.transactions.Transactable;
+import org.hit.db.transactions.TransactableTable;
+import org.hit.db.transactions.TransactionHelper;
+
+/**
+ * Maintains the {@link ColumnarProjection} of a table from its committed
+ * versions. The projection is built when it's asked for after the table
+ * has been modified, and it's reused by the readers whose snapshots are
+ * not older than the projection for as long as the table isn't modified.
+ *
+ * @author Balraja Subbiah
+ */
+public class ColumnarReplica<K extends Comparable<K>, P extends Persistable<K>>
+{
+    /**
+     * A projection along with the modification of the table upto which
+     * it's built.
+     */
+    private static class Snapshot
+    {
+        private final ColumnarProjection myProjection;
+
+        private final long myModificationCount;
+
+        /**
+         * CTOR
+         */
+        public Snapshot(ColumnarProjection projection, long modificationCount)
+        {
+            myProjection = projection;
+            myModificationCount = modificationCount;
+        }
+    }
+
+    private final TransactableTable<K,P> myTable;
+
+    private final AtomicLong myModificationCount;
+
+    private volatile Snapshot myLatest;
+
+    /**
+     * CTOR
+     */
+    public ColumnarReplica(TransactableTable<K,P> table)
+    {
+        myTable = table;
+        myModificationCount = new AtomicLong(0L);
+        myLatest = null;
+    }
+
+    /**
+     * Invalidates the projection, once the versions of the table have
+     * been committed or added.
+     */
+    public void recordModification()
+    {
+        myModificationCount.incrementAndGet();
+    }
+
+    /**
+     * Returns the projection of the rows visible as of the given time.
+     */
+    public ColumnarProjection getProjection(long snapshotTime)
+    {
+        Snapshot latest = myLatest;
+        if (   latest != null
+            && latest.myModificationCount == myModificationCount.get()
+            && latest.myProjection.getVisibleTime() <= snapshotTime)
+        {
+            return latest.myProjection;
+        }
+
+        // The modifications are counted before the table is scanned, so
+        // that a commit that's in progress during the scan invalidates
+        // the projection.
+        long modificationCount = myModificationCount.get();
+        ColumnarProjection projection = build(snapshotTime);
+        if (latest == null || latest.myProjection.getVisibleTime()
+                                  <= snapshotTime)
+        {
+            myLatest = new Snapshot(projection, modificationCount);
+        }
+        return projection;
+    }
+
+    private ColumnarProjection build(long snapshotTime)
+    {
+        Collection<Transactable<K,P>> versions =
+            myTable.findMatching(Predicate.MATCH_ALL,
+                                 snapshotTime,
+                                 TransactionHelper.SNAPSHOT_TRANSACTION_ID);
+        List<Row> rows = new ArrayList<>(versions.size());
+        for (Transactable<K,P> version : versions) {
+            rows.add(version.getPersistable());
+        }
+        return ColumnarProjection.build(snapshotTime, rows);
+    }
+}
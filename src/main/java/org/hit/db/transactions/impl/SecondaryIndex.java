@@ -0,0 +1,253 @@
+/*
+    Hit is a high speed transactional database for handling millions
+    of updates with comfort and ease.
+
+    Copyright (C) 2013  Balraja Subbiah
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package org.hit.db.transactions.impl;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.hit.db.model.IndexType;
+import org.hit.db.model.Persistable;
+import org.hit.db.transactions.Transactable;
+
+/**
+ * Indexes the <code>VersionChain</code>s of a table by the value of a
+ * column. A chain is indexed under the value of every version in it, so
+ * that the version visible to a transaction can always be reached from
+ * the index. The numeric values are indexed as doubles and the other
+ * values by their string form, to match the way they are compared by
+ * the queries.
+ *
+ * @author Balraja Subbiah
+ */
+public class SecondaryIndex<K extends Comparable<K>, P extends Persistable<K>>
+{
+    /** Orders the numeric keys before the string keys */
+    private static final Comparator<Object> KEY_COMPARATOR =
+        new Comparator<Object>() {
+            @Override
+            public int compare(Object key1, Object key2)
+            {
+                if (key1 instanceof Double && key2 instanceof Double) {
+                    return ((Double) key1).compareTo((Double) key2);
+                }
+                else if (key1 instanceof Double) {
+                    return -1;
+                }
+                else if (key2 instanceof Double) {
+                    return 1;
+                }
+                else {
+                    return ((String) key1).compareTo((String) key2);
+                }
+            }
+        };
+
+    private final String myColumnName;
+
+    private final IndexType myIndexType;
+
+    private final Map<Object, Set<VersionChain<K,P>>> myEntries;
+
+    private final ReadWriteLock myLock;
+
+    private boolean myHasNumericKeys;
+
+    /**
+     * CTOR
+     */
+    public SecondaryIndex(String columnName, IndexType indexType)
+    {
+        myColumnName = columnName;
+        myIndexType = indexType;
+        myEntries = indexType == IndexType.ORDERED ?
+            new TreeMap<Object, Set<VersionChain<K,P>>>(KEY_COMPARATOR)
+            : new HashMap<Object, Set<VersionChain<K,P>>>();
+        myLock = new ReentrantReadWriteLock();
+        myHasNumericKeys = false;
+    }
+
+    /**
+     * Returns the value of columnName
+     */
+    public String getColumnName()
+    {
+        return myColumnName;
+    }
+
+    /**
+     * Returns the key under which the given version is to be indexed,
+     * null if the version doesn't have a value for the column.
+     */
+    public Object keyOf(Transactable<K,P> version)
+    {
+        return toKey(version.getPersistable().getFieldValue(myColumnName));
+    }
+
+    /**
+     * Returns true if the index can look up the values between start and
+     * end. A null bound is treated as unbounded.
+     */
+    public boolean canLookup(Object start, Object end)
+    {
+        Object startKey = toKey(start);
+        Object endKey = toKey(end);
+        if (startKey == null && endKey == null) {
+            return false;
+        }
+
+        myLock.readLock().lock();
+        try {
+            // A string can match the string form of a number, which
+            // isn't how the numbers are keyed.
+            if (   myHasNumericKeys
+                && (startKey instanceof String || endKey instanceof String))
+            {
+                return false;
+            }
+        }
+        finally {
+            myLock.readLock().unlock();
+        }
+
+        return myIndexType == IndexType.ORDERED
+            || (startKey != null && startKey.equals(endKey));
+    }
+
+    /**
+     * Adds the chain under the given key.
+     */
+    public void add(Object key, VersionChain<K,P> chain)
+    {
+        myLock.writeLock().lock();
+        try {
+            Set<VersionChain<K,P>> chains = myEntries.get(key);
+            if (chains == null) {
+                chains = new HashSet<>();
+                myEntries.put(key, chains);
+            }
+            chains.add(chain);
+            myHasNumericKeys |= key instanceof Double;
+        }
+        finally {
+            myLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes the chain from the given key.
+     */
+    public void remove(Object key, VersionChain<K,P> chain)
+    {
+        myLock.writeLock().lock();
+        try {
+            Set<VersionChain<K,P>> chains = myEntries.get(key);
+            if (chains != null) {
+                chains.remove(chain);
+                if (chains.isEmpty()) {
+                    myEntries.remove(key);
+                }
+            }
+        }
+        finally {
+            myLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the chains having a version whose value falls between start
+     * and end, both inclusive. A null bound is treated as unbounded. It
+     * should be called only if {@link #canLookup(Object, Object)} allows
+     * the lookup.
+     */
+    public Collection<VersionChain<K,P>> lookup(Object start, Object end)
+    {
+        Object startKey = toKey(start);
+        Object endKey = toKey(end);
+        myLock.readLock().lock();
+        try {
+            if (startKey != null && startKey.equals(endKey)) {
+                Set<VersionChain<K,P>> chains = myEntries.get(startKey);
+                return chains != null ? new ArrayList<>(chains)
+                                      : new ArrayList<VersionChain<K,P>>();
+            }
+
+            NavigableMap<Object, Set<VersionChain<K,P>>> entries =
+                (NavigableMap<Object, Set<VersionChain<K,P>>>) myEntries;
+            if (startKey != null) {
+                entries = entries.tailMap(startKey, true);
+            }
+            if (endKey != null) {
+                entries = entries.headMap(endKey, true);
+            }
+
+            // A chain can be indexed under multiple values in the range.
+            Set<VersionChain<K,P>> result = new HashSet<>();
+            for (Set<VersionChain<K,P>> chains : entries.values()) {
+                result.addAll(chains);
+            }
+            return result;
+        }
+        finally {
+            myLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns true if some version in the chain has its value keyed under the
+     * given key.
+     */
+    public boolean hasVersionWithKey(Object key, VersionChain<K,P> chain)
+    {
+        Transactable<K,P> version = chain.getNewestVersion();
+        while (version != null) {
+            if (key.equals(keyOf(version))) {
+                return true;
+            }
+            version = version.getOlderVersion();
+        }
+        return false;
+    }
+
+    /**
+     * Converts the column value to the key used in the index.
+     */
+    private static Object toKey(Object value)
+    {
+        if (value == null) {
+            return null;
+        }
+        else if (value instanceof Number) {
+            return Double.valueOf(((Number) value).doubleValue());
+        }
+        else {
+            return value.toString();
+        }
+    }
+}
@@ -24,18 +24,14 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
-import java.util.TreeMap;
 
-import org.hit.concurrent.HashTable;
+import org.hit.concurrent.BucketedHashTable;
+import org.hit.concurrent.LocklessSkipList;
 import org.hit.concurrent.RefinableHashTable;
 import org.hit.db.model.Persistable;
 import org.hit.db.model.Predicate;
 import org.hit.db.model.HitTableSchema;
 import org.hit.db.transactions.Transactable;
-import org.hit.db.transactions.ValidationResult;
-import org.hit.util.Pair;
-
-import com.google.common.collect.Collections2;
 
 /**
  * An implementation of a table wherein the keyspace is distributed on a
@@ -47,7 +43,17 @@ public class TransactableHashedTable <K extends Comparable<K>,
                                       P extends Persistable<K>>
     extends AbstractTransactableTable<K,P>
 {
-    private final HashTable<K, Transactable<K,P>> myIndex;
+    private final BucketedHashTable<K, VersionChain<K,P>> myIndex;
+    
+    /** 
+     * Keeps the chains sorted by their keys, so that the range lookups 
+     * need not scan the whole table. It's maintained only if the schema
+     * asks for the keys to be range indexed, null otherwise.
+     */
+    private final LocklessSkipList<K, VersionChain<K,P>> myKeyOrder;
+    
+    /** The bucket from which the next reclamation should start */
+    private int myReclaimCursor;
     
     private class BasicFilter implements 
         com.google.common.base.Predicate<Transactable<K,P>>
@@ -69,41 +75,6 @@ public class TransactableHashedTable <K extends Comparable<K>,
         }
     }
     
-    private class RangeFilter extends BasicFilter
-    {
-        private final K myStart;
-        
-        private final K myEnd;
-        
-        /**
-         * CTOR
-         */
-        public RangeFilter(
-            Predicate queryPredicate, 
-            K start,
-            K end)
-        {
-            super(queryPredicate);
-            myStart = start;
-            myEnd = end;
-        }
-
-        /**
-         * {@inheritDoc}
-         */
-        @Override
-        public boolean apply(Transactable<K, P> transactable)
-        {
-            return super.apply(transactable)
-                && (transactable.getPersistable()
-                                .primaryKey()
-                                .compareTo(myStart) >= 0)
-                && (transactable.getPersistable()
-                                .primaryKey()
-                                .compareTo(myEnd) <= 0);
-        }
-    }
-
     /**
      * CTOR
      */
@@ -111,16 +82,9 @@ public class TransactableHashedTable <K extends Comparable<K>,
     {
         super(schema);
         myIndex = new RefinableHashTable<>();
-    }
-
-    /**
-     * {@inheritDoc}
-     */
-    @Override
-    public void addToTable(Transactable<K, P> transactable)
-    {
-        myIndex.add(transactable.getPersistable().primaryKey(),
-                    transactable);
+        myKeyOrder = 
+            schema.isKeyRangeIndexed() ? 
+                new LocklessSkipList<K, VersionChain<K,P>>(10) : null;
     }
 
     /**
@@ -131,13 +95,49 @@ public class TransactableHashedTable <K extends Comparable<K>,
         findMatching(Predicate predicate,
                      K         start,
                      K         end,
-                     long      transactionID,
-                     long      time)
+                     long      time,
+                     long      transactionID)
     {
-        return doFindMatching(new RangeFilter(predicate, start, end),
-                              time,
-                              transactionID);
-        
+        List<Transactable<K,P>> result = new ArrayList<>();
+        for (VersionChain<K,P> chain : lookupChains(start, end)) {
+            Transactable<K,P> visible = 
+                doGetRow(chain, time, transactionID, true);
+            if (   visible != null 
+                && predicate.isInterested(visible.getPersistable()))
+            {
+                result.add(visible);
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * Returns the chains whose keys fall between start and end (both 
+     * inclusive), in the order of their keys if the keys are range
+     * indexed. Otherwise the keys of all the chains are compared.
+     */
+    private List<VersionChain<K,P>> lookupChains(K start, K end)
+    {
+        List<VersionChain<K,P>> chains = new ArrayList<>();
+        if (myKeyOrder != null) {
+            LocklessSkipList<K, VersionChain<K,P>>.SkipListIterator iterator =
+                myKeyOrder.lookupValues(start, end);
+            while (iterator.hasNext()) {
+                chains.addAll(iterator.next());
+            }
+        }
+        else {
+            Iterator<VersionChain<K,P>> iterator = myIndex.getAllValues();
+            while (iterator.hasNext()) {
+                VersionChain<K,P> chain = iterator.next();
+                if (   chain.getKey().compareTo(start) >= 0
+                    && chain.getKey().compareTo(end) <= 0)
+                {
+                    chains.add(chain);
+                }
+            }
+        }
+        return chains;
     }
 
     /**
@@ -156,84 +156,59 @@ public class TransactableHashedTable <K extends Comparable<K>,
                        long transactionID,
                        long time)
     {
-        Iterator<Transactable<K,P>> itr = myIndex.getAllValues();
-        TreeMap<K, Pair<ValidationResult, Transactable<K,P>>> result = 
-            new TreeMap<>();
+        Iterator<VersionChain<K,P>> itr = myIndex.getAllValues();
+        List<Transactable<K,P>> result = new ArrayList<>();
         while (itr.hasNext()) {
-            Transactable<K,P> transactable = itr.next();
-            if (filteringPredicate.apply(transactable)){
-                
-                ValidationResult validationResult = 
-                    transactable.validate(time, transactionID);
-                Pair<ValidationResult, Transactable<K,P>> sameKeyValue = 
-                    result.get(transactable.getPersistable().primaryKey());
-                if (   sameKeyValue == null 
-                    && validationResult.isValid()) 
-                {
-                    result.put(transactable.getPersistable().primaryKey(),
-                               new Pair<>(validationResult, transactable));
-                }
-                else if (   validationResult.isSpeculativelyValid() 
-                          && validationResult.getTransactionId() 
-                                 != transactionID
-                          && sameKeyValue.getFirst().getTransactionId()
-                                 != transactionID
-                          && sameKeyValue.getFirst().isSpeculativelyValid()
-                          && validationResult.getTransactionId()
-                                 > sameKeyValue.getFirst()
-                                               .getTransactionId())
-                {
-                    result.put(transactable.getPersistable().primaryKey(),
-                               new Pair<>(validationResult, transactable));
-                }
+            Transactable<K,P> visible = 
+                doGetRow(itr.next(), time, transactionID, true);
+            if (visible != null && filteringPredicate.apply(visible)) {
+                result.add(visible);
             }
         }
-        
-        return Collections2.transform(result.values(),
-                                      new AddDependency(transactionID));
+        return result;
     }
 
     /**
      * {@inheritDoc}
      */
     @Override
-    public Transactable<K, P> getRow(K key, long time, long transactionID)
+    protected VersionChain<K, P> lookupChain(K key)
     {
-        List<Transactable<K, P>> result = myIndex.get(key);
-        return doGetRow(result, time, transactionID);
+        List<VersionChain<K, P>> chains = myIndex.get(key);
+        return chains.isEmpty() ? null : chains.get(0);
     }
 
     /**
      * {@inheritDoc}
      */
     @Override
-    public void remove(Transactable<K, P> transactable)
+    protected void addChain(K key, VersionChain<K, P> chain)
     {
-        myIndex.remove(transactable.getPersistable().primaryKey(),
-                       transactable);
-        
+        myIndex.add(key, chain);
+        if (myKeyOrder != null) {
+            myKeyOrder.add(key, chain);
+        }
     }
 
     /**
      * {@inheritDoc}
      */
     @Override
-    public long rowCount()
+    protected void removeChain(K key, VersionChain<K, P> chain)
     {
-        return myIndex.count();
+        myIndex.remove(key, chain);
+        if (myKeyOrder != null) {
+            myKeyOrder.remove(key, chain);
+        }
     }
 
     /**
      * {@inheritDoc}
      */
     @Override
-    public Transactable<K, P> deleteRow(K key, long time, long transactionID)
+    public long rowCount()
     {
-        Transactable<K, P> row = getRow(key, time, transactionID);
-        if (myIndex.remove(key, row)) {
-            return row;
-        }
-        return null;
+        return myIndex.count();
     }
 
     /**
@@ -247,12 +222,9 @@ public class TransactableHashedTable <K extends Comparable<K>,
                                                       long transactionID)
     {
         List<Transactable<K,P>> result = new ArrayList<>();
-        Iterator<Transactable<K,P>> iterator = myIndex.getAllValues();
-        while (iterator.hasNext()) {
-            Transactable<K,P> row = iterator.next();
-            if (myIndex.remove(row.getPersistable().primaryKey(), 
-                               row))
-            {
+        for (VersionChain<K,P> chain : lookupChains(start, end)) {
+            Transactable<K,P> row = doGetRow(chain, time, transactionID);
+            if (row != null && removeVersion(chain, row)) {
                 result.add(row);
             }
         }
@@ -263,14 +235,27 @@ public class TransactableHashedTable <K extends Comparable<K>,
      * {@inheritDoc}
      */
     @Override
-    public
-        void
-        deleteVersion(
-                      Transactable<K, P> deletedVersion)
+    public synchronized boolean reclaimVersions(
+        long                           lowWatermark,
+        int                            maxVersions,
+        Collection<Transactable<K, P>> reclaimed)
     {
-        myIndex.remove(deletedVersion.getPersistable().primaryKey(), 
-                       deletedVersion);
+        int examined = 0;
+        while (   examined < maxVersions
+               && myReclaimCursor < myIndex.getBucketCount())
+        {
+            for (VersionChain<K, P> chain : 
+                     myIndex.getBucketValues(myReclaimCursor))
+            {
+                examined += reclaimVersions(chain, lowWatermark, reclaimed);
+            }
+            myReclaimCursor++;
+        }
         
+        if (myReclaimCursor >= myIndex.getBucketCount()) {
+            myReclaimCursor = 0;
+            return true;
+        }
+        return false;
     }
-
 }
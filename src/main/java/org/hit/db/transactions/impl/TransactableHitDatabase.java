@@ -20,8 +20,10 @@
 
 package org.hit.db.transactions.impl;
 
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Logger;
 
@@ -57,8 +59,8 @@ public class TransactableHitDatabase implements TransactableDatabase
      */
     public TransactableHitDatabase()
     {
-        myDatabaseTables = new HashMap<>();
-        myTable2Schema = new HashMap<>();
+        myDatabaseTables = new ConcurrentHashMap<>();
+        myTable2Schema = new ConcurrentHashMap<>();
         myLock = new AtomicLong(UNLOCKED_VALUE);
     }
 
@@ -87,11 +89,35 @@ public class TransactableHitDatabase implements TransactableDatabase
 
         if (table == null) {
             table = makeTable(myTable2Schema.get(tableName));
-            myDatabaseTables.put(tableName, table);
+            TransactableTable<K,P> existingTable = 
+                (TransactableTable<K,P>) 
+                    myDatabaseTables.putIfAbsent(tableName, table);
+            if (existingTable != null) {
+                table = existingTable;
+            }
         }
         return table;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Collection<TransactableTable<?, ?>> getTables()
+    {
+        return new ArrayList<>(myDatabaseTables.values());
+    }
+    
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void dropTable(String tableName)
+    {
+        myDatabaseTables.remove(tableName);
+        myTable2Schema.remove(tableName);
+    }
+
     private <K extends Comparable<K>, P extends Persistable<K>>
         TransactableTable<K, P> makeTable(HitTableSchema schema)
     {
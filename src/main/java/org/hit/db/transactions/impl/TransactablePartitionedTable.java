@@ -22,18 +22,16 @@ package org.hit.db.transactions.impl;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
-import java.util.TreeMap;
 
 import org.hit.concurrent.LocklessSkipList;
 import org.hit.db.model.Persistable;
 import org.hit.db.model.Predicate;
 import org.hit.db.model.HitTableSchema;
 import org.hit.db.transactions.Transactable;
-import org.hit.db.transactions.ValidationResult;
-import org.hit.util.Pair;
 
-import com.google.common.collect.Collections2;
+import com.google.common.collect.AbstractIterator;
 
 /**
  * An implementation of a table wherein the keyspace of the table is
@@ -44,7 +42,10 @@ import com.google.common.collect.Collections2;
 public class TransactablePartitionedTable<K extends Comparable<K>, P extends Persistable<K>>
     extends AbstractTransactableTable<K,P>
 {
-    private final LocklessSkipList<K, Transactable<K,P>> myIndex;
+    private final LocklessSkipList<K, VersionChain<K,P>> myIndex;
+    
+    /** The key upto which the versions have been examined for reclamation */
+    private K myReclaimCursor;
     
     /**
      * CTOR
@@ -52,59 +53,28 @@ public class TransactablePartitionedTable<K extends Comparable<K>, P extends Per
     public TransactablePartitionedTable(HitTableSchema schema)
     {
         super(schema);
-        myIndex = new LocklessSkipList<K, Transactable<K,P>>(10);
-    }
-
-    /**
-     * {@inheritDoc}
-     */
-    @Override
-    public void addToTable(Transactable<K, P> transactable)
-    {
-        myIndex.add(transactable.getPersistable().primaryKey(),
-                    transactable);
+        myIndex = new LocklessSkipList<K, VersionChain<K,P>>(10);
     }
     
     private Collection<Transactable<K, P>> doFindMatching(
         Predicate        predicate,
         long             transactionID,
         long             time,
-        LocklessSkipList<K, Transactable<K,P>>.SkipListIterator iterator)
+        LocklessSkipList<K, VersionChain<K,P>>.SkipListIterator iterator)
     {
-        TreeMap<K, Pair<ValidationResult, Transactable<K,P>>> result = 
-                        new TreeMap<>();
+        List<Transactable<K,P>> result = new ArrayList<>();
         while (iterator.hasNext()) {
-            for (Transactable<K,P> transactable : iterator.next()) {
-                if (predicate.isInterested(transactable.getPersistable())) {
-                    ValidationResult validationResult = 
-                        transactable.validate(time, transactionID);
-                    Pair<ValidationResult, Transactable<K,P>> sameKeyValue = 
-                        result.get(transactable.getPersistable().primaryKey());
-                    if (   sameKeyValue == null 
-                        && validationResult.isValid()) 
-                    {
-                        result.put(transactable.getPersistable().primaryKey(),
-                                   new Pair<>(validationResult, transactable));
-                    }
-                    else if (   validationResult.isSpeculativelyValid() 
-                              && validationResult.getTransactionId() 
-                                     != transactionID
-                              && sameKeyValue.getFirst().getTransactionId()
-                                     != transactionID
-                              && sameKeyValue.getFirst().isSpeculativelyValid()
-                              && validationResult.getTransactionId()
-                                     > sameKeyValue.getFirst()
-                                                   .getTransactionId())
-                    {
-                        result.put(transactable.getPersistable().primaryKey(),
-                                   new Pair<>(validationResult, transactable));
-                    }
+            for (VersionChain<K,P> chain : iterator.next()) {
+                Transactable<K,P> visible = 
+                    doGetRow(chain, time, transactionID, true);
+                if (   visible != null 
+                    && predicate.isInterested(visible.getPersistable())) 
+                {
+                    result.add(visible);
                 }
             }
         }
-        
-        return Collections2.transform(result.values(),
-                                      new AddDependency(transactionID));
+        return result;
     }
     
     /**
@@ -116,7 +86,7 @@ public class TransactablePartitionedTable<K extends Comparable<K>, P extends Per
                      long      time,
                      long      transactionID)
     {
-        LocklessSkipList<K, Transactable<K,P>>.SkipListIterator iterator =
+        LocklessSkipList<K, VersionChain<K,P>>.SkipListIterator iterator =
             myIndex.lookupAllValues();
         return doFindMatching(predicate, transactionID, time, iterator);
     }
@@ -132,51 +102,91 @@ public class TransactablePartitionedTable<K extends Comparable<K>, P extends Per
                      long      time,
                      long      transactionID)
     {
-        LocklessSkipList<K, Transactable<K,P>>.SkipListIterator iterator =
+        LocklessSkipList<K, VersionChain<K,P>>.SkipListIterator iterator =
             myIndex.lookupValues(start, end);
         return doFindMatching(predicate, transactionID, time, iterator);
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The versions are looked up from the skip list as the iterator
+     * advances, in the order of their keys.
+     */
+    @Override
+    public Iterator<Transactable<K, P>> iterateMatching(
+        final Predicate predicate,
+        final long      time,
+        final long      transactionID)
+    {
+        final LocklessSkipList<K, VersionChain<K,P>>.SkipListIterator 
+            iterator = myIndex.lookupAllValues();
+        return new AbstractIterator<Transactable<K,P>>() {
+            
+            private Iterator<VersionChain<K,P>> myChains = null;
+
+            @Override
+            protected Transactable<K, P> computeNext()
+            {
+                while (true) {
+                    while (myChains == null || !myChains.hasNext()) {
+                        if (!iterator.hasNext()) {
+                            return endOfData();
+                        }
+                        myChains = iterator.next().iterator();
+                    }
+                    Transactable<K,P> visible = 
+                        doGetRow(myChains.next(), time, transactionID, true);
+                    if (   visible != null 
+                        && predicate.isInterested(visible.getPersistable())) 
+                    {
+                        return visible;
+                    }
+                }
+            }
+        };
+    }
+
     /**
      * {@inheritDoc}
      */
     @Override
-    public Transactable<K, P> getRow(K key, long time, long transactionID)
+    protected VersionChain<K, P> lookupChain(K key)
     {
-        List<Transactable<K, P>> result = myIndex.lookupValue(key);
-        return doGetRow(result, time, transactionID);
+        List<VersionChain<K, P>> chains = myIndex.lookupValue(key);
+        if (chains != null) {
+            for (VersionChain<K, P> chain : chains) {
+                return chain;
+            }
+        }
+        return null;
     }
 
     /**
      * {@inheritDoc}
      */
     @Override
-    public void remove(Transactable<K, P> transactable)
+    protected void addChain(K key, VersionChain<K, P> chain)
     {
-        myIndex.remove(transactable.getPersistable().primaryKey(),
-                       transactable);
+        myIndex.add(key, chain);
     }
 
     /**
      * {@inheritDoc}
      */
     @Override
-    public long rowCount()
+    protected void removeChain(K key, VersionChain<K, P> chain)
     {
-        return myIndex.getCount();
+        myIndex.remove(key, chain);
     }
 
     /**
      * {@inheritDoc}
      */
     @Override
-    public Transactable<K, P> deleteRow(K key, long time, long transactionID)
+    public long rowCount()
     {
-        Transactable<K, P> row = getRow(key, time, transactionID);
-        if (myIndex.remove(key, row)) {
-            return row;
-        }
-        return null;
+        return myIndex.getCount();
     }
 
     /**
@@ -190,15 +200,14 @@ public class TransactablePartitionedTable<K extends Comparable<K>, P extends Per
                                                       long transactionID)
     {
         List<Transactable<K,P>> result = new ArrayList<>();
-        LocklessSkipList<K, Transactable<K,P>>.SkipListIterator iterator =
+        LocklessSkipList<K, VersionChain<K,P>>.SkipListIterator iterator =
             myIndex.lookupValues(start, end);
         while (iterator.hasNext()) {
-            List<Transactable<K,P>> rowVersions = iterator.next();
-            Transactable<K,P> row = doGetRow(rowVersions, time, transactionID);
-            if (myIndex.remove(row.getPersistable().primaryKey(), 
-                               row))
-            {
-                result.add(row);
+            for (VersionChain<K,P> chain : iterator.next()) {
+                Transactable<K,P> row = doGetRow(chain, time, transactionID);
+                if (row != null && removeVersion(chain, row)) {
+                    result.add(row);
+                }
             }
         }
         return result;
@@ -208,9 +217,32 @@ public class TransactablePartitionedTable<K extends Comparable<K>, P extends Per
      * {@inheritDoc}
      */
     @Override
-    public void deleteVersion(Transactable<K, P> deletedVersion)
+    public synchronized boolean reclaimVersions(
+        long                           lowWatermark,
+        int                            maxVersions,
+        Collection<Transactable<K, P>> reclaimed)
     {
-        myIndex.remove(deletedVersion.getPersistable().primaryKey(), 
-                       deletedVersion);
+        LocklessSkipList<K, VersionChain<K,P>>.SkipListIterator iterator =
+            myReclaimCursor == null ? myIndex.lookupAllValues()
+                                    : myIndex.lookupValuesFrom(myReclaimCursor);
+        int examined = 0;
+        while (examined < maxVersions && iterator.hasNext()) {
+            for (VersionChain<K,P> chain : iterator.next()) {
+                if (   myReclaimCursor != null 
+                    && chain.getKey().compareTo(myReclaimCursor) <= 0)
+                {
+                    // Already examined as part of the previous call.
+                    continue;
+                }
+                examined += reclaimVersions(chain, lowWatermark, reclaimed);
+                myReclaimCursor = chain.getKey();
+            }
+        }
+        
+        if (!iterator.hasNext()) {
+            myReclaimCursor = null;
+            return true;
+        }
+        return false;
     }
 }
@@ -0,0 +1,159 @@
+/*
+    Hit is a high speed transactional database for handling millions
+    of updates with comfort and ease.
+
+    Copyright (C) 2013  Balraja Subbiah
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package org.hit.db.transactions.impl;
+
+import java.util.Collection;
+
+import org.hit.db.model.Persistable;
+import org.hit.db.transactions.Transactable;
+
+/**
+ * Holds the versions of a row linked from the newest to the oldest
+ * version. Readers walk the chain without any locking, while the writers
+ * are serialized on the chain.
+ *
+ * @author Balraja Subbiah
+ */
+public class VersionChain<K extends Comparable<K>, P extends Persistable<K>>
+{
+    private final K myKey;
+
+    private volatile Transactable<K,P> myNewestVersion;
+
+    private boolean myIsRetired;
+
+    /**
+     * CTOR
+     */
+    public VersionChain(K key)
+    {
+        myKey = key;
+        myNewestVersion = null;
+        myIsRetired = false;
+    }
+
+    /**
+     * Returns the value of key
+     */
+    public K getKey()
+    {
+        return myKey;
+    }
+
+    /**
+     * Returns the newest version of the row, from which the older versions
+     * can be reached.
+     */
+    public Transactable<K,P> getNewestVersion()
+    {
+        return myNewestVersion;
+    }
+
+    /**
+     * Adds the given version as the newest version of the row.
+     *
+     * @return false if the chain has been retired and no longer accepts
+     *         versions, true otherwise.
+     */
+    public synchronized boolean addVersion(Transactable<K,P> version)
+    {
+        if (myIsRetired) {
+            return false;
+        }
+        version.setOlderVersion(myNewestVersion);
+        myNewestVersion = version;
+        return true;
+    }
+
+    /**
+     * Unlinks the given version from the chain. The link from the removed
+     * version is left intact so that the readers currently positioned on
+     * it can continue to walk the chain.
+     */
+    public synchronized boolean removeVersion(Transactable<K,P> version)
+    {
+        Transactable<K,P> newer = null;
+        Transactable<K,P> current = myNewestVersion;
+        while (current != null && current != version) {
+            newer = current;
+            current = current.getOlderVersion();
+        }
+
+        if (current == null) {
+            return false;
+        }
+
+        if (newer == null) {
+            myNewestVersion = current.getOlderVersion();
+        }
+        else {
+            newer.setOlderVersion(current.getOlderVersion());
+        }
+        return true;
+    }
+
+    /**
+     * Unlinks the versions that are not visible to any transaction started
+     * after the low watermark and adds them to <code>reclaimed</code>.
+     *
+     * @return The number of versions examined.
+     */
+    public synchronized int reclaimVersions(
+        long                           lowWatermark,
+        Collection<Transactable<K, P>> reclaimed)
+    {
+        int examined = 0;
+        Transactable<K,P> newer = null;
+        Transactable<K,P> current = myNewestVersion;
+        while (current != null) {
+            examined++;
+            Transactable<K,P> older = current.getOlderVersion();
+            if (current.isReclaimable(lowWatermark)) {
+                if (newer == null) {
+                    myNewestVersion = older;
+                }
+                else {
+                    newer.setOlderVersion(older);
+                }
+                reclaimed.add(current);
+            }
+            else {
+                newer = current;
+            }
+            current = older;
+        }
+        return examined;
+    }
+
+    /**
+     * Retires the chain if it doesn't have any versions, after which no
+     * more versions can be added to it.
+     *
+     * @return true if the chain has been retired.
+     */
+    public synchronized boolean retireIfEmpty()
+    {
+        if (myNewestVersion == null) {
+            myIsRetired = true;
+        }
+        return myIsRetired;
+    }
+}
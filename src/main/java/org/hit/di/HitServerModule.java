@@ -38,7 +38,7 @@ import org.hit.gms.SimpleGroupID;
 import org.hit.server.ServerConfig;
 import org.hit.server.ServerPropertyConfig;
 import org.hit.time.Clock;
-import org.hit.time.SimpleSystemClock;
+import org.hit.time.HybridLogicalClock;
 
 import com.google.inject.Provides;
 import com.google.inject.name.Named;
@@ -76,7 +76,6 @@ public class HitServerModule extends HitModule
     protected void configure()
     {
         super.configure();
-        bind(Clock.class).to(SimpleSystemClock.class);
         bind(FileSystemFacacde.class).to(StandardFileSystem.class);
         bind(Allocator.class).to(StandardAllocator.class);
         bind(TransactableDatabase.class).to(TransactableHitDatabase.class);
@@ -102,6 +101,14 @@ public class HitServerModule extends HitModule
         return myEventBus;
     }
     
+    @Provides
+    protected Clock getClock(ServerConfig config)
+    {
+        HybridLogicalClock clock = HybridLogicalClock.getInstance();
+        clock.setMaxOffsetMillis(config.getMaxClockOffsetMillis());
+        return clock;
+    }
+    
     @Named("ReplicationUnitID")
     @Provides
     public UnitID makeReplicationUnitID(ServerConfig config)
@@ -0,0 +1,76 @@
+/*
+    Hit is a high speed transactional database for handling millions
+    of updates with comfort and ease.
+
+    Copyright (C) 2013  Balraja Subbiah
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package org.hit.event;
+
+import org.hit.consensus.UnitID;
+
+/**
+ * Defines an event that notifies the consensus protocol of an {@link 
+ * UnitID} about a snapshot of the replicated state, so that the log 
+ * covered by the snapshot can be discarded. The snapshot is made up of 
+ * the files under the given directory.
+ * 
+ * @author Balraja Subbiah
+ */
+public class LogCompactionEvent implements Event
+{
+    private final UnitID myUnitID;
+    
+    private final long mySnapshotTime;
+    
+    private final String mySnapshotPath;
+
+    /**
+     * CTOR
+     */
+    public LogCompactionEvent(UnitID unitID, 
+                              long   snapshotTime, 
+                              String snapshotPath)
+    {
+        myUnitID = unitID;
+        mySnapshotTime = snapshotTime;
+        mySnapshotPath = snapshotPath;
+    }
+
+    /**
+     * Returns the value of unitID
+     */
+    public UnitID getUnitID()
+    {
+        return myUnitID;
+    }
+
+    /**
+     * Returns the time as of which the snapshot has been taken
+     */
+    public long getSnapshotTime()
+    {
+        return mySnapshotTime;
+    }
+
+    /**
+     * Returns the path of the directory having the snapshot's files
+     */
+    public String getSnapshotPath()
+    {
+        return mySnapshotPath;
+    }
+}
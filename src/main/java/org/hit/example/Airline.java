@@ -1,6 +1,6 @@
 /*
     Hit is a high speed transactional database for handling millions
-    of updates with comfort and ease. 
+    of updates with comfort and ease.
 
     Copyright (C) 2013  Balraja Subbiah
 
@@ -24,43 +24,87 @@ import java.io.Externalizable;
 import java.io.IOException;
 import java.io.ObjectInput;
 import java.io.ObjectOutput;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Objects;
 
+import org.hit.db.model.HitTableSchema;
+import org.hit.db.model.OrdinalRow;
 import org.hit.db.model.Persistable;
 import org.hit.db.model.mutations.MutationFactory;
+import org.hit.io.CompactIO;
 import org.hit.pool.PooledObjects;
 
-import com.google.common.collect.Lists;
+import com.google.common.hash.Funnel;
+import com.google.common.hash.PrimitiveSink;
 
 /**
- * Defines the contract for the table that holds information about an airline
- * 
- * @author Balraja Subbiah
+ * Defines the contract for the table that holds information about an airline.
+ * <p>
+ * Generated from the schema file by <code>SchemaGenerator</code>, which 
+ * has to be changed instead of this class.
  */
-public class Airline implements Persistable<Long>, Externalizable
+public class Airline
+    implements Persistable<Long>, OrdinalRow, Externalizable
 {
     public static final String TABLE_NAME = "airlines";
-    
-    private static final String AIRLINE_ID   = "airline_id";
-    
-    private static final String AIRLINE_NAME = "name";
-    
-    private long myID;
-    
-    private String myName;
+
+    public static final int AIRLINE_ID_INDEX = 0;
+
+    public static final int NAME_INDEX = 1;
+
+    private static final Collection<String> FIELD_NAMES = 
+        Collections.unmodifiableList(Arrays.asList(
+            "airline_id", 
+            "name"));
 
     /**
-     * CTOR
+     * Puts the keys of the airlines into a <code>PrimitiveSink</code>
+     * without reflection.
      */
-    public Airline()
+    public static enum KeyFunnel implements Funnel<Long>
     {
-        super();
+        INSTANCE;
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void funnel(Long key, PrimitiveSink into)
+        {
+            into.putLong(key.longValue());
+        }
     }
 
+    /**
+     * Orders the keys of the airlines in their natural order.
+     */
+    public static enum KeyComparator implements Comparator<Long>
+    {
+        INSTANCE;
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int compare(Long key, Long otherKey)
+        {
+            return key.compareTo(otherKey);
+        }
+    }
+
+    private long myID;
+
+    private String myName;
+
     /**
      * CTOR
      */
-    public Airline initialize(long iD, String name)
+    public Airline initialize(
+        long iD,
+        String name)
     {
         myID = iD;
         myName = name;
@@ -68,19 +112,25 @@ public class Airline implements Persistable<Long>, Externalizable
     }
 
     /**
-     * Returns the value of iD
+     * Declares the secondary indexes and the storage specified for the 
+     * airlines in the schema file on the given schema.
      */
-    public long getID()
+    public static HitTableSchema declare(HitTableSchema schema)
     {
-        return myID;
+        return schema;
+    }
+
+    public static MutationFactory<Long, Airline> getMutationFactory()
+    {
+        return new MutationFactory<>(TABLE_NAME);
     }
 
     /**
-     * Setter for the iD
+     * Returns the value of iD
      */
-    public void setID(long iD)
+    public long getID()
     {
-        myID = iD;
+        return myID;
     }
 
     /**
@@ -91,6 +141,14 @@ public class Airline implements Persistable<Long>, Externalizable
         return myName;
     }
 
+    /**
+     * Setter for the iD
+     */
+    public void setID(long iD)
+    {
+        myID = iD;
+    }
+
     /**
      * Setter for the name
      */
@@ -103,15 +161,21 @@ public class Airline implements Persistable<Long>, Externalizable
      * {@inheritDoc}
      */
     @Override
-    public Object getFieldValue(String fieldName)
+    public Long primaryKey()
+    {
+        return myID;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getFieldIndex(String fieldName)
     {
-        switch(fieldName) {
-        case AIRLINE_ID:
-            return getID();
-        case AIRLINE_NAME:
-            return getName();
-        default:
-            return null;
+        switch (fieldName) {
+        case "airline_id" : return AIRLINE_ID_INDEX;
+        case "name" : return NAME_INDEX;
+        default : return -1;
         }
     }
 
@@ -119,82 +183,84 @@ public class Airline implements Persistable<Long>, Externalizable
      * {@inheritDoc}
      */
     @Override
-    public void writeExternal(ObjectOutput out) throws IOException
+    public Object getFieldValue(int fieldIndex)
     {
-        out.writeLong(myID);
-        out.writeUTF(myName);
+        switch (fieldIndex) {
+        case AIRLINE_ID_INDEX : return myID;
+        case NAME_INDEX : return myName;
+        default : return null;
+        }
     }
 
     /**
      * {@inheritDoc}
      */
     @Override
-    public void readExternal(ObjectInput in)
-        throws IOException,
-            ClassNotFoundException
+    public Object getFieldValue(String fieldName)
     {
-        myID = in.readLong();
-        myName = in.readUTF();
+        // The row stands for its table, so that the columns qualified by 
+        // the name of the table can be looked up as nested columns.
+        int fieldIndex = getFieldIndex(fieldName);
+        return fieldIndex >= 0 ? getFieldValue(fieldIndex)
+               : TABLE_NAME.equals(fieldName) ? this : null;
     }
 
     /**
      * {@inheritDoc}
      */
     @Override
-    public Long primaryKey()
+    public Collection<String> getFieldNames()
     {
-        return Long.valueOf(myID);
+        return FIELD_NAMES;
     }
 
     /**
      * {@inheritDoc}
      */
     @Override
-    public int hashCode()
+    public void writeExternal(ObjectOutput out) throws IOException
     {
-        final int prime = 31;
-        int result = 1;
-        result = prime * result + (int) (myID ^ (myID >>> 32));
-        result = prime * result + ((myName == null) ? 0 : myName.hashCode());
-        return result;
+        CompactIO.writeVarLong(out, myID);
+        CompactIO.writeString(out, myName);
     }
 
     /**
      * {@inheritDoc}
      */
     @Override
-    public boolean equals(Object obj)
+    public void readExternal(ObjectInput in)
+        throws IOException, ClassNotFoundException
     {
-        if (this == obj)
-            return true;
-        if (obj == null)
-            return false;
-        if (getClass() != obj.getClass())
-            return false;
-        Airline other = (Airline) obj;
-        if (myID != other.myID)
-            return false;
-        if (myName == null) {
-            if (other.myName != null)
-                return false;
-        }
-        else if (!myName.equals(other.myName))
-            return false;
-        return true;
+        myID = CompactIO.readVarLong(in);
+        myName = CompactIO.readString(in);
     }
-    
-    public static MutationFactory<Long,Airline> getMutationFactory()
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int hashCode()
     {
-        return new MutationFactory<>(TABLE_NAME);
+        return Objects.hash(
+            myID, 
+            myName);
     }
 
     /**
      * {@inheritDoc}
      */
     @Override
-    public Collection<String> getFieldNames()
+    public boolean equals(Object obj)
     {
-        return Lists.newArrayList(AIRLINE_ID, AIRLINE_NAME);
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null || getClass() != obj.getClass()) {
+            return false;
+        }
+        Airline other = (Airline) obj;
+        return Objects.equals(myID, other.myID)
+            && Objects.equals(myName, other.myName);
     }
 
     /**
@@ -203,7 +269,7 @@ public class Airline implements Persistable<Long>, Externalizable
     @Override
     public void free()
     {
-        myID = Long.MIN_VALUE;
+        myID = 0;
         myName = null;
     }
 
@@ -213,7 +279,8 @@ public class Airline implements Persistable<Long>, Externalizable
     @Override
     public Airline getCopy()
     {
-        return PooledObjects.getInstance(Airline.class)
-                            .initialize(myID, myName);
+        return PooledObjects.getInstance(Airline.class).initialize(
+            myID, 
+            myName);
     }
 }
@@ -24,63 +24,131 @@ import java.io.Externalizable;
 import java.io.IOException;
 import java.io.ObjectInput;
 import java.io.ObjectOutput;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Objects;
 
-import org.hit.db.model.Persistable;
+import org.hit.db.model.HitTableSchema;
+import org.hit.db.model.ImmutablePersistable;
+import org.hit.db.model.OrdinalRow;
 import org.hit.db.model.mutations.MutationFactory;
-import org.hit.pool.PoolConfiguration;
-import org.hit.pool.PooledObjects;
+import org.hit.io.CompactIO;
 
-import com.google.common.collect.Lists;
+import com.google.common.hash.Funnel;
+import com.google.common.hash.PrimitiveSink;
 
 /**
  * Defines a class that encapsulates the information about airports.
- *
- * @author Balraja Subbiah
+ * The rows are immutable, hence they aren't pooled; a row is only 
+ * initialized when it's created and is never reset, since the queries 
+ * might still be holding it after it has been removed from the table.
+ * <p>
+ * Generated from the schema file by <code>SchemaGenerator</code>, which 
+ * has to be changed instead of this class.
  */
-@PoolConfiguration(initialSize = 100, size = 20000)
-public class Airport implements Persistable<Long>, Externalizable
+public class Airport
+    implements ImmutablePersistable<Long>, OrdinalRow, Externalizable
 {
     public static final String TABLE_NAME = "airports";
-    
-    private double myAltitude;
 
-    private String myCity;
+    public static final int ID_INDEX = 0;
 
-    private String myCountry;
+    public static final int NAME_INDEX = 1;
 
-    private float myDST;
+    public static final int CITY_INDEX = 2;
 
-    private String myIATACode;
+    public static final int COUNTRY_INDEX = 3;
 
-    private long myID;
+    public static final int IATA_CODE_INDEX = 4;
 
-    private double myLatitude;
+    public static final int LATITUDE_INDEX = 5;
 
-    private double myLongitude;
+    public static final int LONGITUDE_INDEX = 6;
 
-    private String myName;
+    public static final int ALTITUDE_INDEX = 7;
+
+    public static final int DST_INDEX = 8;
+
+    private static final Collection<String> FIELD_NAMES = 
+        Collections.unmodifiableList(Arrays.asList(
+            "id", 
+            "name", 
+            "city", 
+            "country", 
+            "iata_code", 
+            "latitude", 
+            "longitude", 
+            "altitude", 
+            "dst"));
 
     /**
-     * CTOR
+     * Puts the keys of the airports into a <code>PrimitiveSink</code>
+     * without reflection.
      */
-    public Airport()
+    public static enum KeyFunnel implements Funnel<Long>
     {
+        INSTANCE;
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void funnel(Long key, PrimitiveSink into)
+        {
+            into.putLong(key.longValue());
+        }
     }
 
+    /**
+     * Orders the keys of the airports in their natural order.
+     */
+    public static enum KeyComparator implements Comparator<Long>
+    {
+        INSTANCE;
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int compare(Long key, Long otherKey)
+        {
+            return key.compareTo(otherKey);
+        }
+    }
+
+    private long myID;
+
+    private String myName;
+
+    private String myCity;
+
+    private String myCountry;
+
+    private String myIATACode;
+
+    private double myLatitude;
+
+    private double myLongitude;
+
+    private double myAltitude;
+
+    private float myDST;
+
     /**
      * CTOR
      */
     public Airport initialize(
-       long iD,
-       String name,
-       String city,
-       String country,
-       String iATACode,
-       double latitude,
-       double longitude,
-       double altitude,
-       float dST)
+        long iD,
+        String name,
+        String city,
+        String country,
+        String iATACode,
+        double latitude,
+        double longitude,
+        double altitude,
+        float dST)
     {
         myID = iD;
         myName = name;
@@ -95,11 +163,33 @@ public class Airport implements Persistable<Long>, Externalizable
     }
 
     /**
-     * Returns the value of altitude
+     * Declares the secondary indexes and the storage specified for the 
+     * airports in the schema file on the given schema.
      */
-    public double getAltitude()
+    public static HitTableSchema declare(HitTableSchema schema)
     {
-        return myAltitude;
+        return schema;
+    }
+
+    public static MutationFactory<Long, Airport> getMutationFactory()
+    {
+        return new MutationFactory<>(TABLE_NAME);
+    }
+
+    /**
+     * Returns the value of iD
+     */
+    public long getID()
+    {
+        return myID;
+    }
+
+    /**
+     * Returns the value of name
+     */
+    public String getName()
+    {
+        return myName;
     }
 
     /**
@@ -119,99 +209,114 @@ public class Airport implements Persistable<Long>, Externalizable
     }
 
     /**
-     * Returns the value of dST
+     * Returns the value of iATACode
      */
-    public float getDST()
+    public String getIATACode()
     {
-        return myDST;
+        return myIATACode;
     }
 
     /**
-     * {@inheritDoc}
+     * Returns the value of latitude
      */
-    @Override
-    public Object getFieldValue(String fieldName)
+    public double getLatitude()
     {
-        switch (fieldName) {
-        case "id" : return myID;
-        case "name" : return myName;
-        case "city" : return myCity;
-        case "country" : return myCountry;
-        case "iata_code" : return myIATACode;
-        case "latitude" : return myLatitude;
-        case "longitude" : return myLongitude;
-        case "altitude" : return myAltitude;
-        case "dst" : return myDST;
-        default : return this;
-        }
+        return myLatitude;
     }
 
     /**
-     * Returns the value of iATACode
+     * Returns the value of longitude
      */
-    public String getIATACode()
+    public double getLongitude()
     {
-        return myIATACode;
+        return myLongitude;
     }
 
     /**
-     * Returns the value of iD
+     * Returns the value of altitude
      */
-    public long getID()
+    public double getAltitude()
     {
-        return myID;
+        return myAltitude;
     }
 
     /**
-     * Returns the value of latitude
+     * Returns the value of dST
      */
-    public double getLatitude()
+    public float getDST()
     {
-        return myLatitude;
+        return myDST;
     }
 
     /**
-     * Returns the value of longitude
+     * {@inheritDoc}
      */
-    public double getLongitude()
+    @Override
+    public Long primaryKey()
     {
-        return myLongitude;
+        return myID;
     }
 
     /**
-     * Returns the value of name
+     * {@inheritDoc}
      */
-    public String getName()
+    @Override
+    public int getFieldIndex(String fieldName)
     {
-        return myName;
+        switch (fieldName) {
+        case "id" : return ID_INDEX;
+        case "name" : return NAME_INDEX;
+        case "city" : return CITY_INDEX;
+        case "country" : return COUNTRY_INDEX;
+        case "iata_code" : return IATA_CODE_INDEX;
+        case "latitude" : return LATITUDE_INDEX;
+        case "longitude" : return LONGITUDE_INDEX;
+        case "altitude" : return ALTITUDE_INDEX;
+        case "dst" : return DST_INDEX;
+        default : return -1;
+        }
     }
 
     /**
      * {@inheritDoc}
      */
     @Override
-    public Long primaryKey()
+    public Object getFieldValue(int fieldIndex)
     {
-        return Long.valueOf(myID);
+        switch (fieldIndex) {
+        case ID_INDEX : return myID;
+        case NAME_INDEX : return myName;
+        case CITY_INDEX : return myCity;
+        case COUNTRY_INDEX : return myCountry;
+        case IATA_CODE_INDEX : return myIATACode;
+        case LATITUDE_INDEX : return myLatitude;
+        case LONGITUDE_INDEX : return myLongitude;
+        case ALTITUDE_INDEX : return myAltitude;
+        case DST_INDEX : return myDST;
+        default : return null;
+        }
     }
 
     /**
      * {@inheritDoc}
      */
     @Override
-    public void readExternal(ObjectInput in)
-        throws IOException,
-            ClassNotFoundException
+    public Object getFieldValue(String fieldName)
     {
-        myID = in.readLong();
-        myName = in.readUTF();
-        myCity = in.readUTF();
-        myCountry = in.readUTF();
-        myIATACode = in.readUTF();
-        myLatitude = in.readDouble();
-        myLongitude = in.readDouble();
-        myAltitude = in.readDouble();
-        myDST = in.readFloat();
+        // The row stands for its table, so that the columns qualified by 
+        // the name of the table can be looked up as nested columns.
+        int fieldIndex = getFieldIndex(fieldName);
+        return fieldIndex >= 0 ? getFieldValue(fieldIndex)
+               : TABLE_NAME.equals(fieldName) ? this : null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Collection<String> getFieldNames()
+    {
+        return FIELD_NAMES;
     }
 
     /**
@@ -220,38 +325,75 @@ public class Airport implements Persistable<Long>, Externalizable
     @Override
     public void writeExternal(ObjectOutput out) throws IOException
     {
-        out.writeLong(myID);
-        out.writeUTF(myName);
-        out.writeUTF(myCity);
-        out.writeUTF(myCountry);
-        out.writeUTF(myIATACode);
+        CompactIO.writeVarLong(out, myID);
+        CompactIO.writeString(out, myName);
+        CompactIO.writeString(out, myCity);
+        CompactIO.writeDictionaryString(out, myCountry);
+        CompactIO.writeString(out, myIATACode);
         out.writeDouble(myLatitude);
         out.writeDouble(myLongitude);
         out.writeDouble(myAltitude);
         out.writeFloat(myDST);
     }
-    
-    public static MutationFactory<Long, Airport> getMutationFactory()
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void readExternal(ObjectInput in)
+        throws IOException, ClassNotFoundException
     {
-        return new MutationFactory<>(TABLE_NAME);
+        myID = CompactIO.readVarLong(in);
+        myName = CompactIO.readString(in);
+        myCity = CompactIO.readString(in);
+        myCountry = CompactIO.readDictionaryString(in);
+        myIATACode = CompactIO.readString(in);
+        myLatitude = in.readDouble();
+        myLongitude = in.readDouble();
+        myAltitude = in.readDouble();
+        myDST = in.readFloat();
     }
 
     /**
      * {@inheritDoc}
      */
     @Override
-    public Collection<String> getFieldNames()
+    public int hashCode()
     {
-        return Lists.newArrayList(
-            "id", 
-            "name", 
-            "city", 
-            "country", 
-            "iata_code", 
-            "latitude", 
-            "longitude", 
-            "altitude", 
-            "dst");
+        return Objects.hash(
+            myID, 
+            myName, 
+            myCity, 
+            myCountry, 
+            myIATACode, 
+            myLatitude, 
+            myLongitude, 
+            myAltitude, 
+            myDST);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean equals(Object obj)
+    {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null || getClass() != obj.getClass()) {
+            return false;
+        }
+        Airport other = (Airport) obj;
+        return Objects.equals(myID, other.myID)
+            && Objects.equals(myName, other.myName)
+            && Objects.equals(myCity, other.myCity)
+            && Objects.equals(myCountry, other.myCountry)
+            && Objects.equals(myIATACode, other.myIATACode)
+            && Objects.equals(myLatitude, other.myLatitude)
+            && Objects.equals(myLongitude, other.myLongitude)
+            && Objects.equals(myAltitude, other.myAltitude)
+            && Objects.equals(myDST, other.myDST);
     }
 
     /**
@@ -260,15 +402,7 @@ public class Airport implements Persistable<Long>, Externalizable
     @Override
     public void free()
     {
-        myAltitude = Double.NaN;
-        myCity     = null;
-        myCountry  = null;
-        myDST      = Float.NaN;
-        myIATACode = null;
-        myID       = Long.MIN_VALUE;
-        myLatitude = Double.NaN;
-        myLongitude = Double.NaN;
-        myName      = null;
+        // The rows aren't pooled, hence there's nothing to reset.
     }
 
     /**
@@ -277,15 +411,15 @@ public class Airport implements Persistable<Long>, Externalizable
     @Override
     public Airport getCopy()
     {
-        return PooledObjects.getInstance(Airport.class)
-                            .initialize(myID, 
-                                        myName, 
-                                        myCity, 
-                                        myCountry, 
-                                        myIATACode, 
-                                        myLatitude, 
-                                        myLongitude, 
-                                        myAltitude, 
-                                        myDST);
+        return new Airport().initialize(
+            myID, 
+            myName, 
+            myCity, 
+            myCountry, 
+            myIATACode, 
+            myLatitude, 
+            myLongitude, 
+            myAltitude, 
+            myDST);
     }
 }
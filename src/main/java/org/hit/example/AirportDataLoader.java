@@ -20,8 +20,6 @@
 
 package org.hit.example;
 
-import org.hit.pool.PooledObjects;
-
 /**
  * A simple class that's responsible for loading <code>Airport</code> from the 
  * 
@@ -45,7 +43,7 @@ public final class AirportDataLoader extends DataLoader<Airport>
     @Override
     protected Airport parseFromTokens(String[] parts)
     {
-        return PooledObjects.getInstance(Airport.class).initialize(
+        return new Airport().initialize(
                Long.parseLong(parts[0]),
                parts[1],
                parts[2],
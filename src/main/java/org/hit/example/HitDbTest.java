@@ -32,6 +32,7 @@ import org.hit.client.DBClient;
 import org.hit.db.keyspace.LinearKeyspace;
 import org.hit.db.keyspace.domain.LongDomain;
 import org.hit.db.model.HitTableSchema;
+import org.hit.db.model.IndexType;
 import org.hit.db.model.mutations.BatchAddMutation;
 import org.hit.db.sql.operators.QueryBuildingException;
 import org.hit.facade.DBOperationResponse;
@@ -74,6 +75,10 @@ public class HitDbTest extends DBClient
                        Airport.class,
                        Long.class,
                        new LinearKeyspace<Long>(new LongDomain(1L, 7000L)));
+        schema.addSecondaryIndex("country", IndexType.HASH);
+        schema.addSecondaryIndex("altitude", IndexType.ORDERED);
+        // The airports are loaded once and aggregated thereafter.
+        schema.setColumnarReplica(true);
 
         ListenableFuture<TableCreationResponse> futureResponse =
             getFacade().createTable(schema);
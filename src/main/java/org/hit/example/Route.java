@@ -1,6 +1,6 @@
 /*
     Hit is a high speed transactional database for handling millions
-    of updates with comfort and ease. 
+    of updates with comfort and ease.
 
     Copyright (C) 2013  Balraja Subbiah
 
@@ -24,68 +24,135 @@ import java.io.Externalizable;
 import java.io.IOException;
 import java.io.ObjectInput;
 import java.io.ObjectOutput;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Objects;
 
+import org.hit.db.model.HitTableSchema;
+import org.hit.db.model.OrdinalRow;
 import org.hit.db.model.Persistable;
 import org.hit.db.model.mutations.MutationFactory;
-import org.hit.pool.Copyable;
+import org.hit.io.CompactIO;
 import org.hit.pool.PooledObjects;
 
-import com.google.common.collect.Lists;
+import com.google.common.hash.Funnel;
+import com.google.common.hash.PrimitiveSink;
 
 /**
- * A type for defining the route serviced by an airline
- * 
- * @author Balraja Subbiah
+ * A type for defining the route serviced by an airline.
+ * <p>
+ * Generated from the schema file by <code>SchemaGenerator</code>, which 
+ * has to be changed instead of this class.
  */
-public class Route implements Persistable<Long>, Externalizable
+public class Route
+    implements Persistable<Long>, OrdinalRow, Externalizable
 {
     public static final String TABLE_NAME = "routes";
-    
-    private static final String ROUTE_ID = "route_id";
-    
-    private static final String SRC_AIRPORT = "src_airport_id";
-    
-    private static final String DESTN_AIRPORT = "destn_airport_id";
-    
-    private static final String AIRLINE_ID = "airline_id";
-    
-    private static final String SHARED = "shared";
-    
-    private static final String NUM_STOPS = "num_stops";
-    
+
+    public static final int ROUTE_ID_INDEX = 0;
+
+    public static final int AIRLINE_ID_INDEX = 1;
+
+    public static final int SRC_AIRPORT_ID_INDEX = 2;
+
+    public static final int DESTN_AIRPORT_ID_INDEX = 3;
+
+    public static final int SHARED_INDEX = 4;
+
+    public static final int NUM_STOPS_INDEX = 5;
+
+    private static final Collection<String> FIELD_NAMES = 
+        Collections.unmodifiableList(Arrays.asList(
+            "route_id", 
+            "airline_id", 
+            "src_airport_id", 
+            "destn_airport_id", 
+            "shared", 
+            "num_stops"));
+
+    /**
+     * Puts the keys of the routes into a <code>PrimitiveSink</code>
+     * without reflection.
+     */
+    public static enum KeyFunnel implements Funnel<Long>
+    {
+        INSTANCE;
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void funnel(Long key, PrimitiveSink into)
+        {
+            into.putLong(key.longValue());
+        }
+    }
+
+    /**
+     * Orders the keys of the routes in their natural order.
+     */
+    public static enum KeyComparator implements Comparator<Long>
+    {
+        INSTANCE;
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int compare(Long key, Long otherKey)
+        {
+            return key.compareTo(otherKey);
+        }
+    }
+
     private long myRouteId;
-    
+
+    private long myAirlineId;
+
     private long mySrcAirportId;
-    
+
     private long myDestnAirportId;
-    
-    private long myAirlineId;
-    
+
     private boolean myShared;
-    
+
     private int myNumStops;
-    
+
     /**
      * CTOR
      */
     public Route initialize(
-        long routeId, 
-        long airlineId, 
-        long srcAirportId, 
+        long routeId,
+        long airlineId,
+        long srcAirportId,
         long destnAirportId,
-        boolean shared, 
+        boolean shared,
         int numStops)
     {
         myRouteId = routeId;
+        myAirlineId = airlineId;
         mySrcAirportId = srcAirportId;
         myDestnAirportId = destnAirportId;
-        myAirlineId = airlineId;
         myShared = shared;
         myNumStops = numStops;
         return this;
     }
 
+    /**
+     * Declares the secondary indexes and the storage specified for the 
+     * routes in the schema file on the given schema.
+     */
+    public static HitTableSchema declare(HitTableSchema schema)
+    {
+        return schema;
+    }
+
+    public static MutationFactory<Long, Route> getMutationFactory()
+    {
+        return new MutationFactory<>(TABLE_NAME);
+    }
+
     /**
      * Returns the value of routeId
      */
@@ -95,11 +162,11 @@ public class Route implements Persistable<Long>, Externalizable
     }
 
     /**
-     * Setter for the routeId
+     * Returns the value of airlineId
      */
-    public void setRouteId(long routeId)
+    public long getAirlineId()
     {
-        myRouteId = routeId;
+        return myAirlineId;
     }
 
     /**
@@ -111,35 +178,35 @@ public class Route implements Persistable<Long>, Externalizable
     }
 
     /**
-     * Setter for the srcAirportId
+     * Returns the value of destnAirportId
      */
-    public void setSrcAirportId(long srcAirportId)
+    public long getDestnAirportId()
     {
-        mySrcAirportId = srcAirportId;
+        return myDestnAirportId;
     }
 
     /**
-     * Returns the value of destnAirportId
+     * Returns the value of shared
      */
-    public long getDestnAirportId()
+    public boolean isShared()
     {
-        return myDestnAirportId;
+        return myShared;
     }
 
     /**
-     * Setter for the destnAirportId
+     * Returns the value of numStops
      */
-    public void setDestnAirportId(long destnAirportId)
+    public int getNumStops()
     {
-        myDestnAirportId = destnAirportId;
+        return myNumStops;
     }
 
     /**
-     * Returns the value of airlineId
+     * Setter for the routeId
      */
-    public long getAirlineId()
+    public void setRouteId(long routeId)
     {
-        return myAirlineId;
+        myRouteId = routeId;
     }
 
     /**
@@ -151,27 +218,27 @@ public class Route implements Persistable<Long>, Externalizable
     }
 
     /**
-     * Returns the value of codeShare
+     * Setter for the srcAirportId
      */
-    public boolean isShared()
+    public void setSrcAirportId(long srcAirportId)
     {
-        return myShared;
+        mySrcAirportId = srcAirportId;
     }
 
     /**
-     * Setter for the codeShare
+     * Setter for the destnAirportId
      */
-    public void setShared(boolean shared)
+    public void setDestnAirportId(long destnAirportId)
     {
-        myShared = shared;
+        myDestnAirportId = destnAirportId;
     }
 
     /**
-     * Returns the value of numStops
+     * Setter for the shared
      */
-    public int getNumStops()
+    public void setShared(boolean shared)
     {
-        return myNumStops;
+        myShared = shared;
     }
 
     /**
@@ -186,23 +253,25 @@ public class Route implements Persistable<Long>, Externalizable
      * {@inheritDoc}
      */
     @Override
-    public Object getFieldValue(String fieldName)
+    public Long primaryKey()
+    {
+        return myRouteId;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getFieldIndex(String fieldName)
     {
-        switch(fieldName) {
-        case ROUTE_ID:
-            return Long.valueOf(getRouteId());
-        case SRC_AIRPORT:
-            return Long.valueOf(getSrcAirportId());
-        case DESTN_AIRPORT:
-            return Long.valueOf(getDestnAirportId());
-        case AIRLINE_ID:
-            return Long.valueOf(getAirlineId());
-        case SHARED:
-            return Boolean.valueOf(isShared());
-        case NUM_STOPS:
-            return Integer.valueOf(getNumStops());
-        default:
-            return null;
+        switch (fieldName) {
+        case "route_id" : return ROUTE_ID_INDEX;
+        case "airline_id" : return AIRLINE_ID_INDEX;
+        case "src_airport_id" : return SRC_AIRPORT_ID_INDEX;
+        case "destn_airport_id" : return DESTN_AIRPORT_ID_INDEX;
+        case "shared" : return SHARED_INDEX;
+        case "num_stops" : return NUM_STOPS_INDEX;
+        default : return -1;
         }
     }
 
@@ -210,9 +279,39 @@ public class Route implements Persistable<Long>, Externalizable
      * {@inheritDoc}
      */
     @Override
-    public Long primaryKey()
+    public Object getFieldValue(int fieldIndex)
+    {
+        switch (fieldIndex) {
+        case ROUTE_ID_INDEX : return myRouteId;
+        case AIRLINE_ID_INDEX : return myAirlineId;
+        case SRC_AIRPORT_ID_INDEX : return mySrcAirportId;
+        case DESTN_AIRPORT_ID_INDEX : return myDestnAirportId;
+        case SHARED_INDEX : return myShared;
+        case NUM_STOPS_INDEX : return myNumStops;
+        default : return null;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Object getFieldValue(String fieldName)
     {
-        return Long.valueOf(myRouteId);
+        // The row stands for its table, so that the columns qualified by 
+        // the name of the table can be looked up as nested columns.
+        int fieldIndex = getFieldIndex(fieldName);
+        return fieldIndex >= 0 ? getFieldValue(fieldIndex)
+               : TABLE_NAME.equals(fieldName) ? this : null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Collection<String> getFieldNames()
+    {
+        return FIELD_NAMES;
     }
 
     /**
@@ -221,6 +320,12 @@ public class Route implements Persistable<Long>, Externalizable
     @Override
     public void writeExternal(ObjectOutput out) throws IOException
     {
+        CompactIO.writeVarLong(out, myRouteId);
+        CompactIO.writeVarLong(out, myAirlineId);
+        CompactIO.writeVarLong(out, mySrcAirportId);
+        CompactIO.writeVarLong(out, myDestnAirportId);
+        out.writeBoolean(myShared);
+        CompactIO.writeVarLong(out, myNumStops);
     }
 
     /**
@@ -230,25 +335,48 @@ public class Route implements Persistable<Long>, Externalizable
     public void readExternal(ObjectInput in)
         throws IOException, ClassNotFoundException
     {
+        myRouteId = CompactIO.readVarLong(in);
+        myAirlineId = CompactIO.readVarLong(in);
+        mySrcAirportId = CompactIO.readVarLong(in);
+        myDestnAirportId = CompactIO.readVarLong(in);
+        myShared = in.readBoolean();
+        myNumStops = (int) CompactIO.readVarLong(in);
     }
-    
-    public static MutationFactory<Long, Route> getMutationFactory()
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int hashCode()
     {
-        return new MutationFactory<>(TABLE_NAME);
+        return Objects.hash(
+            myRouteId, 
+            myAirlineId, 
+            mySrcAirportId, 
+            myDestnAirportId, 
+            myShared, 
+            myNumStops);
     }
 
     /**
      * {@inheritDoc}
      */
     @Override
-    public Collection<String> getFieldNames()
+    public boolean equals(Object obj)
     {
-        return Lists.newArrayList(
-            ROUTE_ID, 
-            SRC_AIRPORT, 
-            DESTN_AIRPORT, 
-            AIRLINE_ID, 
-            SHARED, NUM_STOPS);
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null || getClass() != obj.getClass()) {
+            return false;
+        }
+        Route other = (Route) obj;
+        return Objects.equals(myRouteId, other.myRouteId)
+            && Objects.equals(myAirlineId, other.myAirlineId)
+            && Objects.equals(mySrcAirportId, other.mySrcAirportId)
+            && Objects.equals(myDestnAirportId, other.myDestnAirportId)
+            && Objects.equals(myShared, other.myShared)
+            && Objects.equals(myNumStops, other.myNumStops);
     }
 
     /**
@@ -257,26 +385,26 @@ public class Route implements Persistable<Long>, Externalizable
     @Override
     public void free()
     {
-        myRouteId = Long.MIN_VALUE;
-        mySrcAirportId = Long.MIN_VALUE;
-        myDestnAirportId = Long.MIN_VALUE;
-        myAirlineId = Long.MIN_VALUE;
+        myRouteId = 0;
+        myAirlineId = 0;
+        mySrcAirportId = 0;
+        myDestnAirportId = 0;
         myShared = false;
-        myNumStops = Integer.MIN_VALUE;
+        myNumStops = 0;
     }
 
     /**
      * {@inheritDoc}
      */
     @Override
-    public Copyable getCopy()
+    public Route getCopy()
     {
-        return PooledObjects.getInstance(Route.class)
-                            .initialize(myRouteId, 
-                                        myAirlineId, 
-                                        mySrcAirportId, 
-                                        myDestnAirportId, 
-                                        myShared, 
-                                        myNumStops);
+        return PooledObjects.getInstance(Route.class).initialize(
+            myRouteId, 
+            myAirlineId, 
+            mySrcAirportId, 
+            myDestnAirportId, 
+            myShared, 
+            myNumStops);
     }
 }
@@ -22,6 +22,7 @@ package org.hit.fs;
 
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
+import java.nio.channels.FileChannel;
 
 /**
  * Defines the facade that can be used for accessing the file system.
@@ -44,6 +45,19 @@ public interface FileSystemFacacde
      */
     public DataInputStream openFileForRead(String path);
     
+    /**
+     * Opens a channel for reading and writing the file at the given path,
+     * creating the file if it doesn't exist. Returns null if the file 
+     * can't be opened.
+     */
+    public FileChannel openChannel(String path);
+    
+    /**
+     * Returns the names of the files under the directory with the given
+     * path, an empty array if there are no such files.
+     */
+    public String[] listFiles(String path);
+    
     /**
      * Returns true if the call to create a directory with the given path is
      * successful. The call to create a directory my fail if there already
@@ -51,4 +65,10 @@ public interface FileSystemFacacde
      */
     public boolean makeDirectory(String path);
     
+    /**
+     * Deletes the file or the empty directory with the given path. Returns
+     * true if the path has been deleted.
+     */
+    public boolean delete(String path);
+    
 }
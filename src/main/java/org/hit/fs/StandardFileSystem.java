@@ -20,10 +20,14 @@
 
 package org.hit.fs;
 
+import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -57,6 +61,48 @@ public class StandardFileSystem implements FileSystemFacacde
         return dout;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public DataInputStream openFileForRead(String path)
+    {
+        DataInputStream din = null;
+        try {
+            din = new DataInputStream(new FileInputStream(new File(path)));
+        }
+        catch (FileNotFoundException e) {
+            LOG.log(Level.SEVERE, e.getMessage(), e);
+        }
+        return din;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public FileChannel openChannel(String path)
+    {
+        FileChannel channel = null;
+        try {
+            channel = new RandomAccessFile(new File(path), "rw").getChannel();
+        }
+        catch (FileNotFoundException e) {
+            LOG.log(Level.SEVERE, e.getMessage(), e);
+        }
+        return channel;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String[] listFiles(String path)
+    {
+        String[] fileNames = new File(path).list();
+        return fileNames != null ? fileNames : new String[0];
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -66,5 +112,14 @@ public class StandardFileSystem implements FileSystemFacacde
         File file = new File(path);
         return file.mkdirs();
     }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean delete(String path)
+    {
+        return new File(path).delete();
+    }
   
 }
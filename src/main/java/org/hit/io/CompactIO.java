@@ -0,0 +1,264 @@
+/*
+    Hit is a high speed transactional database for handling millions
+    of updates with comfort and ease.
+
+    Copyright (C) 2013  Balraja Subbiah
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package org.hit.io;
+
+import gnu.trove.map.TObjectIntMap;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Defines the helper methods used by the generated <code>Persistable
+ * </code>s for writing their fields compactly. The integral values are
+ * written as zig zag encoded varints and the boxed values are preceded by
+ * a marker for the nulls.
+ * <p>
+ * The strings of the low cardinality columns can be dictionary encoded,
+ * where a string is written only when it appears for the first time in a
+ * stream and as its position in the stream's dictionary thereafter. Hence
+ * such strings have to be read in the same order from a stream as they're
+ * written. The dictionary is carried by the streams implementing {@link 
+ * DictionaryOutput} and {@link DictionaryInput}, the strings are written
+ * as they are to the other streams.
+ *
+ * @author Balraja Subbiah
+ */
+public final class CompactIO
+{
+    private static final int NULL_MARKER = 0;
+
+    private static final int VALUE_MARKER = 1;
+
+    /** Writes the value as a zig zag encoded varint */
+    public static void writeVarLong(DataOutput out, long value)
+        throws IOException
+    {
+        long encoded = (value << 1) ^ (value >> 63);
+        while ((encoded & ~0x7FL) != 0L) {
+            out.writeByte((int) ((encoded & 0x7F) | 0x80));
+            encoded >>>= 7;
+        }
+        out.writeByte((int) encoded);
+    }
+
+    /** Reads a zig zag encoded varint */
+    public static long readVarLong(DataInput in) throws IOException
+    {
+        long encoded = 0L;
+        int shift = 0;
+        byte b;
+        do {
+            if (shift > 63) {
+                throw new IOException("Malformed varint");
+            }
+            b = in.readByte();
+            encoded |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        }
+        while ((b & 0x80) != 0);
+        return (encoded >>> 1) ^ -(encoded & 1);
+    }
+
+    /** Writes the value, that might be null, as a varint */
+    public static void writeLong(DataOutput out, Long value)
+        throws IOException
+    {
+        if (writeMarker(out, value)) {
+            writeVarLong(out, value.longValue());
+        }
+    }
+
+    /** Reads a value written by {@link #writeLong(DataOutput, Long)} */
+    public static Long readLong(DataInput in) throws IOException
+    {
+        return readMarker(in) ? Long.valueOf(readVarLong(in)) : null;
+    }
+
+    /** Writes the value, that might be null, as a varint */
+    public static void writeInteger(DataOutput out, Integer value)
+        throws IOException
+    {
+        if (writeMarker(out, value)) {
+            writeVarLong(out, value.intValue());
+        }
+    }
+
+    /** Reads a value written by {@link #writeInteger(DataOutput, Integer)} */
+    public static Integer readInteger(DataInput in) throws IOException
+    {
+        return readMarker(in) ? Integer.valueOf((int) readVarLong(in))
+                              : null;
+    }
+
+    /** Writes the value, that might be null, as a varint */
+    public static void writeShort(DataOutput out, Short value)
+        throws IOException
+    {
+        if (writeMarker(out, value)) {
+            writeVarLong(out, value.shortValue());
+        }
+    }
+
+    /** Reads a value written by {@link #writeShort(DataOutput, Short)} */
+    public static Short readShort(DataInput in) throws IOException
+    {
+        return readMarker(in) ? Short.valueOf((short) readVarLong(in))
+                              : null;
+    }
+
+    /** Writes the value, that might be null */
+    public static void writeDouble(DataOutput out, Double value)
+        throws IOException
+    {
+        if (writeMarker(out, value)) {
+            out.writeDouble(value.doubleValue());
+        }
+    }
+
+    /** Reads a value written by {@link #writeDouble(DataOutput, Double)} */
+    public static Double readDouble(DataInput in) throws IOException
+    {
+        return readMarker(in) ? Double.valueOf(in.readDouble()) : null;
+    }
+
+    /** Writes the value, that might be null */
+    public static void writeFloat(DataOutput out, Float value)
+        throws IOException
+    {
+        if (writeMarker(out, value)) {
+            out.writeFloat(value.floatValue());
+        }
+    }
+
+    /** Reads a value written by {@link #writeFloat(DataOutput, Float)} */
+    public static Float readFloat(DataInput in) throws IOException
+    {
+        return readMarker(in) ? Float.valueOf(in.readFloat()) : null;
+    }
+
+    /** Writes the value, that might be null */
+    public static void writeBoolean(DataOutput out, Boolean value)
+        throws IOException
+    {
+        if (writeMarker(out, value)) {
+            out.writeBoolean(value.booleanValue());
+        }
+    }
+
+    /** Reads a value written by {@link #writeBoolean(DataOutput, Boolean)} */
+    public static Boolean readBoolean(DataInput in) throws IOException
+    {
+        return readMarker(in) ? Boolean.valueOf(in.readBoolean()) : null;
+    }
+
+    /** Writes the value, that might be null */
+    public static void writeString(DataOutput out, String value)
+        throws IOException
+    {
+        if (writeMarker(out, value)) {
+            out.writeUTF(value);
+        }
+    }
+
+    /** Reads a value written by {@link #writeString(DataOutput, String)} */
+    public static String readString(DataInput in) throws IOException
+    {
+        return readMarker(in) ? in.readUTF() : null;
+    }
+
+    /**
+     * Writes the value, that might be null, as its position in the
+     * dictionary of the stream. The value is added to the dictionary when
+     * it's written for the first time.
+     */
+    public static void writeDictionaryString(DataOutput out, String value)
+        throws IOException
+    {
+        if (value == null) {
+            writeVarLong(out, NULL_MARKER);
+            return;
+        }
+
+        // The first entry is written as 2, so that 0 marks a null and 1 a
+        // string that's being added to the dictionary.
+        if (out instanceof DictionaryOutput) {
+            TObjectIntMap<String> dictionary = 
+                ((DictionaryOutput) out).getStringDictionary();
+            if (dictionary.containsKey(value)) {
+                writeVarLong(out, dictionary.get(value) + 2);
+                return;
+            }
+            dictionary.put(value, dictionary.size());
+        }
+        writeVarLong(out, VALUE_MARKER);
+        out.writeUTF(value);
+    }
+
+    /**
+     * Reads a value written by {@link #writeDictionaryString(DataOutput,
+     * String)}.
+     */
+    public static String readDictionaryString(DataInput in)
+        throws IOException
+    {
+        long code = readVarLong(in);
+        if (code == NULL_MARKER) {
+            return null;
+        }
+
+        List<String> dictionary = 
+            in instanceof DictionaryInput ?
+                ((DictionaryInput) in).getStringDictionary() : null;
+        if (code == VALUE_MARKER) {
+            String value = in.readUTF();
+            if (dictionary != null) {
+                dictionary.add(value);
+            }
+            return value;
+        }
+        int index = (int) (code - 2);
+        if (dictionary == null || index < 0 || index >= dictionary.size()) {
+            throw new IOException("Unknown dictionary entry " + index);
+        }
+        return dictionary.get(index);
+    }
+
+    private static boolean writeMarker(DataOutput out, Object value)
+        throws IOException
+    {
+        out.writeByte(value != null ? VALUE_MARKER : NULL_MARKER);
+        return value != null;
+    }
+
+    private static boolean readMarker(DataInput in) throws IOException
+    {
+        return in.readByte() != NULL_MARKER;
+    }
+
+    /**
+     * CTOR
+     */
+    private CompactIO()
+    {
+    }
+}
@@ -0,0 +1,38 @@
+/*
+    Hit is a high speed transactional database for handling millions
+    of updates with comfort and ease.
+
+    Copyright (C) 2013  Balraja Subbiah
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package org.hit.io;
+
+import java.io.DataInput;
+import java.util.List;
+
+/**
+ * Defines the contract for an input stream that carries a dictionary of 
+ * the strings read from it, the counterpart of {@link DictionaryOutput}.
+ * 
+ * @author Balraja Subbiah
+ */
+public interface DictionaryInput extends DataInput
+{
+    /**
+     * Returns the strings read from this stream in the order of their
+     * positions in its dictionary.
+     */
+    public List<String> getStringDictionary();
+}
@@ -0,0 +1,40 @@
+/*
+    Hit is a high speed transactional database for handling millions
+    of updates with comfort and ease.
+
+    Copyright (C) 2013  Balraja Subbiah
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package org.hit.io;
+
+import gnu.trove.map.TObjectIntMap;
+
+import java.io.DataOutput;
+
+/**
+ * Defines the contract for an output stream that carries a dictionary of
+ * the strings written to it, so that a string that's dictionary encoded 
+ * by {@link CompactIO} is written only once per stream.
+ * 
+ * @author Balraja Subbiah
+ */
+public interface DictionaryOutput extends DataOutput
+{
+    /**
+     * Returns the positions of the strings written to this stream in its
+     * dictionary.
+     */
+    public TObjectIntMap<String> getStringDictionary();
+}
@@ -25,9 +25,12 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.ObjectInput;
 import java.io.ObjectInputStream;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import org.hit.io.DictionaryInput;
 import org.hit.pool.Internable;
 import org.hit.pool.Interner;
 import org.hit.pool.Poolable;
@@ -35,12 +38,13 @@ import org.hit.pool.PooledObjects;
 import org.hit.util.LogFactory;
 
 /**
- * Defines an input stream that initializes the object from pool.
+ * Defines an input stream that initializes the object from pool. The 
+ * strings read from the stream are dictionary decoded when asked for.
  * 
  * @author Balraja Subbiah
  */
 public class PoolableInput extends DataInputStream
-    implements ObjectInput
+    implements ObjectInput, DictionaryInput
 {
     private static final Logger LOG =
         LogFactory.getInstance().getLogger(PoolableInput.class);
@@ -48,6 +52,8 @@ public class PoolableInput extends DataInputStream
     private final PoolableRegistry myRegistry;
     
     private final ObjectInputStream mySerializableInputStream;
+    
+    private final List<String> myStringDictionary;
 
     /**
      * CTOR
@@ -58,6 +64,16 @@ public class PoolableInput extends DataInputStream
         super(in);
         myRegistry = registry;
         mySerializableInputStream = new ObjectInputStream(this);
+        myStringDictionary = new ArrayList<>();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<String> getStringDictionary()
+    {
+        return myStringDictionary;
     }
 
     /**
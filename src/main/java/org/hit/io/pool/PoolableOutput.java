@@ -19,6 +19,9 @@
 */
 package org.hit.io.pool;
 
+import gnu.trove.map.TObjectIntMap;
+import gnu.trove.map.hash.TObjectIntHashMap;
+
 import java.io.DataOutputStream;
 import java.io.Externalizable;
 import java.io.IOException;
@@ -27,6 +30,7 @@ import java.io.ObjectOutputStream;
 import java.io.OutputStream;
 import java.io.Serializable;
 
+import org.hit.io.DictionaryOutput;
 import org.hit.pool.Internable;
 import org.hit.pool.Interner;
 import org.hit.pool.Poolable;
@@ -34,16 +38,19 @@ import org.hit.pool.PooledObjects;
 
 /**
  * Defines the contract for a OutputStream that's responsible for 
- * releasing poolable Objects after they were serialized.
+ * releasing poolable Objects after they were serialized. The strings 
+ * written to the stream are dictionary encoded when asked for.
  * 
  * @author Balraja Subbiah
  */
 public class PoolableOutput extends DataOutputStream
-    implements ObjectOutput
+    implements ObjectOutput, DictionaryOutput
 {
     private final PoolableRegistry myRegistry;
     
     private final ObjectOutputStream mySerializableOutputStream;
+    
+    private final TObjectIntMap<String> myStringDictionary;
 
     /**
      * CTOR
@@ -54,6 +61,16 @@ public class PoolableOutput extends DataOutputStream
         super(out);
         myRegistry = registry;
         mySerializableOutputStream = new ObjectOutputStream(this);
+        myStringDictionary = new TObjectIntHashMap<>();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public TObjectIntMap<String> getStringDictionary()
+    {
+        return myStringDictionary;
     }
 
     /**
@@ -45,8 +45,11 @@ public class CLQPool<T extends Poolable> extends AbstractPool<T>
                    Factory  factory)
     {
         super(size, initialSize, instanceType, factory);
+        // The instances are allocated and freed from multiple threads.
         myAllocatedInstances = 
-            Collections.newSetFromMap(new IdentityHashMap<T,Boolean>(size));
+            Collections.synchronizedSet(
+                Collections.newSetFromMap(
+                    new IdentityHashMap<T,Boolean>(size)));
         myFreeInstances = new ConcurrentLinkedQueue<>();
         for (int i = 0; i < initialSize; i++) {
             myFreeInstances.offer(newObject());
@@ -19,8 +19,8 @@
 */
 package org.hit.pool;
 
-import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -41,7 +41,7 @@ public final class PooledObjects
     
     private static final int DEFAULT_SIZE = 20;
     
-    private static final Map<Class<?>, Pool<?>> ourTypeToPoolMap = 
+    private static final ConcurrentMap<Class<?>, Pool<?>> ourTypeToPoolMap = 
         new ConcurrentHashMap<>();
     
     /**
@@ -89,7 +89,12 @@ public final class PooledObjects
                     LOG.log(Level.SEVERE, e.getMessage(), e);
                 }
             }
-            ourTypeToPoolMap.put(instanceType, pool);
+            // Another thread might have created the pool in the meantime.
+            Pool<T> existingPool = 
+                (Pool<T>) ourTypeToPoolMap.putIfAbsent(instanceType, pool);
+            if (existingPool != null) {
+                pool = existingPool;
+            }
         }
         return pool.getObject();
     }
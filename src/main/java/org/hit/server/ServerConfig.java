@@ -64,4 +64,40 @@ public interface ServerConfig
      * be published.
      */
     public int getGossipUpdateSecs();
+    
+    /**
+     * Returns the interval in seconds during which the obsolete versions
+     * are garbage collected from the database.
+     */
+    public int getGarbageCollectionIntervalSecs();
+    
+    /**
+     * Returns the maximum number of write transactions that are committed
+     * together as a group.
+     */
+    public int getGroupCommitSize();
+    
+    /**
+     * Returns the time in microseconds for which the write transactions
+     * are gathered before committing them as a group.
+     */
+    public long getGroupCommitWindowMicros();
+    
+    /**
+     * Returns the interval in seconds during which the tables are 
+     * checkpointed.
+     */
+    public int getCheckpointIntervalSecs();
+    
+    /**
+     * Returns the path of the directory under which the checkpoints of
+     * the tables are stored.
+     */
+    public String getCheckpointDirectoryPath();
+    
+    /**
+     * Returns the maximum offset in milliseconds by which the timestamps 
+     * received from the other nodes can be ahead of the local clock.
+     */
+    public long getMaxClockOffsetMillis();
 }
@@ -19,6 +19,9 @@
 */
 package org.hit.server;
 
+import java.io.File;
+
+import org.hit.time.HybridLogicalClock;
 import org.hit.util.ApplicationProperties;
 
 /**
@@ -48,6 +51,27 @@ public  class ServerPropertyConfig implements ServerConfig
     
     public static final String GOSSIP_INTERVAL_PROPERTY= 
         "org.hit.server.gossipIntervalInSecs";
+    
+    public static final String GC_INTERVAL_PROPERTY= 
+        "org.hit.server.gcIntervalInSecs";
+    
+    public static final String GROUP_COMMIT_SIZE_PROPERTY= 
+        "org.hit.server.groupCommitSize";
+    
+    public static final String GROUP_COMMIT_WINDOW_PROPERTY= 
+        "org.hit.server.groupCommitWindowInMicros";
+    
+    public static final String CHECKPOINT_INTERVAL_PROPERTY= 
+        "org.hit.server.checkpointIntervalInSecs";
+    
+    public static final String CHECKPOINT_DIRECTORY_PROPERTY= 
+        "org.hit.server.checkpointPath";
+    
+    public static final String MAX_CLOCK_OFFSET_PROPERTY= 
+        "org.hit.server.maxClockOffsetInMillis";
+    
+    private static final String LOCAL_CHECKPOINT_DIRECTORY = 
+        "hitdb_checkpoint";
 
     /**
      * {@inheritDoc}
@@ -117,4 +141,72 @@ public  class ServerPropertyConfig implements ServerConfig
             ApplicationProperties.getProperty(GOSSIP_INTERVAL_PROPERTY));
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getGarbageCollectionIntervalSecs()
+    {
+        return Integer.parseInt(
+            ApplicationProperties.getProperty(GC_INTERVAL_PROPERTY));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getGroupCommitSize()
+    {
+        return Integer.parseInt(
+            ApplicationProperties.getProperty(GROUP_COMMIT_SIZE_PROPERTY));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getGroupCommitWindowMicros()
+    {
+        return Long.parseLong(
+            ApplicationProperties.getProperty(GROUP_COMMIT_WINDOW_PROPERTY));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getCheckpointIntervalSecs()
+    {
+        return Integer.parseInt(
+            ApplicationProperties.getProperty(CHECKPOINT_INTERVAL_PROPERTY));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getCheckpointDirectoryPath()
+    {
+        String path = 
+            ApplicationProperties.getProperty(CHECKPOINT_DIRECTORY_PROPERTY);
+        if (path == null) {
+            path = System.getProperty("java.io.tmpdir") 
+                   + File.separator 
+                   + LOCAL_CHECKPOINT_DIRECTORY;
+        }
+        return path;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getMaxClockOffsetMillis()
+    {
+        String offset = 
+            ApplicationProperties.getProperty(MAX_CLOCK_OFFSET_PROPERTY);
+        return offset != null ? Long.parseLong(offset)
+                              : HybridLogicalClock.DEFAULT_MAX_OFFSET_MILLIS;
+    }
+
 }
@@ -0,0 +1,153 @@
+/*
+    Hit is a high speed transactional database for handling millions
+    of updates with comfort and ease.
+
+    Copyright (C) 2012  Balraja Subbiah
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+
+package org.hit.time;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+import org.hit.util.LogFactory;
+
+/**
+ * An implementation of <code>Clock</code> that issues hybrid logical 
+ * timestamps. A timestamp carries the physical time in milliseconds in
+ * its higher bits and a logical counter in its lower bits, which makes 
+ * the timestamps unique and monotonic even when many of them are issued 
+ * within the same millisecond. 
+ * <p>
+ * The clocks of the different nodes converge by piggybacking the 
+ * timestamps on the messages exchanged between them, as a node never
+ * issues a timestamp lower than the ones it has received. A received 
+ * timestamp that's ahead of the local physical time by more than the 
+ * maximum offset is rejected, so that a node with a faulty clock can't 
+ * drag the clocks of the others into the future.
+ * 
+ * @author Balraja Subbiah
+ */
+public class HybridLogicalClock implements Clock
+{
+    /** The number of lower bits used for the logical counter */
+    private static final int LOGICAL_BITS = 16;
+    
+    /** The default for the maximum offset between the clocks of nodes */
+    public static final long DEFAULT_MAX_OFFSET_MILLIS = 500L;
+    
+    private static final Logger LOG = 
+        LogFactory.getInstance().getLogger(HybridLogicalClock.class);
+    
+    private static final HybridLogicalClock ourInstance = 
+        new HybridLogicalClock();
+    
+    private final AtomicLong myLastTime;
+    
+    private volatile long myMaxOffsetMillis;
+    
+    /**
+     * CTOR
+     */
+    public HybridLogicalClock()
+    {
+        this(DEFAULT_MAX_OFFSET_MILLIS);
+    }
+    
+    /**
+     * CTOR
+     */
+    public HybridLogicalClock(long maxOffsetMillis)
+    {
+        myLastTime = new AtomicLong(0L);
+        myMaxOffsetMillis = maxOffsetMillis;
+    }
+    
+    /**
+     * Returns the clock shared by all the components of this node.
+     */
+    public static HybridLogicalClock getInstance()
+    {
+        return ourInstance;
+    }
+    
+    /**
+     * Returns the physical time in milliseconds, of the given timestamp.
+     */
+    public static long toPhysicalTime(long timestamp)
+    {
+        return timestamp >>> LOGICAL_BITS;
+    }
+    
+    /**
+     * Returns the maximum offset in milliseconds by which a received 
+     * timestamp can be ahead of the local physical time.
+     */
+    public long getMaxOffsetMillis()
+    {
+        return myMaxOffsetMillis;
+    }
+
+    /**
+     * Sets the value of maxOffsetMillis
+     */
+    public void setMaxOffsetMillis(long maxOffsetMillis)
+    {
+        myMaxOffsetMillis = maxOffsetMillis;
+    }
+    
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long currentTime()
+    {
+        while (true) {
+            long lastTime = myLastTime.get();
+            long physicalTime = 
+                System.currentTimeMillis() << LOGICAL_BITS;
+            long time = Math.max(lastTime + 1, physicalTime);
+            if (myLastTime.compareAndSet(lastTime, time)) {
+                return time;
+            }
+        }
+    }
+    
+    /**
+     * Advances the clock to the timestamp received from another node, so 
+     * that the subsequent timestamps issued by this node are higher.
+     * Returns false without touching the clock if the received timestamp
+     * is ahead of the local physical time by more than the maximum offset.
+     */
+    public boolean update(long receivedTime)
+    {
+        long maxPhysicalTime = System.currentTimeMillis() + myMaxOffsetMillis;
+        if (toPhysicalTime(receivedTime) > maxPhysicalTime) {
+            LOG.warning("Rejecting the timestamp " + receivedTime 
+                        + " as it's ahead of the local clock by more than " 
+                        + myMaxOffsetMillis + " ms");
+            return false;
+        }
+        long lastTime = myLastTime.get();
+        while (   receivedTime > lastTime
+               && !myLastTime.compareAndSet(lastTime, receivedTime))
+        {
+            lastTime = myLastTime.get();
+        }
+        return true;
+    }
+}
@@ -0,0 +1,108 @@
+/*
+    Hit is a high speed transactional database for handling millions
+    of updates with comfort and ease. 
+
+    Copyright (C) 2012  Balraja Subbiah
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package org.hit.util;
+
+import java.util.zip.Checksum;
+
+/**
+ * Implements the CRC-32C (Castagnoli) checksum, which detects the torn and
+ * corrupted records better than the CRC-32 used by <code>java.util.zip
+ * </code>. It's computed a byte at a time using a lookup table.
+ * 
+ * @author Balraja Subbiah
+ */
+public class CRC32C implements Checksum
+{
+    /** The reversed Castagnoli polynomial */
+    private static final int POLYNOMIAL = 0x82F63B78;
+    
+    private static final int[] TABLE = new int[256];
+    
+    static {
+        for (int i = 0; i < TABLE.length; i++) {
+            int crc = i;
+            for (int bit = 0; bit < 8; bit++) {
+                crc = (crc & 1) != 0 ? (crc >>> 1) ^ POLYNOMIAL : crc >>> 1;
+            }
+            TABLE[i] = crc;
+        }
+    }
+    
+    private int myCRC;
+    
+    /**
+     * CTOR
+     */
+    public CRC32C()
+    {
+        reset();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void update(int b)
+    {
+        myCRC = (myCRC >>> 8) ^ TABLE[(myCRC ^ b) & 0xFF];
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void update(byte[] b, int off, int len)
+    {
+        int crc = myCRC;
+        for (int i = off; i < off + len; i++) {
+            crc = (crc >>> 8) ^ TABLE[(crc ^ b[i]) & 0xFF];
+        }
+        myCRC = crc;
+    }
+    
+    /**
+     * Updates the checksum with the given long value in big endian order.
+     */
+    public void updateLong(long value)
+    {
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            update((int) (value >>> shift));
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getValue()
+    {
+        return (~myCRC) & 0xFFFFFFFFL;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void reset()
+    {
+        myCRC = 0xFFFFFFFF;
+    }
+}
@@ -0,0 +1,265 @@
+/*
+    Hit is a high speed transactional database for handling millions
+    of updates with comfort and ease.
+
+    Copyright (C) 2013  Balraja Subbiah
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package org.hit.consensus.test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.hit.actors.ActorID;
+import org.hit.actors.EventBus;
+import org.hit.communicator.NodeID;
+import org.hit.consensus.ConsensusType;
+import org.hit.consensus.UnitID;
+import org.hit.consensus.raft.RaftInstallSnapshotMessage;
+import org.hit.consensus.raft.RaftLeader;
+import org.hit.consensus.raft.RaftReplicationMessage;
+import org.hit.consensus.raft.RaftReplicationResponse;
+import org.hit.consensus.raft.log.WAL;
+import org.hit.consensus.raft.log.WALPropertyConfig;
+import org.hit.db.engine.ConsensusID;
+import org.hit.event.Event;
+import org.hit.event.SendMessageEvent;
+import org.hit.transactions.test.TestID;
+import org.hit.util.Pair;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the commit of the proposals replicated by the {@link RaftLeader}.
+ *
+ * @author Balraja Subbiah
+ */
+public class RaftLeaderTest
+{
+    private static final NodeID LEADER = TestID.SERVER_NODE_ID;
+
+    private static final NodeID ACCEPTOR_A = new TestID("A");
+
+    private static final NodeID ACCEPTOR_B = new TestID("B");
+
+    private static final long TERM_ID = 1L;
+
+    private static final String SEGMENT_SIZE =
+        "org.hit.wal.segmentSizeInBytes";
+
+    /**
+     * Extends {@link EventBus} to capture the replication requests and
+     * the local acceptances published by the leader.
+     */
+    private static class CapturingEventBus extends EventBus
+    {
+        private final BlockingQueue<SendMessageEvent> mySentMessages =
+            new LinkedBlockingQueue<>();
+
+        private final BlockingQueue<RaftReplicationResponse> myResponses =
+            new LinkedBlockingQueue<>();
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void publish(ActorID from, ActorID to, Event event)
+        {
+            publish(from, event);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void publish(ActorID from, Event event)
+        {
+            if (event instanceof SendMessageEvent) {
+                mySentMessages.add((SendMessageEvent) event);
+            }
+            else if (event instanceof RaftReplicationResponse) {
+                myResponses.add((RaftReplicationResponse) event);
+            }
+        }
+    }
+
+    private CapturingEventBus myEventBus;
+
+    private UnitID myUnitID;
+
+    private RaftLeader myLeader;
+
+    @Before
+    public void setupTest() throws IOException
+    {
+        System.setProperty(
+            WALPropertyConfig.WAL_BASE_DIRECTORY,
+            Files.createTempDirectory("raftleadertest").toString());
+        Set<NodeID> acceptors = new HashSet<>();
+        acceptors.add(ACCEPTOR_A);
+        acceptors.add(ACCEPTOR_B);
+        myEventBus = new CapturingEventBus();
+        myUnitID = new ConsensusID(ConsensusType.RAFT, "leadertest");
+        myLeader =
+            new RaftLeader(myUnitID, acceptors, myEventBus, LEADER, TERM_ID);
+    }
+
+    /**
+     * Submits a proposal and returns the replication request sent for it.
+     */
+    private RaftReplicationMessage propose(long value)
+        throws InterruptedException
+    {
+        myLeader.getConsensus(new TestProposal(value));
+        SendMessageEvent event =
+            myEventBus.mySentMessages.poll(10, TimeUnit.SECONDS);
+        Assert.assertNotNull(event);
+        return (RaftReplicationMessage) event.getMessage();
+    }
+
+    /**
+     * Returns the acceptance published once the proposal is durable in
+     * the leader's log.
+     */
+    private RaftReplicationResponse localAcceptance()
+        throws InterruptedException
+    {
+        RaftReplicationResponse response =
+            myEventBus.myResponses.poll(10, TimeUnit.SECONDS);
+        Assert.assertNotNull(response);
+        Assert.assertEquals(LEADER, response.getSenderId());
+        return response;
+    }
+
+    private void accept(NodeID acceptor, long sequenceNO)
+    {
+        myLeader.handle(RaftReplicationResponse.create(
+            acceptor, myUnitID, true, TERM_ID, sequenceNO));
+    }
+
+    @Test
+    public void commitTest() throws InterruptedException
+    {
+        myLeader.getConsensus(new TestProposal(1L));
+        SendMessageEvent event =
+            myEventBus.mySentMessages.poll(10, TimeUnit.SECONDS);
+        Assert.assertNotNull(event);
+        // The leader doesn't send the proposal to itself.
+        Set<NodeID> acceptors = new HashSet<>();
+        acceptors.add(ACCEPTOR_A);
+        acceptors.add(ACCEPTOR_B);
+        Assert.assertEquals(acceptors, new HashSet<>(event.getTargets()));
+        Assert.assertTrue(myEventBus.mySentMessages.isEmpty());
+
+        long first =
+            ((RaftReplicationMessage) event.getMessage()).getSequenceNumber();
+        RaftReplicationResponse firstDurable = localAcceptance();
+
+        // The proposal isn't committed till it's durable locally, though
+        // all the acceptors have accepted it.
+        accept(ACCEPTOR_A, first);
+        accept(ACCEPTOR_B, first);
+        RaftReplicationMessage message = propose(2L);
+        long second = message.getSequenceNumber();
+        Assert.assertTrue(message.getLastCommittedSeqNo() < first);
+
+        myLeader.handle(firstDurable);
+        message = propose(3L);
+        Assert.assertEquals(first, message.getLastCommittedSeqNo());
+
+        // Nor is it committed by being durable locally, till all the
+        // acceptors have accepted it.
+        RaftReplicationResponse secondDurable = localAcceptance();
+        Assert.assertEquals(second, secondDurable.getAcceptedSeqNo());
+        myLeader.handle(secondDurable);
+        accept(ACCEPTOR_A, second);
+        message = propose(4L);
+        Assert.assertEquals(first, message.getLastCommittedSeqNo());
+
+        accept(ACCEPTOR_B, second);
+        message = propose(5L);
+        Assert.assertEquals(second, message.getLastCommittedSeqNo());
+    }
+
+    @Test
+    public void snapshotTest() throws IOException, InterruptedException
+    {
+        // A record fills up a segment, so that the segments are discarded
+        // as soon as the snapshot covers their records.
+        System.setProperty(SEGMENT_SIZE, "64");
+        try {
+            Set<NodeID> acceptors = new HashSet<>();
+            acceptors.add(ACCEPTOR_A);
+            acceptors.add(ACCEPTOR_B);
+            myUnitID = new ConsensusID(ConsensusType.RAFT, "snapshottest");
+            myLeader = new RaftLeader(
+                myUnitID, acceptors, myEventBus, LEADER, TERM_ID);
+
+            long[] sequences = new long[3];
+            for (int i = 0; i < sequences.length; i++) {
+                sequences[i] = propose(10L * (i + 1)).getSequenceNumber();
+                myLeader.handle(localAcceptance());
+                accept(ACCEPTOR_A, sequences[i]);
+                accept(ACCEPTOR_B, sequences[i]);
+            }
+
+            File snapshotDirectory =
+                Files.createTempDirectory("raftsnapshot").toFile();
+            Files.write(new File(snapshotDirectory, "MANIFEST").toPath(),
+                        new byte[] {1, 2, 3});
+            myLeader.compact(25L, snapshotDirectory.getPath());
+
+            // The log records the position covered by the snapshot and
+            // discards the segments upto it.
+            WAL wal = WAL.open(new WALPropertyConfig(myUnitID.toString()));
+            Pair<Long, Long> position = wal.getSnapshotPosition(25L);
+            Assert.assertEquals(Long.valueOf(TERM_ID), position.getFirst());
+            Assert.assertEquals(Long.valueOf(sequences[1]),
+                                position.getSecond());
+            Assert.assertEquals(sequences[2], wal.getFirstSequence(TERM_ID));
+
+            // A follower lagging behind the discarded records is sent the
+            // snapshot.
+            myLeader.handle(RaftReplicationResponse.create(
+                ACCEPTOR_A, myUnitID, false, TERM_ID, sequences[0] - 1));
+            SendMessageEvent event =
+                myEventBus.mySentMessages.poll(10, TimeUnit.SECONDS);
+            Assert.assertNotNull(event);
+            Assert.assertEquals(Collections.singletonList(ACCEPTOR_A),
+                                new ArrayList<>(event.getTargets()));
+            RaftInstallSnapshotMessage message =
+                (RaftInstallSnapshotMessage) event.getMessage();
+            Assert.assertEquals(TERM_ID, message.getTermID());
+            Assert.assertEquals(sequences[1], message.getSequenceNumber());
+            Assert.assertEquals(25L,
+                                message.getSnapshot().getSnapshotTime());
+            Assert.assertArrayEquals(
+                new byte[] {1, 2, 3},
+                message.getSnapshot().getFiles().get("MANIFEST"));
+        }
+        finally {
+            System.clearProperty(SEGMENT_SIZE);
+        }
+    }
+}
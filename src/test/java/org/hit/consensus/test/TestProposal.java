@@ -0,0 +1,100 @@
+/*
+    Hit is a high speed transactional database for handling millions
+    of updates with comfort and ease.
+
+    Copyright (C) 2013  Balraja Subbiah
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package org.hit.consensus.test;
+
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+
+import org.hit.consensus.Proposal;
+import org.hit.consensus.TimestampedProposal;
+import org.hit.consensus.UnitID;
+
+/**
+ * A {@link Proposal} carrying just a value, which doubles as its 
+ * timestamp, for testing the logging of the proposals.
+ *
+ * @author Balraja Subbiah
+ */
+public class TestProposal implements TimestampedProposal
+{
+    private long myValue;
+
+    /**
+     * CTOR
+     */
+    public TestProposal()
+    {
+        this(-1L);
+    }
+
+    /**
+     * CTOR
+     */
+    public TestProposal(long value)
+    {
+        myValue = value;
+    }
+
+    /**
+     * Returns the value of value
+     */
+    public long getValue()
+    {
+        return myValue;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getTimestamp()
+    {
+        return myValue;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public UnitID getUnitID()
+    {
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException
+    {
+        out.writeLong(myValue);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void readExternal(ObjectInput in)
+        throws IOException, ClassNotFoundException
+    {
+        myValue = in.readLong();
+    }
+}
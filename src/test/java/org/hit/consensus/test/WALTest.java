@@ -0,0 +1,546 @@
+/*
+    Hit is a high speed transactional database for handling millions
+    of updates with comfort and ease.
+
+    Copyright (C) 2013  Balraja Subbiah
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package org.hit.consensus.test;
+
+import gnu.trove.map.TLongObjectMap;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.hit.consensus.Proposal;
+import org.hit.consensus.raft.log.DurabilityPolicy;
+import org.hit.consensus.raft.log.WAL;
+import org.hit.consensus.raft.log.WALConfig;
+import org.hit.consensus.raft.log.WALSegment;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.ListenableFuture;
+
+/**
+ * Tests the persistence of the proposals to the {@link WAL}.
+ *
+ * @author Balraja Subbiah
+ */
+public class WALTest
+{
+    private static final long TERM_ID = 1L;
+
+    private static final Object DURABLE = new Object();
+
+    private File myDirectory;
+
+    private WAL myWAL;
+
+    private static class TestConfig implements WALConfig
+    {
+        private final String myBaseDirectoryPath;
+
+        private final long mySegmentSize;
+        
+        private final DurabilityPolicy myDurabilityPolicy;
+        
+        private final long myGroupSyncIntervalMicros;
+        
+        private final int myStagingRecords;
+
+        /**
+         * CTOR
+         */
+        public TestConfig(String baseDirectoryPath, long segmentSize)
+        {
+            this(baseDirectoryPath, 
+                 segmentSize, 
+                 DurabilityPolicy.GROUP, 
+                 1000L, 
+                 1024);
+        }
+
+        /**
+         * CTOR
+         */
+        public TestConfig(String           baseDirectoryPath, 
+                          long             segmentSize,
+                          DurabilityPolicy durabilityPolicy,
+                          long             groupSyncIntervalMicros,
+                          int              stagingRecords)
+        {
+            myBaseDirectoryPath = baseDirectoryPath;
+            mySegmentSize = segmentSize;
+            myDurabilityPolicy = durabilityPolicy;
+            myGroupSyncIntervalMicros = groupSyncIntervalMicros;
+            myStagingRecords = stagingRecords;
+        }
+
+        @Override
+        public String getLogName()
+        {
+            return "test";
+        }
+
+        @Override
+        public String getBaseDirectoryPath()
+        {
+            return myBaseDirectoryPath;
+        }
+
+        @Override
+        public long getSegmentSize()
+        {
+            return mySegmentSize;
+        }
+
+        @Override
+        public DurabilityPolicy getDurabilityPolicy()
+        {
+            return myDurabilityPolicy;
+        }
+
+        @Override
+        public int getGroupSyncRecords()
+        {
+            return 16;
+        }
+
+        @Override
+        public long getGroupSyncIntervalMicros()
+        {
+            return myGroupSyncIntervalMicros;
+        }
+
+        @Override
+        public int getStagingRecords()
+        {
+            return myStagingRecords;
+        }
+    }
+
+    @Before
+    public void setupTest() throws IOException
+    {
+        myDirectory = Files.createTempDirectory("waltest").toFile();
+        myWAL = new WAL(new TestConfig(myDirectory.getPath(), 4096L));
+    }
+
+    @After
+    public void cleanupTest()
+    {
+        myWAL.close();
+        delete(myDirectory);
+    }
+
+    private static void delete(File file)
+    {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    private static File findSegment(File directory)
+    {
+        for (File file : directory.listFiles()) {
+            if (file.isDirectory()) {
+                File segment = findSegment(file);
+                if (segment != null) {
+                    return segment;
+                }
+            }
+            else if (file.getName().endsWith(".transactionLog")) {
+                return file;
+            }
+        }
+        return null;
+    }
+
+    private void addProposals(long from, long to) throws InterruptedException
+    {
+        BlockingQueue<Object> outcomes = new LinkedBlockingQueue<>();
+        for (long sequence = from; sequence <= to; sequence++) {
+            myWAL.addProposal(TERM_ID, 
+                              sequence, 
+                              new TestProposal(sequence), 
+                              record(outcomes));
+        }
+        for (long sequence = from; sequence <= to; sequence++) {
+            Assert.assertSame(DURABLE, outcomes.poll(10, TimeUnit.SECONDS));
+        }
+    }
+
+    private void reopen(DurabilityPolicy durabilityPolicy,
+                        long             groupSyncIntervalMicros,
+                        int              stagingRecords)
+    {
+        myWAL.close();
+        myWAL = new WAL(new TestConfig(myDirectory.getPath(), 
+                                       1024L * 1024L,
+                                       durabilityPolicy,
+                                       groupSyncIntervalMicros,
+                                       stagingRecords));
+    }
+    
+    private static FutureCallback<Void> record(
+        final BlockingQueue<Object> outcomes)
+    {
+        return new FutureCallback<Void>() {
+            @Override
+            public void onSuccess(Void result)
+            {
+                outcomes.add(DURABLE);
+            }
+
+            @Override
+            public void onFailure(Throwable t)
+            {
+                outcomes.add(t);
+            }
+        };
+    }
+
+    @Test
+    public void durableTest() throws InterruptedException
+    {
+        BlockingQueue<Object> outcomes = new LinkedBlockingQueue<>();
+        for (long sequence = 0; sequence < 10; sequence++) {
+            myWAL.addProposal(TERM_ID, 
+                              sequence, 
+                              new TestProposal(sequence), 
+                              record(outcomes));
+        }
+        for (int i = 0; i < 10; i++) {
+            Assert.assertSame(DURABLE, outcomes.poll(10, TimeUnit.SECONDS));
+        }
+        
+        TLongObjectMap<Proposal> proposals = 
+            myWAL.readProposalsFromLog(TERM_ID, 0L, 9L);
+        Assert.assertEquals(10, proposals.size());
+        for (long sequence = 0; sequence < 10; sequence++) {
+            Assert.assertEquals(
+                sequence, 
+                ((TestProposal) proposals.get(sequence)).getValue());
+        }
+    }
+
+    @Test
+    public void compactionTest() throws InterruptedException
+    {
+        // The segments are compacted while the later proposals are being
+        // appended and synced.
+        final int proposalCount = 2000;
+        final BlockingQueue<Object> outcomes = new LinkedBlockingQueue<>();
+        Thread compactor = new Thread(new Runnable() {
+            @Override
+            public void run()
+            {
+                for (int i = 0; i < proposalCount; i++) {
+                    myWAL.compact(TERM_ID, i);
+                }
+            }
+        });
+        compactor.start();
+        for (long sequence = 0; sequence < proposalCount; sequence++) {
+            myWAL.addProposal(TERM_ID, 
+                              sequence, 
+                              new TestProposal(sequence), 
+                              record(outcomes));
+        }
+        for (int i = 0; i < proposalCount; i++) {
+            Assert.assertSame(DURABLE, outcomes.poll(10, TimeUnit.SECONDS));
+        }
+        compactor.join();
+        
+        // The segment being appended is always retained.
+        long last = proposalCount - 1;
+        myWAL.compact(TERM_ID, last);
+        Assert.assertTrue(myWAL.getFirstSequence(TERM_ID) > 0L);
+        Assert.assertEquals(
+            last,
+            ((TestProposal) myWAL.readProposalsFromLog(TERM_ID, last, last)
+                                 .get(last)).getValue());
+    }
+
+    @Test
+    public void tornTailTest() throws InterruptedException, IOException
+    {
+        addProposals(0L, 9L);
+        // The records are of the same size, as are their proposals.
+        int frameSize = myWAL.readFramedRecords(TERM_ID, 9L, 9L).length;
+        Assert.assertEquals(10 * frameSize, 
+                            myWAL.readFramedRecords(TERM_ID, 0L, 9L).length);
+        myWAL.close();
+        
+        // Tear the last record as if the node crashed while writing it.
+        File segment = findSegment(myDirectory);
+        try (RandomAccessFile file = new RandomAccessFile(segment, "rw")) {
+            long position = 9L * frameSize + WALSegment.HEADER_SIZE + 2;
+            file.seek(position);
+            int value = file.read();
+            file.seek(position);
+            file.write(value ^ 0xFF);
+        }
+        
+        // The torn record is discarded when the log is reopened.
+        myWAL = new WAL(new TestConfig(myDirectory.getPath(), 4096L));
+        Assert.assertEquals(9, 
+                            myWAL.readProposalsFromLog(TERM_ID, 0L, 9L).size());
+        Assert.assertEquals(9 * frameSize, 
+                            myWAL.readFramedRecords(TERM_ID, 0L, 9L).length);
+        
+        // The records appended again take the place of the torn one.
+        addProposals(9L, 10L);
+        TLongObjectMap<Proposal> proposals =
+            WAL.readFramedProposals(
+                myWAL.readFramedRecords(TERM_ID, 0L, 10L));
+        Assert.assertEquals(11, proposals.size());
+        Assert.assertEquals(
+            10L, ((TestProposal) proposals.get(10L)).getValue());
+    }
+
+    @Test
+    public void framedTornTailTest() throws InterruptedException
+    {
+        addProposals(0L, 9L);
+        byte[] frames = myWAL.readFramedRecords(TERM_ID, 0L, 9L);
+        int frameSize = frames.length / 10;
+        
+        // The records following a truncated one are ignored.
+        TLongObjectMap<Proposal> proposals =
+            WAL.readFramedProposals(
+                Arrays.copyOf(frames, 9 * frameSize + 30));
+        Assert.assertEquals(9, proposals.size());
+        Assert.assertFalse(proposals.containsKey(9L));
+        
+        // So are the ones following a record that fails the checksum.
+        frames[5 * frameSize + WALSegment.HEADER_SIZE + 2] ^= 0xFF;
+        proposals = WAL.readFramedProposals(frames);
+        Assert.assertEquals(5, proposals.size());
+        for (long sequence = 0; sequence < 5; sequence++) {
+            Assert.assertEquals(
+                sequence, 
+                ((TestProposal) proposals.get(sequence)).getValue());
+        }
+    }
+
+    @Test
+    public void failureTest() throws InterruptedException
+    {
+        // A proposal that can't be persisted is reported to the caller 
+        // rather than never being acknowledged.
+        myWAL.close();
+        BlockingQueue<Object> outcomes = new LinkedBlockingQueue<>();
+        myWAL.addProposal(TERM_ID, 0L, new TestProposal(), record(outcomes));
+        Object outcome = outcomes.poll(10, TimeUnit.SECONDS);
+        Assert.assertTrue(outcome instanceof IOException);
+    }
+
+    @Test
+    public void orderingTest() throws InterruptedException
+    {
+        // The callers outpace the appender with a small ring, while the 
+        // records of a caller are written in the order they're added.
+        reopen(DurabilityPolicy.GROUP, 1000L, 8);
+        final int callers = 4;
+        final int proposalCount = 500;
+        final BlockingQueue<Long> written = new LinkedBlockingQueue<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < callers; i++) {
+            final long first = i * proposalCount;
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run()
+                {
+                    for (long sequence = first; 
+                         sequence < first + proposalCount; 
+                         sequence++) 
+                    {
+                        final Long value = Long.valueOf(sequence);
+                        myWAL.addProposal(
+                            TERM_ID, 
+                            sequence, 
+                            new TestProposal(sequence),
+                            new FutureCallback<Void>() {
+                                @Override
+                                public void onSuccess(Void result)
+                                {
+                                    written.add(value);
+                                }
+
+                                @Override
+                                public void onFailure(Throwable t)
+                                {
+                                    written.add(Long.valueOf(-1L));
+                                }
+                            });
+                    }
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        
+        long[] lastWritten = new long[callers];
+        Arrays.fill(lastWritten, -1L);
+        for (int i = 0; i < callers * proposalCount; i++) {
+            Long sequence = written.poll(10, TimeUnit.SECONDS);
+            Assert.assertNotNull(sequence);
+            Assert.assertTrue(sequence.longValue() >= 0L);
+            int caller = (int) (sequence.longValue() / proposalCount);
+            Assert.assertTrue(sequence.longValue() > lastWritten[caller]);
+            lastWritten[caller] = sequence.longValue();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        Assert.assertEquals(
+            callers * proposalCount,
+            myWAL.readProposalsFromLog(
+                TERM_ID, 0L, callers * proposalCount - 1).size());
+    }
+
+    @Test
+    public void batchingTest() throws InterruptedException
+    {
+        // The records are held back till the batch fills up, well before 
+        // the interval elapses.
+        reopen(DurabilityPolicy.GROUP, TimeUnit.MINUTES.toMicros(1L), 1024);
+        BlockingQueue<Object> outcomes = new LinkedBlockingQueue<>();
+        for (long sequence = 0; sequence < 15; sequence++) {
+            myWAL.addProposal(TERM_ID, 
+                              sequence, 
+                              new TestProposal(sequence), 
+                              record(outcomes));
+        }
+        Assert.assertNull(outcomes.poll(100, TimeUnit.MILLISECONDS));
+        
+        myWAL.addProposal(TERM_ID, 15L, new TestProposal(15L), 
+                          record(outcomes));
+        for (int i = 0; i < 16; i++) {
+            Assert.assertSame(DURABLE, outcomes.poll(10, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    public void syncDurabilityTest() throws InterruptedException
+    {
+        // The records acknowledged are found once the log is reopened.
+        reopen(DurabilityPolicy.SYNC, 1000L, 1024);
+        addProposals(0L, 99L);
+        reopen(DurabilityPolicy.SYNC, 1000L, 1024);
+        Assert.assertEquals(
+            100, myWAL.readProposalsFromLog(TERM_ID, 0L, 99L).size());
+    }
+
+    @Test
+    public void closeTest() throws InterruptedException
+    {
+        // The records staged before the log is closed are written without
+        // waiting for the interval to elapse, while the ones added later
+        // are failed.
+        reopen(DurabilityPolicy.GROUP, TimeUnit.MINUTES.toMicros(1L), 1024);
+        BlockingQueue<Object> outcomes = new LinkedBlockingQueue<>();
+        for (long sequence = 0; sequence < 10; sequence++) {
+            myWAL.addProposal(TERM_ID, 
+                              sequence, 
+                              new TestProposal(sequence), 
+                              record(outcomes));
+        }
+        myWAL.close();
+        for (int i = 0; i < 10; i++) {
+            Assert.assertSame(DURABLE, outcomes.poll(10, TimeUnit.SECONDS));
+        }
+        
+        myWAL.addProposal(TERM_ID, 10L, new TestProposal(10L), 
+                          record(outcomes));
+        Assert.assertTrue(
+            outcomes.poll(10, TimeUnit.SECONDS) instanceof IOException);
+        
+        reopen(DurabilityPolicy.GROUP, 1000L, 1024);
+        Assert.assertEquals(
+            10, myWAL.readProposalsFromLog(TERM_ID, 0L, 10L).size());
+    }
+
+    @Test
+    public void closeRaceTest() 
+        throws InterruptedException, TimeoutException
+    {
+        // Every proposal added while the log is being closed is either 
+        // written or failed, rather than being left unacknowledged.
+        reopen(DurabilityPolicy.GROUP, 1000L, 8);
+        final int callers = 4;
+        final int proposalCount = 1000;
+        final List<ListenableFuture<Void>> futures = 
+            Collections.synchronizedList(
+                new ArrayList<ListenableFuture<Void>>());
+        final CountDownLatch started = new CountDownLatch(callers);
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < callers; i++) {
+            final long first = i * proposalCount;
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run()
+                {
+                    started.countDown();
+                    for (long sequence = first; 
+                         sequence < first + proposalCount; 
+                         sequence++) 
+                    {
+                        futures.add(myWAL.addProposal(
+                            TERM_ID, sequence, new TestProposal(sequence)));
+                    }
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        started.await();
+        myWAL.close();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        
+        Assert.assertEquals(callers * proposalCount, futures.size());
+        for (ListenableFuture<Void> future : futures) {
+            try {
+                future.get(10, TimeUnit.SECONDS);
+            }
+            catch (ExecutionException e) {
+                Assert.assertTrue(e.getCause() instanceof IOException);
+            }
+        }
+    }
+}
@@ -0,0 +1,211 @@
+/*
+    Hit is a high speed transactional database for handling millions
+    of updates with comfort and ease.
+
+    Copyright (C) 2013  Balraja Subbiah
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package org.hit.ddl.test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Externalizable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+
+import org.hit.db.ddl.SchemaGenerator;
+import org.hit.db.model.HitTableSchema;
+import org.hit.db.model.IndexType;
+import org.hit.db.model.OrdinalRow;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.hash.Funnel;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+/**
+ * Verifies the classes generated from the schema files by the {@link 
+ * SchemaGenerator}.
+ *
+ * @author Balraja Subbiah
+ */
+public class SchemaGeneratorTest
+{
+    private static final Path EXAMPLE_DIRECTORY = 
+        Paths.get("src", "main", "java", "org", "hit", "example");
+    
+    private static final String SCHEMA_FILE_NAME = "schema.xml";
+    
+    private Path mySourceDirectory;
+    
+    private Path myClassDirectory;
+    
+    @Before
+    public void setupTest() throws IOException
+    {
+        mySourceDirectory = Files.createTempDirectory("schemasources");
+        myClassDirectory = Files.createTempDirectory("schemaclasses");
+    }
+    
+    @After
+    public void cleanupTest()
+    {
+        delete(mySourceDirectory.toFile());
+        delete(myClassDirectory.toFile());
+    }
+    
+    private static void delete(File file)
+    {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+    
+    private static String read(Path file) throws IOException
+    {
+        return new String(Files.readAllBytes(file), StandardCharsets.UTF_8)
+                   .replace("\r\n", "\n");
+    }
+    
+    @Test
+    public void examplesTest() throws IOException
+    {
+        // The example rows are generated from their schema file, hence 
+        // they're expected to be the same as the ones generated now.
+        Path packageDirectory = 
+            mySourceDirectory.resolve(Paths.get("org", "hit", "example"));
+        Files.createDirectories(packageDirectory);
+        Files.copy(EXAMPLE_DIRECTORY.resolve(SCHEMA_FILE_NAME), 
+                   packageDirectory.resolve(SCHEMA_FILE_NAME));
+        new SchemaGenerator().generateTableSourceFiles(mySourceDirectory);
+        
+        for (String className : Arrays.asList("Airport", "Airline", "Route")) {
+            String fileName = className + ".java";
+            Assert.assertEquals(fileName, 
+                                read(EXAMPLE_DIRECTORY.resolve(fileName)), 
+                                read(packageDirectory.resolve(fileName)));
+        }
+    }
+    
+    @Test
+    public void roundTripTest() throws Exception
+    {
+        Path packageDirectory = 
+            mySourceDirectory.resolve(Paths.get("org", "hit", "generated"));
+        Files.createDirectories(packageDirectory);
+        try (InputStream schema = 
+                getClass().getResourceAsStream("/test-schema.xml"))
+        {
+            Files.copy(schema, packageDirectory.resolve(SCHEMA_FILE_NAME));
+        }
+        new SchemaGenerator().generateTableSourceFiles(mySourceDirectory);
+        
+        // The generated class compiles against the classes it refers to.
+        Path source = packageDirectory.resolve("Airlines.java");
+        Assert.assertTrue(Files.exists(source));
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        Assert.assertEquals(
+            0, 
+            compiler.run(null, null, null,
+                         "-d", myClassDirectory.toString(),
+                         "-cp", System.getProperty("java.class.path"),
+                         source.toString()));
+        
+        try (URLClassLoader loader = 
+                new URLClassLoader(
+                    new URL[] {myClassDirectory.toUri().toURL()},
+                    getClass().getClassLoader()))
+        {
+            Class<?> type = loader.loadClass("org.hit.generated.Airlines");
+            OrdinalRow row = 
+                (OrdinalRow) type.getMethod("initialize", 
+                                            Long.class, 
+                                            String.class)
+                                 .invoke(type.newInstance(), 7L, "indigo");
+            Assert.assertEquals(Long.valueOf(7L), 
+                                row.getFieldValue(row.getFieldIndex("id")));
+            Assert.assertEquals("indigo", row.getFieldValue("name"));
+            Assert.assertSame(row, row.getFieldValue("Airlines"));
+            Assert.assertNull(row.getFieldValue("country"));
+            
+            // The fields are read back as they're written, nulls included.
+            Assert.assertEquals(row, roundTrip(type, row));
+            OrdinalRow empty = 
+                (OrdinalRow) type.getMethod("initialize", 
+                                            Long.class, 
+                                            String.class)
+                                 .invoke(type.newInstance(), 8L, null);
+            Assert.assertEquals(empty, roundTrip(type, empty));
+            
+            // The keys are funneled without reflection.
+            @SuppressWarnings("unchecked")
+            Funnel<Long> funnel = 
+                (Funnel<Long>) loader.loadClass(
+                    "org.hit.generated.Airlines$KeyFunnel")
+                        .getEnumConstants()[0];
+            HashFunction hash = Hashing.murmur3_128();
+            Assert.assertEquals(
+                hash.hashLong(7L), 
+                hash.newHasher().putObject(7L, funnel).hash());
+            
+            // The index and the storage declared in the schema file are set
+            // on the table's schema.
+            HitTableSchema schema = 
+                (HitTableSchema) type.getMethod("declare", 
+                                                HitTableSchema.class)
+                                     .invoke(null, new HitTableSchema());
+            Assert.assertTrue(schema.isStoredOffHeap());
+            Assert.assertEquals(IndexType.HASH, 
+                                schema.getSecondaryIndexes().get("name"));
+        }
+    }
+    
+    private static Object roundTrip(Class<?> type, Object row) 
+        throws Exception
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            ((Externalizable) row).writeExternal(out);
+        }
+        Externalizable copy = (Externalizable) type.newInstance();
+        try (ObjectInputStream in = 
+                new ObjectInputStream(
+                    new ByteArrayInputStream(bytes.toByteArray())))
+        {
+            copy.readExternal(in);
+        }
+        return copy;
+    }
+}
@@ -0,0 +1,142 @@
+/*
+    Hit is a high speed transactional database for handling millions
+    of updates with comfort and ease.
+
+    Copyright (C) 2013  Balraja Subbiah
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package org.hit.io.test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import org.hit.example.Airline;
+import org.hit.example.Airport;
+import org.hit.example.Route;
+import org.hit.io.CompactIO;
+import org.hit.io.pool.PoolableInput;
+import org.hit.io.pool.PoolableOutput;
+import org.hit.pool.SimplePoolableRegistry;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Verifies the rows written with {@link CompactIO} are read back as they
+ * were written.
+ *
+ * @author Balraja Subbiah
+ */
+public class CompactIOTest
+{
+    private static Airport makeAirport(long id, String city)
+    {
+        return new Airport().initialize(
+            id, "airport" + id, city, "India", "A" + id,
+            1.0D * id, 2.0D * id, 3.0D * id, 0.5F);
+    }
+
+    @Test
+    public void rowRoundTripTest() throws IOException, ClassNotFoundException
+    {
+        SimplePoolableRegistry registry = new SimplePoolableRegistry();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        PoolableOutput out = new PoolableOutput(bytes, registry);
+        // The written rows are freed by the stream.
+        out.writeObject(makeAirport(1L, "Chennai"));
+        out.writeObject(makeAirport(2L, null));
+        out.writeObject(new Airline().initialize(3L, null));
+        out.writeObject(new Route().initialize(4L, 3L, 1L, 2L, true, 1));
+        out.flush();
+
+        PoolableInput in =
+            new PoolableInput(
+                new ByteArrayInputStream(bytes.toByteArray()), registry);
+        for (long id = 1L; id <= 2L; id++) {
+            Airport airport = (Airport) in.readObject();
+            Airport expected = makeAirport(id, id == 1L ? "Chennai" : null);
+            for (int i = 0; i < expected.getFieldNames().size(); i++) {
+                Assert.assertEquals(expected.getFieldValue(i),
+                                    airport.getFieldValue(i));
+            }
+        }
+        Assert.assertEquals(new Airline().initialize(3L, null),
+                            in.readObject());
+        Route route = (Route) in.readObject();
+        Assert.assertEquals(Long.valueOf(4L),
+                            route.getFieldValue(Route.ROUTE_ID_INDEX));
+        Assert.assertEquals(Long.valueOf(3L),
+                            route.getFieldValue(Route.AIRLINE_ID_INDEX));
+        Assert.assertEquals(Long.valueOf(1L),
+                            route.getFieldValue(Route.SRC_AIRPORT_ID_INDEX));
+        Assert.assertEquals(Long.valueOf(2L),
+                            route.getFieldValue(Route.DESTN_AIRPORT_ID_INDEX));
+        Assert.assertEquals(Boolean.TRUE,
+                            route.getFieldValue(Route.SHARED_INDEX));
+        Assert.assertEquals(Integer.valueOf(1),
+                            route.getFieldValue(Route.NUM_STOPS_INDEX));
+        Assert.assertEquals(
+            Route.NUM_STOPS_INDEX, route.getFieldIndex("num_stops"));
+    }
+
+    @Test
+    public void dictionaryTest() throws IOException
+    {
+        SimplePoolableRegistry registry = new SimplePoolableRegistry();
+        ByteArrayOutputStream first = new ByteArrayOutputStream();
+        ByteArrayOutputStream second = new ByteArrayOutputStream();
+        PoolableOutput firstOut = new PoolableOutput(first, registry);
+        PoolableOutput secondOut = new PoolableOutput(second, registry);
+        int start = first.size();
+
+        // The dictionaries of the streams written together are apart.
+        CompactIO.writeDictionaryString(firstOut, "India");
+        CompactIO.writeDictionaryString(secondOut, "India");
+        CompactIO.writeDictionaryString(firstOut, "India");
+        CompactIO.writeDictionaryString(firstOut, null);
+        CompactIO.writeDictionaryString(secondOut, "France");
+        firstOut.flush();
+        secondOut.flush();
+        // The repeated string is written as its position.
+        Assert.assertEquals(start + 1 + 2 + "India".length() + 1 + 1,
+                            first.size());
+
+        PoolableInput firstIn =
+            new PoolableInput(
+                new ByteArrayInputStream(first.toByteArray()), registry);
+        PoolableInput secondIn =
+            new PoolableInput(
+                new ByteArrayInputStream(second.toByteArray()), registry);
+        Assert.assertEquals("India", CompactIO.readDictionaryString(firstIn));
+        Assert.assertEquals("India", CompactIO.readDictionaryString(secondIn));
+        Assert.assertEquals("India", CompactIO.readDictionaryString(firstIn));
+        Assert.assertNull(CompactIO.readDictionaryString(firstIn));
+        Assert.assertEquals("France",
+                            CompactIO.readDictionaryString(secondIn));
+
+        // The streams without a dictionary have the strings written as
+        // they are.
+        ByteArrayOutputStream plain = new ByteArrayOutputStream();
+        DataOutputStream plainOut = new DataOutputStream(plain);
+        CompactIO.writeDictionaryString(plainOut, "India");
+        CompactIO.writeDictionaryString(plainOut, "India");
+        DataInputStream plainIn =
+            new DataInputStream(new ByteArrayInputStream(plain.toByteArray()));
+        Assert.assertEquals("India", CompactIO.readDictionaryString(plainIn));
+        Assert.assertEquals("India", CompactIO.readDictionaryString(plainIn));
+    }
+}
@@ -0,0 +1,181 @@
+/*
+    Hit is a high speed transactional database for handling millions
+    of updates with comfort and ease.
+
+    Copyright (C) 2013  Balraja Subbiah
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package org.hit.query.test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import org.hit.db.keyspace.LinearKeyspace;
+import org.hit.db.keyspace.domain.LongDomain;
+import org.hit.db.model.HitTableSchema;
+import org.hit.db.model.Row;
+import org.hit.db.sql.operators.AggregationID;
+import org.hit.db.sql.operators.AggregationResult;
+import org.hit.db.sql.operators.Aggregator;
+import org.hit.db.sql.operators.ColumnBatch;
+import org.hit.db.sql.operators.ComparisionOperator;
+import org.hit.db.sql.operators.Condition;
+import org.hit.db.sql.operators.GroupValue;
+import org.hit.db.sql.operators.NumericComparison;
+import org.hit.db.sql.operators.RowAsMap;
+import org.hit.db.sql.operators.Select;
+import org.hit.db.sql.operators.SelectAggregateKey;
+import org.hit.db.sql.operators.Where;
+import org.hit.db.transactions.DatabaseAdaptor;
+import org.hit.db.transactions.Transactable;
+import org.hit.db.transactions.TransactableDatabase;
+import org.hit.db.transactions.TransactableTable;
+import org.hit.db.transactions.TransactionHelper;
+import org.hit.db.transactions.impl.TransactableHitDatabase;
+import org.hit.query.test.JoinTest.Node;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Verifies that the aggregates accumulated over the batches of rows are
+ * the same as those accumulated one row at a time.
+ *
+ * @author Balraja Subbiah
+ */
+public class BatchAggregationTest
+{
+    private static final long ID = TransactionHelper.SNAPSHOT_TRANSACTION_ID;
+
+    private static final String TABLE_NAME = "nodes";
+
+    /** The number of rows, which spans more than one batch */
+    private static final int ROWS = 2 * ColumnBatch.BATCH_SIZE + 100;
+
+    private static final AggregationID[] AGGREGATION_IDS = {
+        AggregationID.SUM, AggregationID.MIN, AggregationID.MAX,
+        AggregationID.AVG, AggregationID.CNT};
+
+    /**
+     * Returns the value of the aggregated column for a row, which is
+     * null or not a number for some of the rows.
+     */
+    private static Object valueOf(long id)
+    {
+        return id % 5 == 0 ? null
+               : id % 7 == 0 ? "seven"
+               : Long.valueOf(id % 13);
+    }
+
+    @Test
+    public void aggregatorTest()
+    {
+        List<Row> rows = new ArrayList<>();
+        for (long id = 1L; id <= 100L; id++) {
+            RowAsMap row = new RowAsMap();
+            row.setFieldValue("value", valueOf(id));
+            rows.add(row);
+        }
+        // Every other row is left out of the batch's selection.
+        ColumnBatch batch =
+            new ColumnBatch(rows.toArray(new Row[rows.size()]), rows.size());
+        int selected = 0;
+        List<Row> selectedRows = new ArrayList<>();
+        for (int i = 0; i < rows.size(); i += 2) {
+            batch.getSelection()[selected++] = i;
+            selectedRows.add(rows.get(i));
+        }
+        batch.setSelectedCount(selected);
+
+        for (AggregationID aggregationID : AGGREGATION_IDS) {
+            Aggregator aggregator = new Aggregator(aggregationID, "value");
+            GroupValue batchValue = new GroupValue(aggregationID);
+            aggregator.accumulate(batchValue, batch);
+            Assert.assertEquals(aggregationID.toString(),
+                                aggregator.apply(selectedRows).getResult(),
+                                batchValue.getResult(),
+                                0.0D);
+        }
+    }
+
+    private static TransactableDatabase makeDatabase()
+    {
+        TransactableDatabase database = new TransactableHitDatabase();
+        database.createTable(
+            new HitTableSchema(TABLE_NAME,
+                               Arrays.asList("id", "ref", "tag"),
+                               Collections.singletonList("id"),
+                               Node.class,
+                               Long.class,
+                               new LinearKeyspace<>(
+                                   new LongDomain(1L, 7000L))));
+        TransactableTable<Long, Node> table =
+            database.lookUpTable(TABLE_NAME);
+        for (long id = 1L; id <= ROWS; id++) {
+            Object value = valueOf(id);
+            Transactable<Long, Node> version =
+                Transactable.create(new Node().initialize(
+                    id, value instanceof Long ? (Long) value : null, "all"));
+            version.setStart(10L);
+            version.setEnd(TransactionHelper.INFINITY);
+            table.addToTable(version);
+        }
+        return database;
+    }
+
+    private static DatabaseAdaptor makeAdaptor(TransactableDatabase database)
+    {
+        DatabaseAdaptor adaptor = DatabaseAdaptor.create(database, ID);
+        adaptor.setTransactionTime(20L);
+        adaptor.setSnapshotRead(true);
+        return adaptor;
+    }
+
+    @Test
+    public void selectTest()
+    {
+        TransactableDatabase database = makeDatabase();
+        List<Condition> conditions = Arrays.<Condition>asList(
+            null,
+            new NumericComparison("id", ComparisionOperator.GE, 1500.0D));
+        for (AggregationID aggregationID : AGGREGATION_IDS) {
+            for (Condition condition : conditions) {
+                // The rows of the table scan are aggregated one at a time.
+                List<Row> rows = Lists.newArrayList(
+                    new Where(TABLE_NAME, condition)
+                        .open(makeAdaptor(database)));
+                AggregationResult expected =
+                    new AggregationResult(
+                        new SelectAggregateKey(TABLE_NAME), rows.size());
+                expected.setAggregate(
+                    "ref", new Aggregator(aggregationID, "ref").apply(rows));
+
+                Iterator<Row> result =
+                    new Select(new Where(TABLE_NAME, condition),
+                               TABLE_NAME,
+                               Collections.singletonMap("ref", aggregationID))
+                        .open(makeAdaptor(database));
+                Assert.assertEquals(aggregationID + " where " + condition,
+                                    expected.getFieldValue("ref"),
+                                    result.next().getFieldValue("ref"));
+                Assert.assertFalse(result.hasNext());
+            }
+        }
+    }
+}
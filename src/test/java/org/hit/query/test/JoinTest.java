@@ -0,0 +1,343 @@
+/*
+    Hit is a high speed transactional database for handling millions
+    of updates with comfort and ease.
+
+    Copyright (C) 2013  Balraja Subbiah
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package org.hit.query.test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.hit.db.keyspace.HashKeyspace;
+import org.hit.db.keyspace.Keyspace;
+import org.hit.db.keyspace.LinearKeyspace;
+import org.hit.db.keyspace.domain.LongDomain;
+import org.hit.db.model.HitTableSchema;
+import org.hit.db.model.IndexType;
+import org.hit.db.model.Persistable;
+import org.hit.db.model.Predicate;
+import org.hit.db.model.Row;
+import org.hit.db.sql.operators.ColumnComparison;
+import org.hit.db.sql.operators.ComparisionOperator;
+import org.hit.db.sql.operators.Condition;
+import org.hit.db.sql.operators.ConjugateCondition;
+import org.hit.db.sql.operators.Join;
+import org.hit.db.sql.operators.NumericComparison;
+import org.hit.db.sql.operators.TableIndexedRow;
+import org.hit.db.transactions.DatabaseAdaptor;
+import org.hit.db.transactions.Transactable;
+import org.hit.db.transactions.TransactableDatabase;
+import org.hit.db.transactions.TransactableTable;
+import org.hit.db.transactions.TransactionHelper;
+import org.hit.db.transactions.impl.TransactableHitDatabase;
+import org.hit.util.Pair;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Verifies that the hash, merge and index nested loop joins return the
+ * same rows as joining every row of a table with every row of the other.
+ *
+ * @author Balraja Subbiah
+ */
+public class JoinTest
+{
+    private static final long ID = TransactionHelper.SNAPSHOT_TRANSACTION_ID;
+
+    private static final String LEFT = "lefttable";
+
+    private static final String RIGHT = "righttable";
+
+    /**
+     * A row that refers to another row by a value, which might be null.
+     */
+    public static class Node implements Persistable<Long>
+    {
+        private long myID;
+
+        private Long myRef;
+
+        private String myTag;
+
+        /**
+         * CTOR
+         */
+        public Node initialize(long id, Long ref, String tag)
+        {
+            myID = id;
+            myRef = ref;
+            myTag = tag;
+            return this;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public Long primaryKey()
+        {
+            return Long.valueOf(myID);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public Object getFieldValue(String fieldName)
+        {
+            switch (fieldName) {
+            case "id":
+                return Long.valueOf(myID);
+            case "ref":
+                return myRef;
+            case "tag":
+                return myTag;
+            default:
+                return null;
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public Collection<String> getFieldNames()
+        {
+            return Arrays.asList("id", "ref", "tag");
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public Node getCopy()
+        {
+            return new Node().initialize(myID, myRef, myTag);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void free()
+        {
+        }
+    }
+
+    private TransactableDatabase myDatabase;
+
+    @Before
+    public void setupTest()
+    {
+        myDatabase = new TransactableHitDatabase();
+    }
+
+    private TransactableTable<Long, Node> createTable(
+        String  tableName,
+        boolean isKeyOrdered,
+        String  indexedColumn)
+    {
+        Keyspace<?,?> keyspace =
+            isKeyOrdered ? new LinearKeyspace<>(new LongDomain(1L, 7000L))
+                         : new HashKeyspace<Long>();
+        HitTableSchema schema =
+            new HitTableSchema(tableName,
+                               Arrays.asList("id", "ref", "tag"),
+                               Collections.singletonList("id"),
+                               Node.class,
+                               Long.class,
+                               keyspace);
+        if (indexedColumn != null) {
+            schema.addSecondaryIndex(indexedColumn, IndexType.HASH);
+        }
+        myDatabase.createTable(schema);
+        return myDatabase.lookUpTable(tableName);
+    }
+
+    private static void addNode(TransactableTable<Long, Node> table,
+                                long                          id,
+                                Long                          ref,
+                                String                        tag)
+    {
+        Transactable<Long, Node> version =
+            Transactable.create(new Node().initialize(id, ref, tag));
+        version.setStart(10L);
+        version.setEnd(TransactionHelper.INFINITY);
+        table.addToTable(version);
+    }
+
+    /**
+     * Returns the ids of the joined rows, in the order of their ids.
+     */
+    private static List<String> ids(Collection<Row> joinedRows)
+    {
+        List<String> ids = new ArrayList<>();
+        for (Row row : joinedRows) {
+            ids.add(((Node) row.getFieldValue(LEFT)).primaryKey()
+                    + ":"
+                    + ((Node) row.getFieldValue(RIGHT)).primaryKey());
+        }
+        Collections.sort(ids);
+        return ids;
+    }
+
+    private List<Row> rows(String tableName)
+    {
+        List<Row> rows = new ArrayList<>();
+        for (Transactable<Long, Node> version :
+                myDatabase.<Long, Node>lookUpTable(tableName)
+                          .findMatching(Predicate.MATCH_ALL, 20L, ID))
+        {
+            rows.add(version.getPersistable());
+        }
+        return rows;
+    }
+
+    /**
+     * Joins the tables by checking the conditions on every pair of their
+     * rows.
+     */
+    private List<String> nestedLoopJoin(Condition joinCondition,
+                                        Condition filter)
+    {
+        List<Row> joinedRows = new ArrayList<>();
+        for (Row left : rows(LEFT)) {
+            for (Row right : rows(RIGHT)) {
+                Map<String, Row> tableRows = new HashMap<>();
+                tableRows.put(LEFT, left);
+                tableRows.put(RIGHT, right);
+                Row row = new TableIndexedRow(tableRows);
+                if (   joinCondition.isValid(row)
+                    && (filter == null || filter.isValid(row)))
+                {
+                    joinedRows.add(row);
+                }
+            }
+        }
+        return ids(joinedRows);
+    }
+
+    private List<String> join(Condition joinCondition, Condition filter)
+    {
+        DatabaseAdaptor adaptor = DatabaseAdaptor.create(myDatabase, ID);
+        adaptor.setTransactionTime(20L);
+        adaptor.setSnapshotRead(true);
+        return ids(new Join(new Pair<>(Arrays.asList(LEFT, RIGHT),
+                                       joinCondition),
+                            filter).getResult(adaptor));
+    }
+
+    private void assertSameAsNestedLoop(Condition joinCondition,
+                                        Condition filter)
+    {
+        List<String> expected = nestedLoopJoin(joinCondition, filter);
+        Assert.assertFalse(expected.isEmpty());
+        Assert.assertEquals(expected, join(joinCondition, filter));
+    }
+
+    private static Condition equals(String column1, String column2)
+    {
+        return new ColumnComparison(ComparisionOperator.EQ, column1, column2);
+    }
+
+    @Test
+    public void hashJoinTest()
+    {
+        // Neither table is ordered or indexed by the joined column, while
+        // the values are repeated and some of them are null.
+        TransactableTable<Long, Node> left = createTable(LEFT, false, null);
+        TransactableTable<Long, Node> right = createTable(RIGHT, false, null);
+        for (long id = 1L; id <= 40L; id++) {
+            addNode(left, id, id % 5 == 0 ? null : Long.valueOf(id % 7), null);
+        }
+        for (long id = 1L; id <= 30L; id++) {
+            addNode(right, id, id % 6 == 0 ? null : Long.valueOf(id % 4), null);
+        }
+
+        Condition joinCondition = equals(LEFT + ".ref", RIGHT + ".ref");
+        assertSameAsNestedLoop(joinCondition, null);
+        // The filtered table is expected to be smaller, hence the hash
+        // table is built on the other one.
+        assertSameAsNestedLoop(
+            joinCondition,
+            new NumericComparison(LEFT + ".id", ComparisionOperator.GE, 3.0D));
+    }
+
+    @Test
+    public void mergeJoinTest()
+    {
+        // Both the tables are ordered by their keys, with some of the keys
+        // missing on either side.
+        TransactableTable<Long, Node> left = createTable(LEFT, true, null);
+        TransactableTable<Long, Node> right = createTable(RIGHT, true, null);
+        for (long id = 1L; id <= 60L; id++) {
+            if (id % 3 != 0) {
+                addNode(left,
+                        id,
+                        id % 5 == 0 ? null : Long.valueOf(id % 2),
+                        null);
+            }
+            if (id % 4 != 0) {
+                addNode(right,
+                        id,
+                        id % 7 == 0 ? null : Long.valueOf(id % 3),
+                        null);
+            }
+        }
+
+        assertSameAsNestedLoop(equals(LEFT + ".id", RIGHT + ".id"), null);
+        // The other keys, which might be null, are compared as the rows
+        // with the same primary keys are merged.
+        assertSameAsNestedLoop(
+            new ConjugateCondition(
+                ConjugateCondition.Conjunctive.AND,
+                Arrays.asList(equals(LEFT + ".id", RIGHT + ".id"),
+                              equals(LEFT + ".ref", RIGHT + ".ref"))),
+            null);
+    }
+
+    @Test
+    public void indexNestedLoopJoinTest()
+    {
+        // Looking up the few rows of the left table from the larger right
+        // table costs less than scanning it.
+        TransactableTable<Long, Node> left = createTable(LEFT, false, null);
+        TransactableTable<Long, Node> right = createTable(RIGHT, false, "tag");
+        addNode(left, 1L, Long.valueOf(10L), "even");
+        addNode(left, 2L, Long.valueOf(10L), "odd");
+        addNode(left, 3L, null, null);
+        addNode(left, 4L, Long.valueOf(5000L), "none");
+        addNode(left, 5L, Long.valueOf(999L), "even");
+        for (long id = 1L; id <= 1000L; id++) {
+            addNode(right,
+                    id,
+                    null,
+                    id % 10 == 0 ? null : (id % 2 == 0 ? "even" : "odd"));
+        }
+
+        // By the primary key of the right table.
+        assertSameAsNestedLoop(equals(LEFT + ".ref", RIGHT + ".id"), null);
+        // By its secondary index, which has several rows for a value.
+        assertSameAsNestedLoop(equals(LEFT + ".tag", RIGHT + ".tag"), null);
+    }
+}
@@ -0,0 +1,185 @@
+/*
+    Hit is a high speed transactional database for handling millions
+    of updates with comfort and ease.
+
+    Copyright (C) 2013  Balraja Subbiah
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package org.hit.query.test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.hit.db.model.Row;
+import org.hit.db.sql.merger.AggregationMerger;
+import org.hit.db.sql.merger.OrderedResultMerger;
+import org.hit.db.sql.operators.AggregationID;
+import org.hit.db.sql.operators.AggregationResult;
+import org.hit.db.sql.operators.GroupValue;
+import org.hit.db.sql.operators.GroupingColumnsKey;
+import org.hit.db.sql.operators.OrderByComparator;
+import org.hit.db.sql.operators.RowAsMap;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Verifies the merging of the ordered and limited partial results
+ * received from the nodes.
+ *
+ * @author Balraja Subbiah
+ */
+public class OrderedResultMergerTest
+{
+    private final Map<String, Row> myGroupRows = new TreeMap<>();
+
+    /**
+     * Returns the rows having the given ids, with the altitude of a row
+     * being its id, except for the row 0 which doesn't have an altitude.
+     */
+    private static List<Row> makeRows(long... ids)
+    {
+        List<Row> rows = new ArrayList<>();
+        for (long id : ids) {
+            RowAsMap row = new RowAsMap();
+            row.setFieldValue("id", Long.valueOf(id));
+            row.setFieldValue(
+                "altitude", id == 0L ? null : Double.valueOf(id));
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    private static List<Long> ids(Collection<Row> rows)
+    {
+        List<Long> ids = new ArrayList<>();
+        for (Row row : rows) {
+            ids.add((Long) row.getFieldValue("id"));
+        }
+        return ids;
+    }
+
+    private static Map<String, Boolean> orderBy(boolean ascending)
+    {
+        return Collections.singletonMap("altitude", Boolean.valueOf(ascending));
+    }
+
+    @Test
+    public void orderedMergeTest()
+    {
+        for (boolean ascending : new boolean[] {true, false}) {
+            OrderByComparator comparator =
+                new OrderByComparator(orderBy(ascending));
+            // Each node orders its rows, while one of them hasn't found
+            // any rows.
+            List<List<Row>> partialResults = Arrays.asList(
+                makeRows(1L, 14L, 25L, 33L, 42L, 57L),
+                makeRows(0L, 2L, 7L, 12L, 28L, 31L, 64L, 70L),
+                Collections.<Row>emptyList(),
+                makeRows(45L, 46L, 99L));
+            List<Row> allRows = new ArrayList<>();
+            for (List<Row> partialResult : partialResults) {
+                Collections.sort(partialResult, comparator);
+                allRows.addAll(partialResult);
+            }
+            Collections.sort(allRows, comparator);
+
+            for (int limit : new int[] {1, 5, allRows.size(), 100}) {
+                OrderedResultMerger merger =
+                    new OrderedResultMerger(null, orderBy(ascending), limit);
+                for (List<Row> partialResult : partialResults) {
+                    merger.addPartialResult(partialResult);
+                }
+                Assert.assertEquals(
+                    "Limit " + limit + " ascending " + ascending,
+                    ids(allRows.subList(0, Math.min(limit, allRows.size()))),
+                    ids(merger.getMergedResult()));
+            }
+        }
+    }
+
+    @Test
+    public void unorderedLimitTest()
+    {
+        OrderedResultMerger merger = new OrderedResultMerger(null, null, 4);
+        merger.addPartialResult(makeRows(1L, 2L, 3L));
+        merger.addPartialResult(Collections.<Row>emptyList());
+        merger.addPartialResult(makeRows(4L, 5L, 6L));
+        List<Long> merged = ids(merger.getMergedResult());
+        Assert.assertEquals(4, merged.size());
+        Assert.assertEquals(4, new TreeSet<>(merged).size());
+        Assert.assertTrue(
+            Arrays.asList(1L, 2L, 3L, 4L, 5L, 6L).containsAll(merged));
+    }
+
+    /**
+     * Returns the partial aggregate of a country's group, the groups of a
+     * country are keyed by the same row.
+     */
+    private AggregationResult makeAggregate(String country,
+                                            double altitude,
+                                            int    count)
+    {
+        Row groupRow = myGroupRows.get(country);
+        if (groupRow == null) {
+            RowAsMap countryRow = new RowAsMap();
+            countryRow.setFieldValue("country", country);
+            groupRow = countryRow;
+            myGroupRows.put(country, groupRow);
+        }
+        AggregationResult result =
+            new AggregationResult(
+                new GroupingColumnsKey(
+                    new TreeSet<>(Collections.singleton("country")),
+                    groupRow),
+                count);
+        GroupValue sum = new GroupValue(AggregationID.SUM);
+        sum.accumulate(altitude);
+        result.setAggregate("altitude", sum);
+        return result;
+    }
+
+    @Test
+    public void aggregateMergeTest()
+    {
+        // The partial aggregates of a group are combined before the groups
+        // are ordered by them, as a node's order doesn't hold after merging.
+        OrderedResultMerger merger =
+            new OrderedResultMerger(new AggregationMerger(), orderBy(false), 2);
+        merger.addPartialResult(Arrays.<Row>asList(
+            makeAggregate("India", 500.0D, 2),
+            makeAggregate("Germany", 400.0D, 1),
+            makeAggregate("France", 100.0D, 1)));
+        merger.addPartialResult(Arrays.<Row>asList(
+            makeAggregate("France", 900.0D, 3),
+            makeAggregate("Germany", 300.0D, 2)));
+
+        Map<String, Object> merged = new TreeMap<>();
+        List<String> countries = new ArrayList<>();
+        for (Row row : merger.getMergedResult()) {
+            String country = (String) row.getFieldValue("country");
+            countries.add(country);
+            merged.put(country, row.getFieldValue("altitude"));
+        }
+        Assert.assertEquals(Arrays.asList("France", "Germany"), countries);
+        Assert.assertEquals(Double.valueOf(1000.0D), merged.get("France"));
+        Assert.assertEquals(Double.valueOf(700.0D), merged.get("Germany"));
+    }
+}
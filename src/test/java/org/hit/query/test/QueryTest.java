@@ -23,6 +23,7 @@ package org.hit.query.test;
 import static org.junit.Assert.*;
 
 import java.util.Collection;
+import java.util.Iterator;
 
 import org.antlr.runtime.RecognitionException;
 import org.hit.db.model.Query;
@@ -112,6 +113,33 @@ public class QueryTest
         assertEquals(8844L, maxID.longValue());
     }
     
+    /**
+     * Tests the select query with order by and limit clauses.
+     */
+    @Test
+    public void testOrderByLimit() 
+        throws RecognitionException, QueryBuildingException
+    {
+        Query query = 
+            QueryParser.parseQuery(
+                "select * from " + HitDbTest.TABLE_NAME 
+                + " order by id desc limit 5");
+        
+        @SuppressWarnings("unchecked")
+        Collection<Row> result = 
+            (Collection<Row>) query.query(myTestDB);
+        assertEquals(5, result.size());
+        
+        Iterator<Row> itr = result.iterator();
+        long previousID = ((Number) itr.next().getFieldValue("id")).longValue();
+        assertEquals(8844L, previousID);
+        while (itr.hasNext()) {
+            long id = ((Number) itr.next().getFieldValue("id")).longValue();
+            assertTrue(id < previousID);
+            previousID = id;
+        }
+    }
+    
     /**
      * Tests the select max(column_name) query.
      */
@@ -22,6 +22,7 @@ package org.hit.query.test;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
 import java.util.TreeMap;
 
@@ -32,6 +33,8 @@ import org.hit.db.model.HitTableSchema;
 import org.hit.db.model.Table;
 import org.hit.example.DataLoader;
 
+import com.google.common.collect.Iterators;
+
 /**
  * A test table that can be used for verifying query execution.
  * 
@@ -99,6 +102,35 @@ public class TestTable<K extends Comparable<K>, P extends Persistable<K>>
         return result;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Collection<P> findMatching(Predicate predicate,
+                                      String    indexedColumn,
+                                      Object    start,
+                                      Object    end)
+    {
+        return findMatching(predicate);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Iterator<P> iterateMatching(final Predicate predicate)
+    {
+        return Iterators.filter(
+            myData.values().iterator(),
+            new com.google.common.base.Predicate<P>() {
+                @Override
+                public boolean apply(P persistable)
+                {
+                    return predicate.isInterested(persistable);
+                }
+            });
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -116,6 +148,15 @@ public class TestTable<K extends Comparable<K>, P extends Persistable<K>>
     {
         return mySchema;
     }
+    
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long rowCount()
+    {
+        return myData.size();
+    }
 
 
     /**
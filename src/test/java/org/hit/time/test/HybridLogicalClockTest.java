@@ -0,0 +1,100 @@
+/*
+    Hit is a high speed transactional database for handling millions
+    of updates with comfort and ease.
+
+    Copyright (C) 2013  Balraja Subbiah
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package org.hit.time.test;
+
+import org.hit.time.HybridLogicalClock;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the rules by which the <code>HybridLogicalClock</code> issues and
+ * absorbs the timestamps.
+ *
+ * @author Balraja Subbiah
+ */
+public class HybridLogicalClockTest
+{
+    private static final int LOGICAL_BITS = 16;
+
+    private static long toTimestamp(long physicalTime)
+    {
+        return physicalTime << LOGICAL_BITS;
+    }
+
+    @Test
+    public void monotonicTest()
+    {
+        HybridLogicalClock clock = new HybridLogicalClock();
+        long lastTime = clock.currentTime();
+        // Far more timestamps than milliseconds elapse, so that many of
+        // them are told apart only by the logical counter.
+        for (int i = 0; i < 100000; i++) {
+            long time = clock.currentTime();
+            Assert.assertTrue(time > lastTime);
+            lastTime = time;
+        }
+    }
+
+    @Test
+    public void sendTest()
+    {
+        // A timestamp carries the physical time in its higher bits.
+        long before = System.currentTimeMillis();
+        HybridLogicalClock clock = new HybridLogicalClock();
+        long time = clock.currentTime();
+        long physicalTime = HybridLogicalClock.toPhysicalTime(time);
+        Assert.assertTrue(physicalTime >= before);
+        Assert.assertTrue(physicalTime <= System.currentTimeMillis());
+    }
+
+    @Test
+    public void receiveTest()
+    {
+        HybridLogicalClock clock = new HybridLogicalClock(1000L);
+        long received =
+            toTimestamp(System.currentTimeMillis() + 500L) + 10L;
+        Assert.assertTrue(clock.update(received));
+        // The timestamps issued after receiving one are higher than it,
+        // though the local physical time hasn't caught up yet.
+        Assert.assertEquals(received + 1, clock.currentTime());
+        Assert.assertEquals(received + 2, clock.currentTime());
+
+        // An older timestamp doesn't move the clock back.
+        Assert.assertTrue(clock.update(toTimestamp(1L)));
+        Assert.assertEquals(received + 3, clock.currentTime());
+    }
+
+    @Test
+    public void maxOffsetTest()
+    {
+        HybridLogicalClock clock = new HybridLogicalClock(100L);
+        long lastTime = clock.currentTime();
+        long received = toTimestamp(System.currentTimeMillis() + 60000L);
+        Assert.assertFalse(clock.update(received));
+        long time = clock.currentTime();
+        Assert.assertTrue(time > lastTime);
+        Assert.assertTrue(time < received);
+
+        // The offset is honoured once it's raised.
+        clock.setMaxOffsetMillis(120000L);
+        Assert.assertTrue(clock.update(received));
+        Assert.assertTrue(clock.currentTime() > received);
+    }
+}
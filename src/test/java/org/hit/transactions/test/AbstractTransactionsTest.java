@@ -0,0 +1,152 @@
+/*
+    Hit is a high speed transactional database for handling millions
+    of updates with comfort and ease.
+
+    Copyright (C) 2013  Balraja Subbiah
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package org.hit.transactions.test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.TreeMap;
+
+import org.hit.db.keyspace.HashKeyspace;
+import org.hit.db.model.HitTableSchema;
+import org.hit.db.model.Mutation;
+import org.hit.db.model.Query;
+import org.hit.db.model.Row;
+import org.hit.db.sql.operators.QueryAdaptor;
+import org.hit.db.sql.operators.Where;
+import org.hit.db.transactions.AbstractTransaction;
+import org.hit.db.transactions.ReadTransaction;
+import org.hit.db.transactions.Transactable;
+import org.hit.db.transactions.TransactableDatabase;
+import org.hit.db.transactions.TransactableTable;
+import org.hit.db.transactions.WriteTransaction;
+import org.hit.db.transactions.impl.TransactableHitDatabase;
+import org.hit.time.Clock;
+import org.hit.time.SimpleSystemClock;
+import org.junit.Assert;
+import org.junit.Before;
+
+/**
+ * Defines the infrastructure for running the transactions against a 
+ * database that has a partitioned and a hashed table of accounts.
+ * 
+ * @author Balraja Subbiah
+ */
+public abstract class AbstractTransactionsTest
+{
+    protected static final HitTableSchema HASHED_SCHEMA =
+        new HitTableSchema("hashed_account",
+                           new ArrayList<String>(),
+                           new ArrayList<String>(),
+                           Account.class,
+                           Long.class,
+                           new HashKeyspace<Long>());
+    
+    protected TransactableDatabase myDatabase;
+    
+    protected Clock                myClock;
+    
+    protected long                 myTransactionID;
+    
+    @Before
+    public void setupTest()
+    {
+        myDatabase      = new TransactableHitDatabase();
+        myClock         = new SimpleSystemClock();
+        myTransactionID = 1L;
+        
+        myDatabase.createTable(Account.SCHEMA);
+        myDatabase.createTable(HASHED_SCHEMA);
+    }
+    
+    /** Applies the mutation and either commits or aborts its changes */
+    protected void apply(Mutation mutation, boolean isCommit)
+    {
+        AbstractTransaction transaction = 
+            WriteTransaction.create(myTransactionID++,
+                                    myDatabase,
+                                    myClock, 
+                                    mutation);
+        
+        transaction.init();
+        transaction.execute();
+        if (isCommit) {
+            Assert.assertTrue(transaction.validate());
+            transaction.commit();
+        }
+        else {
+            transaction.abort();
+        }
+    }
+    
+    /** Returns the result of executing the query */
+    protected Object execute(Query query)
+    {
+        ReadTransaction transaction = 
+            ReadTransaction.create(myTransactionID++,
+                                   myDatabase,
+                                   myClock, 
+                                   query);
+        
+        transaction.init();
+        transaction.execute();
+        return transaction.getResult();
+    }
+    
+    /** Returns all the rows of the table */
+    protected Collection<Row> select(String tableName)
+    {
+        @SuppressWarnings("unchecked")
+        Collection<Row> rows = (Collection<Row>) execute(
+            new QueryAdaptor(new Where(tableName, null)));
+        return rows;
+    }
+    
+    /** Adds a version of the account that's valid between the times */
+    protected Transactable<Long, Account> addVersion(
+        TransactableTable<Long, Account> table,
+        long accountID,
+        double balance,
+        long start,
+        long end)
+    {
+        Transactable<Long, Account> version = 
+            Transactable.create(new Account().initialize(accountID, balance));
+        version.setStart(start);
+        version.setEnd(end);
+        table.addToTable(version);
+        return version;
+    }
+    
+    /** 
+     * Returns the balances of the versions keyed by their accounts, 
+     * verifying that there's only one version per account.
+     */
+    protected static TreeMap<Long, Double> balances(
+        Collection<Transactable<Long, Account>> versions)
+    {
+        TreeMap<Long, Double> balances = new TreeMap<>();
+        for (Transactable<Long, Account> version : versions) {
+            Account account = version.getPersistable();
+            Assert.assertNull(
+                balances.put(account.getAccountID(), account.getBalance()));
+        }
+        return balances;
+    }
+}
@@ -0,0 +1,185 @@
+/*
+    Hit is a high speed transactional database for handling millions
+    of updates with comfort and ease.
+
+    Copyright (C) 2013  Balraja Subbiah
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package org.hit.transactions.test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.hit.db.keyspace.LinearKeyspace;
+import org.hit.db.keyspace.domain.LongDomain;
+import org.hit.db.model.ColumnarProjection;
+import org.hit.db.model.HitTableSchema;
+import org.hit.db.model.Row;
+import org.hit.db.sql.operators.AggregationID;
+import org.hit.db.sql.operators.ColumnarSelect;
+import org.hit.db.sql.operators.ComparisionOperator;
+import org.hit.db.sql.operators.Condition;
+import org.hit.db.sql.operators.NumericComparison;
+import org.hit.db.sql.operators.StringComparison;
+import org.hit.db.transactions.DatabaseAdaptor;
+import org.hit.db.transactions.Transactable;
+import org.hit.db.transactions.TransactableDatabase;
+import org.hit.db.transactions.TransactableTable;
+import org.hit.db.transactions.TransactionHelper;
+import org.hit.db.transactions.impl.TransactableHitDatabase;
+import org.hit.example.Airport;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Verifies the aggregates served from the columnar replica of a table.
+ *
+ * @author Balraja Subbiah
+ */
+public class ColumnarReplicaTest
+{
+    private static final long ID = TransactionHelper.SNAPSHOT_TRANSACTION_ID;
+
+    private static final int AIRPORTS = 10;
+
+    private TransactableDatabase myReplicated;
+
+    private TransactableDatabase myPlain;
+
+    private static HitTableSchema makeSchema(boolean columnarReplica)
+    {
+        HitTableSchema schema =
+            new HitTableSchema(Airport.TABLE_NAME,
+                               new ArrayList<String>(),
+                               new ArrayList<String>(),
+                               Airport.class,
+                               Long.class,
+                               new LinearKeyspace<>(
+                                   new LongDomain(1L, 7000L)));
+        schema.setColumnarReplica(columnarReplica);
+        return schema;
+    }
+
+    private static TransactableDatabase makeDatabase(boolean columnarReplica)
+    {
+        TransactableDatabase database = new TransactableHitDatabase();
+        database.createTable(makeSchema(columnarReplica));
+        TransactableTable<Long, Airport> table =
+            database.lookUpTable(Airport.TABLE_NAME);
+        for (long id = 1L; id <= AIRPORTS; id++) {
+            addAirport(table, id, 10L);
+        }
+        return database;
+    }
+
+    private static void addAirport(TransactableTable<Long, Airport> table,
+                                   long                             id,
+                                   long                             start)
+    {
+        Transactable<Long, Airport> version =
+            Transactable.create(new Airport().initialize(
+                id, "airport" + id, "city" + id,
+                id % 2 == 0 ? "India" : "Germany", "A" + id,
+                0.0D, 0.0D, 100.0D * id, 0.0F));
+        version.setStart(start);
+        version.setEnd(TransactionHelper.INFINITY);
+        table.addToTable(version);
+    }
+
+    @Before
+    public void setupTest()
+    {
+        myReplicated = makeDatabase(true);
+        myPlain = makeDatabase(false);
+    }
+
+    private static Row aggregate(TransactableDatabase       database,
+                                 Condition                  condition,
+                                 Map<String, AggregationID> selectColumns)
+    {
+        DatabaseAdaptor adaptor = DatabaseAdaptor.create(database, ID);
+        adaptor.setTransactionTime(20L);
+        adaptor.setSnapshotRead(true);
+        Iterator<Row> result =
+            new ColumnarSelect(Airport.TABLE_NAME, condition, selectColumns)
+                .open(adaptor);
+        Row row = result.next();
+        Assert.assertFalse(result.hasNext());
+        return row;
+    }
+
+    @Test
+    public void aggregateTest()
+    {
+        List<Condition> conditions = Arrays.<Condition>asList(
+            null,
+            new NumericComparison("altitude", ComparisionOperator.GE, 300.0D),
+            new StringComparison("country", "'India'"));
+        for (AggregationID aggregationID : new AggregationID[] {
+                AggregationID.SUM, AggregationID.MIN, AggregationID.MAX,
+                AggregationID.AVG, AggregationID.CNT})
+        {
+            Map<String, AggregationID> selectColumns = new HashMap<>();
+            selectColumns.put("altitude", aggregationID);
+            for (Condition condition : conditions) {
+                Assert.assertEquals(
+                    aggregationID + " where " + condition,
+                    aggregate(myPlain, condition, selectColumns)
+                        .getFieldValue("altitude"),
+                    aggregate(myReplicated, condition, selectColumns)
+                        .getFieldValue("altitude"));
+            }
+        }
+
+        Map<String, AggregationID> sum = new HashMap<>();
+        sum.put("altitude", AggregationID.SUM);
+        Assert.assertEquals(
+            Double.valueOf(5500.0D),
+            aggregate(myReplicated, null, sum).getFieldValue("altitude"));
+        Assert.assertEquals(
+            Double.valueOf(3000.0D),
+            aggregate(myReplicated,
+                      new StringComparison("country", "'India'"),
+                      sum).getFieldValue("altitude"));
+    }
+
+    @Test
+    public void projectionTest()
+    {
+        TransactableTable<Long, Airport> table =
+            myReplicated.lookUpTable(Airport.TABLE_NAME);
+        Assert.assertNull(
+            myPlain.lookUpTable(Airport.TABLE_NAME)
+                   .getColumnarProjection(20L));
+
+        // The projection is reused until the table is modified.
+        ColumnarProjection projection = table.getColumnarProjection(20L);
+        Assert.assertEquals(AIRPORTS, projection.getRowCount());
+        Assert.assertSame(projection, table.getColumnarProjection(30L));
+
+        addAirport(table, AIRPORTS + 1, 25L);
+        ColumnarProjection rebuilt = table.getColumnarProjection(30L);
+        Assert.assertNotSame(projection, rebuilt);
+        Assert.assertEquals(AIRPORTS + 1, rebuilt.getRowCount());
+        // The older snapshots are still served their own rows.
+        Assert.assertEquals(AIRPORTS,
+                            table.getColumnarProjection(20L).getRowCount());
+    }
+}
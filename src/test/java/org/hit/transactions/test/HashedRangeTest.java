@@ -0,0 +1,122 @@
+/*
+    Hit is a high speed transactional database for handling millions
+    of updates with comfort and ease.
+
+    Copyright (C) 2013  Balraja Subbiah
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package org.hit.transactions.test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.TreeMap;
+
+import org.hit.db.keyspace.HashKeyspace;
+import org.hit.db.model.HitTableSchema;
+import org.hit.db.model.Predicate;
+import org.hit.db.transactions.Transactable;
+import org.hit.db.transactions.TransactableTable;
+import org.hit.db.transactions.TransactionHelper;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Verifies the range scans and the range deletes on the hashed tables,
+ * both with and without the keys being range indexed.
+ * 
+ * @author Balraja Subbiah
+ */
+public class HashedRangeTest extends AbstractTransactionsTest
+{
+    private static final long ID = TransactionHelper.SNAPSHOT_TRANSACTION_ID;
+    
+    private TransactableTable<Long, Account> createRangeIndexedTable()
+    {
+        HitTableSchema schema = 
+            new HitTableSchema("range_indexed_account",
+                               new ArrayList<String>(),
+                               new ArrayList<String>(),
+                               Account.class,
+                               Long.class,
+                               new HashKeyspace<Long>());
+        schema.setKeyRangeIndexed(true);
+        myDatabase.createTable(schema);
+        return myDatabase.lookUpTable(schema.getTableName());
+    }
+    
+    private TreeMap<Long, Double> verifyRange(
+        TransactableTable<Long, Account> table)
+    {
+        for (long i = 1; i <= 10; i++) {
+            addVersion(table, i, i * 10.0D, 10L, TransactionHelper.INFINITY);
+        }
+        
+        TreeMap<Long, Double> expected = new TreeMap<>();
+        for (long i = 3; i <= 6; i++) {
+            expected.put(i, i * 10.0D);
+        }
+        Collection<Transactable<Long, Account>> range = 
+            table.findMatching(Predicate.MATCH_ALL, 3L, 6L, 20L, ID);
+        Assert.assertEquals(expected, balances(range));
+        return expected;
+    }
+    
+    private void verifyRangeDelete(TransactableTable<Long, Account> table, 
+                                   TreeMap<Long, Double> expected)
+    {
+        // The range delete removes only the rows between the bounds.
+        Assert.assertEquals(expected, 
+                            balances(table.deleteRange(3L, 6L, 20L, ID)));
+        Assert.assertTrue(
+            table.findMatching(Predicate.MATCH_ALL, 3L, 6L, 20L, ID)
+                 .isEmpty());
+        TreeMap<Long, Double> remaining = 
+            balances(table.findMatching(Predicate.MATCH_ALL, 20L, ID));
+        Assert.assertEquals(6, remaining.size());
+        for (long i = 3; i <= 6; i++) {
+            Assert.assertFalse(remaining.containsKey(i));
+        }
+    }
+    
+    @Test
+    public void rangeIndexedTest()
+    {
+        TransactableTable<Long, Account> table = createRangeIndexedTable();
+        TreeMap<Long, Double> expected = verifyRange(table);
+        
+        // The range scan returns the rows between the bounds in key order.
+        Collection<Transactable<Long, Account>> range = 
+            table.findMatching(Predicate.MATCH_ALL, 3L, 6L, 20L, ID);
+        List<Long> keys = new ArrayList<>();
+        for (Transactable<Long, Account> version : range) {
+            keys.add(version.getPersistable().getAccountID());
+        }
+        Assert.assertEquals(new ArrayList<>(expected.keySet()), keys);
+        
+        verifyRangeDelete(table, expected);
+    }
+    
+    @Test
+    public void scannedRangeTest()
+    {
+        // The keys of the table aren't range indexed, hence the ranges 
+        // are served by scanning the table.
+        Assert.assertFalse(HASHED_SCHEMA.isKeyRangeIndexed());
+        TransactableTable<Long, Account> table = 
+            myDatabase.lookUpTable(HASHED_SCHEMA.getTableName());
+        verifyRangeDelete(table, verifyRange(table));
+    }
+}
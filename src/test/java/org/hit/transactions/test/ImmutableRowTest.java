@@ -0,0 +1,104 @@
+/*
+    Hit is a high speed transactional database for handling millions
+    of updates with comfort and ease.
+
+    Copyright (C) 2013  Balraja Subbiah
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package org.hit.transactions.test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.hit.db.keyspace.LinearKeyspace;
+import org.hit.db.keyspace.domain.LongDomain;
+import org.hit.db.model.HitTableSchema;
+import org.hit.db.model.Row;
+import org.hit.db.model.mutations.BatchAddMutation;
+import org.hit.db.transactions.Transactable;
+import org.hit.db.transactions.TransactableTable;
+import org.hit.db.transactions.TransactionHelper;
+import org.hit.example.Airport;
+import org.hit.pool.PooledObjects;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Verifies that the rows of the tables storing the <code>
+ * ImmutablePersistable</code>s are handed out without copying them, 
+ * while the other rows are copied.
+ * 
+ * @author Balraja Subbiah
+ */
+public class ImmutableRowTest extends AbstractTransactionsTest
+{
+    @Test
+    public void immutableRowTest()
+    {
+        myDatabase.createTable(
+            new HitTableSchema(Airport.TABLE_NAME,
+                               new ArrayList<String>(),
+                               new ArrayList<String>(),
+                               Airport.class,
+                               Long.class,
+                               new LinearKeyspace<>(
+                                   new LongDomain(1L, 7000L))));
+        Airport airport = new Airport().initialize(
+            1L, "airport", "city", "country", "AIR", 0.0D, 0.0D, 0.0D, 0.0F);
+        List<Airport> airports = new ArrayList<>();
+        airports.add(airport);
+        apply(new BatchAddMutation<>(Airport.TABLE_NAME, airports), true);
+        apply(new UpdateBalanceTransaction(1L, 100.0D), true);
+        
+        // The immutable rows are handed out as they are stored.
+        Collection<Row> rows = select(Airport.TABLE_NAME);
+        Assert.assertEquals(1, rows.size());
+        Assert.assertSame(airport, rows.iterator().next());
+        
+        // Since the airports aren't pooled, the one handed out stays 
+        // intact after its version has been freed.
+        TransactableTable<Long, Airport> airportTable = 
+            myDatabase.lookUpTable(Airport.TABLE_NAME);
+        Transactable<Long, Airport> version = 
+            airportTable.getRow(1L, 
+                                myClock.currentTime(), 
+                                TransactionHelper.SNAPSHOT_TRANSACTION_ID);
+        Assert.assertSame(airport, version.getPersistable());
+        airportTable.remove(version);
+        PooledObjects.freeInstance(version);
+        Assert.assertEquals(1L, airport.getID());
+        Assert.assertEquals("airport", airport.getName());
+        Assert.assertEquals("country", airport.getCountry());
+        
+        // The other rows are copied, so that the changes made to them 
+        // don't reach the table.
+        rows = select(Account.TABLE_NAME);
+        Assert.assertEquals(1, rows.size());
+        Account account = (Account) rows.iterator().next();
+        TransactableTable<Long, Account> table = 
+            myDatabase.lookUpTable(Account.TABLE_NAME);
+        Account stored = 
+            table.getRow(1L, 
+                         myClock.currentTime(), 
+                         TransactionHelper.SNAPSHOT_TRANSACTION_ID)
+                 .getPersistable();
+        Assert.assertNotSame(stored, account);
+        Assert.assertEquals(stored, account);
+        account.initialize(1L, 500.0D);
+        Assert.assertEquals(100.0D, (Double) execute(new BalanceQuery(1L)), 
+                            0.0D);
+    }
+}
@@ -0,0 +1,67 @@
+/*
+    Hit is a high speed transactional database for handling millions
+    of updates with comfort and ease.
+
+    Copyright (C) 2013  Balraja Subbiah
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package org.hit.transactions.test;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.hit.db.model.Database;
+import org.hit.db.model.Row;
+import org.hit.db.sql.operators.QueryAdaptor;
+import org.hit.db.sql.operators.QueryOperator;
+
+/**
+ * A query that pulls the rows from its operator one at a time and runs
+ * the given task once the first row has been pulled, so that the task
+ * can modify the database while the query is in progress.
+ * 
+ * @author Balraja Subbiah
+ */
+public class InterleavedQuery extends QueryAdaptor
+{
+    private final Runnable myTask;
+    
+    /**
+     * CTOR
+     */
+    public InterleavedQuery(QueryOperator operator, Runnable task)
+    {
+        super(operator);
+        myTask = task;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Object query(Database database)
+    {
+        List<Row> result = new ArrayList<>();
+        Iterator<Row> rows = getOperator().open(database);
+        while (rows.hasNext()) {
+            result.add(rows.next());
+            if (result.size() == 1) {
+                myTask.run();
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,293 @@
+/*
+    Hit is a high speed transactional database for handling millions
+    of updates with comfort and ease.
+
+    Copyright (C) 2013  Balraja Subbiah
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package org.hit.transactions.test;
+
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.Objects;
+
+import org.hit.db.keyspace.LinearKeyspace;
+import org.hit.db.keyspace.domain.LongDomain;
+import org.hit.db.model.HitTableSchema;
+import org.hit.db.model.Persistable;
+import org.hit.db.sql.operators.PredicateAdapter;
+import org.hit.db.sql.operators.StringComparison;
+import org.hit.db.transactions.OffHeapRowStore;
+import org.hit.db.transactions.Transactable;
+import org.hit.db.transactions.TransactableDatabase;
+import org.hit.db.transactions.TransactableTable;
+import org.hit.db.transactions.TransactionHelper;
+import org.hit.db.transactions.impl.TransactableHitDatabase;
+import org.hit.example.Route;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Verifies the tables whose rows are stored off heap.
+ *
+ * @author Balraja Subbiah
+ */
+public class OffHeapTableTest
+{
+    private static final long ID = TransactionHelper.SNAPSHOT_TRANSACTION_ID;
+
+    /**
+     * A row whose fields, but for its key, are written as objects.
+     */
+    public static class Ticket implements Persistable<Long>, Externalizable
+    {
+        public static final String TABLE_NAME = "tickets";
+
+        private long myID;
+
+        private String myHolder;
+
+        private Integer mySeat;
+
+        private Double myFare;
+
+        private Date myIssued;
+
+        /**
+         * CTOR
+         */
+        public Ticket initialize(long    id,
+                                 String  holder,
+                                 Integer seat,
+                                 Double  fare,
+                                 Date    issued)
+        {
+            myID = id;
+            myHolder = holder;
+            mySeat = seat;
+            myFare = fare;
+            myIssued = issued;
+            return this;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public Long primaryKey()
+        {
+            return Long.valueOf(myID);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public Object getFieldValue(String fieldName)
+        {
+            switch (fieldName) {
+            case "id":
+                return Long.valueOf(myID);
+            case "holder":
+                return myHolder;
+            case "seat":
+                return mySeat;
+            case "fare":
+                return myFare;
+            case "issued":
+                return myIssued;
+            default:
+                return null;
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public Collection<String> getFieldNames()
+        {
+            return Arrays.asList("id", "holder", "seat", "fare", "issued");
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public Ticket getCopy()
+        {
+            return new Ticket().initialize(
+                myID, myHolder, mySeat, myFare, myIssued);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void free()
+        {
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void writeExternal(ObjectOutput out) throws IOException
+        {
+            out.writeLong(myID);
+            out.writeObject(myHolder);
+            out.writeObject(mySeat);
+            out.writeObject(myFare);
+            out.writeObject(myIssued);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void readExternal(ObjectInput in)
+            throws IOException, ClassNotFoundException
+        {
+            myID = in.readLong();
+            myHolder = (String) in.readObject();
+            mySeat = (Integer) in.readObject();
+            myFare = (Double) in.readObject();
+            myIssued = (Date) in.readObject();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int hashCode()
+        {
+            return Objects.hash(myID, myHolder, mySeat, myFare, myIssued);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public boolean equals(Object obj)
+        {
+            if (!(obj instanceof Ticket)) {
+                return false;
+            }
+            Ticket other = (Ticket) obj;
+            return    myID == other.myID
+                   && Objects.equals(myHolder, other.myHolder)
+                   && Objects.equals(mySeat, other.mySeat)
+                   && Objects.equals(myFare, other.myFare)
+                   && Objects.equals(myIssued, other.myIssued);
+        }
+    }
+
+    private TransactableTable<Long, Ticket> myTable;
+
+    @Before
+    public void setupTest()
+    {
+        HitTableSchema schema =
+            new HitTableSchema(Ticket.TABLE_NAME,
+                               new ArrayList<String>(),
+                               new ArrayList<String>(),
+                               Ticket.class,
+                               Long.class,
+                               new LinearKeyspace<>(
+                                   new LongDomain(1L, 7000L)));
+        schema.setStoredOffHeap(true);
+        TransactableDatabase database = new TransactableHitDatabase();
+        database.createTable(schema);
+        myTable = database.lookUpTable(Ticket.TABLE_NAME);
+    }
+
+    private static Ticket makeTicket(long id)
+    {
+        return new Ticket().initialize(
+            id, "holder" + id, Integer.valueOf((int) id), 10.0D * id,
+            new Date(1000L * id));
+    }
+
+    private void addVersion(Ticket ticket)
+    {
+        Transactable<Long, Ticket> version =
+            Transactable.create(ticket, myTable.getRowStore());
+        version.setStart(10L);
+        version.setEnd(TransactionHelper.INFINITY);
+        myTable.addToTable(version);
+    }
+
+    @Test
+    public void storeTest()
+    {
+        Assert.assertNotNull(myTable.getRowStore());
+        addVersion(makeTicket(1L));
+        addVersion(makeTicket(2L));
+        // The fields written as objects might be null.
+        Ticket empty = new Ticket().initialize(3L, null, null, null, null);
+        addVersion(empty);
+
+        Transactable<Long, Ticket> version =
+            myTable.getRow(Long.valueOf(1L), 20L, ID);
+        Assert.assertEquals(makeTicket(1L), version.getPersistable());
+        Assert.assertEquals(empty,
+                            myTable.getRow(Long.valueOf(3L), 20L, ID)
+                                   .getPersistable());
+
+        // The row is decoded afresh rather than being held by its version.
+        Assert.assertNotSame(version.getPersistable(), 
+                             version.getPersistable());
+
+        Collection<Transactable<Long, Ticket>> matching =
+            myTable.findMatching(
+                new PredicateAdapter(new StringComparison("holder", "holder2")),
+                20L,
+                ID);
+        Assert.assertEquals(1, matching.size());
+        Assert.assertEquals(makeTicket(2L),
+                            matching.iterator().next().getPersistable());
+    }
+
+    @Test
+    public void slabReuseTest()
+    {
+        OffHeapRowStore store = new OffHeapRowStore(Route.class, 256);
+        Route route = new Route().initialize(1L, 2L, 3L, 4L, true, 1);
+        long address = store.store(route);
+        Route decoded = (Route) store.read(address);
+        Assert.assertEquals(1L, decoded.getRouteId());
+        Assert.assertEquals(2L, decoded.getAirlineId());
+        Assert.assertEquals(3L, decoded.getSrcAirportId());
+        Assert.assertEquals(4L, decoded.getDestnAirportId());
+        Assert.assertTrue(decoded.isShared());
+        Assert.assertEquals(1, decoded.getNumStops());
+        Assert.assertNotSame(decoded, store.read(address));
+        store.release(address);
+
+        // Once their rows are released, the slabs are reused rather than
+        // allocating new ones.
+        for (int i = 0; i < 100; i++) {
+            store.release(store.store(route));
+        }
+        Assert.assertTrue(store.getAllocatedBytes() <= 2 * 256);
+    }
+}
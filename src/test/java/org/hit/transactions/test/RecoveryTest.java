@@ -0,0 +1,299 @@
+/*
+    Hit is a high speed transactional database for handling millions
+    of updates with comfort and ease.
+
+    Copyright (C) 2013  Balraja Subbiah
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package org.hit.transactions.test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+
+import org.hit.consensus.ConsensusType;
+import org.hit.consensus.UnitID;
+import org.hit.consensus.raft.RaftSnapshot;
+import org.hit.consensus.raft.log.WAL;
+import org.hit.consensus.raft.log.WALPropertyConfig;
+import org.hit.db.engine.CheckpointStore;
+import org.hit.db.engine.ConsensusID;
+import org.hit.db.engine.ReplicationProposal;
+import org.hit.db.engine.TransactionManager;
+import org.hit.db.keyspace.LinearKeyspace;
+import org.hit.db.keyspace.domain.LongDomain;
+import org.hit.db.model.HitTableSchema;
+import org.hit.db.model.Predicate;
+import org.hit.db.model.mutations.BatchAddMutation;
+import org.hit.db.transactions.Transactable;
+import org.hit.db.transactions.TransactableDatabase;
+import org.hit.db.transactions.TransactableTable;
+import org.hit.db.transactions.TransactionHelper;
+import org.hit.db.transactions.impl.TransactableHitDatabase;
+import org.hit.event.Event;
+import org.hit.event.ProposalNotificationEvent;
+import org.hit.example.Airport;
+import org.hit.fs.StandardFileSystem;
+import org.hit.time.HybridLogicalClock;
+import org.hit.util.Pair;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.util.concurrent.ListenableFuture;
+
+/**
+ * Verifies the recovery of a server from its checkpoint and the tail of
+ * its log.
+ *
+ * @author Balraja Subbiah
+ */
+public class RecoveryTest
+{
+    private static final long ID = TransactionHelper.SNAPSHOT_TRANSACTION_ID;
+
+    private static final long CHECKPOINT_TIME = 100L;
+
+    private File myDirectory;
+
+    private UnitID myUnitID;
+
+    private TransactionManager myTransactionManager;
+
+    @Before
+    public void setupTest() throws IOException
+    {
+        myDirectory = Files.createTempDirectory("recoverytest").toFile();
+        System.setProperty(WALPropertyConfig.WAL_BASE_DIRECTORY,
+                           new File(myDirectory, "wal").getPath());
+        myUnitID = new ConsensusID(ConsensusType.RAFT, "recoverytest");
+    }
+
+    @After
+    public void tearDown()
+    {
+        if (myTransactionManager != null) {
+            myTransactionManager.stop();
+        }
+        WAL.open(new WALPropertyConfig(myUnitID.toString())).close();
+    }
+
+    private static HitTableSchema makeSchema()
+    {
+        return new HitTableSchema(Airport.TABLE_NAME,
+                                  new ArrayList<String>(),
+                                  new ArrayList<String>(),
+                                  Airport.class,
+                                  Long.class,
+                                  new LinearKeyspace<>(
+                                      new LongDomain(1L, 7000L)));
+    }
+
+    private static Airport makeAirport(long id)
+    {
+        return new Airport().initialize(
+            id, "airport" + id, "city" + id, "country", "A" + id,
+            0.0D, 0.0D, 0.0D, 0.0F);
+    }
+
+    private ReplicationProposal makeProposal(long id, long endTime)
+    {
+        List<Airport> airports = new ArrayList<>();
+        airports.add(makeAirport(id));
+        return ReplicationProposal.create(
+            myUnitID,
+            new BatchAddMutation<>(Airport.TABLE_NAME, airports),
+            endTime - 1,
+            endTime);
+    }
+
+    private static TreeSet<Long> ids(
+        Collection<Transactable<Long, Airport>> versions)
+    {
+        TreeSet<Long> ids = new TreeSet<>();
+        for (Transactable<Long, Airport> version : versions) {
+            Assert.assertTrue(ids.add(version.getPersistable().getID()));
+        }
+        return ids;
+    }
+
+    private static void addAirport(TransactableTable<Long, Airport> table,
+                                   long                             id)
+    {
+        Transactable<Long, Airport> version =
+            Transactable.create(makeAirport(id));
+        version.setStart(10L);
+        version.setEnd(TransactionHelper.INFINITY);
+        table.addToTable(version);
+    }
+
+    /**
+     * Returns a store having the airports 1 to 3 checkpointed at the
+     * {@link #CHECKPOINT_TIME}.
+     */
+    private CheckpointStore checkpoint(String directoryName)
+        throws IOException
+    {
+        TransactableDatabase checkpointed = new TransactableHitDatabase();
+        checkpointed.createTable(makeSchema());
+        TransactableTable<Long, Airport> table =
+            checkpointed.lookUpTable(Airport.TABLE_NAME);
+        for (long id = 1L; id <= 3L; id++) {
+            addAirport(table, id);
+        }
+        CheckpointStore store =
+            new CheckpointStore(
+                new File(myDirectory, directoryName).getPath());
+        Assert.assertEquals(3L, store.writeTable(CHECKPOINT_TIME, table));
+        store.completeCheckpoint(CHECKPOINT_TIME,
+                                 Collections.singleton(Airport.TABLE_NAME));
+        return store;
+    }
+
+    private TransactionManager makeTransactionManager(
+        TransactableDatabase database, TransactableDatabase replicatedDatabase)
+    {
+        return new TransactionManager(
+            database,
+            replicatedDatabase,
+            new HybridLogicalClock(),
+            new RecordingEventBus(
+                Collections.<Class<? extends Event>>emptySet(),
+                new EventNotificationListener() {
+                    @Override
+                    public void handleEvent(Event recordedEvent)
+                    {
+                    }
+                }),
+            TestID.SERVER_NODE_ID,
+            myUnitID);
+    }
+
+    @Test
+    public void recoveryTest()
+        throws IOException, InterruptedException, ExecutionException
+    {
+        CheckpointStore store = checkpoint("checkpoint");
+
+        // The proposal covered by the checkpoint is stamped after it, so
+        // that only the position recorded in the log keeps it from being
+        // replayed.
+        WAL wal = WAL.open(new WALPropertyConfig(myUnitID.toString()));
+        wal.addProposal(1L, 1L, makeProposal(50L, 120L)).get();
+        wal.addProposal(1L, 2L, makeProposal(4L, 150L)).get();
+        wal.addProposal(2L, 1L, makeProposal(5L, 200L)).get();
+        wal.compact(CHECKPOINT_TIME, 1L, 1L);
+
+        Pair<Long, Long> position = wal.getSnapshotPosition(CHECKPOINT_TIME);
+        Assert.assertEquals(Long.valueOf(1L), position.getFirst());
+        Assert.assertEquals(Long.valueOf(1L), position.getSecond());
+        // A position recorded after the checkpoint can't be used for
+        // replaying from it.
+        Assert.assertNull(wal.getSnapshotPosition(CHECKPOINT_TIME - 1));
+
+        TransactableDatabase database = new TransactableHitDatabase();
+        myTransactionManager =
+            makeTransactionManager(database, new TransactableHitDatabase());
+        Assert.assertEquals(Collections.singleton(Airport.TABLE_NAME),
+                            myTransactionManager.recover(store));
+
+        TransactableTable<Long, Airport> recovered =
+            database.lookUpTable(Airport.TABLE_NAME);
+        Assert.assertEquals(
+            new TreeSet<>(Arrays.asList(1L, 2L, 3L)),
+            ids(recovered.findMatching(
+                Predicate.MATCH_ALL, CHECKPOINT_TIME, ID)));
+        Assert.assertEquals(
+            new TreeSet<>(Arrays.asList(1L, 2L, 3L, 4L, 5L)),
+            ids(recovered.findMatching(Predicate.MATCH_ALL, 300L, ID)));
+
+        // The log shared with the consensus modules stays open.
+        Assert.assertSame(
+            wal, WAL.open(new WALPropertyConfig(myUnitID.toString())));
+        wal.addProposal(2L, 2L, makeProposal(6L, 250L)).get();
+    }
+
+    @Test
+    public void snapshotInstallTest()
+        throws IOException, InterruptedException, ExecutionException
+    {
+        CheckpointStore leaderStore = checkpoint("leader");
+        RaftSnapshot snapshot =
+            RaftSnapshot.read(new StandardFileSystem(),
+                              myUnitID,
+                              CHECKPOINT_TIME,
+                              leaderStore.getCheckpointPath(CHECKPOINT_TIME));
+
+        // The replica holds the accounts replicated from another unit and
+        // an airport from the snapshot installed earlier.
+        TransactableDatabase replicated = new TransactableHitDatabase();
+        replicated.createTable(Account.SCHEMA);
+        TransactableTable<Long, Account> accounts =
+            replicated.lookUpTable(Account.TABLE_NAME);
+        Transactable<Long, Account> account =
+            Transactable.create(new Account().initialize(1L, 100.0D));
+        account.setStart(10L);
+        account.setEnd(TransactionHelper.INFINITY);
+        accounts.addToTable(account);
+        replicated.createTable(makeSchema());
+        addAirport(replicated.<Long, Airport>lookUpTable(Airport.TABLE_NAME),
+                   9L);
+
+        myTransactionManager =
+            makeTransactionManager(new TransactableHitDatabase(), replicated);
+        ListenableFuture<Set<String>> installed =
+            myTransactionManager.installSnapshot(
+                new CheckpointStore(
+                    new File(myDirectory, "replica").getPath()),
+                snapshot);
+        // The changes replicated while the snapshot is being installed are
+        // applied after it, unless they're covered by it.
+        myTransactionManager.processOperation(
+            ProposalNotificationEvent.create(makeProposal(8L, 90L)));
+        myTransactionManager.processOperation(
+            ProposalNotificationEvent.create(makeProposal(4L, 150L)));
+        Assert.assertEquals(Collections.singleton(Airport.TABLE_NAME),
+                            installed.get());
+
+        TransactableTable<Long, Airport> airports =
+            replicated.lookUpTable(Airport.TABLE_NAME);
+        long deadline = System.currentTimeMillis() + 10000L;
+        while (   airports.findMatching(Predicate.MATCH_ALL, 300L, ID).size()
+                      < 4
+               && System.currentTimeMillis() < deadline)
+        {
+            Thread.sleep(10L);
+        }
+        Assert.assertEquals(
+            new TreeSet<>(Arrays.asList(1L, 2L, 3L, 4L)),
+            ids(airports.findMatching(Predicate.MATCH_ALL, 300L, ID)));
+
+        // The tables replicated from the other units are left as they are.
+        Assert.assertEquals(
+            1,
+            replicated.lookUpTable(Account.TABLE_NAME)
+                      .findMatching(Predicate.MATCH_ALL, 300L, ID)
+                      .size());
+    }
+}
@@ -0,0 +1,79 @@
+/*
+    Hit is a high speed transactional database for handling millions
+    of updates with comfort and ease.
+
+    Copyright (C) 2013  Balraja Subbiah
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package org.hit.transactions.test;
+
+import org.hit.db.transactions.Registry;
+import org.hit.db.transactions.TransactionState;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Verifies the tracking of the dependencies between the transactions and
+ * the cascading of their aborts by the <code>Registry</code>.
+ * 
+ * @author Balraja Subbiah
+ */
+public class RegistryTest
+{
+    @Test
+    public void registryTest()
+    {
+        // The registry is shared, hence ids that aren't used elsewhere.
+        long first = 1000001L;
+        long second = 1000002L;
+        long third = 1000003L;
+        Registry.registerTransaction(first);
+        Registry.registerTransaction(second);
+        Registry.registerTransaction(third);
+        Registry.updateTransactionState(first, TransactionState.VALIDATE);
+        Assert.assertEquals(TransactionState.VALIDATE, 
+                            Registry.getState(first));
+        
+        Registry.addDependency(first, second);
+        Assert.assertTrue(Registry.awaitDependencies(second));
+        Assert.assertTrue(
+            Registry.finishTransaction(first, true).contains(second));
+        Assert.assertFalse(Registry.isAbortCascaded(second));
+        
+        // The updates after a transaction has finished don't bring back 
+        // its slot.
+        Registry.updateTransactionState(first, TransactionState.COMMITTED);
+        Assert.assertEquals(TransactionState.UNKNOWN, 
+                            Registry.getState(first));
+        Registry.addDependency(third, first);
+        Assert.assertTrue(Registry.finishTransaction(third, false).isEmpty());
+        Assert.assertFalse(Registry.isAbortCascaded(first));
+        
+        // A dependency on a finished transaction is ignored, while an 
+        // abort is cascaded to the dependents.
+        Registry.addDependency(first, second);
+        Assert.assertFalse(Registry.awaitDependencies(second));
+        long fourth = 1000004L;
+        Registry.registerTransaction(fourth);
+        Registry.addDependency(fourth, second);
+        Assert.assertTrue(Registry.awaitDependencies(second));
+        Assert.assertTrue(
+            Registry.finishTransaction(fourth, false).contains(second));
+        Assert.assertTrue(Registry.isAbortCascaded(second));
+        Registry.finishTransaction(second, false);
+        Assert.assertEquals(TransactionState.UNKNOWN, 
+                            Registry.getState(second));
+    }
+}
@@ -0,0 +1,225 @@
+/*
+    Hit is a high speed transactional database for handling millions
+    of updates with comfort and ease.
+
+    Copyright (C) 2013  Balraja Subbiah
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package org.hit.transactions.test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeMap;
+
+import org.hit.consensus.ConsensusType;
+import org.hit.consensus.UnitID;
+import org.hit.db.engine.ConsensusID;
+import org.hit.db.engine.ParallelReplayer;
+import org.hit.db.engine.ReplicationProposal;
+import org.hit.db.engine.TransactionManager;
+import org.hit.db.model.Mutation;
+import org.hit.db.model.Predicate;
+import org.hit.db.model.mutations.AddRowMutation;
+import org.hit.db.model.mutations.BatchAddMutation;
+import org.hit.db.transactions.IDAssigner;
+import org.hit.db.transactions.ReplicationExecutor;
+import org.hit.db.transactions.Transactable;
+import org.hit.db.transactions.TransactableDatabase;
+import org.hit.db.transactions.TransactableTable;
+import org.hit.db.transactions.TransactionHelper;
+import org.hit.db.transactions.WriteTransaction;
+import org.hit.db.transactions.impl.TransactableHitDatabase;
+import org.hit.event.Event;
+import org.hit.event.ProposalNotificationEvent;
+import org.hit.pool.PooledObjects;
+import org.hit.time.SimpleSystemClock;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Verifies that replaying the changes in parallel yields the same database
+ * as replaying them one after another.
+ *
+ * @author Balraja Subbiah
+ */
+public class ReplayTest
+{
+    private static final long ID = TransactionHelper.SNAPSHOT_TRANSACTION_ID;
+
+    private static final int CHANGES = 1000;
+
+    private static final int KEYS = 20;
+
+    /**
+     * Returns the change made at the given position, which updates an
+     * account, except that every now and then all the accounts are updated
+     * together.
+     */
+    private static Mutation makeChange(int position)
+    {
+        if (position % 50 == 49) {
+            List<Account> accounts = new ArrayList<>();
+            for (long key = 1L; key <= KEYS; key++) {
+                accounts.add(new Account().initialize(key, -position));
+            }
+            return new BatchAddMutation<>(Account.TABLE_NAME, accounts);
+        }
+        return new AddRowMutation<>(
+            new Account().initialize(1L + position % KEYS, position),
+            Account.TABLE_NAME);
+    }
+
+    private static long getEndTime(int position)
+    {
+        return 10L + 2L * position;
+    }
+
+    private static TransactableDatabase makeDatabase()
+    {
+        TransactableDatabase database = new TransactableHitDatabase();
+        database.createTable(Account.SCHEMA);
+        return database;
+    }
+
+    private static ReplicationExecutor makeExecutor(
+        TransactableDatabase database,
+        IDAssigner           idAssigner,
+        Mutation             change,
+        int                  position)
+    {
+        return ReplicationExecutor.create(
+            WriteTransaction.create(idAssigner.getTransactionID(),
+                                    database,
+                                    new SimpleSystemClock(),
+                                    change),
+            getEndTime(position) - 1,
+            getEndTime(position));
+    }
+
+    private static TransactableDatabase replaySerially()
+    {
+        TransactableDatabase database = makeDatabase();
+        IDAssigner idAssigner = new IDAssigner();
+        for (int i = 0; i < CHANGES; i++) {
+            ReplicationExecutor executor =
+                makeExecutor(database, idAssigner, makeChange(i), i);
+            executor.run();
+            PooledObjects.freeInstance(executor);
+        }
+        return database;
+    }
+
+    /** Returns the balances of the accounts as of the given time */
+    private static TreeMap<Long, Double> balances(
+        TransactableDatabase database, long time)
+    {
+        TransactableTable<Long, Account> table =
+            database.lookUpTable(Account.TABLE_NAME);
+        TreeMap<Long, Double> balances = new TreeMap<>();
+        for (Transactable<Long, Account> version :
+                table.findMatching(Predicate.MATCH_ALL, time, ID))
+        {
+            Account account = version.getPersistable();
+            Assert.assertNull(balances.put(account.getAccountID(),
+                                           account.getBalance()));
+        }
+        return balances;
+    }
+
+    /** 
+     * Asserts that the balances of the accounts are the same in both the
+     * databases as of every replayed change.
+     */
+    private static void assertSameHistory(TransactableDatabase expected,
+                                          TransactableDatabase actual)
+    {
+        for (long time = 0L; time <= getEndTime(CHANGES); time++) {
+            Assert.assertEquals("The balances at " + time,
+                                balances(expected, time),
+                                balances(actual, time));
+        }
+    }
+
+    @Test
+    public void parallelReplayTest()
+    {
+        TransactableDatabase database = makeDatabase();
+        IDAssigner idAssigner = new IDAssigner();
+        ParallelReplayer replayer = new ParallelReplayer(4, 64);
+        for (int i = 0; i < CHANGES; i++) {
+            Mutation change = makeChange(i);
+            replayer.submit(change,
+                            makeExecutor(database, idAssigner, change, i));
+        }
+        replayer.close();
+
+        Assert.assertEquals(CHANGES, replayer.getReplayedChanges());
+        assertSameHistory(replaySerially(), database);
+    }
+
+    @Test
+    public void replicaReplayTest() throws InterruptedException
+    {
+        UnitID unitID = new ConsensusID(ConsensusType.RAFT, "replaytest");
+        TransactableDatabase replicated = makeDatabase();
+        TransactionManager transactionManager =
+            new TransactionManager(
+                new TransactableHitDatabase(),
+                replicated,
+                new SimpleSystemClock(),
+                new RecordingEventBus(
+                    Collections.<Class<? extends Event>>emptySet(),
+                    new EventNotificationListener() {
+                        @Override
+                        public void handleEvent(Event recordedEvent)
+                        {
+                        }
+                    }),
+                TestID.SERVER_NODE_ID,
+                null);
+        try {
+            // The changes are replicated in groups, as they're committed.
+            ReplicationProposal proposal = null;
+            for (int i = 0; i < CHANGES; i++) {
+                if (proposal == null) {
+                    proposal = ReplicationProposal.create(unitID);
+                }
+                proposal.addMutation(
+                    makeChange(i), getEndTime(i) - 1, getEndTime(i));
+                if (proposal.size() == 5) {
+                    transactionManager.processOperation(
+                        ProposalNotificationEvent.create(proposal));
+                    proposal = null;
+                }
+            }
+
+            TransactableDatabase expected = replaySerially();
+            TreeMap<Long, Double> finalBalances =
+                balances(expected, getEndTime(CHANGES));
+            long deadline = System.currentTimeMillis() + 10000L;
+            while (   !finalBalances.equals(
+                          balances(replicated, getEndTime(CHANGES)))
+                   && System.currentTimeMillis() < deadline)
+            {
+                Thread.sleep(10L);
+            }
+            assertSameHistory(expected, replicated);
+        }
+        finally {
+            transactionManager.stop();
+        }
+    }
+}
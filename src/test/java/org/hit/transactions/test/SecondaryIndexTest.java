@@ -0,0 +1,232 @@
+/*
+    Hit is a high speed transactional database for handling millions
+    of updates with comfort and ease.
+
+    Copyright (C) 2013  Balraja Subbiah
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package org.hit.transactions.test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.TreeSet;
+
+import org.hit.db.keyspace.LinearKeyspace;
+import org.hit.db.keyspace.domain.LongDomain;
+import org.hit.db.model.HitTableSchema;
+import org.hit.db.model.IndexType;
+import org.hit.db.model.Predicate;
+import org.hit.db.sql.operators.ComparisionOperator;
+import org.hit.db.sql.operators.IndexProbe;
+import org.hit.db.sql.operators.NumericComparison;
+import org.hit.db.sql.operators.PredicateAdapter;
+import org.hit.db.sql.operators.StringComparison;
+import org.hit.db.transactions.Transactable;
+import org.hit.db.transactions.TransactableDatabase;
+import org.hit.db.transactions.TransactableTable;
+import org.hit.db.transactions.TransactionHelper;
+import org.hit.db.transactions.impl.TransactableHitDatabase;
+import org.hit.example.Airport;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Verifies the lookups served from the secondary indexes of a table.
+ *
+ * @author Balraja Subbiah
+ */
+public class SecondaryIndexTest
+{
+    private static final long ID = TransactionHelper.SNAPSHOT_TRANSACTION_ID;
+
+    private HitTableSchema mySchema;
+
+    private TransactableTable<Long, Airport> myTable;
+
+    @Before
+    public void setupTest()
+    {
+        mySchema = new HitTableSchema(Airport.TABLE_NAME,
+                                      new ArrayList<String>(),
+                                      new ArrayList<String>(),
+                                      Airport.class,
+                                      Long.class,
+                                      new LinearKeyspace<>(
+                                          new LongDomain(1L, 7000L)));
+        mySchema.addSecondaryIndex("country", IndexType.HASH);
+        mySchema.addSecondaryIndex("altitude", IndexType.ORDERED);
+
+        TransactableDatabase database = new TransactableHitDatabase();
+        database.createTable(mySchema);
+        myTable = database.lookUpTable(Airport.TABLE_NAME);
+
+        addVersion(1L, "India", 10.0D, 10L, TransactionHelper.INFINITY);
+        addVersion(2L, "India", 200.0D, 10L, TransactionHelper.INFINITY);
+        addVersion(3L, "Germany", 300.0D, 10L, TransactionHelper.INFINITY);
+        addVersion(4L, "France", 400.0D, 10L, TransactionHelper.INFINITY);
+    }
+
+    private Transactable<Long, Airport> addVersion(long   id,
+                                                   String country,
+                                                   double altitude,
+                                                   long   start,
+                                                   long   end)
+    {
+        Transactable<Long, Airport> version =
+            Transactable.create(new Airport().initialize(
+                id, "airport" + id, "city" + id, country, "A" + id,
+                0.0D, 0.0D, altitude, 0.0F));
+        version.setStart(start);
+        version.setEnd(end);
+        myTable.addToTable(version);
+        return version;
+    }
+
+    private static TreeSet<Long> ids(
+        Collection<Transactable<Long, Airport>> versions)
+    {
+        TreeSet<Long> ids = new TreeSet<>();
+        for (Transactable<Long, Airport> version : versions) {
+            Assert.assertTrue(ids.add(version.getPersistable().getID()));
+        }
+        return ids;
+    }
+
+    private static TreeSet<Long> ids(Long... ids)
+    {
+        TreeSet<Long> result = new TreeSet<>();
+        for (Long id : ids) {
+            result.add(id);
+        }
+        return result;
+    }
+
+    @Test
+    public void hashIndexTest()
+    {
+        // The rows are looked up from the index rather than by scanning the
+        // table, hence a predicate that accepts every row still returns
+        // only those with the looked up value.
+        Assert.assertEquals(
+            ids(1L, 2L),
+            ids(myTable.findMatching(
+                Predicate.MATCH_ALL, "country", "India", "India", 20L, ID)));
+        Assert.assertTrue(
+            myTable.findMatching(
+                Predicate.MATCH_ALL, "country", "Spain", "Spain", 20L, ID)
+                   .isEmpty());
+
+        // A hash index can't serve a range, the table is scanned instead.
+        Assert.assertEquals(
+            4,
+            myTable.findMatching(
+                Predicate.MATCH_ALL, "country", "A", "Z", 20L, ID).size());
+    }
+
+    @Test
+    public void orderedIndexTest()
+    {
+        Assert.assertEquals(
+            ids(2L, 3L),
+            ids(myTable.findMatching(
+                Predicate.MATCH_ALL, "altitude", 100.0D, 300.0D, 20L, ID)));
+        Assert.assertEquals(
+            ids(3L, 4L),
+            ids(myTable.findMatching(
+                Predicate.MATCH_ALL, "altitude", 300.0D, null, 20L, ID)));
+        Assert.assertEquals(
+            ids(1L),
+            ids(myTable.findMatching(
+                Predicate.MATCH_ALL, "altitude", null, 100.0D, 20L, ID)));
+    }
+
+    @Test
+    public void indexMaintenanceTest()
+    {
+        // Move the airport 2 from India to Spain at time 30.
+        Transactable<Long, Airport> old =
+            myTable.getRow(Long.valueOf(2L), 20L, ID);
+        old.setEnd(30L);
+        addVersion(2L, "Spain", 200.0D, 30L, TransactionHelper.INFINITY);
+
+        Predicate inIndia =
+            new PredicateAdapter(new StringComparison("country", "India"));
+        Predicate inSpain =
+            new PredicateAdapter(new StringComparison("country", "Spain"));
+
+        // The chain is reachable through the values of both its versions,
+        // while the predicate picks the version that's visible.
+        Assert.assertEquals(
+            ids(1L, 2L),
+            ids(myTable.findMatching(
+                inIndia, "country", "India", "India", 20L, ID)));
+        Assert.assertEquals(
+            ids(1L),
+            ids(myTable.findMatching(
+                inIndia, "country", "India", "India", 40L, ID)));
+        Assert.assertTrue(
+            myTable.findMatching(inSpain, "country", "Spain", "Spain", 20L, ID)
+                   .isEmpty());
+        Assert.assertEquals(
+            ids(2L),
+            ids(myTable.findMatching(
+                inSpain, "country", "Spain", "Spain", 40L, ID)));
+
+        // Once the old version is gone, the chain is dropped from the index
+        // under its value.
+        myTable.remove(old);
+        Assert.assertEquals(
+            ids(1L),
+            ids(myTable.findMatching(
+                Predicate.MATCH_ALL, "country", "India", "India", 40L, ID)));
+    }
+
+    @Test
+    public void indexProbeTest()
+    {
+        // The parser hands the string literal along with its quotes, which
+        // aren't part of the column values.
+        StringComparison country = new StringComparison("country", "'India'");
+        Airport airport =
+            myTable.getRow(Long.valueOf(1L), 20L, ID).getPersistable();
+        Assert.assertTrue(country.isValid(airport));
+        Assert.assertEquals("India", country.getLiteral());
+
+        IndexProbe probe = IndexProbe.makeProbe(country, mySchema);
+        Assert.assertNotNull(probe);
+        Assert.assertEquals("country", probe.getColumnName());
+        Assert.assertTrue(probe.isEqualityProbe());
+        Assert.assertEquals("India", probe.getStart());
+
+        // A pattern can't be looked up from the index.
+        Assert.assertNull(
+            IndexProbe.makeProbe(new StringComparison("country", "'Ind.*'"),
+                                 mySchema));
+
+        probe = IndexProbe.makeProbe(
+            new NumericComparison("altitude", ComparisionOperator.GE, 300.0D),
+            mySchema);
+        Assert.assertNotNull(probe);
+        Assert.assertEquals(300.0D, probe.getStart());
+        Assert.assertNull(probe.getEnd());
+
+        // A column without an index isn't probed.
+        Assert.assertNull(
+            IndexProbe.makeProbe(
+                new NumericComparison("latitude", ComparisionOperator.EQ, 0.0D),
+                mySchema));
+    }
+}
@@ -21,13 +21,26 @@
 package org.hit.transactions.test;
 
 import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
+import org.hit.communicator.NodeID;
+import org.hit.db.engine.DistributedTrnProposal;
+import org.hit.db.engine.ReplicationProposal;
 import org.hit.db.engine.TransactionManager;
+import org.hit.db.model.DBOperation;
+import org.hit.db.transactions.TransactableDatabase;
 import org.hit.db.transactions.impl.TransactableHitDatabase;
+import org.hit.event.ConsensusRequestEvent;
+import org.hit.event.ConsensusResponseEvent;
 import org.hit.event.Event;
 import org.hit.event.SendMessageEvent;
 import org.hit.messages.DBOperationSuccessMessage;
+import org.hit.time.HybridLogicalClock;
 import org.hit.time.SimpleSystemClock;
 import org.junit.Test;
 import org.junit.Assert;
@@ -105,4 +118,237 @@ public class SimpleWorkflowTest
         }
         
     }
+    
+    private static DBOperationSuccessMessage nextResponse(
+        BlockingQueue<Event> events, long timeoutMillis)
+        throws InterruptedException
+    {
+        Event event;
+        while ((event = events.poll(timeoutMillis, TimeUnit.MILLISECONDS)) 
+                   != null) 
+        {
+            if (event instanceof SendMessageEvent) {
+                Assert.assertTrue(
+                    ((SendMessageEvent) event).getMessage() 
+                        instanceof DBOperationSuccessMessage);
+                return (DBOperationSuccessMessage) 
+                    ((SendMessageEvent) event).getMessage();
+            }
+        }
+        return null;
+    }
+    
+    @Test
+    public void suspendAndResumeTest() throws InterruptedException
+    {
+        final BlockingQueue<Event> events = new LinkedBlockingQueue<>();
+        Set<Class<? extends Event>> recordedEvents = new HashSet<>();
+        recordedEvents.add(SendMessageEvent.class);
+        recordedEvents.add(ConsensusRequestEvent.class);
+        RecordingEventBus recordingEventBus = 
+            new RecordingEventBus(recordedEvents, 
+                                  new EventNotificationListener() {
+                @Override
+                public void handleEvent(Event recordedEvent)
+                {
+                    events.add(recordedEvent);
+                }
+            });
+        
+        TransactableDatabase database = new TransactableHitDatabase();
+        myTransactionManager =
+            new TransactionManager(
+                database, 
+                new TransactableHitDatabase(),
+                new SimpleSystemClock(),
+                recordingEventBus,
+                TestID.SERVER_NODE_ID, 
+                null);
+        myTransactionManager.createTable(Account.SCHEMA);
+        
+        // A distributed transaction locks the database and holds it until
+        // the other participants agree to commit it.
+        myTransactionManager.processOperation(
+            TestID.CLIENT_NODE_ID, 
+            1L,
+            Collections.<NodeID, DBOperation>singletonMap(
+                TestID.SERVER_NODE_ID,
+                new UpdateBalanceTransaction(1L, 100.0D)));
+        DistributedTrnProposal proposal = null;
+        while (proposal == null) {
+            Event event = events.poll(10, TimeUnit.SECONDS);
+            Assert.assertNotNull(event);
+            if (   event instanceof ConsensusRequestEvent
+                && ((ConsensusRequestEvent) event).getProposal() 
+                       instanceof DistributedTrnProposal)
+            {
+                proposal = (DistributedTrnProposal) 
+                    ((ConsensusRequestEvent) event).getProposal();
+            }
+        }
+        Assert.assertTrue(database.getLockedTransaction() 
+                              != TransactableDatabase.UNLOCKED_VALUE);
+        
+        // The transaction submitted meanwhile is suspended till the 
+        // database is unlocked.
+        myTransactionManager.processOperation(
+            TestID.CLIENT_NODE_ID, new UpdateBalanceTransaction(1L, 50.0D), 2L);
+        Assert.assertNull(nextResponse(events, 200));
+        
+        myTransactionManager.processOperation(
+            ConsensusResponseEvent.create(proposal, true));
+        DBOperationSuccessMessage response = nextResponse(events, 10000);
+        Assert.assertNotNull(response);
+        Assert.assertEquals(1L, response.getSequenceNumber());
+        
+        // Once resumed, the suspended transaction sees the changes made 
+        // by the distributed transaction.
+        response = nextResponse(events, 10000);
+        Assert.assertNotNull(response);
+        Assert.assertEquals(2L, response.getSequenceNumber());
+        Assert.assertEquals(TransactableDatabase.UNLOCKED_VALUE, 
+                            database.getLockedTransaction());
+        
+        myTransactionManager.processOperation(
+            TestID.CLIENT_NODE_ID, new BalanceQuery(1L), 3L);
+        response = nextResponse(events, 10000);
+        Assert.assertNotNull(response);
+        Assert.assertEquals(3L, response.getSequenceNumber());
+        Assert.assertEquals(150.0D, response.getResult());
+    }
+    
+    @Test
+    public void groupCommitTest() throws InterruptedException
+    {
+        final BlockingQueue<Event> events = new LinkedBlockingQueue<>();
+        Set<Class<? extends Event>> recordedEvents = new HashSet<>();
+        recordedEvents.add(SendMessageEvent.class);
+        recordedEvents.add(ConsensusRequestEvent.class);
+        RecordingEventBus recordingEventBus = 
+            new RecordingEventBus(recordedEvents, 
+                                  new EventNotificationListener() {
+                @Override
+                public void handleEvent(Event recordedEvent)
+                {
+                    events.add(recordedEvent);
+                }
+            });
+        
+        myTransactionManager =
+            new TransactionManager(
+                new TransactableHitDatabase(), 
+                new TransactableHitDatabase(),
+                new HybridLogicalClock(),
+                recordingEventBus,
+                TestID.SERVER_NODE_ID, 
+                null);
+        myTransactionManager.createTable(Account.SCHEMA);
+        // The window is long enough for the group to be committed only 
+        // once it's full.
+        myTransactionManager.configureGroupCommit(3, 60000000L);
+        
+        for (long i = 1; i <= 3; i++) {
+            myTransactionManager.processOperation(
+                TestID.CLIENT_NODE_ID, 
+                new UpdateBalanceTransaction(i, 100.0D), 
+                i);
+        }
+        
+        Set<Long> committed = new HashSet<>();
+        ReplicationProposal proposal = null;
+        while (committed.size() < 3 || proposal == null) {
+            Event event = events.poll(10, TimeUnit.SECONDS);
+            Assert.assertNotNull(event);
+            if (event instanceof ConsensusRequestEvent) {
+                // All the transactions are replicated as a single proposal.
+                Assert.assertNull(proposal);
+                proposal = (ReplicationProposal) 
+                    ((ConsensusRequestEvent) event).getProposal();
+            }
+            else {
+                DBOperationSuccessMessage success = 
+                    (DBOperationSuccessMessage) 
+                        ((SendMessageEvent) event).getMessage();
+                committed.add(success.getSequenceNumber());
+            }
+        }
+        
+        Assert.assertEquals(3, proposal.size());
+        for (int i = 1; i < proposal.size(); i++) {
+            Assert.assertTrue(
+                proposal.getEndTime(i - 1) < proposal.getEndTime(i));
+        }
+        Assert.assertNull(nextResponse(events, 200));
+        myTransactionManager.stop();
+    }
+    
+    @Test
+    public void drainTest() throws InterruptedException
+    {
+        final BlockingQueue<Event> events = new LinkedBlockingQueue<>();
+        Set<Class<? extends Event>> recordedEvents = new HashSet<>();
+        recordedEvents.add(SendMessageEvent.class);
+        recordedEvents.add(ConsensusRequestEvent.class);
+        RecordingEventBus recordingEventBus = 
+            new RecordingEventBus(recordedEvents, 
+                                  new EventNotificationListener() {
+                @Override
+                public void handleEvent(Event recordedEvent)
+                {
+                    events.add(recordedEvent);
+                }
+            });
+        
+        myTransactionManager =
+            new TransactionManager(
+                new TransactableHitDatabase(), 
+                new TransactableHitDatabase(),
+                new SimpleSystemClock(),
+                recordingEventBus,
+                TestID.SERVER_NODE_ID, 
+                null);
+        myTransactionManager.createTable(Account.SCHEMA);
+        // The write transaction keeps running till the group commit 
+        // window elapses.
+        myTransactionManager.configureGroupCommit(2, 500000L);
+        myTransactionManager.processOperation(
+            TestID.CLIENT_NODE_ID, new UpdateBalanceTransaction(1L, 100.0D), 1L);
+        
+        // A distributed transaction locks the database meanwhile, but it's
+        // started only after the running transaction has finished.
+        myTransactionManager.processOperation(
+            TestID.CLIENT_NODE_ID, 
+            2L,
+            Collections.<NodeID, DBOperation>singletonMap(
+                TestID.SERVER_NODE_ID,
+                new UpdateBalanceTransaction(1L, 50.0D)));
+        boolean isFinished = false;
+        DistributedTrnProposal proposal = null;
+        while (proposal == null) {
+            Event event = events.poll(10, TimeUnit.SECONDS);
+            Assert.assertNotNull(event);
+            if (event instanceof SendMessageEvent) {
+                Assert.assertEquals(
+                    1L, 
+                    ((DBOperationSuccessMessage) 
+                        ((SendMessageEvent) event).getMessage())
+                            .getSequenceNumber());
+                isFinished = true;
+            }
+            else if (((ConsensusRequestEvent) event).getProposal() 
+                         instanceof DistributedTrnProposal)
+            {
+                Assert.assertTrue(isFinished);
+                proposal = (DistributedTrnProposal) 
+                    ((ConsensusRequestEvent) event).getProposal();
+            }
+        }
+        
+        myTransactionManager.processOperation(
+            ConsensusResponseEvent.create(proposal, true));
+        DBOperationSuccessMessage response = nextResponse(events, 10000);
+        Assert.assertNotNull(response);
+        Assert.assertEquals(2L, response.getSequenceNumber());
+        myTransactionManager.stop();
+    }
 }
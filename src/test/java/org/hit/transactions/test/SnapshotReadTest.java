@@ -0,0 +1,100 @@
+/*
+    Hit is a high speed transactional database for handling millions
+    of updates with comfort and ease.
+
+    Copyright (C) 2013  Balraja Subbiah
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package org.hit.transactions.test;
+
+import java.util.Collection;
+
+import org.hit.db.model.Row;
+import org.hit.db.model.SnapshotQuery;
+import org.hit.db.sql.operators.QueryAdaptor;
+import org.hit.db.sql.operators.Where;
+import org.hit.db.transactions.ReadTransaction;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Verifies that the queries read a consistent snapshot of the database
+ * while it's being updated.
+ * 
+ * @author Balraja Subbiah
+ */
+public class SnapshotReadTest extends AbstractTransactionsTest
+{
+    @Test
+    public void snapshotQueryTest() throws InterruptedException
+    {
+        final int accounts = 100;
+        for (long i = 1; i <= accounts; i++) {
+            apply(new UpdateBalanceTransaction(i, 100.0D), true);
+        }
+        Thread.sleep(5);
+        long snapshotTime = myClock.currentTime();
+        Thread.sleep(5);
+        
+        // Update all the accounts while the query is scanning the table.
+        final Thread writer = new Thread(new Runnable() {
+            @Override
+            public void run()
+            {
+                for (long i = 1; i <= accounts; i++) {
+                    apply(new UpdateBalanceTransaction(i, 50.0D), true);
+                }
+            }
+        });
+        QueryAdaptor query = 
+            new InterleavedQuery(new Where(Account.TABLE_NAME, null),
+                                 new Runnable() {
+                @Override
+                public void run()
+                {
+                    writer.start();
+                    try {
+                        writer.join();
+                    }
+                    catch (InterruptedException e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+            });
+        
+        // The sql queries are executed on a snapshot of the database.
+        Assert.assertTrue(query instanceof SnapshotQuery);
+        ReadTransaction transaction = 
+            ReadTransaction.createSnapshot(myTransactionID++,
+                                           myDatabase,
+                                           myClock,
+                                           snapshotTime,
+                                           query);
+        transaction.init();
+        transaction.execute();
+        Assert.assertTrue(transaction.validate());
+        
+        @SuppressWarnings("unchecked")
+        Collection<Row> rows = (Collection<Row>) transaction.getResult();
+        Assert.assertEquals(accounts, rows.size());
+        for (Row row : rows) {
+            Assert.assertEquals(100.0D, ((Account) row).getBalance(), 0.0D);
+        }
+        Assert.assertFalse(writer.isAlive());
+        Assert.assertEquals(150.0D, 
+                            (Double) execute(new BalanceQuery(accounts)), 
+                            0.0D);
+    }
+}
@@ -0,0 +1,168 @@
+/*
+    Hit is a high speed transactional database for handling millions
+    of updates with comfort and ease.
+
+    Copyright (C) 2013  Balraja Subbiah
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package org.hit.transactions.test;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.hit.db.keyspace.LinearKeyspace;
+import org.hit.db.keyspace.domain.LongDomain;
+import org.hit.db.model.HitTableSchema;
+import org.hit.db.model.Row;
+import org.hit.db.sql.operators.ComparisionOperator;
+import org.hit.db.sql.operators.Limit;
+import org.hit.db.sql.operators.NumericComparison;
+import org.hit.db.sql.operators.Where;
+import org.hit.db.transactions.DatabaseAdaptor;
+import org.hit.db.transactions.ReadTransactionValidator;
+import org.hit.db.transactions.Transactable;
+import org.hit.db.transactions.TransactableDatabase;
+import org.hit.db.transactions.TransactableTable;
+import org.hit.db.transactions.TransactionHelper;
+import org.hit.db.transactions.TransactionTableTrail;
+import org.hit.db.transactions.impl.TransactableHitDatabase;
+import org.hit.example.Airport;
+import org.hit.pool.PooledObjects;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Verifies the rows tracked for validating a transaction as it iterates
+ * over the rows of a table.
+ *
+ * @author Balraja Subbiah
+ */
+public class TableAdaptorTest
+{
+    private static final long TRANSACTION_ID = 1L;
+
+    private static final int AIRPORTS = 100;
+
+    private TransactableDatabase myDatabase;
+
+    private TransactableTable<Long, Airport> myTable;
+
+    @Before
+    public void setupTest()
+    {
+        myDatabase = new TransactableHitDatabase();
+        myDatabase.createTable(
+            new HitTableSchema(Airport.TABLE_NAME,
+                               new ArrayList<String>(),
+                               new ArrayList<String>(),
+                               Airport.class,
+                               Long.class,
+                               new LinearKeyspace<>(
+                                   new LongDomain(1L, 7000L))));
+        myTable = myDatabase.lookUpTable(Airport.TABLE_NAME);
+        for (long id = 1L; id <= AIRPORTS; id++) {
+            addAirport(id, 10L);
+        }
+    }
+
+    private void addAirport(long id, long start)
+    {
+        Transactable<Long, Airport> version =
+            Transactable.create(new Airport().initialize(
+                id, "airport" + id, "city" + id, "country", "A" + id,
+                0.0D, 0.0D, 100.0D * id, 0.0F));
+        version.setStart(start);
+        version.setEnd(TransactionHelper.INFINITY);
+        myTable.addToTable(version);
+    }
+
+    private DatabaseAdaptor makeAdaptor()
+    {
+        DatabaseAdaptor adaptor =
+            DatabaseAdaptor.create(myDatabase, TRANSACTION_ID);
+        adaptor.setTransactionTime(20L);
+        return adaptor;
+    }
+
+    private static List<Row> read(Iterator<Row> rows)
+    {
+        List<Row> result = new ArrayList<>();
+        while (rows.hasNext()) {
+            result.add(rows.next());
+        }
+        return result;
+    }
+
+    private boolean validate(DatabaseAdaptor adaptor)
+    {
+        ReadTransactionValidator validator =
+            PooledObjects.getInstance(ReadTransactionValidator.class);
+        ReadTransactionValidator.initialize(
+            validator, myDatabase, 40L, TRANSACTION_ID);
+        return adaptor.validate(validator);
+    }
+
+    @Test
+    public void limitTest()
+    {
+        DatabaseAdaptor adaptor = makeAdaptor();
+        List<Row> rows = read(
+            new Limit(new Where(Airport.TABLE_NAME,
+                                new NumericComparison(
+                                    "altitude",
+                                    ComparisionOperator.GE,
+                                    1000.0D)),
+                      3)
+                .open(adaptor));
+        Assert.assertEquals(3, rows.size());
+        Assert.assertEquals(Long.valueOf(10L),
+                            ((Airport) rows.get(0)).primaryKey());
+
+        // Only the rows handed out are read from the table.
+        TransactionTableTrail<Long, Airport> trail =
+            adaptor.lookupTableTrail(Airport.TABLE_NAME);
+        Assert.assertEquals(3, trail.getReadSet().size());
+        Assert.assertTrue(trail.getPredicateToDataMap().isEmpty());
+        Assert.assertTrue(validate(adaptor));
+
+        // The rows that are read are still validated.
+        myTable.getRow(Long.valueOf(11L),
+                       20L,
+                       TransactionHelper.SNAPSHOT_TRANSACTION_ID)
+               .setEnd(30L);
+        Assert.assertFalse(validate(adaptor));
+    }
+
+    @Test
+    public void fullScanTest()
+    {
+        DatabaseAdaptor adaptor = makeAdaptor();
+        Assert.assertEquals(
+            AIRPORTS,
+            read(new Where(Airport.TABLE_NAME, null).open(adaptor)).size());
+
+        TransactionTableTrail<Long, Airport> trail =
+            adaptor.lookupTableTrail(Airport.TABLE_NAME);
+        Assert.assertEquals(AIRPORTS, trail.getReadSet().size());
+        Assert.assertEquals(1, trail.getPredicateToDataMap().size());
+        Assert.assertTrue(validate(adaptor));
+
+        // The rows added after the scan are caught once it's exhausted.
+        addAirport(AIRPORTS + 1, 30L);
+        Assert.assertFalse(validate(adaptor));
+    }
+}
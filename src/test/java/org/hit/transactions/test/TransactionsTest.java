@@ -19,17 +19,7 @@
 */
 package org.hit.transactions.test;
 
-import org.hit.db.model.Mutation;
-import org.hit.db.model.Query;
-import org.hit.db.transactions.AbstractTransaction;
-import org.hit.db.transactions.ReadTransaction;
-import org.hit.db.transactions.TransactableDatabase;
-import org.hit.db.transactions.WriteTransaction;
-import org.hit.db.transactions.impl.TransactableHitDatabase;
-import org.hit.time.Clock;
-import org.hit.time.SimpleSystemClock;
 import org.junit.Assert;
-import org.junit.Before;
 import org.junit.Test;
 
 /**
@@ -37,55 +27,8 @@ import org.junit.Test;
  * 
  * @author Balraja Subbiah
  */
-public class TransactionsTest
+public class TransactionsTest extends AbstractTransactionsTest
 {
-    private TransactableDatabase myDatabase;
-    
-    private Clock                myClock;
-    
-    private long                 myTransactionID;
-    
-    @Before
-    public void setupTest()
-    {
-        myDatabase      = new TransactableHitDatabase();
-        myClock         = new SimpleSystemClock();
-        myTransactionID = 1L;
-        
-        myDatabase.createTable(Account.SCHEMA);
-    }
-    
-    private void apply(Mutation mutation, boolean isCommit)
-    {
-        AbstractTransaction transaction = 
-            WriteTransaction.create(myTransactionID++,
-                                    myDatabase,
-                                    myClock, 
-                                    mutation);
-        
-        transaction.init();
-        transaction.execute();
-        if (isCommit) {
-            transaction.commit();
-        }
-        else {
-            transaction.abort();
-        }
-    }
-    
-    private Object execute(Query query)
-    {
-        ReadTransaction transaction = 
-            ReadTransaction.create(myTransactionID++,
-                                   myDatabase,
-                                   myClock, 
-                                   query);
-        
-        transaction.init();
-        transaction.execute();
-        return transaction.getResult();
-    }
-    
     @Test
     public void updateAndQueryTest()
     {
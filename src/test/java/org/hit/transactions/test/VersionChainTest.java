@@ -0,0 +1,82 @@
+/*
+    Hit is a high speed transactional database for handling millions
+    of updates with comfort and ease.
+
+    Copyright (C) 2013  Balraja Subbiah
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package org.hit.transactions.test;
+
+import java.util.Collections;
+import java.util.TreeMap;
+
+import org.hit.db.model.Predicate;
+import org.hit.db.transactions.Transactable;
+import org.hit.db.transactions.TransactableTable;
+import org.hit.db.transactions.TransactionHelper;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Verifies the lookups over the chains of versions of the rows, in both 
+ * the partitioned and the hashed tables.
+ * 
+ * @author Balraja Subbiah
+ */
+public class VersionChainTest extends AbstractTransactionsTest
+{
+    private void verifyVersionChain(String tableName)
+    {
+        TransactableTable<Long, Account> table = 
+            myDatabase.lookUpTable(tableName);
+        Transactable<Long, Account> first = 
+            addVersion(table, 1L, 100.0D, 10L, 20L);
+        Transactable<Long, Account> second = 
+            addVersion(table, 1L, 200.0D, 20L, 30L);
+        Transactable<Long, Account> third = 
+            addVersion(table, 1L, 300.0D, 30L, TransactionHelper.INFINITY);
+        addVersion(table, 2L, 50.0D, 15L, TransactionHelper.INFINITY);
+        
+        // The versions of a key are linked from the newest to the oldest.
+        Assert.assertSame(second, third.getOlderVersion());
+        Assert.assertSame(first, second.getOlderVersion());
+        Assert.assertNull(first.getOlderVersion());
+        
+        long id = TransactionHelper.SNAPSHOT_TRANSACTION_ID;
+        Assert.assertNull(table.getRow(1L, 5L, id));
+        Assert.assertSame(first, table.getRow(1L, 12L, id));
+        Assert.assertSame(second, table.getRow(1L, 25L, id));
+        Assert.assertSame(third, table.getRow(1L, 35L, id));
+        
+        // A scan returns only the version of each key visible at the time.
+        Assert.assertEquals(
+            new TreeMap<>(Collections.singletonMap(1L, 100.0D)),
+            balances(table.findMatching(Predicate.MATCH_ALL, 12L, id)));
+        TreeMap<Long, Double> expected = new TreeMap<>();
+        expected.put(1L, 200.0D);
+        expected.put(2L, 50.0D);
+        Assert.assertEquals(
+            expected,
+            balances(table.findMatching(Predicate.MATCH_ALL, 25L, id)));
+        Assert.assertEquals(2L, table.rowCount());
+    }
+    
+    @Test
+    public void versionChainTest()
+    {
+        verifyVersionChain(Account.TABLE_NAME);
+        verifyVersionChain(HASHED_SCHEMA.getTableName());
+    }
+}
@@ -0,0 +1,120 @@
+/*
+    Hit is a high speed transactional database for handling millions
+    of updates with comfort and ease.
+
+    Copyright (C) 2013  Balraja Subbiah
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package org.hit.transactions.test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.hit.db.model.Predicate;
+import org.hit.db.transactions.Transactable;
+import org.hit.db.transactions.TransactableTable;
+import org.hit.db.transactions.TransactionHelper;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Verifies the reclamation of the versions that are superseded before 
+ * the low watermark.
+ * 
+ * @author Balraja Subbiah
+ */
+public class VersionGarbageCollectionTest extends AbstractTransactionsTest
+{
+    private List<Transactable<Long, Account>> reclaim(
+        TransactableTable<Long, Account> table, long lowWatermark)
+    {
+        List<Transactable<Long, Account>> reclaimed = new ArrayList<>();
+        while (!table.reclaimVersions(lowWatermark, 1, reclaimed));
+        return reclaimed;
+    }
+    
+    @Test
+    public void garbageCollectionTest() throws InterruptedException
+    {
+        // The updates are spaced out so that they commit at distinct times.
+        apply(new UpdateBalanceTransaction(1L, 100.0D), true);
+        Thread.sleep(5);
+        apply(new UpdateBalanceTransaction(1L, 100.0D), true);
+        Thread.sleep(5);
+        apply(new UpdateBalanceTransaction(1L, 100.0D), true);
+        
+        TransactableTable<Long, Account> table = 
+            myDatabase.lookUpTable(Account.TABLE_NAME);
+        Transactable<Long, Account> newest = 
+            table.getRow(Long.valueOf(1L), 
+                         myClock.currentTime(), 
+                         TransactionHelper.SNAPSHOT_TRANSACTION_ID);
+        Transactable<Long, Account> middle = newest.getOlderVersion();
+        Transactable<Long, Account> oldest = middle.getOlderVersion();
+        Assert.assertNotNull(oldest);
+        Assert.assertTrue(oldest.getEnd() < newest.getStart());
+        
+        // A transaction started when the middle version was committed can
+        // still see it, hence neither the middle nor the oldest version 
+        // that's superseded at that time are reclaimed.
+        Assert.assertTrue(reclaim(table, middle.getStart()).isEmpty());
+        Assert.assertSame(oldest, middle.getOlderVersion());
+        
+        // Only the oldest version is superseded before the newest version
+        // is committed.
+        List<Transactable<Long, Account>> reclaimed = 
+            reclaim(table, newest.getStart());
+        Assert.assertEquals(1, reclaimed.size());
+        Assert.assertSame(oldest, reclaimed.get(0));
+        Assert.assertNull(middle.getOlderVersion());
+        Assert.assertSame(middle, newest.getOlderVersion());
+        
+        // The newest version is never reclaimed, since it's not superseded.
+        reclaimed = reclaim(table, TransactionHelper.INFINITY - 1);
+        Assert.assertEquals(1, reclaimed.size());
+        Assert.assertSame(middle, reclaimed.get(0));
+        Assert.assertNull(newest.getOlderVersion());
+        
+        Object result = execute(new BalanceQuery(1L));
+        Assert.assertEquals(300.0D, (Double) result, 0.0D);
+    }
+    
+    @Test
+    public void hashedGarbageCollectionTest()
+    {
+        // The hashed table is walked bucket by bucket.
+        TransactableTable<Long, Account> table = 
+            myDatabase.lookUpTable(HASHED_SCHEMA.getTableName());
+        for (long i = 1; i <= 20; i++) {
+            addVersion(table, i, 100.0D, 10L, 20L);
+            addVersion(table, i, 200.0D, 20L, TransactionHelper.INFINITY);
+        }
+        
+        List<Transactable<Long, Account>> reclaimed = reclaim(table, 30L);
+        Assert.assertEquals(20, reclaimed.size());
+        for (Transactable<Long, Account> version : reclaimed) {
+            Assert.assertEquals(100.0D, 
+                                version.getPersistable().getBalance(), 
+                                0.0D);
+        }
+        Assert.assertTrue(reclaim(table, 30L).isEmpty());
+        Assert.assertEquals(
+            20, 
+            table.findMatching(Predicate.MATCH_ALL, 
+                               25L, 
+                               TransactionHelper.SNAPSHOT_TRANSACTION_ID)
+                 .size());
+    }
+}